@@ -0,0 +1,84 @@
+package smartthings.ratpack.benchmarks;
+
+import com.codahale.metrics.MetricRegistry;
+import io.github.resilience4j.circuitbreaker.CircuitBreaker;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.Level;
+import org.openjdk.jmh.annotations.OperationsPerInvocation;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.TearDown;
+import ratpack.test.exec.ExecHarness;
+import smartthings.ratpack.sqs.Consumer;
+import smartthings.ratpack.sqs.SqsModule;
+import smartthings.ratpack.sqs.internal.consumer.ConsumerAction;
+import smartthings.ratpack.sqs.internal.consumer.DeleteMessageBatcher;
+import smartthings.ratpack.sqs.internal.consumer.RegisteredConsumer;
+import smartthings.ratpack.sqs.internal.metrics.ConsumerMetrics;
+
+import java.time.Duration;
+
+/**
+ * Throughput of the receive, consume and delete chain of a single poller.  A {@link ConsumerAction} polls a
+ * {@link StubSqsService} that always returns a full batch, hands each message to a no-op consumer and deletes it
+ * through the {@link DeleteMessageBatcher}.  One operation is one message deleted.
+ */
+@State(Scope.Benchmark)
+public class ConsumerChainBenchmark {
+
+    private static final int BATCH = 10;
+
+    @Param({"1", "10"})
+    public int batchConcurrency;
+
+    @Param({"0", "20"})
+    public int prefetch;
+
+    private ExecHarness harness;
+    private StubSqsService sqs;
+    private ConsumerAction action;
+
+    @Setup(Level.Trial)
+    public void setUp() {
+        harness = ExecHarness.harness();
+        sqs = new StubSqsService(BATCH);
+
+        SqsModule.ConsumerConfig consumerConfig = new SqsModule.ConsumerConfig();
+        consumerConfig.setBatchConcurrency(batchConcurrency);
+        consumerConfig.setPrefetch(prefetch);
+        SqsModule.EndpointConfig endpoint = new SqsModule.EndpointConfig();
+        endpoint.setQueueName("benchmark");
+
+        ConsumerMetrics metrics = new ConsumerMetrics(new MetricRegistry(), "benchmark", "noop");
+        DeleteMessageBatcher deleteBatcher = new DeleteMessageBatcher(sqs, BATCH, Duration.ofMillis(50), metrics);
+        action = new ConsumerAction(
+            sqs,
+            RegisteredConsumer.of((Consumer) message -> { }),
+            CircuitBreaker.ofDefaults("benchmark"),
+            consumerConfig,
+            endpoint,
+            deleteBatcher,
+            null,
+            null,
+            null,
+            null,
+            null,
+            metrics
+        );
+        harness.getController().fork().start(action);
+    }
+
+    @TearDown(Level.Trial)
+    public void tearDown() {
+        action.retire();
+        harness.close();
+    }
+
+    @Benchmark
+    @OperationsPerInvocation(BATCH)
+    public void receiveConsumeDelete() throws InterruptedException {
+        sqs.awaitDeleted(BATCH);
+    }
+}
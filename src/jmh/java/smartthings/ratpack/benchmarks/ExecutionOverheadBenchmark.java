@@ -0,0 +1,67 @@
+package smartthings.ratpack.benchmarks;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.Level;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.TearDown;
+import org.openjdk.jmh.infra.Blackhole;
+import ratpack.exec.Blocking;
+import ratpack.exec.Operation;
+import ratpack.exec.Promise;
+import ratpack.test.exec.ExecHarness;
+import software.amazon.awssdk.services.sqs.model.Message;
+
+import java.util.concurrent.CountDownLatch;
+
+/**
+ * The fixed cost the consumer pays per message for Ratpack's execution model: forking an execution, running a short
+ * promise chain like the one wrapped around each {@code consume}, and the blocking-pool hop made by every call to the
+ * synchronous SDK client.
+ */
+@State(Scope.Benchmark)
+public class ExecutionOverheadBenchmark {
+
+    private ExecHarness harness;
+    private Message message;
+
+    @Setup(Level.Trial)
+    public void setUp() {
+        harness = ExecHarness.harness();
+        message = Message.builder()
+            .messageId("message")
+            .receiptHandle("receipt")
+            .body("{\"benchmark\":true}")
+            .build();
+    }
+
+    @TearDown(Level.Trial)
+    public void tearDown() {
+        harness.close();
+    }
+
+    @Benchmark
+    public void forkPerMessage(Blackhole blackhole) throws InterruptedException {
+        CountDownLatch done = new CountDownLatch(1);
+        harness.getController().fork()
+            .onComplete(execution -> done.countDown())
+            .start(execution -> blackhole.consume(message));
+        done.await();
+    }
+
+    @Benchmark
+    public String promiseChainPerMessage() throws Exception {
+        return harness.yield(execution ->
+            Promise.value(message)
+                .wiretap(result -> result.getValue().messageId())
+                .flatMap(m -> Operation.of(() -> m.body().length()).promise().map(v -> m))
+                .map(Message::receiptHandle)
+        ).getValueOrThrow();
+    }
+
+    @Benchmark
+    public String blockingHopPerMessage() throws Exception {
+        return harness.yield(execution -> Blocking.get(message::receiptHandle)).getValueOrThrow();
+    }
+}
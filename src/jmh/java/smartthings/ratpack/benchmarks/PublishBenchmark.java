@@ -0,0 +1,128 @@
+package smartthings.ratpack.benchmarks;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.Level;
+import org.openjdk.jmh.annotations.OperationsPerInvocation;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.TearDown;
+import ratpack.exec.Promise;
+import ratpack.exec.util.ParallelBatch;
+import ratpack.test.exec.ExecHarness;
+import smartthings.ratpack.sns.SnsModule;
+import smartthings.ratpack.sns.internal.DefaultSnsService;
+import smartthings.ratpack.sqs.BatchingSqsService;
+import smartthings.ratpack.sqs.DefaultSqsService;
+import software.amazon.awssdk.services.sns.SnsClient;
+import software.amazon.awssdk.services.sns.model.PublishRequest;
+import software.amazon.awssdk.services.sns.model.PublishResponse;
+import software.amazon.awssdk.services.sqs.SqsClient;
+import software.amazon.awssdk.services.sqs.model.SendMessageRequest;
+import software.amazon.awssdk.services.sqs.model.SendMessageResponse;
+
+import java.time.Duration;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+
+/**
+ * Producer throughput against stub SDK clients: an SNS publish through {@link DefaultSnsService}, an SQS send through
+ * {@link DefaultSqsService}, and concurrent sends coalesced by {@link BatchingSqsService}.
+ */
+@State(Scope.Benchmark)
+public class PublishBenchmark {
+
+    private static final int CONCURRENT_SENDS = 10;
+
+    private ExecHarness harness;
+    private DefaultSnsService sns;
+    private DefaultSqsService sqs;
+    private BatchingSqsService batchingSqs;
+    private PublishRequest publish;
+    private SendMessageRequest send;
+
+    @Setup(Level.Trial)
+    public void setUp() {
+        harness = ExecHarness.harness();
+
+        SnsModule.Config snsConfig = new SnsModule.Config();
+        snsConfig.setEnabled(true);
+        snsConfig.setEndpoints(Collections.singletonList(new SnsModule.EndpointConfig()));
+        sns = new DefaultSnsService(snsConfig, endpoint -> new StubSnsClient());
+        sqs = new DefaultSqsService(new StubSqsClient());
+        batchingSqs = new BatchingSqsService(new StubSqsService(0), Duration.ofMillis(1));
+
+        publish = PublishRequest.builder()
+            .topicArn("arn:aws:sns:us-east-1:000000000000:benchmark")
+            .message("{\"benchmark\":true}")
+            .build();
+        send = SendMessageRequest.builder()
+            .queueUrl(StubSqsService.QUEUE_URL)
+            .messageBody("{\"benchmark\":true}")
+            .build();
+    }
+
+    @TearDown(Level.Trial)
+    public void tearDown() {
+        harness.close();
+    }
+
+    @Benchmark
+    public PublishResponse snsPublish() throws Exception {
+        return harness.yield(execution -> sns.publish(publish)).getValueOrThrow();
+    }
+
+    @Benchmark
+    public SendMessageResponse sqsSend() throws Exception {
+        return harness.yield(execution -> sqs.sendMessage(send)).getValueOrThrow();
+    }
+
+    @Benchmark
+    @OperationsPerInvocation(CONCURRENT_SENDS)
+    public List<SendMessageResponse> sqsSendBatched() throws Exception {
+        List<Promise<SendMessageResponse>> sends = new ArrayList<>(CONCURRENT_SENDS);
+        for (int i = 0; i < CONCURRENT_SENDS; i++) {
+            sends.add(batchingSqs.sendMessage(send));
+        }
+        return harness.yield(execution -> ParallelBatch.of(sends).yield()).getValueOrThrow();
+    }
+
+    private static class StubSnsClient implements SnsClient {
+
+        private final PublishResponse response = PublishResponse.builder().messageId("published").build();
+
+        @Override
+        public PublishResponse publish(PublishRequest request) {
+            return response;
+        }
+
+        @Override
+        public String serviceName() {
+            return SERVICE_NAME;
+        }
+
+        @Override
+        public void close() {
+        }
+    }
+
+    private static class StubSqsClient implements SqsClient {
+
+        private final SendMessageResponse response = SendMessageResponse.builder().messageId("sent").build();
+
+        @Override
+        public SendMessageResponse sendMessage(SendMessageRequest request) {
+            return response;
+        }
+
+        @Override
+        public String serviceName() {
+            return SERVICE_NAME;
+        }
+
+        @Override
+        public void close() {
+        }
+    }
+}
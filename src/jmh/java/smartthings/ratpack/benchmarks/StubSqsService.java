@@ -0,0 +1,101 @@
+package smartthings.ratpack.benchmarks;
+
+import ratpack.exec.Promise;
+import smartthings.ratpack.sqs.SqsService;
+import software.amazon.awssdk.services.sqs.model.*;
+
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+import java.util.concurrent.Semaphore;
+import java.util.stream.Collectors;
+
+/**
+ * In-process {@link SqsService} that answers every call immediately, so benchmarks measure the library and not the
+ * network.  Each receive returns the same full batch of messages; deleted entries are counted so a benchmark can
+ * wait for a number of messages to make it through the whole chain.
+ */
+public class StubSqsService implements SqsService {
+
+    static final String QUEUE_URL = "http://localhost/000000000000/benchmark";
+
+    private final ReceiveMessageResponse received;
+    private final Semaphore deleted = new Semaphore(0);
+
+    public StubSqsService(int batchSize) {
+        List<Message> messages = new ArrayList<>(batchSize);
+        for (int i = 0; i < batchSize; i++) {
+            messages.add(Message.builder()
+                .messageId("message-" + i)
+                .receiptHandle("receipt-" + i)
+                .body("{\"benchmark\":" + i + "}")
+                .build());
+        }
+        this.received = ReceiveMessageResponse.builder().messages(messages).build();
+    }
+
+    /**
+     * Blocks until the given number of messages have been deleted.
+     * @param count The number of deletes to wait for
+     * @throws InterruptedException if interrupted while waiting
+     */
+    public void awaitDeleted(int count) throws InterruptedException {
+        deleted.acquire(count);
+    }
+
+    @Override
+    public Promise<DeleteMessageResponse> deleteMessage(DeleteMessageRequest request) {
+        deleted.release();
+        return Promise.value(DeleteMessageResponse.builder().build());
+    }
+
+    @Override
+    public Promise<DeleteMessageBatchResponse> deleteMessageBatch(DeleteMessageBatchRequest request) {
+        deleted.release(request.entries().size());
+        return Promise.value(DeleteMessageBatchResponse.builder()
+            .successful(request.entries().stream()
+                .map(entry -> DeleteMessageBatchResultEntry.builder().id(entry.id()).build())
+                .collect(Collectors.toList()))
+            .build());
+    }
+
+    @Override
+    public Promise<SendMessageResponse> sendMessage(SendMessageRequest request) {
+        return Promise.value(SendMessageResponse.builder().messageId("sent").build());
+    }
+
+    @Override
+    public Promise<SendMessageBatchResponse> sendMessageBatch(SendMessageBatchRequest request) {
+        return Promise.value(SendMessageBatchResponse.builder()
+            .successful(request.entries().stream()
+                .map(entry -> SendMessageBatchResultEntry.builder().id(entry.id()).messageId("sent").build())
+                .collect(Collectors.toList()))
+            .build());
+    }
+
+    @Override
+    public Promise<ReceiveMessageResponse> receiveMessage(ReceiveMessageRequest request) {
+        return Promise.value(received);
+    }
+
+    @Override
+    public Promise<GetQueueUrlResponse> getQueueUrl(String queueName) {
+        return Promise.value(GetQueueUrlResponse.builder().queueUrl(QUEUE_URL).build());
+    }
+
+    @Override
+    public Promise<GetQueueAttributesResponse> getQueueAttributes(GetQueueAttributesRequest request) {
+        return Promise.value(GetQueueAttributesResponse.builder().attributes(Collections.emptyMap()).build());
+    }
+
+    @Override
+    public Promise<ChangeMessageVisibilityBatchResponse> changeMessageVisibilityBatch(
+        ChangeMessageVisibilityBatchRequest request
+    ) {
+        return Promise.value(ChangeMessageVisibilityBatchResponse.builder()
+            .successful(request.entries().stream()
+                .map(entry -> ChangeMessageVisibilityBatchResultEntry.builder().id(entry.id()).build())
+                .collect(Collectors.toList()))
+            .build());
+    }
+}
@@ -2,6 +2,7 @@ package smartthings.ratpack.aws;
 
 import com.google.inject.multibindings.OptionalBinder;
 import ratpack.guice.ConfigurableModule;
+import smartthings.ratpack.aws.internal.http.HttpClients;
 import smartthings.ratpack.aws.internal.providers.DefaultAWSCredentialsProvider;
 import software.amazon.awssdk.auth.credentials.AwsCredentialsProvider;
 
@@ -17,6 +18,8 @@ public class AwsModule extends ConfigurableModule<AwsModule.Config> {
         OptionalBinder.newOptionalBinder(binder(), AwsCredentialsProvider.class)
             .setDefault()
             .toProvider(DefaultAWSCredentialsProvider.class);
+        // Bound explicitly so that the shared HTTP pools are closed as a service when the application stops.
+        bind(HttpClients.class);
     }
 
     /**
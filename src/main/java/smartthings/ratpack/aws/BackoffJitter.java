@@ -0,0 +1,19 @@
+package smartthings.ratpack.aws;
+
+/**
+ * How retry delays are randomized, so that clients failing together don't retry in lockstep.
+ */
+public enum BackoffJitter {
+    /**
+     * Wait exactly the base delay doubled per attempt, up to the cap.
+     */
+    NONE,
+    /**
+     * Wait a random time between 0 and the delay of {@link #NONE}.
+     */
+    FULL,
+    /**
+     * Wait a random time between the base delay and three times the previous wait, up to the cap.
+     */
+    DECORRELATED
+}
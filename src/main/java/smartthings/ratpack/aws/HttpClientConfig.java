@@ -0,0 +1,142 @@
+package smartthings.ratpack.aws;
+
+/**
+ * HTTP client settings of an SQS or SNS endpoint.  Durations and sizes of 0 leave the AWS SDK defaults in place.
+ * Endpoints naming the same {@link #getSharedPool() shared pool} use one connection pool between them, created from
+ * the settings of the first endpoint to name it.
+ */
+public class HttpClientConfig {
+
+    /**
+     * The HTTP implementation behind blocking clients.  Asynchronous clients always use Netty.
+     */
+    public enum Type {
+        /**
+         * The Apache HTTP client, with a connection pool.
+         */
+        APACHE,
+        /**
+         * The JDK's {@code HttpURLConnection}, lighter on startup and dependencies but without pool settings.
+         */
+        URL_CONNECTION
+    }
+
+    private Type type = Type.APACHE;
+    private int maxConnections;
+    private long connectionTimeoutMillis;
+    private long socketTimeoutMillis;
+    private long connectionAcquisitionTimeoutMillis;
+    private long connectionTimeToLiveMillis;
+    private long connectionMaxIdleMillis;
+    private boolean useIdleConnectionReaper = true;
+    private boolean tcpKeepAlive;
+    private String sharedPool;
+
+    public Type getType() {
+        return type;
+    }
+
+    public void setType(Type type) {
+        this.type = type;
+    }
+
+    /**
+     * Most open connections, or concurrent requests of asynchronous clients.
+     * @return the pool size
+     */
+    public int getMaxConnections() {
+        return maxConnections;
+    }
+
+    public void setMaxConnections(int maxConnections) {
+        this.maxConnections = maxConnections;
+    }
+
+    public long getConnectionTimeoutMillis() {
+        return connectionTimeoutMillis;
+    }
+
+    public void setConnectionTimeoutMillis(long connectionTimeoutMillis) {
+        this.connectionTimeoutMillis = connectionTimeoutMillis;
+    }
+
+    /**
+     * Longest wait for data on an open connection.  Must exceed the 20 second long poll of consumers.
+     * @return the socket read timeout in milliseconds
+     */
+    public long getSocketTimeoutMillis() {
+        return socketTimeoutMillis;
+    }
+
+    public void setSocketTimeoutMillis(long socketTimeoutMillis) {
+        this.socketTimeoutMillis = socketTimeoutMillis;
+    }
+
+    /**
+     * Longest wait for a pooled connection to become free.
+     * @return the connection acquisition timeout in milliseconds
+     */
+    public long getConnectionAcquisitionTimeoutMillis() {
+        return connectionAcquisitionTimeoutMillis;
+    }
+
+    public void setConnectionAcquisitionTimeoutMillis(long connectionAcquisitionTimeoutMillis) {
+        this.connectionAcquisitionTimeoutMillis = connectionAcquisitionTimeoutMillis;
+    }
+
+    /**
+     * Age after which a pooled connection is closed rather than reused, so that DNS changes are picked up.
+     * @return the connection time to live in milliseconds
+     */
+    public long getConnectionTimeToLiveMillis() {
+        return connectionTimeToLiveMillis;
+    }
+
+    public void setConnectionTimeToLiveMillis(long connectionTimeToLiveMillis) {
+        this.connectionTimeToLiveMillis = connectionTimeToLiveMillis;
+    }
+
+    /**
+     * Idle time after which a pooled connection is closed by the idle connection reaper.
+     * @return the maximum idle time in milliseconds
+     */
+    public long getConnectionMaxIdleMillis() {
+        return connectionMaxIdleMillis;
+    }
+
+    public void setConnectionMaxIdleMillis(long connectionMaxIdleMillis) {
+        this.connectionMaxIdleMillis = connectionMaxIdleMillis;
+    }
+
+    public boolean isUseIdleConnectionReaper() {
+        return useIdleConnectionReaper;
+    }
+
+    public void setUseIdleConnectionReaper(boolean useIdleConnectionReaper) {
+        this.useIdleConnectionReaper = useIdleConnectionReaper;
+    }
+
+    /**
+     * Whether TCP keep-alive probes are sent on pooled connections of the Apache client.
+     * @return true to enable TCP keep-alive
+     */
+    public boolean isTcpKeepAlive() {
+        return tcpKeepAlive;
+    }
+
+    public void setTcpKeepAlive(boolean tcpKeepAlive) {
+        this.tcpKeepAlive = tcpKeepAlive;
+    }
+
+    /**
+     * Name of a connection pool shared with other endpoints naming it.  Each endpoint has its own pool when unset.
+     * @return the shared pool name
+     */
+    public String getSharedPool() {
+        return sharedPool;
+    }
+
+    public void setSharedPool(String sharedPool) {
+        this.sharedPool = sharedPool;
+    }
+}
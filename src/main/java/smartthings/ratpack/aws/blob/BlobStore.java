@@ -0,0 +1,32 @@
+package smartthings.ratpack.aws.blob;
+
+import ratpack.exec.Operation;
+import ratpack.exec.Promise;
+
+/**
+ * Storage for message payloads too large for SQS and SNS.  Large messages carry only the key of their payload, which
+ * consumers fetch back before processing them.
+ */
+public interface BlobStore {
+
+    /**
+     * Stores a payload under a new key.
+     * @param payload The message body
+     * @return a promise for the key of the stored payload
+     */
+    Promise<String> put(String payload);
+
+    /**
+     * Fetches a stored payload.
+     * @param key The key returned by {@link #put(String)}
+     * @return a promise for the message body, failing if no payload is stored under the key
+     */
+    Promise<String> get(String key);
+
+    /**
+     * Removes a stored payload, succeeding if there is none.
+     * @param key The key returned by {@link #put(String)}
+     * @return the delete operation
+     */
+    Operation delete(String key);
+}
@@ -0,0 +1,58 @@
+package smartthings.ratpack.aws.blob;
+
+/**
+ * Settings for offloading large message payloads to a {@link BlobStore}.  A message whose body and attributes exceed
+ * the threshold is sent with the key of its stored payload as its body, and the key in the {@value #ATTRIBUTE}
+ * message attribute.  Consumers replace the body with the stored payload before processing the message.
+ */
+public class ClaimCheck {
+
+    /**
+     * The message attribute holding the key of an offloaded payload.
+     */
+    public static final String ATTRIBUTE = "Claim-Check";
+
+    /**
+     * The largest message SQS and SNS accept, body and attributes together.
+     */
+    public static final int MAX_MESSAGE_BYTES = 256 * 1024;
+
+    private final BlobStore store;
+    private final int thresholdBytes;
+
+    /**
+     * Offloads messages that SQS or SNS would reject as too large.
+     * @param store The store for offloaded payloads
+     */
+    public ClaimCheck(BlobStore store) {
+        this(store, MAX_MESSAGE_BYTES);
+    }
+
+    /**
+     * @param store The store for offloaded payloads
+     * @param thresholdBytes The largest message, in bytes of body and attributes, that is sent as it is
+     */
+    public ClaimCheck(BlobStore store, int thresholdBytes) {
+        if (thresholdBytes > MAX_MESSAGE_BYTES) {
+            throw new IllegalArgumentException("The claim check threshold cannot exceed " + MAX_MESSAGE_BYTES);
+        }
+        this.store = store;
+        this.thresholdBytes = thresholdBytes;
+    }
+
+    public BlobStore getStore() {
+        return store;
+    }
+
+    public int getThresholdBytes() {
+        return thresholdBytes;
+    }
+
+    /**
+     * @param messageBytes The size of body and attributes of a message
+     * @return whether the message's payload is offloaded
+     */
+    public boolean isLarge(long messageBytes) {
+        return messageBytes > thresholdBytes;
+    }
+}
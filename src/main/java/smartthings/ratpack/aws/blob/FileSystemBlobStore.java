@@ -0,0 +1,62 @@
+package smartthings.ratpack.aws.blob;
+
+import ratpack.exec.Blocking;
+import ratpack.exec.Operation;
+import ratpack.exec.Promise;
+
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardCopyOption;
+import java.util.UUID;
+import java.util.regex.Pattern;
+
+/**
+ * A {@link BlobStore} keeping payloads as files in a local directory, for development and tests or for producers and
+ * consumers sharing a file system.  Files are written under a temporary name and moved into place, so that consumers
+ * never read a partially written payload.
+ */
+public class FileSystemBlobStore implements BlobStore {
+
+    private static final Pattern KEY = Pattern.compile("[0-9a-f-]{36}");
+
+    private final Path directory;
+
+    public FileSystemBlobStore(Path directory) {
+        this.directory = directory;
+    }
+
+    @Override
+    public Promise<String> put(String payload) {
+        return Blocking.get(() -> {
+            Files.createDirectories(directory);
+            String key = UUID.randomUUID().toString();
+            Path temporary = directory.resolve(key + ".tmp");
+            Files.write(temporary, payload.getBytes(StandardCharsets.UTF_8));
+            Files.move(temporary, pathOf(key), StandardCopyOption.ATOMIC_MOVE);
+            return key;
+        });
+    }
+
+    @Override
+    public Promise<String> get(String key) {
+        return Blocking.get(() -> new String(Files.readAllBytes(pathOf(key)), StandardCharsets.UTF_8));
+    }
+
+    @Override
+    public Operation delete(String key) {
+        return Blocking.op(() -> Files.deleteIfExists(pathOf(key)));
+    }
+
+    public Path getDirectory() {
+        return directory;
+    }
+
+    private Path pathOf(String key) {
+        // Keys come from messages, so only keys this store could have issued are resolved against the directory.
+        if (key == null || !KEY.matcher(key).matches()) {
+            throw new IllegalArgumentException("Invalid blob key " + key);
+        }
+        return directory.resolve(key);
+    }
+}
@@ -0,0 +1,4 @@
+/**
+ * Offloading of large SQS and SNS message payloads to a blob store.
+ */
+package smartthings.ratpack.aws.blob;
@@ -0,0 +1,63 @@
+package smartthings.ratpack.aws.codec;
+
+import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import java.util.zip.Deflater;
+import java.util.zip.DeflaterOutputStream;
+import java.util.zip.Inflater;
+import java.util.zip.InflaterInputStream;
+
+/**
+ * Compresses message bodies with raw deflate, without the header and checksum of gzip.  At the default
+ * {@link Deflater#BEST_SPEED} level it trades some compression for considerably less CPU time than gzip.
+ */
+public class DeflateCodec implements PayloadCodec {
+
+    public static final String NAME = "deflate";
+
+    private final int level;
+
+    public DeflateCodec() {
+        this(Deflater.BEST_SPEED);
+    }
+
+    /**
+     * @param level The compression level, from {@link Deflater#BEST_SPEED} to {@link Deflater#BEST_COMPRESSION}
+     */
+    public DeflateCodec(int level) {
+        this.level = level;
+    }
+
+    @Override
+    public String getName() {
+        return NAME;
+    }
+
+    @Override
+    public byte[] encode(byte[] payload) throws IOException {
+        Deflater deflater = new Deflater(level, true);
+        ByteArrayOutputStream out = new ByteArrayOutputStream(payload.length / 2 + 32);
+        try (DeflaterOutputStream deflate = new DeflaterOutputStream(out, deflater)) {
+            deflate.write(payload);
+        } finally {
+            deflater.end();
+        }
+        return out.toByteArray();
+    }
+
+    @Override
+    public byte[] decode(byte[] payload) throws IOException {
+        return decode(payload, Integer.MAX_VALUE);
+    }
+
+    @Override
+    public byte[] decode(byte[] payload, int maxBytes) throws IOException {
+        Inflater inflater = new Inflater(true);
+        try (InflaterInputStream inflate = new InflaterInputStream(new ByteArrayInputStream(payload), inflater)) {
+            return Streams.readAll(inflate, payload.length * 4, maxBytes);
+        } finally {
+            inflater.end();
+        }
+    }
+}
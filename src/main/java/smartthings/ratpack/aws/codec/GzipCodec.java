@@ -0,0 +1,41 @@
+package smartthings.ratpack.aws.codec;
+
+import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import java.util.zip.GZIPInputStream;
+import java.util.zip.GZIPOutputStream;
+
+/**
+ * Compresses message bodies with gzip, readable by any gzip implementation.
+ */
+public class GzipCodec implements PayloadCodec {
+
+    public static final String NAME = "gzip";
+
+    @Override
+    public String getName() {
+        return NAME;
+    }
+
+    @Override
+    public byte[] encode(byte[] payload) throws IOException {
+        ByteArrayOutputStream out = new ByteArrayOutputStream(payload.length / 2 + 32);
+        try (GZIPOutputStream gzip = new GZIPOutputStream(out)) {
+            gzip.write(payload);
+        }
+        return out.toByteArray();
+    }
+
+    @Override
+    public byte[] decode(byte[] payload) throws IOException {
+        return decode(payload, Integer.MAX_VALUE);
+    }
+
+    @Override
+    public byte[] decode(byte[] payload, int maxBytes) throws IOException {
+        try (GZIPInputStream gzip = new GZIPInputStream(new ByteArrayInputStream(payload))) {
+            return Streams.readAll(gzip, payload.length * 4, maxBytes);
+        }
+    }
+}
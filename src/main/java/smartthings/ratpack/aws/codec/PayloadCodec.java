@@ -0,0 +1,36 @@
+package smartthings.ratpack.aws.codec;
+
+import java.io.IOException;
+
+/**
+ * A compression algorithm for message bodies.  The name of the codec travels with every message it encoded, so that
+ * consumers pick the same codec to decode it.
+ */
+public interface PayloadCodec {
+
+    /**
+     * The name recorded on encoded messages.  Must be unique among the codecs of a {@link PayloadCompression}.
+     * @return the codec name
+     */
+    String getName();
+
+    byte[] encode(byte[] payload) throws IOException;
+
+    byte[] decode(byte[] payload) throws IOException;
+
+    /**
+     * Decodes a payload, failing once the result exceeds a limit.  Override to stop decoding as soon as the limit is
+     * reached; by default the limit is only checked after decoding the whole payload.
+     * @param payload The encoded payload
+     * @param maxBytes The largest decoded payload accepted
+     * @return the decoded payload
+     * @throws IOException if the payload cannot be decoded or decodes to more than the limit
+     */
+    default byte[] decode(byte[] payload, int maxBytes) throws IOException {
+        byte[] decoded = decode(payload);
+        if (decoded.length > maxBytes) {
+            throw new IOException("Decompressed body exceeds the limit of " + maxBytes + " bytes");
+        }
+        return decoded;
+    }
+}
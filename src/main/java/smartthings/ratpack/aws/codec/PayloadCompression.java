@@ -0,0 +1,179 @@
+package smartthings.ratpack.aws.codec;
+
+import java.io.IOException;
+import java.io.UncheckedIOException;
+import java.nio.charset.StandardCharsets;
+import java.util.Base64;
+import java.util.Collections;
+import java.util.LinkedHashMap;
+import java.util.Map;
+import java.util.Optional;
+
+/**
+ * Compresses message bodies on the way out and restores them on the way in.  Compressed bodies are base64 encoded,
+ * since SQS and SNS only carry text, and the name of their codec is recorded in the {@value #ATTRIBUTE} message
+ * attribute.  Bodies below the threshold, and bodies that would not shrink, are sent as they are.  Bodies without the
+ * attribute are passed through on receipt, so compressing producers and plain producers can share a queue.  Bodies
+ * decompressing to more than a limit are rejected, so that a small message cannot exhaust memory.
+ */
+public class PayloadCompression {
+
+    /**
+     * The message attribute naming the codec of a compressed body.
+     */
+    public static final String ATTRIBUTE = "Content-Encoding";
+
+    /**
+     * Bodies smaller than this are not worth compressing by default.
+     */
+    public static final int DEFAULT_THRESHOLD_BYTES = 1024;
+
+    /**
+     * Largest decompressed body accepted by default: a hundred times the largest message SQS and SNS carry, which
+     * leaves room for highly repetitive payloads while stopping decompression bombs.
+     */
+    public static final int DEFAULT_MAX_DECOMPRESSED_BYTES = 100 * 256 * 1024;
+
+    private final PayloadCodec encoder;
+    private final int thresholdBytes;
+    private final int maxDecompressedBytes;
+    private final Map<String, PayloadCodec> decoders = new LinkedHashMap<>();
+
+    /**
+     * @param encoder The codec compressing outgoing bodies, or null to only decompress
+     * @param thresholdBytes The smallest body, in UTF-8 bytes, that is compressed
+     * @param decoders Codecs that can decompress incoming bodies, in addition to the encoder and the standard codecs
+     */
+    public PayloadCompression(PayloadCodec encoder, int thresholdBytes, PayloadCodec... decoders) {
+        this(encoder, thresholdBytes, DEFAULT_MAX_DECOMPRESSED_BYTES, decoders);
+    }
+
+    /**
+     * @param encoder The codec compressing outgoing bodies, or null to only decompress
+     * @param thresholdBytes The smallest body, in UTF-8 bytes, that is compressed
+     * @param maxDecompressedBytes The largest body, in bytes, that an incoming body may decompress to
+     * @param decoders Codecs that can decompress incoming bodies, in addition to the encoder and the standard codecs
+     */
+    public PayloadCompression(
+        PayloadCodec encoder, int thresholdBytes, int maxDecompressedBytes, PayloadCodec... decoders
+    ) {
+        this.encoder = encoder;
+        this.thresholdBytes = thresholdBytes;
+        this.maxDecompressedBytes = maxDecompressedBytes;
+        register(new GzipCodec());
+        register(new DeflateCodec());
+        for (PayloadCodec decoder : decoders) {
+            register(decoder);
+        }
+        if (encoder != null) {
+            register(encoder);
+        }
+    }
+
+    /**
+     * Decompresses bodies of the standard codecs without compressing any.
+     * @return a decompressing instance
+     */
+    public static PayloadCompression decoding() {
+        return new PayloadCompression(null, DEFAULT_THRESHOLD_BYTES);
+    }
+
+    /**
+     * Compresses bodies with one of the standard codecs.
+     * @param codec The name of the codec, {@value GzipCodec#NAME} or {@value DeflateCodec#NAME}, or null to only
+     *              decompress
+     * @param thresholdBytes The smallest body, in UTF-8 bytes, that is compressed
+     * @return a compressing instance
+     */
+    public static PayloadCompression of(String codec, int thresholdBytes) {
+        if (codec == null || codec.isEmpty()) {
+            return new PayloadCompression(null, thresholdBytes);
+        }
+        PayloadCodec encoder = decoding().decoders.get(codec);
+        if (encoder == null) {
+            throw new IllegalArgumentException("Unknown compression codec " + codec);
+        }
+        return new PayloadCompression(encoder, thresholdBytes);
+    }
+
+    public boolean isCompressing() {
+        return encoder != null;
+    }
+
+    public Map<String, PayloadCodec> getDecoders() {
+        return Collections.unmodifiableMap(decoders);
+    }
+
+    /**
+     * Compresses a body if it reaches the threshold and shrinks.
+     * @param body The body to send
+     * @return the compressed body, or empty to send the body as it is
+     */
+    public Optional<Compressed> compress(String body) {
+        // A character takes at most 3 bytes in UTF-8, so short bodies are skipped without encoding them.
+        if (encoder == null || body == null || body.length() < thresholdBytes / 3) {
+            return Optional.empty();
+        }
+        byte[] payload = body.getBytes(StandardCharsets.UTF_8);
+        if (payload.length < thresholdBytes) {
+            return Optional.empty();
+        }
+        try {
+            String compressed = Base64.getEncoder().encodeToString(encoder.encode(payload));
+            return compressed.length() < payload.length ?
+                Optional.of(new Compressed(compressed, encoder.getName())) :
+                Optional.empty();
+        } catch (IOException e) {
+            throw new UncheckedIOException("Unable to compress message body", e);
+        }
+    }
+
+    /**
+     * Restores a compressed body.
+     * @param body The received body
+     * @param encoding The value of the {@value #ATTRIBUTE} attribute, or null if the message has none
+     * @return the original body
+     * @throws IllegalArgumentException if the codec is unknown, or the body cannot be decompressed or decompresses to
+     *                                  more than the limit
+     */
+    public String decompress(String body, String encoding) {
+        if (encoding == null) {
+            return body;
+        }
+        PayloadCodec decoder = decoders.get(encoding);
+        if (decoder == null) {
+            throw new IllegalArgumentException("Unknown compression codec " + encoding);
+        }
+        try {
+            byte[] payload = decoder.decode(Base64.getDecoder().decode(body), maxDecompressedBytes);
+            return new String(payload, StandardCharsets.UTF_8);
+        } catch (IOException e) {
+            throw new IllegalArgumentException("Unable to decompress message body with codec " + encoding, e);
+        }
+    }
+
+    private void register(PayloadCodec codec) {
+        decoders.put(codec.getName(), codec);
+    }
+
+    /**
+     * A compressed body and the name of its codec.
+     */
+    public static final class Compressed {
+        private final String body;
+        private final String encoding;
+
+        Compressed(String body, String encoding) {
+            this.body = body;
+            this.encoding = encoding;
+        }
+
+        public String getBody() {
+            return body;
+        }
+
+        public String getEncoding() {
+            return encoding;
+        }
+    }
+}
@@ -0,0 +1,28 @@
+package smartthings.ratpack.aws.codec;
+
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import java.io.InputStream;
+
+final class Streams {
+
+    private Streams() {
+    }
+
+    /**
+     * Reads a stream to its end, failing once it yields more than the limit so that a small compressed body cannot
+     * inflate without bound.
+     */
+    static byte[] readAll(InputStream in, int sizeHint, int maxBytes) throws IOException {
+        ByteArrayOutputStream out = new ByteArrayOutputStream(Math.max(64, Math.min(sizeHint, maxBytes)));
+        byte[] buffer = new byte[8192];
+        int read;
+        while ((read = in.read(buffer)) != -1) {
+            if (out.size() + read > maxBytes) {
+                throw new IOException("Decompressed body exceeds the limit of " + maxBytes + " bytes");
+            }
+            out.write(buffer, 0, read);
+        }
+        return out.toByteArray();
+    }
+}
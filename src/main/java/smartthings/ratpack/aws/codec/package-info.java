@@ -0,0 +1,4 @@
+/**
+ * Compression of SQS and SNS message bodies.
+ */
+package smartthings.ratpack.aws.codec;
@@ -2,36 +2,96 @@ package smartthings.ratpack.aws.internal.backoff;
 
 import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
-import ratpack.exec.Blocking;
+import ratpack.exec.Execution;
 import ratpack.exec.Promise;
+import smartthings.ratpack.aws.BackoffJitter;
+
+import java.time.Duration;
+import java.util.Random;
+import java.util.concurrent.ThreadLocalRandom;
+import java.util.function.Supplier;
 
 /**
- * Provides a mechanism for backoff inside a Ratpack promise chain.
+ * Provides a mechanism for backoff inside a Ratpack promise chain.  Waits are scheduled on the execution's event loop
+ * rather than sleeping on a thread, and grow exponentially from a base delay up to a cap.  Not thread safe: each
+ * poller or retry loop uses its own instance.
  */
 public class ExponentialBackoff {
 
     private static final Logger log = LoggerFactory.getLogger(ExponentialBackoff.class);
+    private static final long BASE_WAIT = 1000;
     private static final long MAX_WAIT = 60000;
+
+    private final long baseWait;
+    private final long maxWait;
+    private final BackoffJitter jitter;
+    private final Supplier<Random> random;
     private int attempts = 0;
+    private long previousWait;
+
+    public ExponentialBackoff() {
+        this(Duration.ofMillis(BASE_WAIT), Duration.ofMillis(MAX_WAIT), BackoffJitter.NONE);
+    }
+
+    /**
+     * @param base The wait before the first retry
+     * @param cap The longest wait
+     * @param jitter How waits are randomized
+     */
+    public ExponentialBackoff(Duration base, Duration cap, BackoffJitter jitter) {
+        this(base, cap, jitter, ThreadLocalRandom::current);
+    }
+
+    ExponentialBackoff(Duration base, Duration cap, BackoffJitter jitter, Random random) {
+        this(base, cap, jitter, () -> random);
+    }
+
+    private ExponentialBackoff(Duration base, Duration cap, BackoffJitter jitter, Supplier<Random> random) {
+        if (base.isNegative() || base.isZero() || cap.compareTo(base) < 0) {
+            throw new IllegalArgumentException("A backoff requires a positive base no longer than its cap");
+        }
+        this.baseWait = base.toMillis();
+        this.maxWait = cap.toMillis();
+        this.jitter = jitter;
+        this.random = random;
+        this.previousWait = baseWait;
+    }
 
     public void reset() {
         attempts = 0;
+        previousWait = baseWait;
     }
 
     public Promise<Void> backoff() {
-        return Blocking.op(() -> {
-            log.debug("Circuit is OPEN.  Waiting...");
-            Thread.sleep(waitTime());
-            mark();
-        }).promise();
+        long wait = nextWait();
+        log.debug("Backing off for wait={}ms after attempts={}", wait, attempts);
+        return Execution.sleep(Duration.ofMillis(wait)).promise();
     }
 
-    private void mark() {
+    long nextWait() {
+        long wait = waitTime();
+        previousWait = Math.max(wait, baseWait);
         attempts++;
+        return wait;
     }
 
     private long waitTime() {
-        final long wait = Math.round(Math.pow(2, attempts)) * 1000;
-        return Math.min(wait, MAX_WAIT);
+        switch (jitter) {
+            case FULL:
+                return between(0, exponentialWait());
+            case DECORRELATED:
+                long upper = Math.min(maxWait, previousWait * 3);
+                return upper <= baseWait ? baseWait : between(baseWait, upper);
+            default:
+                return exponentialWait();
+        }
+    }
+
+    private long between(long min, long max) {
+        return min + (long) (random.get().nextDouble() * (max - min + 1));
+    }
+
+    private long exponentialWait() {
+        return (long) Math.min(baseWait * Math.pow(2, attempts), maxWait);
     }
 }
@@ -0,0 +1,136 @@
+package smartthings.ratpack.aws.internal.http;
+
+import com.google.inject.Singleton;
+import ratpack.service.Service;
+import ratpack.service.StopEvent;
+import smartthings.ratpack.aws.HttpClientConfig;
+import software.amazon.awssdk.core.client.builder.SdkAsyncClientBuilder;
+import software.amazon.awssdk.core.client.builder.SdkSyncClientBuilder;
+import software.amazon.awssdk.http.SdkHttpClient;
+import software.amazon.awssdk.http.apache.ApacheHttpClient;
+import software.amazon.awssdk.http.async.SdkAsyncHttpClient;
+import software.amazon.awssdk.http.nio.netty.NettyNioAsyncHttpClient;
+import software.amazon.awssdk.http.urlconnection.UrlConnectionHttpClient;
+import software.amazon.awssdk.utils.SdkAutoCloseable;
+
+import java.time.Duration;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+
+/**
+ * Builds the HTTP clients of SQS and SNS clients from their {@link HttpClientConfig}, and keeps the shared pools.
+ * Clients with their own pool hand the HTTP client builder to the SDK, which closes the pool along with the client.
+ * The SDK leaves clients it was handed open, so shared pools are closed here when the application stops.
+ */
+@Singleton
+public class HttpClients implements Service {
+
+    private final Map<String, SdkHttpClient> shared = new ConcurrentHashMap<>();
+    private final Map<String, SdkAsyncHttpClient> sharedAsync = new ConcurrentHashMap<>();
+
+    @Override
+    public void onStop(StopEvent event) {
+        List<SdkAutoCloseable> pools = new ArrayList<>();
+        pools.addAll(shared.values());
+        pools.addAll(sharedAsync.values());
+        shared.clear();
+        sharedAsync.clear();
+        pools.forEach(SdkAutoCloseable::close);
+    }
+
+    /**
+     * Configures the HTTP client of a blocking AWS client.
+     * @param builder The AWS client builder
+     * @param config The HTTP client settings
+     * @param <B> The type of the AWS client builder
+     * @return the builder
+     */
+    public <B extends SdkSyncClientBuilder<B, ?>> B configure(B builder, HttpClientConfig config) {
+        if (config.getSharedPool() != null) {
+            return builder.httpClient(shared.computeIfAbsent(config.getSharedPool(), name -> builder(config).build()));
+        }
+        return builder.httpClientBuilder(builder(config));
+    }
+
+    /**
+     * Configures the Netty HTTP client of an asynchronous AWS client.
+     * @param builder The AWS client builder
+     * @param config The HTTP client settings
+     * @param <B> The type of the AWS client builder
+     * @return the builder
+     */
+    public <B extends SdkAsyncClientBuilder<B, ?>> B configureAsync(B builder, HttpClientConfig config) {
+        if (config.getSharedPool() != null) {
+            return builder.httpClient(
+                sharedAsync.computeIfAbsent(config.getSharedPool(), name -> asyncBuilder(config).build())
+            );
+        }
+        return builder.httpClientBuilder(asyncBuilder(config));
+    }
+
+    static SdkHttpClient.Builder<?> builder(HttpClientConfig config) {
+        if (config.getType() == HttpClientConfig.Type.URL_CONNECTION) {
+            UrlConnectionHttpClient.Builder builder = UrlConnectionHttpClient.builder();
+            if (config.getConnectionTimeoutMillis() > 0) {
+                builder.connectionTimeout(Duration.ofMillis(config.getConnectionTimeoutMillis()));
+            }
+            if (config.getSocketTimeoutMillis() > 0) {
+                builder.socketTimeout(Duration.ofMillis(config.getSocketTimeoutMillis()));
+            }
+            return builder;
+        }
+        ApacheHttpClient.Builder builder = ApacheHttpClient.builder()
+            .useIdleConnectionReaper(config.isUseIdleConnectionReaper())
+            .tcpKeepAlive(config.isTcpKeepAlive());
+        if (config.getMaxConnections() > 0) {
+            builder.maxConnections(config.getMaxConnections());
+        }
+        if (config.getConnectionTimeoutMillis() > 0) {
+            builder.connectionTimeout(Duration.ofMillis(config.getConnectionTimeoutMillis()));
+        }
+        if (config.getSocketTimeoutMillis() > 0) {
+            builder.socketTimeout(Duration.ofMillis(config.getSocketTimeoutMillis()));
+        }
+        if (config.getConnectionAcquisitionTimeoutMillis() > 0) {
+            builder.connectionAcquisitionTimeout(Duration.ofMillis(config.getConnectionAcquisitionTimeoutMillis()));
+        }
+        if (config.getConnectionTimeToLiveMillis() > 0) {
+            builder.connectionTimeToLive(Duration.ofMillis(config.getConnectionTimeToLiveMillis()));
+        }
+        if (config.getConnectionMaxIdleMillis() > 0) {
+            builder.connectionMaxIdleTime(Duration.ofMillis(config.getConnectionMaxIdleMillis()));
+        }
+        return builder;
+    }
+
+    /**
+     * Builds a Netty HTTP client with its own pool from the HTTP client settings.
+     * @param config The HTTP client settings
+     * @return the HTTP client builder
+     */
+    public static NettyNioAsyncHttpClient.Builder asyncBuilder(HttpClientConfig config) {
+        NettyNioAsyncHttpClient.Builder builder = NettyNioAsyncHttpClient.builder()
+            .useIdleConnectionReaper(config.isUseIdleConnectionReaper());
+        if (config.getMaxConnections() > 0) {
+            builder.maxConcurrency(config.getMaxConnections());
+        }
+        if (config.getConnectionTimeoutMillis() > 0) {
+            builder.connectionTimeout(Duration.ofMillis(config.getConnectionTimeoutMillis()));
+        }
+        if (config.getSocketTimeoutMillis() > 0) {
+            builder.readTimeout(Duration.ofMillis(config.getSocketTimeoutMillis()));
+        }
+        if (config.getConnectionAcquisitionTimeoutMillis() > 0) {
+            builder.connectionAcquisitionTimeout(Duration.ofMillis(config.getConnectionAcquisitionTimeoutMillis()));
+        }
+        if (config.getConnectionTimeToLiveMillis() > 0) {
+            builder.connectionTimeToLive(Duration.ofMillis(config.getConnectionTimeToLiveMillis()));
+        }
+        if (config.getConnectionMaxIdleMillis() > 0) {
+            builder.connectionMaxIdleTime(Duration.ofMillis(config.getConnectionMaxIdleMillis()));
+        }
+        return builder;
+    }
+}
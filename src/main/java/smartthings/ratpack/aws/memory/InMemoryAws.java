@@ -0,0 +1,138 @@
+package smartthings.ratpack.aws.memory;
+
+import smartthings.ratpack.aws.memory.internal.InMemoryBroker;
+import smartthings.ratpack.aws.memory.internal.InMemorySnsClient;
+import smartthings.ratpack.aws.memory.internal.InMemorySqsAsyncClient;
+import smartthings.ratpack.aws.memory.internal.InMemorySqsClient;
+import smartthings.ratpack.sns.AmazonSNSProvider;
+import smartthings.ratpack.sqs.SQSClientProvider;
+import smartthings.ratpack.sqs.SqsModule;
+import software.amazon.awssdk.services.sns.SnsClient;
+import software.amazon.awssdk.services.sns.model.SubscribeRequest;
+import software.amazon.awssdk.services.sqs.SqsAsyncClient;
+import software.amazon.awssdk.services.sqs.SqsClient;
+
+import java.time.Duration;
+import java.util.Collections;
+import java.util.Map;
+
+/**
+ * An in-memory stand-in for SQS and SNS, for load tests and benchmarks that must run without AWS or a local emulator.
+ * It models visibility timeouts, receive counts, delays, long polling, the batch APIs and SNS to SQS fan-out.  FIFO
+ * ordering, deduplication, dead letter queues and message MD5s are not modelled.
+ *
+ * <p>All clients handed out share the same queues and topics.  Bind them through the usual extension points with
+ * {@link InMemoryAwsModule}, or wrap {@link #getSqsAsyncClient()} in an
+ * {@link smartthings.ratpack.sqs.AsyncSqsService} directly.
+ */
+public class InMemoryAws implements AutoCloseable {
+
+    private static final Duration SWEEP_INTERVAL = Duration.ofMillis(100);
+
+    private final InMemoryBroker broker;
+    private final InMemorySqsAsyncClient sqsAsync;
+    private final InMemorySqsClient sqs;
+    private final InMemorySnsClient sns;
+
+    public InMemoryAws() {
+        this("us-east-1");
+    }
+
+    public InMemoryAws(String region) {
+        this.broker = new InMemoryBroker(region, SWEEP_INTERVAL);
+        this.sqsAsync = new InMemorySqsAsyncClient(broker);
+        this.sqs = new InMemorySqsClient(sqsAsync);
+        this.sns = new InMemorySnsClient(broker);
+    }
+
+    /**
+     * Creates a queue with default attributes, or returns the URL of the existing queue of that name.
+     * @param name The queue name
+     * @return the queue URL
+     */
+    public String createQueue(String name) {
+        return createQueue(name, Collections.emptyMap());
+    }
+
+    /**
+     * Creates a queue, or returns the URL of the existing queue of that name.
+     * @param name The queue name
+     * @param attributes Queue attributes such as {@code VisibilityTimeout} or {@code ReceiveMessageWaitTimeSeconds}
+     * @return the queue URL
+     */
+    public String createQueue(String name, Map<String, String> attributes) {
+        return broker.createQueue(name, attributes).getUrl();
+    }
+
+    /**
+     * Creates a topic, or returns the ARN of the existing topic of that name.
+     * @param name The topic name
+     * @return the topic ARN
+     */
+    public String createTopic(String name) {
+        return broker.createTopic(name).getArn();
+    }
+
+    /**
+     * Subscribes a queue to a topic.
+     * @param topicArn The topic to subscribe to
+     * @param queueName The queue to deliver to
+     * @param rawMessageDelivery Whether to deliver messages as published instead of in the SNS JSON envelope
+     * @return the subscription ARN
+     */
+    public String subscribe(String topicArn, String queueName, boolean rawMessageDelivery) {
+        return sns.subscribe(SubscribeRequest.builder()
+            .topicArn(topicArn)
+            .protocol("sqs")
+            .endpoint(broker.getQueue(queueName).getArn())
+            .attributes(Collections.singletonMap("RawMessageDelivery", Boolean.toString(rawMessageDelivery)))
+            .build()
+        ).subscriptionArn();
+    }
+
+    public SqsClient getSqsClient() {
+        return sqs;
+    }
+
+    public SqsAsyncClient getSqsAsyncClient() {
+        return sqsAsync;
+    }
+
+    public SnsClient getSnsClient() {
+        return sns;
+    }
+
+    /**
+     * A provider handing out the in-memory clients for every endpoint, whether configured async or not.
+     * @return an {@link SQSClientProvider}
+     */
+    public SQSClientProvider getSqsClientProvider() {
+        return new SQSClientProvider() {
+            @Override
+            public SqsClient get(SqsModule.EndpointConfig config) {
+                return sqs;
+            }
+
+            @Override
+            public SqsAsyncClient getAsync(SqsModule.EndpointConfig config) {
+                return sqsAsync;
+            }
+        };
+    }
+
+    /**
+     * A provider handing out the in-memory client for every endpoint.
+     * @return an {@link AmazonSNSProvider}
+     */
+    public AmazonSNSProvider getSnsProvider() {
+        return config -> sns;
+    }
+
+    /**
+     * Stops the engine's scheduler and completes parked long polls with no messages.
+     */
+    @Override
+    public void close() {
+        broker.close();
+    }
+}
@@ -0,0 +1,29 @@
+package smartthings.ratpack.aws.memory;
+
+import com.google.inject.AbstractModule;
+import com.google.inject.multibindings.OptionalBinder;
+import smartthings.ratpack.sns.AmazonSNSProvider;
+import smartthings.ratpack.sqs.SQSClientProvider;
+
+/**
+ * Points the {@link smartthings.ratpack.sqs.SqsModule} and {@link smartthings.ratpack.sns.SnsModule} at an
+ * {@link InMemoryAws} engine by overriding their client providers.  Install it next to those modules; the configured
+ * regions and endpoints are ignored.
+ */
+public class InMemoryAwsModule extends AbstractModule {
+
+    private final InMemoryAws aws;
+
+    public InMemoryAwsModule(InMemoryAws aws) {
+        this.aws = aws;
+    }
+
+    @Override
+    protected void configure() {
+        bind(InMemoryAws.class).toInstance(aws);
+        OptionalBinder.newOptionalBinder(binder(), SQSClientProvider.class)
+            .setBinding().toInstance(aws.getSqsClientProvider());
+        OptionalBinder.newOptionalBinder(binder(), AmazonSNSProvider.class)
+            .setBinding().toInstance(aws.getSnsProvider());
+    }
+}
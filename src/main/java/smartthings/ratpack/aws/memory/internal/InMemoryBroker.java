@@ -0,0 +1,162 @@
+package smartthings.ratpack.aws.memory.internal;
+
+import software.amazon.awssdk.awscore.exception.AwsErrorDetails;
+import software.amazon.awssdk.services.sns.model.NotFoundException;
+import software.amazon.awssdk.services.sqs.model.QueueDoesNotExistException;
+
+import java.time.Duration;
+import java.util.Collection;
+import java.util.Map;
+import java.util.Optional;
+import java.util.UUID;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ScheduledThreadPoolExecutor;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicLong;
+
+/**
+ * The state shared by the in-memory clients: queues by name, topics by ARN, message ids and the scheduler that
+ * times out long polls and periodically returns expired messages to their queues.
+ */
+public class InMemoryBroker implements AutoCloseable {
+
+    public static final String ACCOUNT_ID = "000000000000";
+
+    private final String region;
+    private final Map<String, InMemoryQueue> queues = new ConcurrentHashMap<>();
+    private final Map<String, InMemoryTopic> topics = new ConcurrentHashMap<>();
+    private final long idPrefix = UUID.randomUUID().getMostSignificantBits();
+    private final AtomicLong ids = new AtomicLong();
+    private final ScheduledThreadPoolExecutor scheduler;
+
+    public InMemoryBroker(String region, Duration sweepInterval) {
+        this.region = region;
+        this.scheduler = new ScheduledThreadPoolExecutor(1, runnable -> {
+            Thread thread = new Thread(runnable, "in-memory-aws-" + region);
+            thread.setDaemon(true);
+            return thread;
+        });
+        this.scheduler.setRemoveOnCancelPolicy(true);
+        this.scheduler.scheduleWithFixedDelay(
+            () -> queues.values().forEach(InMemoryQueue::requeueExpired),
+            sweepInterval.toMillis(),
+            sweepInterval.toMillis(),
+            TimeUnit.MILLISECONDS
+        );
+    }
+
+    public String getRegion() {
+        return region;
+    }
+
+    /**
+     * Creates a queue, or returns the existing queue of that name.
+     * @param name The queue name
+     * @param attributes Queue attributes such as {@code VisibilityTimeout}
+     * @return the queue
+     */
+    public InMemoryQueue createQueue(String name, Map<String, String> attributes) {
+        return queues.computeIfAbsent(name, key -> new InMemoryQueue(
+            key,
+            "http://sqs." + region + ".localhost/" + ACCOUNT_ID + "/" + key,
+            "arn:aws:sqs:" + region + ":" + ACCOUNT_ID + ":" + key,
+            attributes,
+            scheduler
+        ));
+    }
+
+    public InMemoryQueue getQueue(String name) {
+        InMemoryQueue queue = queues.get(name);
+        if (queue == null) {
+            throw QueueDoesNotExistException.builder()
+                .message("The specified queue does not exist: " + name)
+                .statusCode(400)
+                .awsErrorDetails(AwsErrorDetails.builder()
+                    .errorCode("AWS.SimpleQueueService.NonExistentQueue")
+                    .errorMessage("The specified queue does not exist.")
+                    .serviceName("Sqs")
+                    .build())
+                .build();
+        }
+        return queue;
+    }
+
+    /**
+     * Resolves a queue from its URL or ARN, both of which end in the queue name.
+     * @param urlOrArn The queue URL or ARN
+     * @return the queue
+     */
+    public InMemoryQueue getQueueByUrl(String urlOrArn) {
+        return getQueue(nameOf(urlOrArn));
+    }
+
+    public Optional<InMemoryQueue> findQueueByArn(String arn) {
+        return Optional.ofNullable(queues.get(nameOf(arn)));
+    }
+
+    public Collection<InMemoryQueue> getQueues() {
+        return queues.values();
+    }
+
+    public void deleteQueue(String url) {
+        InMemoryQueue queue = queues.remove(nameOf(url));
+        if (queue != null) {
+            queue.close();
+        }
+    }
+
+    public InMemoryTopic createTopic(String name) {
+        String arn = "arn:aws:sns:" + region + ":" + ACCOUNT_ID + ":" + name;
+        return topics.computeIfAbsent(arn, key -> new InMemoryTopic(name, key));
+    }
+
+    public InMemoryTopic getTopic(String arn) {
+        InMemoryTopic topic = topics.get(arn);
+        if (topic == null) {
+            throw NotFoundException.builder()
+                .message("Topic does not exist: " + arn)
+                .statusCode(404)
+                .awsErrorDetails(AwsErrorDetails.builder()
+                    .errorCode("NotFound")
+                    .errorMessage("Topic does not exist")
+                    .serviceName("Sns")
+                    .build())
+                .build();
+        }
+        return topic;
+    }
+
+    public Optional<InMemoryTopic> findTopicBySubscription(String subscriptionArn) {
+        return topics.values().stream()
+            .filter(topic -> subscriptionArn.startsWith(topic.getArn() + ":"))
+            .findFirst();
+    }
+
+    public Collection<InMemoryTopic> getTopics() {
+        return topics.values();
+    }
+
+    public void deleteTopic(String arn) {
+        topics.remove(arn);
+    }
+
+    /**
+     * Generates a message or subscription id.  Ids are UUID formatted but sequential, which avoids the cost of
+     * {@link UUID#randomUUID()} on every send.
+     * @return a unique id
+     */
+    public String nextId() {
+        return new UUID(idPrefix, ids.incrementAndGet()).toString();
+    }
+
+    @Override
+    public void close() {
+        scheduler.shutdownNow();
+        queues.values().forEach(InMemoryQueue::close);
+    }
+
+    private static String nameOf(String urlOrArn) {
+        int separator = Math.max(urlOrArn.lastIndexOf('/'), urlOrArn.lastIndexOf(':'));
+        return urlOrArn.substring(separator + 1);
+    }
+}
@@ -0,0 +1,425 @@
+package smartthings.ratpack.aws.memory.internal;
+
+import software.amazon.awssdk.services.sqs.model.Message;
+import software.amazon.awssdk.services.sqs.model.MessageAttributeValue;
+import software.amazon.awssdk.services.sqs.model.MessageSystemAttributeName;
+import software.amazon.awssdk.services.sqs.model.QueueAttributeName;
+
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentLinkedDeque;
+import java.util.concurrent.ConcurrentLinkedQueue;
+import java.util.concurrent.DelayQueue;
+import java.util.concurrent.Delayed;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.ScheduledFuture;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.function.Supplier;
+
+/**
+ * One in-memory SQS queue.  Visible messages wait in a lock-free deque.  A received message is leased under a fresh
+ * receipt handle until its visibility timeout runs out, and delayed messages and leases share a {@link DelayQueue},
+ * so expired entries are returned to the deque by whoever looks next: a receive, or the engine's periodic sweep.
+ * Long polls park as waiters that are completed by the next send or expiry, or emptied at their wait time.
+ */
+public class InMemoryQueue {
+
+    private static final String ALL = "All";
+    private static final String RECEIVE_COUNT = MessageSystemAttributeName.APPROXIMATE_RECEIVE_COUNT.toString();
+    private static final String FIRST_RECEIVE =
+        MessageSystemAttributeName.APPROXIMATE_FIRST_RECEIVE_TIMESTAMP.toString();
+    private static final String SENT_TIMESTAMP = MessageSystemAttributeName.SENT_TIMESTAMP.toString();
+    private static final String MESSAGE_GROUP_ID = MessageSystemAttributeName.MESSAGE_GROUP_ID.toString();
+
+    private final String name;
+    private final String url;
+    private final String arn;
+    private final long created = System.currentTimeMillis();
+    private final Map<String, String> attributes = new ConcurrentHashMap<>();
+    private final ScheduledExecutorService scheduler;
+    private final ConcurrentLinkedDeque<StoredMessage> visible = new ConcurrentLinkedDeque<>();
+    private final AtomicInteger visibleCount = new AtomicInteger();
+    private final AtomicInteger delayedCount = new AtomicInteger();
+    private final Map<String, Lease> leases = new ConcurrentHashMap<>();
+    private final DelayQueue<Lease> pending = new DelayQueue<>();
+    private final ConcurrentLinkedQueue<Waiter> waiters = new ConcurrentLinkedQueue<>();
+
+    public InMemoryQueue(
+        String name,
+        String url,
+        String arn,
+        Map<String, String> attributes,
+        ScheduledExecutorService scheduler
+    ) {
+        this.name = name;
+        this.url = url;
+        this.arn = arn;
+        this.scheduler = scheduler;
+        this.attributes.put(QueueAttributeName.VISIBILITY_TIMEOUT.toString(), "30");
+        this.attributes.put(QueueAttributeName.DELAY_SECONDS.toString(), "0");
+        this.attributes.put(QueueAttributeName.RECEIVE_MESSAGE_WAIT_TIME_SECONDS.toString(), "0");
+        this.attributes.putAll(attributes);
+    }
+
+    public String getName() {
+        return name;
+    }
+
+    public String getUrl() {
+        return url;
+    }
+
+    public String getArn() {
+        return arn;
+    }
+
+    public void setAttributes(Map<String, String> attributes) {
+        this.attributes.putAll(attributes);
+    }
+
+    /**
+     * Enqueues a message.
+     * @param message The message to store
+     * @param delaySeconds Delay before the message becomes visible, or null for the queue's default
+     */
+    public void send(StoredMessage message, Integer delaySeconds) {
+        int delay = delaySeconds != null ? delaySeconds : intAttribute(QueueAttributeName.DELAY_SECONDS);
+        if (delay > 0) {
+            delayedCount.incrementAndGet();
+            pending.add(new Lease(message, null, TimeUnit.SECONDS.toNanos(delay)));
+        } else {
+            makeVisible(message);
+            signal();
+        }
+    }
+
+    /**
+     * Receives up to {@code max} messages, long polling for up to {@code waitSeconds} when none are visible.
+     * @param max The maximum number of messages to return
+     * @param visibilitySeconds Visibility timeout of the received messages, or null for the queue's default
+     * @param waitSeconds Long poll wait, or null for the queue's default
+     * @param attributeNames System attributes to include
+     * @param messageAttributeNames Message attributes to include
+     * @return the received messages, completed once messages arrive or the wait time passes
+     */
+    public CompletableFuture<List<Message>> receive(
+        int max,
+        Integer visibilitySeconds,
+        Integer waitSeconds,
+        Collection<String> attributeNames,
+        Collection<String> messageAttributeNames
+    ) {
+        requeueExpired();
+        int visibility = visibilitySeconds != null ?
+            visibilitySeconds : intAttribute(QueueAttributeName.VISIBILITY_TIMEOUT);
+        Supplier<List<Message>> take = () -> take(max, visibility, attributeNames, messageAttributeNames);
+        List<Message> messages = take.get();
+        int wait = waitSeconds != null ?
+            waitSeconds : intAttribute(QueueAttributeName.RECEIVE_MESSAGE_WAIT_TIME_SECONDS);
+        if (!messages.isEmpty() || wait <= 0) {
+            return CompletableFuture.completedFuture(messages);
+        }
+        Waiter waiter = new Waiter(take);
+        waiters.add(waiter);
+        waiter.timeout = scheduler.schedule(waiter::expire, wait, TimeUnit.SECONDS);
+        // A send may have slipped in before the waiter was registered.
+        signal();
+        return waiter.future;
+    }
+
+    /**
+     * Deletes a received message.  Like SQS, a stale receipt handle is silently ignored.
+     * @param receiptHandle The handle the message was received with
+     */
+    public void delete(String receiptHandle) {
+        leases.remove(receiptHandle);
+    }
+
+    /**
+     * Changes the remaining visibility timeout of a received message.
+     * @param receiptHandle The handle the message was received with
+     * @param visibilitySeconds The new timeout, counted from now
+     * @return false if the message is no longer in flight under this handle
+     */
+    public boolean changeVisibility(String receiptHandle, int visibilitySeconds) {
+        Lease current = leases.get(receiptHandle);
+        if (current == null) {
+            return false;
+        }
+        if (visibilitySeconds <= 0) {
+            if (leases.remove(receiptHandle, current)) {
+                makeVisible(current.message);
+                signal();
+                return true;
+            }
+            return false;
+        }
+        Lease extended = new Lease(current.message, receiptHandle, TimeUnit.SECONDS.toNanos(visibilitySeconds));
+        if (leases.replace(receiptHandle, current, extended)) {
+            pending.add(extended);
+            return true;
+        }
+        return false;
+    }
+
+    /**
+     * Drops every message in the queue.
+     */
+    public void purge() {
+        visible.clear();
+        visibleCount.set(0);
+        leases.clear();
+        pending.clear();
+        delayedCount.set(0);
+    }
+
+    /**
+     * Completes all parked long polls with no messages.
+     */
+    public void close() {
+        Waiter waiter;
+        while ((waiter = waiters.poll()) != null) {
+            waiter.expire();
+        }
+    }
+
+    public Map<String, String> getAttributes(Collection<String> names) {
+        requeueExpired();
+        Map<String, String> all = new HashMap<>(attributes);
+        all.put(QueueAttributeName.QUEUE_ARN.toString(), arn);
+        all.put(QueueAttributeName.CREATED_TIMESTAMP.toString(), Long.toString(created / 1000));
+        all.put(QueueAttributeName.APPROXIMATE_NUMBER_OF_MESSAGES.toString(), Integer.toString(visibleCount.get()));
+        all.put(
+            QueueAttributeName.APPROXIMATE_NUMBER_OF_MESSAGES_NOT_VISIBLE.toString(), Integer.toString(leases.size())
+        );
+        all.put(
+            QueueAttributeName.APPROXIMATE_NUMBER_OF_MESSAGES_DELAYED.toString(), Integer.toString(delayedCount.get())
+        );
+        if (names.contains(ALL)) {
+            return all;
+        }
+        Map<String, String> selected = new HashMap<>();
+        names.forEach(key -> {
+            if (all.containsKey(key)) {
+                selected.put(key, all.get(key));
+            }
+        });
+        return selected;
+    }
+
+    /**
+     * Returns expired leases and delayed messages to the visible deque.
+     */
+    public void requeueExpired() {
+        boolean moved = false;
+        Lease lease;
+        while ((lease = pending.poll()) != null) {
+            if (lease.receiptHandle == null) {
+                delayedCount.decrementAndGet();
+                makeVisible(lease.message);
+                moved = true;
+            } else if (leases.remove(lease.receiptHandle, lease)) {
+                makeVisible(lease.message);
+                moved = true;
+            }
+        }
+        if (moved) {
+            signal();
+        }
+    }
+
+    private void makeVisible(StoredMessage message) {
+        visible.addLast(message);
+        visibleCount.incrementAndGet();
+    }
+
+    private void signal() {
+        while (visibleCount.get() > 0) {
+            Waiter waiter = waiters.poll();
+            if (waiter == null) {
+                return;
+            }
+            if (waiter.claim()) {
+                waiter.complete(waiter.take.get());
+            }
+        }
+    }
+
+    private List<Message> take(
+        int max,
+        int visibilitySeconds,
+        Collection<String> attributeNames,
+        Collection<String> messageAttributeNames
+    ) {
+        List<Message> received = null;
+        while (received == null || received.size() < max) {
+            StoredMessage message = visible.pollFirst();
+            if (message == null) {
+                break;
+            }
+            visibleCount.decrementAndGet();
+            int receiveCount = message.receiveCount.incrementAndGet();
+            long now = System.currentTimeMillis();
+            if (receiveCount == 1) {
+                message.firstReceived = now;
+            }
+            String receiptHandle = message.id + "#" + receiveCount;
+            if (visibilitySeconds > 0) {
+                Lease lease = new Lease(message, receiptHandle, TimeUnit.SECONDS.toNanos(visibilitySeconds));
+                leases.put(receiptHandle, lease);
+                pending.add(lease);
+            } else {
+                makeVisible(message);
+            }
+            if (received == null) {
+                received = new ArrayList<>(Math.min(max, 10));
+            }
+            received.add(toMessage(message, receiptHandle, receiveCount, attributeNames, messageAttributeNames));
+        }
+        return received == null ? Collections.emptyList() : received;
+    }
+
+    private static Message toMessage(
+        StoredMessage message,
+        String receiptHandle,
+        int receiveCount,
+        Collection<String> attributeNames,
+        Collection<String> messageAttributeNames
+    ) {
+        Message.Builder builder = Message.builder()
+            .messageId(message.id)
+            .receiptHandle(receiptHandle)
+            .body(message.body);
+        if (!attributeNames.isEmpty()) {
+            boolean all = attributeNames.contains(ALL);
+            Map<String, String> attributes = new HashMap<>();
+            if (all || attributeNames.contains(RECEIVE_COUNT)) {
+                attributes.put(RECEIVE_COUNT, Integer.toString(receiveCount));
+            }
+            if (all || attributeNames.contains(SENT_TIMESTAMP)) {
+                attributes.put(SENT_TIMESTAMP, Long.toString(message.sent));
+            }
+            if (all || attributeNames.contains(FIRST_RECEIVE)) {
+                attributes.put(FIRST_RECEIVE, Long.toString(message.firstReceived));
+            }
+            if (message.groupId != null && (all || attributeNames.contains(MESSAGE_GROUP_ID))) {
+                attributes.put(MESSAGE_GROUP_ID, message.groupId);
+            }
+            builder.attributesWithStrings(attributes);
+        }
+        if (!messageAttributeNames.isEmpty() && !message.attributes.isEmpty()) {
+            Map<String, MessageAttributeValue> attributes = new HashMap<>();
+            message.attributes.forEach((key, value) -> {
+                if (selected(key, messageAttributeNames)) {
+                    attributes.put(key, value);
+                }
+            });
+            builder.messageAttributes(attributes);
+        }
+        return builder.build();
+    }
+
+    private static boolean selected(String key, Collection<String> names) {
+        for (String name : names) {
+            if (ALL.equals(name) || ".*".equals(name) || name.equals(key) ||
+                name.endsWith(".*") && key.startsWith(name.substring(0, name.length() - 1))) {
+                return true;
+            }
+        }
+        return false;
+    }
+
+    private int intAttribute(QueueAttributeName attribute) {
+        return Integer.parseInt(attributes.getOrDefault(attribute.toString(), "0"));
+    }
+
+    /**
+     * A message as stored by the engine.
+     */
+    public static final class StoredMessage {
+        private final String id;
+        private final String body;
+        private final Map<String, MessageAttributeValue> attributes;
+        private final String groupId;
+        private final long sent = System.currentTimeMillis();
+        private final AtomicInteger receiveCount = new AtomicInteger();
+        private volatile long firstReceived;
+
+        public StoredMessage(String id, String body, Map<String, MessageAttributeValue> attributes, String groupId) {
+            this.id = id;
+            this.body = body;
+            this.attributes = attributes;
+            this.groupId = groupId;
+        }
+
+        public String getId() {
+            return id;
+        }
+    }
+
+    /**
+     * A received message's lease under one receipt handle, or a delayed message when the handle is null.
+     */
+    private static final class Lease implements Delayed {
+        private final StoredMessage message;
+        private final String receiptHandle;
+        private final long deadline;
+
+        Lease(StoredMessage message, String receiptHandle, long delayNanos) {
+            this.message = message;
+            this.receiptHandle = receiptHandle;
+            this.deadline = System.nanoTime() + delayNanos;
+        }
+
+        @Override
+        public long getDelay(TimeUnit unit) {
+            return unit.convert(deadline - System.nanoTime(), TimeUnit.NANOSECONDS);
+        }
+
+        @Override
+        public int compareTo(Delayed other) {
+            return Long.compare(deadline, ((Lease) other).deadline);
+        }
+    }
+
+    /**
+     * A parked long poll.  Whoever claims it first, a signal or its timeout, completes it.
+     */
+    private final class Waiter {
+        private final Supplier<List<Message>> take;
+        private final CompletableFuture<List<Message>> future = new CompletableFuture<>();
+        private final AtomicBoolean claimed = new AtomicBoolean();
+        private volatile ScheduledFuture<?> timeout;
+
+        Waiter(Supplier<List<Message>> take) {
+            this.take = take;
+        }
+
+        boolean claim() {
+            return claimed.compareAndSet(false, true);
+        }
+
+        void complete(List<Message> messages) {
+            ScheduledFuture<?> scheduled = timeout;
+            if (scheduled != null) {
+                scheduled.cancel(false);
+            }
+            future.complete(messages);
+        }
+
+        void expire() {
+            if (claim()) {
+                waiters.remove(this);
+                future.complete(Collections.emptyList());
+            }
+        }
+    }
+}
@@ -0,0 +1,204 @@
+package smartthings.ratpack.aws.memory.internal;
+
+import com.fasterxml.jackson.core.JsonProcessingException;
+import com.fasterxml.jackson.databind.ObjectMapper;
+import software.amazon.awssdk.awscore.exception.AwsErrorDetails;
+import software.amazon.awssdk.core.exception.SdkClientException;
+import software.amazon.awssdk.services.sns.SnsClient;
+import software.amazon.awssdk.services.sns.model.*;
+
+import java.time.Instant;
+import java.util.Base64;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.LinkedHashMap;
+import java.util.Map;
+import java.util.stream.Collectors;
+
+/**
+ * An {@link SnsClient} backed by an {@link InMemoryBroker}.  Only SQS subscriptions are supported: each publish is
+ * fanned out to the subscribed queues, wrapped in the SNS JSON envelope unless the subscription uses raw message
+ * delivery.
+ */
+public class InMemorySnsClient implements SnsClient {
+
+    private static final String RAW_MESSAGE_DELIVERY = "RawMessageDelivery";
+    private static final ObjectMapper MAPPER = new ObjectMapper();
+
+    private final InMemoryBroker broker;
+
+    public InMemorySnsClient(InMemoryBroker broker) {
+        this.broker = broker;
+    }
+
+    @Override
+    public CreateTopicResponse createTopic(CreateTopicRequest request) {
+        return CreateTopicResponse.builder()
+            .topicArn(broker.createTopic(request.name()).getArn())
+            .build();
+    }
+
+    @Override
+    public DeleteTopicResponse deleteTopic(DeleteTopicRequest request) {
+        broker.deleteTopic(request.topicArn());
+        return DeleteTopicResponse.builder().build();
+    }
+
+    @Override
+    public ListTopicsResponse listTopics(ListTopicsRequest request) {
+        return ListTopicsResponse.builder()
+            .topics(broker.getTopics().stream()
+                .map(topic -> Topic.builder().topicArn(topic.getArn()).build())
+                .collect(Collectors.toList()))
+            .build();
+    }
+
+    @Override
+    public SubscribeResponse subscribe(SubscribeRequest request) {
+        if (!"sqs".equals(request.protocol())) {
+            throw invalidParameter("Only the sqs protocol is supported, not " + request.protocol() + ".");
+        }
+        InMemoryTopic topic = broker.getTopic(request.topicArn());
+        String queueArn = broker.getQueueByUrl(request.endpoint()).getArn();
+        boolean raw = Boolean.parseBoolean(request.attributes().get(RAW_MESSAGE_DELIVERY));
+        String subscriptionArn = topic.getArn() + ":" + broker.nextId();
+        return SubscribeResponse.builder()
+            .subscriptionArn(topic.subscribe(subscriptionArn, queueArn, raw).getArn())
+            .build();
+    }
+
+    @Override
+    public UnsubscribeResponse unsubscribe(UnsubscribeRequest request) {
+        broker.findTopicBySubscription(request.subscriptionArn())
+            .ifPresent(topic -> topic.unsubscribe(request.subscriptionArn()));
+        return UnsubscribeResponse.builder().build();
+    }
+
+    @Override
+    public ListSubscriptionsByTopicResponse listSubscriptionsByTopic(ListSubscriptionsByTopicRequest request) {
+        return ListSubscriptionsByTopicResponse.builder()
+            .subscriptions(broker.getTopic(request.topicArn()).getSubscriptions().stream()
+                .map(subscription -> Subscription.builder()
+                    .subscriptionArn(subscription.getArn())
+                    .topicArn(subscription.getTopicArn())
+                    .protocol("sqs")
+                    .endpoint(subscription.getQueueArn())
+                    .build())
+                .collect(Collectors.toList()))
+            .build();
+    }
+
+    @Override
+    public SetSubscriptionAttributesResponse setSubscriptionAttributes(SetSubscriptionAttributesRequest request) {
+        if (!RAW_MESSAGE_DELIVERY.equals(request.attributeName())) {
+            throw invalidParameter("Only the " + RAW_MESSAGE_DELIVERY + " attribute is supported.");
+        }
+        InMemoryTopic topic = broker.findTopicBySubscription(request.subscriptionArn())
+            .orElseThrow(() -> invalidParameter("Subscription does not exist: " + request.subscriptionArn()));
+        topic.getSubscriptions().stream()
+            .filter(subscription -> subscription.getArn().equals(request.subscriptionArn()))
+            .forEach(subscription -> subscription.setRaw(Boolean.parseBoolean(request.attributeValue())));
+        return SetSubscriptionAttributesResponse.builder().build();
+    }
+
+    @Override
+    public PublishResponse publish(PublishRequest request) {
+        InMemoryTopic topic = broker.getTopic(request.topicArn());
+        String messageId = broker.nextId();
+        String envelope = null;
+        for (InMemoryTopic.Subscription subscription : topic.getSubscriptions()) {
+            InMemoryQueue queue = broker.findQueueByArn(subscription.getQueueArn()).orElse(null);
+            if (queue == null) {
+                continue;
+            }
+            InMemoryQueue.StoredMessage message;
+            if (subscription.isRaw()) {
+                message = new InMemoryQueue.StoredMessage(
+                    broker.nextId(), request.message(), toSqs(request.messageAttributes()), request.messageGroupId()
+                );
+            } else {
+                if (envelope == null) {
+                    envelope = envelope(messageId, request);
+                }
+                message = new InMemoryQueue.StoredMessage(
+                    broker.nextId(), envelope, Collections.emptyMap(), request.messageGroupId()
+                );
+            }
+            queue.send(message, null);
+        }
+        return PublishResponse.builder().messageId(messageId).build();
+    }
+
+    @Override
+    public String serviceName() {
+        return SERVICE_NAME;
+    }
+
+    @Override
+    public void close() {
+        // The broker outlives its clients.
+    }
+
+    private static String envelope(String messageId, PublishRequest request) {
+        Map<String, Object> envelope = new LinkedHashMap<>();
+        envelope.put("Type", "Notification");
+        envelope.put("MessageId", messageId);
+        envelope.put("TopicArn", request.topicArn());
+        if (request.subject() != null) {
+            envelope.put("Subject", request.subject());
+        }
+        envelope.put("Message", request.message());
+        envelope.put("Timestamp", Instant.now().toString());
+        envelope.put("SignatureVersion", "1");
+        envelope.put("Signature", "");
+        envelope.put("SigningCertURL", "");
+        envelope.put("UnsubscribeURL", "");
+        if (!request.messageAttributes().isEmpty()) {
+            Map<String, Map<String, String>> attributes = new LinkedHashMap<>();
+            request.messageAttributes().forEach((name, value) -> {
+                Map<String, String> attribute = new LinkedHashMap<>();
+                attribute.put("Type", value.dataType());
+                attribute.put("Value", value.binaryValue() != null ?
+                    Base64.getEncoder().encodeToString(value.binaryValue().asByteArray()) :
+                    value.stringValue());
+                attributes.put(name, attribute);
+            });
+            envelope.put("MessageAttributes", attributes);
+        }
+        try {
+            return MAPPER.writeValueAsString(envelope);
+        } catch (JsonProcessingException e) {
+            throw SdkClientException.create("Unable to serialize SNS envelope", e);
+        }
+    }
+
+    private static Map<String, software.amazon.awssdk.services.sqs.model.MessageAttributeValue> toSqs(
+        Map<String, MessageAttributeValue> attributes
+    ) {
+        if (attributes.isEmpty()) {
+            return Collections.emptyMap();
+        }
+        Map<String, software.amazon.awssdk.services.sqs.model.MessageAttributeValue> converted = new HashMap<>();
+        attributes.forEach((name, value) -> converted.put(
+            name,
+            software.amazon.awssdk.services.sqs.model.MessageAttributeValue.builder()
+                .dataType(value.dataType())
+                .stringValue(value.stringValue())
+                .binaryValue(value.binaryValue())
+                .build()
+        ));
+        return converted;
+    }
+
+    private static InvalidParameterException invalidParameter(String message) {
+        return InvalidParameterException.builder()
+            .message(message)
+            .statusCode(400)
+            .awsErrorDetails(AwsErrorDetails.builder()
+                .errorCode("InvalidParameter")
+                .errorMessage(message)
+                .serviceName("Sns")
+                .build())
+            .build();
+    }
+}
@@ -0,0 +1,317 @@
+package smartthings.ratpack.aws.memory.internal;
+
+import software.amazon.awssdk.awscore.exception.AwsErrorDetails;
+import software.amazon.awssdk.core.SdkBytes;
+import software.amazon.awssdk.services.sqs.SqsAsyncClient;
+import software.amazon.awssdk.services.sqs.model.*;
+
+import java.util.ArrayList;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.CompletableFuture;
+import java.util.function.Function;
+import java.util.function.Supplier;
+import java.util.stream.Collectors;
+
+/**
+ * An {@link SqsAsyncClient} backed by an {@link InMemoryBroker}.  Calls complete immediately, except for long polls
+ * which complete once messages arrive or the wait time passes.  Errors are reported with the SDK's exception types,
+ * as failed futures.
+ */
+public class InMemorySqsAsyncClient implements SqsAsyncClient {
+
+    static final int MAX_BATCH_ENTRIES = 10;
+    static final int MAX_MESSAGE_BYTES = 256 * 1024;
+
+    private final InMemoryBroker broker;
+
+    public InMemorySqsAsyncClient(InMemoryBroker broker) {
+        this.broker = broker;
+    }
+
+    @Override
+    public CompletableFuture<CreateQueueResponse> createQueue(CreateQueueRequest request) {
+        return call(() -> CreateQueueResponse.builder()
+            .queueUrl(broker.createQueue(request.queueName(), request.attributesAsStrings()).getUrl())
+            .build());
+    }
+
+    @Override
+    public CompletableFuture<GetQueueUrlResponse> getQueueUrl(GetQueueUrlRequest request) {
+        return call(() -> GetQueueUrlResponse.builder()
+            .queueUrl(broker.getQueue(request.queueName()).getUrl())
+            .build());
+    }
+
+    @Override
+    public CompletableFuture<ListQueuesResponse> listQueues(ListQueuesRequest request) {
+        String prefix = request.queueNamePrefix() == null ? "" : request.queueNamePrefix();
+        return call(() -> ListQueuesResponse.builder()
+            .queueUrls(broker.getQueues().stream()
+                .filter(queue -> queue.getName().startsWith(prefix))
+                .map(InMemoryQueue::getUrl)
+                .sorted()
+                .collect(Collectors.toList()))
+            .build());
+    }
+
+    @Override
+    public CompletableFuture<DeleteQueueResponse> deleteQueue(DeleteQueueRequest request) {
+        return call(() -> {
+            broker.getQueueByUrl(request.queueUrl());
+            broker.deleteQueue(request.queueUrl());
+            return DeleteQueueResponse.builder().build();
+        });
+    }
+
+    @Override
+    public CompletableFuture<PurgeQueueResponse> purgeQueue(PurgeQueueRequest request) {
+        return call(() -> {
+            broker.getQueueByUrl(request.queueUrl()).purge();
+            return PurgeQueueResponse.builder().build();
+        });
+    }
+
+    @Override
+    public CompletableFuture<GetQueueAttributesResponse> getQueueAttributes(GetQueueAttributesRequest request) {
+        return call(() -> GetQueueAttributesResponse.builder()
+            .attributesWithStrings(
+                broker.getQueueByUrl(request.queueUrl()).getAttributes(request.attributeNamesAsStrings())
+            )
+            .build());
+    }
+
+    @Override
+    public CompletableFuture<SetQueueAttributesResponse> setQueueAttributes(SetQueueAttributesRequest request) {
+        return call(() -> {
+            broker.getQueueByUrl(request.queueUrl()).setAttributes(request.attributesAsStrings());
+            return SetQueueAttributesResponse.builder().build();
+        });
+    }
+
+    @Override
+    public CompletableFuture<SendMessageResponse> sendMessage(SendMessageRequest request) {
+        return call(() -> {
+            InMemoryQueue queue = broker.getQueueByUrl(request.queueUrl());
+            if (sizeOf(request.messageBody(), request.messageAttributes()) > MAX_MESSAGE_BYTES) {
+                throw invalidParameter("Message must be shorter than " + MAX_MESSAGE_BYTES + " bytes.");
+            }
+            String id = broker.nextId();
+            queue.send(
+                new InMemoryQueue.StoredMessage(
+                    id, request.messageBody(), request.messageAttributes(), request.messageGroupId()
+                ),
+                request.delaySeconds()
+            );
+            return SendMessageResponse.builder().messageId(id).build();
+        });
+    }
+
+    @Override
+    public CompletableFuture<SendMessageBatchResponse> sendMessageBatch(SendMessageBatchRequest request) {
+        return call(() -> {
+            InMemoryQueue queue = broker.getQueueByUrl(request.queueUrl());
+            validateBatch(request.entries(), SendMessageBatchRequestEntry::id);
+            int size = 0;
+            for (SendMessageBatchRequestEntry entry : request.entries()) {
+                size += sizeOf(entry.messageBody(), entry.messageAttributes());
+            }
+            if (size > MAX_MESSAGE_BYTES) {
+                throw BatchRequestTooLongException.builder()
+                    .message("Batch requests cannot be longer than " + MAX_MESSAGE_BYTES + " bytes.")
+                    .statusCode(400)
+                    .build();
+            }
+            List<SendMessageBatchResultEntry> successful = new ArrayList<>(request.entries().size());
+            for (SendMessageBatchRequestEntry entry : request.entries()) {
+                String id = broker.nextId();
+                queue.send(
+                    new InMemoryQueue.StoredMessage(
+                        id, entry.messageBody(), entry.messageAttributes(), entry.messageGroupId()
+                    ),
+                    entry.delaySeconds()
+                );
+                successful.add(SendMessageBatchResultEntry.builder().id(entry.id()).messageId(id).build());
+            }
+            return SendMessageBatchResponse.builder().successful(successful).build();
+        });
+    }
+
+    @Override
+    public CompletableFuture<ReceiveMessageResponse> receiveMessage(ReceiveMessageRequest request) {
+        int max = request.maxNumberOfMessages() == null ? 1 : request.maxNumberOfMessages();
+        if (max < 1 || max > MAX_BATCH_ENTRIES) {
+            return CompletableFuture.failedFuture(
+                invalidParameter("MaxNumberOfMessages must be between 1 and " + MAX_BATCH_ENTRIES + ".")
+            );
+        }
+        return call(() -> broker.getQueueByUrl(request.queueUrl()))
+            .thenCompose(queue -> queue.receive(
+                max,
+                request.visibilityTimeout(),
+                request.waitTimeSeconds(),
+                request.attributeNamesAsStrings(),
+                request.messageAttributeNames()
+            ))
+            .thenApply(messages -> ReceiveMessageResponse.builder().messages(messages).build());
+    }
+
+    @Override
+    public CompletableFuture<DeleteMessageResponse> deleteMessage(DeleteMessageRequest request) {
+        return call(() -> {
+            broker.getQueueByUrl(request.queueUrl()).delete(request.receiptHandle());
+            return DeleteMessageResponse.builder().build();
+        });
+    }
+
+    @Override
+    public CompletableFuture<DeleteMessageBatchResponse> deleteMessageBatch(DeleteMessageBatchRequest request) {
+        return call(() -> {
+            InMemoryQueue queue = broker.getQueueByUrl(request.queueUrl());
+            validateBatch(request.entries(), DeleteMessageBatchRequestEntry::id);
+            List<DeleteMessageBatchResultEntry> successful = new ArrayList<>(request.entries().size());
+            for (DeleteMessageBatchRequestEntry entry : request.entries()) {
+                queue.delete(entry.receiptHandle());
+                successful.add(DeleteMessageBatchResultEntry.builder().id(entry.id()).build());
+            }
+            return DeleteMessageBatchResponse.builder().successful(successful).build();
+        });
+    }
+
+    @Override
+    public CompletableFuture<ChangeMessageVisibilityResponse> changeMessageVisibility(
+        ChangeMessageVisibilityRequest request
+    ) {
+        return call(() -> {
+            InMemoryQueue queue = broker.getQueueByUrl(request.queueUrl());
+            if (!queue.changeVisibility(request.receiptHandle(), request.visibilityTimeout())) {
+                throw MessageNotInflightException.builder()
+                    .message("The message referred to is not in flight.")
+                    .statusCode(400)
+                    .build();
+            }
+            return ChangeMessageVisibilityResponse.builder().build();
+        });
+    }
+
+    @Override
+    public CompletableFuture<ChangeMessageVisibilityBatchResponse> changeMessageVisibilityBatch(
+        ChangeMessageVisibilityBatchRequest request
+    ) {
+        return call(() -> {
+            InMemoryQueue queue = broker.getQueueByUrl(request.queueUrl());
+            validateBatch(request.entries(), ChangeMessageVisibilityBatchRequestEntry::id);
+            List<ChangeMessageVisibilityBatchResultEntry> successful = new ArrayList<>();
+            List<BatchResultErrorEntry> failed = new ArrayList<>();
+            for (ChangeMessageVisibilityBatchRequestEntry entry : request.entries()) {
+                if (queue.changeVisibility(entry.receiptHandle(), entry.visibilityTimeout())) {
+                    successful.add(ChangeMessageVisibilityBatchResultEntry.builder().id(entry.id()).build());
+                } else {
+                    failed.add(BatchResultErrorEntry.builder()
+                        .id(entry.id())
+                        .code("MessageNotInflight")
+                        .message("The message referred to is not in flight.")
+                        .senderFault(true)
+                        .build());
+                }
+            }
+            return ChangeMessageVisibilityBatchResponse.builder()
+                .successful(successful)
+                .failed(failed)
+                .build();
+        });
+    }
+
+    @Override
+    public String serviceName() {
+        return SERVICE_NAME;
+    }
+
+    @Override
+    public void close() {
+        // The broker outlives its clients.
+    }
+
+    private static <T> void validateBatch(List<T> entries, Function<T, String> id) {
+        if (entries.isEmpty()) {
+            throw EmptyBatchRequestException.builder()
+                .message("There should be at least one entry in the request.")
+                .statusCode(400)
+                .build();
+        }
+        if (entries.size() > MAX_BATCH_ENTRIES) {
+            throw TooManyEntriesInBatchRequestException.builder()
+                .message("Maximum number of entries per request are " + MAX_BATCH_ENTRIES + ".")
+                .statusCode(400)
+                .build();
+        }
+        Set<String> ids = new HashSet<>();
+        for (T entry : entries) {
+            if (!ids.add(id.apply(entry))) {
+                throw BatchEntryIdsNotDistinctException.builder()
+                    .message("Id " + id.apply(entry) + " repeated.")
+                    .statusCode(400)
+                    .build();
+            }
+        }
+    }
+
+    private static SqsException invalidParameter(String message) {
+        return SqsException.builder()
+            .message(message)
+            .statusCode(400)
+            .awsErrorDetails(AwsErrorDetails.builder()
+                .errorCode("InvalidParameterValue")
+                .errorMessage(message)
+                .serviceName("Sqs")
+                .build())
+            .build();
+    }
+
+    /**
+     * The size SQS counts against its limit: the UTF-8 body plus each attribute's name, type and value.
+     */
+    static int sizeOf(String body, Map<String, MessageAttributeValue> attributes) {
+        int size = utf8Length(body);
+        for (Map.Entry<String, MessageAttributeValue> attribute : attributes.entrySet()) {
+            MessageAttributeValue value = attribute.getValue();
+            size += utf8Length(attribute.getKey()) + utf8Length(value.dataType()) + utf8Length(value.stringValue());
+            SdkBytes binary = value.binaryValue();
+            if (binary != null) {
+                size += binary.asByteBuffer().remaining();
+            }
+        }
+        return size;
+    }
+
+    private static int utf8Length(String value) {
+        if (value == null) {
+            return 0;
+        }
+        int length = 0;
+        for (int i = 0; i < value.length(); i++) {
+            char c = value.charAt(i);
+            if (c < 0x80) {
+                length++;
+            } else if (c < 0x800) {
+                length += 2;
+            } else if (Character.isHighSurrogate(c)) {
+                length += 4;
+                i++;
+            } else {
+                length += 3;
+            }
+        }
+        return length;
+    }
+
+    private static <T> CompletableFuture<T> call(Supplier<T> operation) {
+        try {
+            return CompletableFuture.completedFuture(operation.get());
+        } catch (RuntimeException e) {
+            return CompletableFuture.failedFuture(e);
+        }
+    }
+}
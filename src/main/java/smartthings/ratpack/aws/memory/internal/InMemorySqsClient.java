@@ -0,0 +1,112 @@
+package smartthings.ratpack.aws.memory.internal;
+
+import software.amazon.awssdk.services.sqs.SqsClient;
+import software.amazon.awssdk.services.sqs.model.*;
+
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CompletionException;
+
+/**
+ * A blocking {@link SqsClient} view of an {@link InMemorySqsAsyncClient}.  Only long polls actually block.
+ */
+public class InMemorySqsClient implements SqsClient {
+
+    private final InMemorySqsAsyncClient sqs;
+
+    public InMemorySqsClient(InMemorySqsAsyncClient sqs) {
+        this.sqs = sqs;
+    }
+
+    @Override
+    public CreateQueueResponse createQueue(CreateQueueRequest request) {
+        return join(sqs.createQueue(request));
+    }
+
+    @Override
+    public GetQueueUrlResponse getQueueUrl(GetQueueUrlRequest request) {
+        return join(sqs.getQueueUrl(request));
+    }
+
+    @Override
+    public ListQueuesResponse listQueues(ListQueuesRequest request) {
+        return join(sqs.listQueues(request));
+    }
+
+    @Override
+    public DeleteQueueResponse deleteQueue(DeleteQueueRequest request) {
+        return join(sqs.deleteQueue(request));
+    }
+
+    @Override
+    public PurgeQueueResponse purgeQueue(PurgeQueueRequest request) {
+        return join(sqs.purgeQueue(request));
+    }
+
+    @Override
+    public GetQueueAttributesResponse getQueueAttributes(GetQueueAttributesRequest request) {
+        return join(sqs.getQueueAttributes(request));
+    }
+
+    @Override
+    public SetQueueAttributesResponse setQueueAttributes(SetQueueAttributesRequest request) {
+        return join(sqs.setQueueAttributes(request));
+    }
+
+    @Override
+    public SendMessageResponse sendMessage(SendMessageRequest request) {
+        return join(sqs.sendMessage(request));
+    }
+
+    @Override
+    public SendMessageBatchResponse sendMessageBatch(SendMessageBatchRequest request) {
+        return join(sqs.sendMessageBatch(request));
+    }
+
+    @Override
+    public ReceiveMessageResponse receiveMessage(ReceiveMessageRequest request) {
+        return join(sqs.receiveMessage(request));
+    }
+
+    @Override
+    public DeleteMessageResponse deleteMessage(DeleteMessageRequest request) {
+        return join(sqs.deleteMessage(request));
+    }
+
+    @Override
+    public DeleteMessageBatchResponse deleteMessageBatch(DeleteMessageBatchRequest request) {
+        return join(sqs.deleteMessageBatch(request));
+    }
+
+    @Override
+    public ChangeMessageVisibilityResponse changeMessageVisibility(ChangeMessageVisibilityRequest request) {
+        return join(sqs.changeMessageVisibility(request));
+    }
+
+    @Override
+    public ChangeMessageVisibilityBatchResponse changeMessageVisibilityBatch(
+        ChangeMessageVisibilityBatchRequest request
+    ) {
+        return join(sqs.changeMessageVisibilityBatch(request));
+    }
+
+    @Override
+    public String serviceName() {
+        return SERVICE_NAME;
+    }
+
+    @Override
+    public void close() {
+        sqs.close();
+    }
+
+    private static <T> T join(CompletableFuture<T> future) {
+        try {
+            return future.join();
+        } catch (CompletionException e) {
+            if (e.getCause() instanceof RuntimeException) {
+                throw (RuntimeException) e.getCause();
+            }
+            throw e;
+        }
+    }
+}
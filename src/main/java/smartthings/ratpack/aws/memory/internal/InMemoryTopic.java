@@ -0,0 +1,88 @@
+package smartthings.ratpack.aws.memory.internal;
+
+import java.util.List;
+import java.util.concurrent.CopyOnWriteArrayList;
+
+/**
+ * One in-memory SNS topic and its SQS subscriptions.  Subscriptions change rarely and are read on every publish, so
+ * they are kept in a copy-on-write list.
+ */
+public class InMemoryTopic {
+
+    private final String name;
+    private final String arn;
+    private final List<Subscription> subscriptions = new CopyOnWriteArrayList<>();
+
+    public InMemoryTopic(String name, String arn) {
+        this.name = name;
+        this.arn = arn;
+    }
+
+    public String getName() {
+        return name;
+    }
+
+    public String getArn() {
+        return arn;
+    }
+
+    public List<Subscription> getSubscriptions() {
+        return subscriptions;
+    }
+
+    public Subscription subscribe(String subscriptionArn, String queueArn, boolean raw) {
+        for (Subscription subscription : subscriptions) {
+            if (subscription.queueArn.equals(queueArn)) {
+                return subscription;
+            }
+        }
+        Subscription subscription = new Subscription(subscriptionArn, arn, queueArn, raw);
+        subscriptions.add(subscription);
+        return subscription;
+    }
+
+    public boolean unsubscribe(String subscriptionArn) {
+        return subscriptions.removeIf(subscription -> subscription.arn.equals(subscriptionArn));
+    }
+
+    /**
+     * Delivery of a topic's messages to one SQS queue.
+     */
+    public static final class Subscription {
+        private final String arn;
+        private final String topicArn;
+        private final String queueArn;
+        private volatile boolean raw;
+
+        Subscription(String arn, String topicArn, String queueArn, boolean raw) {
+            this.arn = arn;
+            this.topicArn = topicArn;
+            this.queueArn = queueArn;
+            this.raw = raw;
+        }
+
+        public String getArn() {
+            return arn;
+        }
+
+        public String getTopicArn() {
+            return topicArn;
+        }
+
+        public String getQueueArn() {
+            return queueArn;
+        }
+
+        /**
+         * Whether messages are delivered as published rather than wrapped in the SNS JSON envelope.
+         * @return true for raw message delivery
+         */
+        public boolean isRaw() {
+            return raw;
+        }
+
+        public void setRaw(boolean raw) {
+            this.raw = raw;
+        }
+    }
+}
@@ -0,0 +1,4 @@
+/**
+ * The queues, topics and SDK client implementations of the in-memory AWS engine.
+ */
+package smartthings.ratpack.aws.memory.internal;
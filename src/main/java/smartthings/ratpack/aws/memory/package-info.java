@@ -0,0 +1,4 @@
+/**
+ * An in-memory SQS and SNS engine for running consumers and producers without AWS.
+ */
+package smartthings.ratpack.aws.memory;
@@ -2,6 +2,11 @@ package smartthings.ratpack.sns;
 
 import com.google.inject.multibindings.OptionalBinder;
 import ratpack.guice.ConfigurableModule;
+import smartthings.ratpack.aws.BackoffJitter;
+import smartthings.ratpack.aws.HttpClientConfig;
+import smartthings.ratpack.aws.blob.BlobStore;
+import smartthings.ratpack.aws.blob.ClaimCheck;
+import smartthings.ratpack.aws.codec.PayloadCompression;
 import smartthings.ratpack.sns.internal.DefaultSnsService;
 import smartthings.ratpack.sns.internal.providers.DefaultAmazonSNSProvider;
 import java.util.Collections;
@@ -21,10 +26,20 @@ public class SnsModule extends ConfigurableModule<SnsModule.Config> {
         OptionalBinder.newOptionalBinder(binder(), SnsService.class)
             .setDefault()
             .to(DefaultSnsService.class);
+
+        // Large messages are offloaded once the application binds a BlobStore.
+        OptionalBinder.newOptionalBinder(binder(), BlobStore.class);
     }
 
     public static class Config {
         private boolean enabled;
+        private int maxRetries;
+        private long retryBaseMillis = 100;
+        private long retryMaxMillis = 5000;
+        private BackoffJitter retryJitter = BackoffJitter.DECORRELATED;
+        private String compression;
+        private int compressionThresholdBytes = PayloadCompression.DEFAULT_THRESHOLD_BYTES;
+        private int largePayloadThresholdBytes = ClaimCheck.MAX_MESSAGE_BYTES;
         private List<EndpointConfig> endpoints = Collections.emptyList();
 
         public boolean isEnabled() {
@@ -42,11 +57,99 @@ public class SnsModule extends ConfigurableModule<SnsModule.Config> {
         public void setEndpoints(List<EndpointConfig> endpoints) {
             this.endpoints = endpoints;
         }
+
+        /**
+         * How often a call failing with a server error or throttling is retried.  No retries (0) by default.
+         * @return the maximum number of retries per call
+         */
+        public int getMaxRetries() {
+            return maxRetries;
+        }
+
+        public void setMaxRetries(int maxRetries) {
+            this.maxRetries = maxRetries;
+        }
+
+        /**
+         * Wait before the first retry of a call, doubled for every further retry.
+         * @return the base retry delay in milliseconds
+         */
+        public long getRetryBaseMillis() {
+            return retryBaseMillis;
+        }
+
+        public void setRetryBaseMillis(long retryBaseMillis) {
+            this.retryBaseMillis = retryBaseMillis;
+        }
+
+        /**
+         * Longest wait between retries of a call.
+         * @return the maximum retry delay in milliseconds
+         */
+        public long getRetryMaxMillis() {
+            return retryMaxMillis;
+        }
+
+        public void setRetryMaxMillis(long retryMaxMillis) {
+            this.retryMaxMillis = retryMaxMillis;
+        }
+
+        /**
+         * How retry delays are randomized.  Decorrelated by default.
+         * @return the retry jitter
+         */
+        public BackoffJitter getRetryJitter() {
+            return retryJitter;
+        }
+
+        public void setRetryJitter(BackoffJitter retryJitter) {
+            this.retryJitter = retryJitter;
+        }
+
+        /**
+         * The codec compressing published messages, {@code gzip} or {@code deflate}.  Messages are published
+         * uncompressed when unset.  Subscribed queues need raw message delivery for consumers to decompress them.
+         * @return the compression codec name
+         */
+        public String getCompression() {
+            return compression;
+        }
+
+        public void setCompression(String compression) {
+            this.compression = compression;
+        }
+
+        /**
+         * Smallest message, in UTF-8 bytes, that is compressed.  1 KB by default.
+         * @return the compression threshold in bytes
+         */
+        public int getCompressionThresholdBytes() {
+            return compressionThresholdBytes;
+        }
+
+        public void setCompressionThresholdBytes(int compressionThresholdBytes) {
+            this.compressionThresholdBytes = compressionThresholdBytes;
+        }
+
+        /**
+         * Largest message, in bytes of message and attributes, published as it is when a {@link BlobStore} is bound.
+         * Larger messages are offloaded to the store.  256 KB, the largest message SNS accepts, by default.  Subscribed
+         * queues need raw message delivery for consumers to fetch the payload.
+         * @return the large payload threshold in bytes
+         */
+        public int getLargePayloadThresholdBytes() {
+            return largePayloadThresholdBytes;
+        }
+
+        public void setLargePayloadThresholdBytes(int largePayloadThresholdBytes) {
+            this.largePayloadThresholdBytes = largePayloadThresholdBytes;
+        }
     }
 
     public static class EndpointConfig {
         private String regionName;
         private String endpoint;
+        private HttpClientConfig http = new HttpClientConfig();
 
         public String getRegionName() {
             return regionName;
@@ -71,5 +174,17 @@ public class SnsModule extends ConfigurableModule<SnsModule.Config> {
         public Optional<String> endpoint() {
             return Optional.ofNullable(endpoint);
         }
+
+        /**
+         * HTTP client settings of this endpoint's client.
+         * @return the HTTP client settings
+         */
+        public HttpClientConfig getHttp() {
+            return http;
+        }
+
+        public void setHttp(HttpClientConfig http) {
+            this.http = http;
+        }
     }
 }
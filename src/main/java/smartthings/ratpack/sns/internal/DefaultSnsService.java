@@ -10,33 +10,54 @@ import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
 import ratpack.exec.Blocking;
 import ratpack.exec.Promise;
+import ratpack.func.Factory;
+import ratpack.service.DependsOn;
 import ratpack.service.StopEvent;
+import smartthings.ratpack.aws.blob.BlobStore;
+import smartthings.ratpack.aws.blob.ClaimCheck;
+import smartthings.ratpack.aws.codec.PayloadCompression;
+import smartthings.ratpack.aws.internal.backoff.ExponentialBackoff;
+import smartthings.ratpack.aws.internal.http.HttpClients;
 import smartthings.ratpack.sns.AmazonSNSProvider;
 import smartthings.ratpack.sns.SnsModule;
 import smartthings.ratpack.sns.SnsService;
 import software.amazon.awssdk.awscore.exception.AwsServiceException;
+import software.amazon.awssdk.core.SdkBytes;
 import software.amazon.awssdk.services.sns.SnsClient;
 import software.amazon.awssdk.services.sns.model.*;
 
+import java.nio.charset.StandardCharsets;
+import java.time.Duration;
 import java.util.Collections;
+import java.util.HashMap;
 import java.util.List;
+import java.util.Map;
+import java.util.Optional;
 import java.util.concurrent.atomic.AtomicReference;
 import java.util.concurrent.atomic.LongAdder;
 import java.util.stream.Collectors;
 
 @Singleton
+@DependsOn({HttpClients.class})
 public class DefaultSnsService implements SnsService {
 
     private static final Logger LOG = LoggerFactory.getLogger(DefaultSnsService.class);
+    private static final int MAX_ATTRIBUTES = 10;
 
     private final SnsModule.Config config;
     private final List<SnsClient> clients;
     private final AtomicReference<SnsClient> activeClient = new AtomicReference<>();
     private final CircuitBreakerTransformer breaker;
+    private final PayloadCompression compression;
+    private final ClaimCheck claimCheck;
     private final LongAdder pos = new LongAdder();
 
-    @Inject
     public DefaultSnsService(SnsModule.Config config, AmazonSNSProvider provider) {
+        this(config, provider, Optional.empty());
+    }
+
+    @Inject
+    public DefaultSnsService(SnsModule.Config config, AmazonSNSProvider provider, Optional<BlobStore> blobStore) {
         this.clients = config.isEnabled() ?
             config.getEndpoints()
                 .stream()
@@ -44,6 +65,10 @@ public class DefaultSnsService implements SnsService {
                 .collect(Collectors.toList()) : Collections.emptyList();
         this.config = config;
         this.breaker = buildCircuitBreaker();
+        this.compression = PayloadCompression.of(config.getCompression(), config.getCompressionThresholdBytes());
+        this.claimCheck = blobStore
+            .map(store -> new ClaimCheck(store, config.getLargePayloadThresholdBytes()))
+            .orElse(null);
         if (config.isEnabled()) {
             if (this.clients.isEmpty()) {
                 throw new IllegalArgumentException("SNS must have at least 1 endpoint configured when enabled.");
@@ -59,46 +84,35 @@ public class DefaultSnsService implements SnsService {
     }
 
     @Override
-    @SuppressWarnings("unchecked")
     public Promise<CreateTopicResponse> createTopic(CreateTopicRequest request) {
         LOG.trace("creating sns topic request={}", request);
-        return Blocking.get(() -> sns().createTopic(request))
-            .transform(breaker);
+        return call(() -> sns().createTopic(request));
     }
 
     @Override
-    @SuppressWarnings("unchecked")
     public Promise<SubscribeResponse> subscribe(SubscribeRequest request) {
         LOG.trace("subscribing to sns topic request={}", request);
-        return Blocking.get(() -> sns().subscribe(request))
-            .transform(breaker);
+        return call(() -> sns().subscribe(request));
     }
 
     @Override
-    @SuppressWarnings("unchecked")
     public Promise<PublishResponse> publish(PublishRequest request) {
         LOG.trace("publishing to sns topic request={}", request);
-        return Blocking.get(() -> sns().publish(request))
-            .transform(breaker);
+        return send(request);
     }
 
     @Override
-    @SuppressWarnings("unchecked")
     public Promise<DeleteTopicResponse> deleteTopic(DeleteTopicRequest request) {
         LOG.debug("deleting sns topic request={}", request);
-        return Blocking.get(() -> sns().deleteTopic(request))
-            .transform(breaker);
+        return call(() -> sns().deleteTopic(request));
     }
 
     @Override
-    @SuppressWarnings("unchecked")
     public Promise<AddPermissionResponse> addPermission(AddPermissionRequest request) {
-        return Blocking.get(() -> sns().addPermission(request))
-            .transform(breaker);
+        return call(() -> sns().addPermission(request));
     }
 
     @Override
-    @SuppressWarnings("unchecked")
     public Promise<AddPermissionResponse> addPermission(
         String topicArn,
         String label,
@@ -111,28 +125,22 @@ public class DefaultSnsService implements SnsService {
             .awsAccountIds(awsAccountIds)
             .actionNames(actionNames)
             .build();
-        return Blocking.get(() -> sns().addPermission(request))
-            .transform(breaker);
+        return call(() -> sns().addPermission(request));
     }
 
     @Override
-    @SuppressWarnings("unchecked")
     public Promise<CheckIfPhoneNumberIsOptedOutResponse> checkIfPhoneNumberIsOptedOut(
         CheckIfPhoneNumberIsOptedOutRequest request
     ) {
-        return Blocking.get(() -> sns().checkIfPhoneNumberIsOptedOut(request))
-            .transform(breaker);
+        return call(() -> sns().checkIfPhoneNumberIsOptedOut(request));
     }
 
     @Override
-    @SuppressWarnings("unchecked")
     public Promise<ConfirmSubscriptionResponse> confirmSubscription(ConfirmSubscriptionRequest request) {
-        return Blocking.get(() -> sns().confirmSubscription(request))
-            .transform(breaker);
+        return call(() -> sns().confirmSubscription(request));
     }
 
     @Override
-    @SuppressWarnings("unchecked")
     public Promise<ConfirmSubscriptionResponse> confirmSubscription(
         String topicArn,
         String token,
@@ -143,320 +151,246 @@ public class DefaultSnsService implements SnsService {
             .token(token)
             .authenticateOnUnsubscribe(authenticateOnUnsubscribe)
             .build();
-        return Blocking.get(() -> sns().confirmSubscription(request))
-            .transform(breaker);
+        return call(() -> sns().confirmSubscription(request));
     }
 
     @Override
-    @SuppressWarnings("unchecked")
     public Promise<ConfirmSubscriptionResponse> confirmSubscription(String topicArn, String token) {
         ConfirmSubscriptionRequest request = ConfirmSubscriptionRequest.builder()
             .topicArn(topicArn)
             .token(token)
             .build();
-        return Blocking.get(() -> sns().confirmSubscription(request))
-            .transform(breaker);
+        return call(() -> sns().confirmSubscription(request));
     }
 
     @Override
-    @SuppressWarnings("unchecked")
     public Promise<CreatePlatformApplicationResponse> createPlatformApplication(
         CreatePlatformApplicationRequest request
     ) {
-        return Blocking.get(() -> sns().createPlatformApplication(request))
-            .transform(breaker);
+        return call(() -> sns().createPlatformApplication(request));
     }
 
     @Override
-    @SuppressWarnings("unchecked")
     public Promise<CreatePlatformEndpointResponse> createPlatformEndpoint(CreatePlatformEndpointRequest request) {
-        return Blocking.get(() -> sns().createPlatformEndpoint(request))
-            .transform(breaker);
+        return call(() -> sns().createPlatformEndpoint(request));
     }
 
     @Override
-    @SuppressWarnings("unchecked")
     public Promise<CreateTopicResponse> createTopic(String name) {
         CreateTopicRequest request = CreateTopicRequest.builder()
             .name(name)
             .build();
-        return Blocking.get(() -> sns().createTopic(request))
-            .transform(breaker);
+        return call(() -> sns().createTopic(request));
     }
 
     @Override
-    @SuppressWarnings("unchecked")
     public Promise<DeleteEndpointResponse> deleteEndpoint(DeleteEndpointRequest request) {
-        return Blocking.get(() -> sns().deleteEndpoint(request))
-            .transform(breaker);
+        return call(() -> sns().deleteEndpoint(request));
     }
 
     @Override
-    @SuppressWarnings("unchecked")
     public Promise<DeletePlatformApplicationResponse> deletePlatformApplication(
         DeletePlatformApplicationRequest request
     ) {
-        return Blocking.get(() -> sns().deletePlatformApplication(request))
-            .transform(breaker);
+        return call(() -> sns().deletePlatformApplication(request));
     }
 
     @Override
-    @SuppressWarnings("unchecked")
     public Promise<DeleteTopicResponse> deleteTopic(String topicArn) {
         DeleteTopicRequest request = DeleteTopicRequest.builder()
             .topicArn(topicArn)
             .build();
-        return Blocking.get(() -> sns().deleteTopic(request))
-            .transform(breaker);
+        return call(() -> sns().deleteTopic(request));
     }
 
     @Override
-    @SuppressWarnings("unchecked")
     public Promise<GetEndpointAttributesResponse> getEndpointAttributes(GetEndpointAttributesRequest request) {
-        return Blocking.get(() -> sns().getEndpointAttributes(request))
-            .transform(breaker);
+        return call(() -> sns().getEndpointAttributes(request));
     }
 
     @Override
-    @SuppressWarnings("unchecked")
     public Promise<GetPlatformApplicationAttributesResponse> getPlatformApplicationAttributes(
         GetPlatformApplicationAttributesRequest request
     ) {
-        return Blocking.get(() -> sns().getPlatformApplicationAttributes(request))
-            .transform(breaker);
+        return call(() -> sns().getPlatformApplicationAttributes(request));
     }
 
     @Override
-    @SuppressWarnings("unchecked")
     public Promise<GetSmsAttributesResponse> getSMSAttributes(GetSmsAttributesRequest request) {
-        return Blocking.get(() -> sns().getSMSAttributes(request))
-            .transform(breaker);
+        return call(() -> sns().getSMSAttributes(request));
     }
 
     @Override
-    @SuppressWarnings("unchecked")
     public Promise<GetSubscriptionAttributesResponse> getSubscriptionAttributes(
         GetSubscriptionAttributesRequest request
     ) {
-        return Blocking.get(() -> sns().getSubscriptionAttributes(request))
-            .transform(breaker);
+        return call(() -> sns().getSubscriptionAttributes(request));
     }
 
     @Override
-    @SuppressWarnings("unchecked")
     public Promise<GetSubscriptionAttributesResponse> getSubscriptionAttributes(String subscriptionArn) {
         GetSubscriptionAttributesRequest request = GetSubscriptionAttributesRequest.builder()
             .subscriptionArn(subscriptionArn)
             .build();
-        return Blocking.get(() -> sns().getSubscriptionAttributes(request))
-            .transform(breaker);
+        return call(() -> sns().getSubscriptionAttributes(request));
     }
 
     @Override
-    @SuppressWarnings("unchecked")
     public Promise<GetTopicAttributesResponse> getTopicAttributes(GetTopicAttributesRequest request) {
-        return Blocking.get(() -> sns().getTopicAttributes(request))
-            .transform(breaker);
+        return call(() -> sns().getTopicAttributes(request));
     }
 
     @Override
-    @SuppressWarnings("unchecked")
     public Promise<GetTopicAttributesResponse> getTopicAttributes(String topicArn) {
         GetTopicAttributesRequest request = GetTopicAttributesRequest.builder()
             .topicArn(topicArn)
             .build();
-        return Blocking.get(() -> sns().getTopicAttributes(request))
-            .transform(breaker);
+        return call(() -> sns().getTopicAttributes(request));
     }
 
     @Override
-    @SuppressWarnings("unchecked")
     public Promise<ListEndpointsByPlatformApplicationResponse> listEndpointsByPlatformApplication(
         ListEndpointsByPlatformApplicationRequest request
     ) {
-        return Blocking.get(() -> sns().listEndpointsByPlatformApplication(request))
-            .transform(breaker);
+        return call(() -> sns().listEndpointsByPlatformApplication(request));
     }
 
     @Override
-    @SuppressWarnings("unchecked")
     public Promise<ListPhoneNumbersOptedOutResponse> listPhoneNumbersOptedOut(ListPhoneNumbersOptedOutRequest request) {
-        return Blocking.get(() -> sns().listPhoneNumbersOptedOut(request))
-            .transform(breaker);
+        return call(() -> sns().listPhoneNumbersOptedOut(request));
     }
 
     @Override
-    @SuppressWarnings("unchecked")
     public Promise<ListPlatformApplicationsResponse> listPlatformApplications(ListPlatformApplicationsRequest request) {
-        return Blocking.get(() -> sns().listPlatformApplications(request))
-            .transform(breaker);
+        return call(() -> sns().listPlatformApplications(request));
     }
 
     @Override
-    @SuppressWarnings("unchecked")
     public Promise<ListPlatformApplicationsResponse> listPlatformApplications() {
-        return Blocking.get(() -> sns().listPlatformApplications())
-            .transform(breaker);
+        return call(() -> sns().listPlatformApplications());
     }
 
     @Override
-    @SuppressWarnings("unchecked")
     public Promise<ListSubscriptionsResponse> listSubscriptions(ListSubscriptionsRequest request) {
-        return Blocking.get(() -> sns().listSubscriptions(request))
-            .transform(breaker);
+        return call(() -> sns().listSubscriptions(request));
     }
 
     @Override
-    @SuppressWarnings("unchecked")
     public Promise<ListSubscriptionsResponse> listSubscriptions() {
-        return Blocking.get(() -> sns().listSubscriptions())
-            .transform(breaker);
+        return call(() -> sns().listSubscriptions());
     }
 
     @Override
-    @SuppressWarnings("unchecked")
     public Promise<ListSubscriptionsResponse> listSubscriptions(String nextToken) {
         ListSubscriptionsRequest request = ListSubscriptionsRequest.builder()
             .nextToken(nextToken)
             .build();
-        return Blocking.get(() -> sns().listSubscriptions(request))
-            .transform(breaker);
+        return call(() -> sns().listSubscriptions(request));
     }
 
     @Override
-    @SuppressWarnings("unchecked")
     public Promise<ListSubscriptionsByTopicResponse> listSubscriptionsByTopic(ListSubscriptionsByTopicRequest request) {
-        return Blocking.get(() -> sns().listSubscriptionsByTopic(request))
-            .transform(breaker);
+        return call(() -> sns().listSubscriptionsByTopic(request));
     }
 
     @Override
-    @SuppressWarnings("unchecked")
     public Promise<ListSubscriptionsByTopicResponse> listSubscriptionsByTopic(String topicArn) {
         ListSubscriptionsByTopicRequest request = ListSubscriptionsByTopicRequest.builder()
             .topicArn(topicArn)
             .build();
-        return Blocking.get(() -> sns().listSubscriptionsByTopic(request))
-            .transform(breaker);
+        return call(() -> sns().listSubscriptionsByTopic(request));
     }
 
     @Override
-    @SuppressWarnings("unchecked")
     public Promise<ListSubscriptionsByTopicResponse> listSubscriptionsByTopic(String topicArn, String nextToken) {
         ListSubscriptionsByTopicRequest request = ListSubscriptionsByTopicRequest.builder()
             .topicArn(topicArn)
             .nextToken(nextToken)
             .build();
-        return Blocking.get(() -> sns().listSubscriptionsByTopic(request))
-            .transform(breaker);
+        return call(() -> sns().listSubscriptionsByTopic(request));
     }
 
     @Override
-    @SuppressWarnings("unchecked")
     public Promise<ListTopicsResponse> listTopics(ListTopicsRequest request) {
-        return Blocking.get(() -> sns().listTopics(request))
-            .transform(breaker);
+        return call(() -> sns().listTopics(request));
     }
 
     @Override
-    @SuppressWarnings("unchecked")
     public Promise<ListTopicsResponse> listTopics() {
-        return Blocking.get(() -> sns().listTopics())
-            .transform(breaker);
+        return call(() -> sns().listTopics());
     }
 
     @Override
-    @SuppressWarnings("unchecked")
     public Promise<ListTopicsResponse> listTopics(String nextToken) {
         ListTopicsRequest request = ListTopicsRequest.builder()
             .nextToken(nextToken)
             .build();
-        return Blocking.get(() -> sns().listTopics(request))
-            .transform(breaker);
+        return call(() -> sns().listTopics(request));
     }
 
     @Override
-    @SuppressWarnings("unchecked")
     public Promise<OptInPhoneNumberResponse> optInPhoneNumber(OptInPhoneNumberRequest request) {
-        return Blocking.get(() -> sns().optInPhoneNumber(request))
-            .transform(breaker);
+        return call(() -> sns().optInPhoneNumber(request));
     }
 
     @Override
-    @SuppressWarnings("unchecked")
     public Promise<PublishResponse> publish(String topicArn, String message) {
         PublishRequest request = PublishRequest.builder()
             .topicArn(topicArn)
             .message(message)
             .build();
-        return Blocking.get(() -> sns().publish(request))
-            .transform(breaker);
+        return send(request);
     }
 
     @Override
-    @SuppressWarnings("unchecked")
     public Promise<PublishResponse> publish(String topicArn, String message, String subject) {
         PublishRequest request = PublishRequest.builder()
             .topicArn(topicArn)
             .message(message)
             .subject(subject)
             .build();
-        return Blocking.get(() -> sns().publish(request))
-            .transform(breaker);
+        return send(request);
     }
 
     @Override
-    @SuppressWarnings("unchecked")
     public Promise<RemovePermissionResponse> removePermission(RemovePermissionRequest request) {
-        return Blocking.get(() -> sns().removePermission(request))
-            .transform(breaker);
+        return call(() -> sns().removePermission(request));
     }
 
     @Override
-    @SuppressWarnings("unchecked")
     public Promise<RemovePermissionResponse> removePermission(String topicArn, String label) {
         RemovePermissionRequest request = RemovePermissionRequest.builder()
             .topicArn(topicArn)
             .label(label)
             .build();
-        return Blocking.get(() -> sns().removePermission(request))
-            .transform(breaker);
+        return call(() -> sns().removePermission(request));
     }
 
     @Override
-    @SuppressWarnings("unchecked")
     public Promise<SetEndpointAttributesResponse> setEndpointAttributes(SetEndpointAttributesRequest request) {
-        return Blocking.get(() -> sns().setEndpointAttributes(request))
-            .transform(breaker);
+        return call(() -> sns().setEndpointAttributes(request));
     }
 
     @Override
-    @SuppressWarnings("unchecked")
     public Promise<SetPlatformApplicationAttributesResponse> setPlatformApplicationAttributes(
         SetPlatformApplicationAttributesRequest request
     ) {
-        return Blocking.get(() -> sns().setPlatformApplicationAttributes(request))
-            .transform(breaker);
+        return call(() -> sns().setPlatformApplicationAttributes(request));
     }
 
     @Override
-    @SuppressWarnings("unchecked")
     public Promise<SetSmsAttributesResponse> setSMSAttributes(SetSmsAttributesRequest request) {
-        return Blocking.get(() -> sns().setSMSAttributes(request))
-            .transform(breaker);
+        return call(() -> sns().setSMSAttributes(request));
     }
 
     @Override
-    @SuppressWarnings("unchecked")
     public Promise<SetSubscriptionAttributesResponse> setSubscriptionAttributes(
         SetSubscriptionAttributesRequest request
     ) {
-        return Blocking.get(() -> sns().setSubscriptionAttributes(request))
-            .transform(breaker);
+        return call(() -> sns().setSubscriptionAttributes(request));
     }
 
     @Override
-    @SuppressWarnings("unchecked")
     public Promise<SetSubscriptionAttributesResponse> setSubscriptionAttributes(
         String subscriptionArn,
         String attributeName,
@@ -467,19 +401,15 @@ public class DefaultSnsService implements SnsService {
             .attributeName(attributeName)
             .attributeValue(attributeValue)
             .build();
-        return Blocking.get(() -> sns().setSubscriptionAttributes(request))
-            .transform(breaker);
+        return call(() -> sns().setSubscriptionAttributes(request));
     }
 
     @Override
-    @SuppressWarnings("unchecked")
     public Promise<SetTopicAttributesResponse> setTopicAttributes(SetTopicAttributesRequest request) {
-        return Blocking.get(() -> sns().setTopicAttributes(request))
-            .transform(breaker);
+        return call(() -> sns().setTopicAttributes(request));
     }
 
     @Override
-    @SuppressWarnings("unchecked")
     public Promise<SetTopicAttributesResponse> setTopicAttributes(
         String topicArn,
         String attributeName,
@@ -490,37 +420,30 @@ public class DefaultSnsService implements SnsService {
             .attributeName(attributeName)
             .attributeValue(attributeValue)
             .build();
-        return Blocking.get(() -> sns().setTopicAttributes(request))
-            .transform(breaker);
+        return call(() -> sns().setTopicAttributes(request));
     }
 
     @Override
-    @SuppressWarnings("unchecked")
     public Promise<SubscribeResponse> subscribe(String topicArn, String protocol, String endpoint) {
         SubscribeRequest request = SubscribeRequest.builder()
             .topicArn(topicArn)
             .protocol(protocol)
             .endpoint(endpoint)
             .build();
-        return Blocking.get(() -> sns().subscribe(request))
-            .transform(breaker);
+        return call(() -> sns().subscribe(request));
     }
 
     @Override
-    @SuppressWarnings("unchecked")
     public Promise<UnsubscribeResponse> unsubscribe(UnsubscribeRequest request) {
-        return Blocking.get(() -> sns().unsubscribe(request))
-            .transform(breaker);
+        return call(() -> sns().unsubscribe(request));
     }
 
     @Override
-    @SuppressWarnings("unchecked")
     public Promise<UnsubscribeResponse> unsubscribe(String subscriptionArn) {
         UnsubscribeRequest request = UnsubscribeRequest.builder()
             .subscriptionArn(subscriptionArn)
             .build();
-        return Blocking.get(() -> sns().unsubscribe(request))
-            .transform(breaker);
+        return call(() -> sns().unsubscribe(request));
     }
 
     @Override
@@ -555,6 +478,110 @@ public class DefaultSnsService implements SnsService {
         return activeClient.get();
     }
 
+    /**
+     * Publishes a message, compressed when compression is configured.  When a {@link BlobStore} is bound, a message
+     * that is still too large is published with the key of its payload, which is offloaded to the store.
+     */
+    private Promise<PublishResponse> send(PublishRequest request) {
+        PublishRequest compressed = compress(request);
+        if (claimCheck == null || compressed.messageStructure() != null || !claimCheck.isLarge(sizeOf(compressed))) {
+            return call(() -> sns().publish(compressed));
+        }
+        return claimCheck.getStore().put(compressed.message())
+            .flatMap(key -> {
+                Map<String, MessageAttributeValue> attributes = new HashMap<>(compressed.messageAttributes());
+                attributes.put(ClaimCheck.ATTRIBUTE, MessageAttributeValue.builder()
+                    .dataType("String")
+                    .stringValue(key)
+                    .build());
+                PublishRequest claimed = compressed.toBuilder()
+                    .message(key)
+                    .messageAttributes(attributes)
+                    .build();
+                return call(() -> sns().publish(claimed));
+            });
+    }
+
+    /**
+     * Size of a message as counted by SNS: the message plus the name, type and value of every message attribute.
+     */
+    private static long sizeOf(PublishRequest request) {
+        long size = utf8Length(request.message());
+        for (Map.Entry<String, MessageAttributeValue> attribute : request.messageAttributes().entrySet()) {
+            MessageAttributeValue value = attribute.getValue();
+            size += utf8Length(attribute.getKey()) + utf8Length(value.dataType()) + utf8Length(value.stringValue());
+            SdkBytes binary = value.binaryValue();
+            if (binary != null) {
+                size += binary.asByteBuffer().remaining();
+            }
+        }
+        return size;
+    }
+
+    private static long utf8Length(String value) {
+        return value == null ? 0 : value.getBytes(StandardCharsets.UTF_8).length;
+    }
+
+    /**
+     * Compresses the message of a publish request when compression is configured.  Messages with a per-protocol
+     * structure, or already carrying the most attributes SQS accepts, are published as they are.
+     */
+    PublishRequest compress(PublishRequest request) {
+        if (!compression.isCompressing()
+            || request.messageStructure() != null
+            || request.messageAttributes().size() >= MAX_ATTRIBUTES) {
+            return request;
+        }
+        return compression.compress(request.message())
+            .map(compressed -> {
+                Map<String, MessageAttributeValue> attributes = new HashMap<>(request.messageAttributes());
+                attributes.put(PayloadCompression.ATTRIBUTE, MessageAttributeValue.builder()
+                    .dataType("String")
+                    .stringValue(compressed.getEncoding())
+                    .build());
+                return request.toBuilder()
+                    .message(compressed.getBody())
+                    .messageAttributes(attributes)
+                    .build();
+            })
+            .orElse(request);
+    }
+
+    /**
+     * Runs a blocking SNS call through the circuit breaker, retrying server errors and throttling up to
+     * {@link SnsModule.Config#getMaxRetries()} times with backoff.
+     */
+    private <T> Promise<T> call(Factory<T> call) {
+        if (config.getMaxRetries() <= 0) {
+            return attempt(call, null, 0);
+        }
+        ExponentialBackoff backoff = new ExponentialBackoff(
+            Duration.ofMillis(config.getRetryBaseMillis()),
+            Duration.ofMillis(config.getRetryMaxMillis()),
+            config.getRetryJitter()
+        );
+        return attempt(call, backoff, 0);
+    }
+
+    @SuppressWarnings("unchecked")
+    private <T> Promise<T> attempt(Factory<T> call, ExponentialBackoff backoff, int retries) {
+        Promise<T> result = Blocking.get(call)
+            .transform(breaker);
+        if (retries >= config.getMaxRetries()) {
+            return result;
+        }
+        return result.flatMapError(this::isRetryable, e -> {
+            LOG.debug("Retrying SNS call after failure, retry={}", retries + 1, e);
+            return backoff.backoff()
+                .flatMap(v -> attempt(call, backoff, retries + 1));
+        });
+    }
+
+    boolean isRetryable(Throwable t) {
+        return isAwsServiceError(t)
+            || t instanceof AwsServiceException && ((AwsServiceException) t).isThrottlingException();
+    }
+
     boolean isAwsServiceError(Throwable t) {
         if (t instanceof AwsServiceException) {
             int status = ((AwsServiceException) t).statusCode();
@@ -2,6 +2,7 @@ package smartthings.ratpack.sns.internal.providers;
 
 import com.google.inject.Inject;
 import com.google.inject.Singleton;
+import smartthings.ratpack.aws.internal.http.HttpClients;
 import smartthings.ratpack.sns.AmazonSNSProvider;
 import smartthings.ratpack.sns.SnsModule;
 import software.amazon.awssdk.auth.credentials.AwsCredentialsProvider;
@@ -15,17 +16,20 @@ import java.net.URI;
 public class DefaultAmazonSNSProvider implements AmazonSNSProvider {
 
     private final AwsCredentialsProvider credentialsProvider;
+    private final HttpClients httpClients;
 
     @Inject
     public DefaultAmazonSNSProvider(
-        AwsCredentialsProvider credentialsProvider
+        AwsCredentialsProvider credentialsProvider,
+        HttpClients httpClients
     ) {
         this.credentialsProvider = credentialsProvider;
+        this.httpClients = httpClients;
     }
 
     @Override
     public SnsClient get(SnsModule.EndpointConfig config) {
-        SnsClientBuilder builder = SnsClient.builder();
+        SnsClientBuilder builder = httpClients.configure(SnsClient.builder(), config.getHttp());
         builder.credentialsProvider(credentialsProvider);
         if (config.endpoint().isPresent()) {
             builder.endpointOverride(URI.create(config.getEndpoint()));
@@ -0,0 +1,30 @@
+package smartthings.ratpack.sqs;
+
+import ratpack.exec.Operation;
+import software.amazon.awssdk.services.sqs.model.Message;
+import software.amazon.awssdk.services.sqs.model.ReceiveMessageRequest;
+
+/**
+ * Interface for creating a non-blocking SQS Consumer.  Implementers return an {@link Operation} for each message, and
+ * the message is only deleted once that operation completes successfully.  Handlers run on a compute thread and must
+ * not block; use {@link ratpack.exec.Blocking} for any blocking work.
+ */
+public interface AsyncConsumer {
+
+    /**
+     * Invoked upon message receipt from SQS.
+     * @param message The SQS message to consume
+     * @return an operation that completes once the message has been handled
+     */
+    Operation consume(Message message);
+
+    /**
+     * Override to provide defaults to the sqs message request.
+     * @return a ReceiveMessageRequest with a default wait time
+     */
+    default ReceiveMessageRequest getReceiveMessageRequest() {
+        return ReceiveMessageRequest.builder()
+            .waitTimeSeconds(20)
+            .build();
+    }
+}
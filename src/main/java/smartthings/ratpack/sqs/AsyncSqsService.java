@@ -0,0 +1,100 @@
+package smartthings.ratpack.sqs;
+
+import com.google.inject.Inject;
+import com.google.inject.Singleton;
+import ratpack.exec.Promise;
+import ratpack.service.Service;
+import ratpack.service.StopEvent;
+import software.amazon.awssdk.services.sqs.SqsAsyncClient;
+import software.amazon.awssdk.services.sqs.model.*;
+
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CompletionException;
+import java.util.function.Supplier;
+
+/**
+ * Non-blocking implementation for communicating with AWS SQS.  Each call is issued through an {@link SqsAsyncClient}
+ * and the resulting future is adapted to a {@link Promise}, so long polls do not occupy a Ratpack blocking thread.
+ */
+@Singleton
+public class AsyncSqsService implements SqsService, Service {
+
+    private final SqsAsyncClient sqs;
+
+    @Inject
+    public AsyncSqsService(SqsAsyncClient sqs) {
+        this.sqs = sqs;
+    }
+
+    @Override
+    public void onStop(StopEvent event) throws Exception {
+        sqs.close();
+    }
+
+    @Override
+    public Promise<DeleteMessageResponse> deleteMessage(DeleteMessageRequest request) {
+        return toPromise(() -> sqs.deleteMessage(request));
+    }
+
+    @Override
+    public Promise<DeleteMessageBatchResponse> deleteMessageBatch(DeleteMessageBatchRequest request) {
+        return toPromise(() -> sqs.deleteMessageBatch(request));
+    }
+
+    @Override
+    public Promise<SendMessageResponse> sendMessage(SendMessageRequest request) {
+        return toPromise(() -> sqs.sendMessage(request));
+    }
+
+    @Override
+    public Promise<SendMessageBatchResponse> sendMessageBatch(SendMessageBatchRequest request) {
+        return toPromise(() -> sqs.sendMessageBatch(request));
+    }
+
+    @Override
+    public Promise<ReceiveMessageResponse> receiveMessage(ReceiveMessageRequest request) {
+        return toPromise(() -> sqs.receiveMessage(request));
+    }
+
+    @Override
+    public Promise<GetQueueUrlResponse> getQueueUrl(String queueName) {
+        GetQueueUrlRequest request = GetQueueUrlRequest.builder()
+            .queueName(queueName)
+            .build();
+        return toPromise(() -> sqs.getQueueUrl(request));
+    }
+
+    @Override
+    public Promise<GetQueueAttributesResponse> getQueueAttributes(GetQueueAttributesRequest request) {
+        return toPromise(() -> sqs.getQueueAttributes(request));
+    }
+
+    @Override
+    public Promise<ChangeMessageVisibilityBatchResponse> changeMessageVisibilityBatch(
+        ChangeMessageVisibilityBatchRequest request
+    ) {
+        return toPromise(() -> sqs.changeMessageVisibilityBatch(request));
+    }
+
+    /**
+     * Adapts a lazily issued SDK call to a promise.  The call is only made once the promise is subscribed to.
+     */
+    private static <T> Promise<T> toPromise(Supplier<CompletableFuture<T>> call) {
+        return Promise.async(downstream ->
+            call.get().whenComplete((value, error) -> {
+                if (error == null) {
+                    downstream.success(value);
+                } else {
+                    downstream.error(unwrap(error));
+                }
+            })
+        );
+    }
+
+    private static Throwable unwrap(Throwable error) {
+        if (error instanceof CompletionException && error.getCause() != null) {
+            return error.getCause();
+        }
+        return error;
+    }
+}
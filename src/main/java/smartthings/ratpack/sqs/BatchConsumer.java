@@ -0,0 +1,33 @@
+package smartthings.ratpack.sqs;
+
+import ratpack.exec.Promise;
+import software.amazon.awssdk.services.sqs.model.Message;
+import software.amazon.awssdk.services.sqs.model.ReceiveMessageRequest;
+
+import java.util.List;
+
+/**
+ * Interface for creating an SQS Consumer that handles every message of a receive at once, for example to write them
+ * with a single bulk insert.  Messages reported as successful are deleted with a single batch delete, while failed
+ * messages are left on the queue to be redelivered once their visibility timeout expires.
+ */
+public interface BatchConsumer {
+
+    /**
+     * Invoked with all messages of a single receive from SQS.
+     * @param messages The SQS messages to consume, never empty
+     * @return a promise for which of the messages were consumed successfully.  A failed promise fails every message.
+     */
+    Promise<BatchResult> consume(List<Message> messages);
+
+    /**
+     * Override to provide defaults to the sqs message request.
+     * @return a ReceiveMessageRequest with a default wait time that receives up to 10 messages at a time
+     */
+    default ReceiveMessageRequest getReceiveMessageRequest() {
+        return ReceiveMessageRequest.builder()
+            .waitTimeSeconds(20)
+            .maxNumberOfMessages(10)
+            .build();
+    }
+}
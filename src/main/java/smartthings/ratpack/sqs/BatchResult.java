@@ -0,0 +1,49 @@
+package smartthings.ratpack.sqs;
+
+import software.amazon.awssdk.services.sqs.model.Message;
+
+import java.util.Collection;
+import java.util.Collections;
+import java.util.Set;
+import java.util.stream.Collectors;
+
+/**
+ * Outcome of a {@link BatchConsumer} call, identifying the messages that could not be consumed.
+ */
+public final class BatchResult {
+
+    private static final BatchResult SUCCESS = new BatchResult(Collections.emptySet());
+
+    private final Set<String> failedMessageIds;
+
+    private BatchResult(Set<String> failedMessageIds) {
+        this.failedMessageIds = failedMessageIds;
+    }
+
+    /**
+     * Every message of the batch was consumed.
+     * @return a result marking all messages successful
+     */
+    public static BatchResult success() {
+        return SUCCESS;
+    }
+
+    /**
+     * The given messages could not be consumed, every other message of the batch was.
+     * @param failed The messages that failed
+     * @return a result marking only the given messages as failed
+     */
+    public static BatchResult failed(Collection<Message> failed) {
+        return new BatchResult(
+            Collections.unmodifiableSet(failed.stream().map(Message::messageId).collect(Collectors.toSet()))
+        );
+    }
+
+    public boolean isSuccessful(Message message) {
+        return !failedMessageIds.contains(message.messageId());
+    }
+
+    public Set<String> getFailedMessageIds() {
+        return failedMessageIds;
+    }
+}
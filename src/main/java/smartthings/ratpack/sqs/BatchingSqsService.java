@@ -0,0 +1,66 @@
+package smartthings.ratpack.sqs;
+
+import ratpack.exec.Promise;
+import smartthings.ratpack.sqs.internal.batch.SendMessageBatcher;
+import software.amazon.awssdk.services.sqs.model.*;
+
+import java.time.Duration;
+
+/**
+ * An {@link SqsService} that gathers concurrent {@link #sendMessage(SendMessageRequest)} calls for the same queue into
+ * {@code SendMessageBatch} requests.  A batch is sent once it holds ten messages, once the next message would take it
+ * over the 256 KB payload limit, or once the linger time has passed since its first message.  Every other operation
+ * is passed straight through to the wrapped service.
+ */
+public class BatchingSqsService implements SqsService {
+
+    private final SqsService delegate;
+    private final SendMessageBatcher sendBatcher;
+
+    public BatchingSqsService(SqsService delegate, Duration linger) {
+        this.delegate = delegate;
+        this.sendBatcher = new SendMessageBatcher(delegate, linger);
+    }
+
+    @Override
+    public Promise<DeleteMessageResponse> deleteMessage(DeleteMessageRequest request) {
+        return delegate.deleteMessage(request);
+    }
+
+    @Override
+    public Promise<DeleteMessageBatchResponse> deleteMessageBatch(DeleteMessageBatchRequest request) {
+        return delegate.deleteMessageBatch(request);
+    }
+
+    @Override
+    public Promise<SendMessageResponse> sendMessage(SendMessageRequest request) {
+        return sendBatcher.send(request);
+    }
+
+    @Override
+    public Promise<SendMessageBatchResponse> sendMessageBatch(SendMessageBatchRequest request) {
+        return delegate.sendMessageBatch(request);
+    }
+
+    @Override
+    public Promise<ReceiveMessageResponse> receiveMessage(ReceiveMessageRequest request) {
+        return delegate.receiveMessage(request);
+    }
+
+    @Override
+    public Promise<GetQueueUrlResponse> getQueueUrl(String queueName) {
+        return delegate.getQueueUrl(queueName);
+    }
+
+    @Override
+    public Promise<GetQueueAttributesResponse> getQueueAttributes(GetQueueAttributesRequest request) {
+        return delegate.getQueueAttributes(request);
+    }
+
+    @Override
+    public Promise<ChangeMessageVisibilityBatchResponse> changeMessageVisibilityBatch(
+        ChangeMessageVisibilityBatchRequest request
+    ) {
+        return delegate.changeMessageVisibilityBatch(request);
+    }
+}
@@ -0,0 +1,251 @@
+package smartthings.ratpack.sqs;
+
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import ratpack.exec.Operation;
+import ratpack.exec.Promise;
+import ratpack.exec.util.ParallelBatch;
+import smartthings.ratpack.aws.blob.BlobStore;
+import smartthings.ratpack.aws.blob.ClaimCheck;
+import smartthings.ratpack.sqs.internal.batch.SendMessageBatcher;
+import software.amazon.awssdk.services.sqs.model.*;
+
+import java.time.Duration;
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Objects;
+import java.util.Optional;
+import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.stream.Collectors;
+
+/**
+ * An {@link SqsService} that offloads the payloads of large sent messages to a {@link BlobStore} and fetches them back
+ * for received messages, following a {@link ClaimCheck}.  Stored payloads are kept when their message is deleted,
+ * since a payload published through an SNS topic is shared by every subscribed queue and nothing in a received message
+ * tells whether it was; expire them in the {@link BlobStore}, or opt in to deleting them when every payload belongs to
+ * a single queue.  Queues subscribed to a topic need raw message delivery for the claim check attribute to reach
+ * them.  A received message whose payload cannot be fetched is left out of the response and redelivered once its
+ * visibility timeout runs out.  Wrap a {@link BatchingSqsService} rather than the other way round, so that it only
+ * ever batches the small messages.  Every other operation is passed straight through to the wrapped service.
+ */
+public class ClaimCheckSqsService implements SqsService {
+
+    private static final Logger log = LoggerFactory.getLogger(ClaimCheckSqsService.class);
+
+    /**
+     * Receipt handles cannot be used after the longest visibility timeout, so claims are forgotten after it.
+     */
+    private static final long MAX_CLAIM_AGE = Duration.ofHours(12).toNanos();
+
+    private final SqsService delegate;
+    private final ClaimCheck claimCheck;
+    private final boolean deletePayloads;
+    private final Map<String, Claim> claims = new ConcurrentHashMap<>();
+
+    public ClaimCheckSqsService(SqsService delegate, ClaimCheck claimCheck) {
+        this(delegate, claimCheck, false);
+    }
+
+    /**
+     * @param delegate The service to wrap
+     * @param claimCheck The blob store and threshold for large messages
+     * @param deletePayloads Whether the payload of a received message is deleted along with the message
+     */
+    public ClaimCheckSqsService(SqsService delegate, ClaimCheck claimCheck, boolean deletePayloads) {
+        this.delegate = delegate;
+        this.claimCheck = claimCheck;
+        this.deletePayloads = deletePayloads;
+    }
+
+    @Override
+    public Promise<DeleteMessageResponse> deleteMessage(DeleteMessageRequest request) {
+        return delegate.deleteMessage(request)
+            .nextOp(response -> release(Collections.singletonList(request.receiptHandle())));
+    }
+
+    @Override
+    public Promise<DeleteMessageBatchResponse> deleteMessageBatch(DeleteMessageBatchRequest request) {
+        return delegate.deleteMessageBatch(request)
+            .nextOp(response -> {
+                Set<String> deleted = response.successful().stream()
+                    .map(DeleteMessageBatchResultEntry::id)
+                    .collect(Collectors.toSet());
+                return release(request.entries().stream()
+                    .filter(entry -> deleted.contains(entry.id()))
+                    .map(DeleteMessageBatchRequestEntry::receiptHandle)
+                    .collect(Collectors.toList()));
+            });
+    }
+
+    @Override
+    public Promise<SendMessageResponse> sendMessage(SendMessageRequest request) {
+        if (!claimCheck.isLarge(SendMessageBatcher.payloadSize(request.messageBody(), request.messageAttributes()))) {
+            return delegate.sendMessage(request);
+        }
+        return claimCheck.getStore().put(request.messageBody())
+            .flatMap(key -> delegate.sendMessage(request.toBuilder()
+                .messageBody(key)
+                .messageAttributes(withClaim(request.messageAttributes(), key))
+                .build()));
+    }
+
+    @Override
+    public Promise<SendMessageBatchResponse> sendMessageBatch(SendMessageBatchRequest request) {
+        List<Promise<SendMessageBatchRequestEntry>> entries = request.entries().stream()
+            .map(this::offload)
+            .collect(Collectors.toList());
+        return ParallelBatch.of(entries)
+            .yield()
+            .flatMap(offloaded -> delegate.sendMessageBatch(request.toBuilder().entries(offloaded).build()));
+    }
+
+    @Override
+    public Promise<ReceiveMessageResponse> receiveMessage(ReceiveMessageRequest request) {
+        return delegate.receiveMessage(withClaimAttribute(request))
+            .flatMap(response -> {
+                if (response.messages().stream().noneMatch(ClaimCheckSqsService::isClaimed)) {
+                    return Promise.value(response);
+                }
+                forgetExpiredClaims();
+                List<Promise<Optional<Message>>> resolved = response.messages().stream()
+                    .map(this::resolve)
+                    .collect(Collectors.toList());
+                return ParallelBatch.of(resolved)
+                    .yield()
+                    .map(messages -> response.toBuilder()
+                        .messages(messages.stream()
+                            .filter(Optional::isPresent)
+                            .map(Optional::get)
+                            .collect(Collectors.toList()))
+                        .build());
+            });
+    }
+
+    @Override
+    public Promise<GetQueueUrlResponse> getQueueUrl(String queueName) {
+        return delegate.getQueueUrl(queueName);
+    }
+
+    @Override
+    public Promise<GetQueueAttributesResponse> getQueueAttributes(GetQueueAttributesRequest request) {
+        return delegate.getQueueAttributes(request);
+    }
+
+    @Override
+    public Promise<ChangeMessageVisibilityBatchResponse> changeMessageVisibilityBatch(
+        ChangeMessageVisibilityBatchRequest request
+    ) {
+        return delegate.changeMessageVisibilityBatch(request);
+    }
+
+    private Promise<SendMessageBatchRequestEntry> offload(SendMessageBatchRequestEntry entry) {
+        if (!claimCheck.isLarge(SendMessageBatcher.payloadSize(entry.messageBody(), entry.messageAttributes()))) {
+            return Promise.value(entry);
+        }
+        return claimCheck.getStore().put(entry.messageBody())
+            .map(key -> entry.toBuilder()
+                .messageBody(key)
+                .messageAttributes(withClaim(entry.messageAttributes(), key))
+                .build());
+    }
+
+    private Promise<Optional<Message>> resolve(Message message) {
+        if (!isClaimed(message)) {
+            return Promise.value(Optional.of(message));
+        }
+        String key = message.messageAttributes().get(ClaimCheck.ATTRIBUTE).stringValue();
+        // Producers may set the attribute to anything, so a store rejecting the key fails only this message.
+        return Promise.flatten(() -> claimCheck.getStore().get(key))
+            .map(body -> {
+                claims.put(message.receiptHandle(), new Claim(key));
+                Map<String, MessageAttributeValue> attributes = new HashMap<>(message.messageAttributes());
+                attributes.remove(ClaimCheck.ATTRIBUTE);
+                return Optional.of(message.toBuilder()
+                    .body(body)
+                    .messageAttributes(attributes)
+                    .build());
+            })
+            .mapError(e -> {
+                log.error(
+                    "Unable to fetch payload key={} of message={}, leaving it for redelivery.",
+                    key, message.messageId(), e
+                );
+                return Optional.empty();
+            });
+    }
+
+    /**
+     * Deletes the stored payloads of deleted messages.  A payload that cannot be deleted is logged and left behind.
+     */
+    private Operation release(Collection<String> receiptHandles) {
+        List<String> keys = receiptHandles.stream()
+            .map(claims::remove)
+            .filter(Objects::nonNull)
+            .map(claim -> claim.key)
+            .collect(Collectors.toList());
+        if (!deletePayloads || keys.isEmpty()) {
+            return Operation.noop();
+        }
+        List<Promise<Void>> deletes = new ArrayList<>(keys.size());
+        for (String key : keys) {
+            deletes.add(Promise.flatten(() -> claimCheck.getStore().delete(key).promise())
+                .mapError(e -> {
+                    log.warn("Unable to delete payload key={}", key, e);
+                    return null;
+                }));
+        }
+        return ParallelBatch.of(deletes).yield().operation();
+    }
+
+    private void forgetExpiredClaims() {
+        long now = System.nanoTime();
+        claims.values().removeIf(claim -> now - claim.receivedAt > MAX_CLAIM_AGE);
+    }
+
+    private static boolean isClaimed(Message message) {
+        return message.messageAttributes().containsKey(ClaimCheck.ATTRIBUTE);
+    }
+
+    private static Map<String, MessageAttributeValue> withClaim(
+        Map<String, MessageAttributeValue> attributes, String key
+    ) {
+        Map<String, MessageAttributeValue> withClaim = new HashMap<>(attributes);
+        withClaim.put(ClaimCheck.ATTRIBUTE, MessageAttributeValue.builder()
+            .dataType("String")
+            .stringValue(key)
+            .build());
+        return withClaim;
+    }
+
+    /**
+     * Asks for the claim check attribute along with the attributes the caller wants, so large messages are recognized.
+     */
+    private static ReceiveMessageRequest withClaimAttribute(ReceiveMessageRequest request) {
+        List<String> names = request.messageAttributeNames();
+        if (names.contains(ClaimCheck.ATTRIBUTE) || names.contains("All") || names.contains(".*")) {
+            return request;
+        }
+        List<String> withClaim = new ArrayList<>(names);
+        withClaim.add(ClaimCheck.ATTRIBUTE);
+        return request.toBuilder()
+            .messageAttributeNames(withClaim)
+            .build();
+    }
+
+    /**
+     * The stored payload of a received message.
+     */
+    private static final class Claim {
+        private final String key;
+        private final long receivedAt = System.nanoTime();
+
+        private Claim(String key) {
+            this.key = key;
+        }
+    }
+}
@@ -0,0 +1,167 @@
+package smartthings.ratpack.sqs;
+
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import ratpack.exec.Promise;
+import smartthings.ratpack.aws.codec.PayloadCompression;
+import software.amazon.awssdk.services.sqs.model.*;
+
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.stream.Collectors;
+
+/**
+ * An {@link SqsService} that compresses the bodies of sent messages and decompresses the bodies of received ones with
+ * a {@link PayloadCompression}.  Received messages whose body cannot be decompressed are passed on as they are, still
+ * carrying the {@value PayloadCompression#ATTRIBUTE} attribute, so that {@link #isCompressed(Message)} tells them
+ * apart and consumers fail them rather than process a compressed body.  When combined with a
+ * {@link BatchingSqsService}, wrap the batching service so that batches are packed by compressed size.  Every other
+ * operation is passed straight through to the wrapped service.
+ */
+public class CompressingSqsService implements SqsService {
+
+    private static final Logger log = LoggerFactory.getLogger(CompressingSqsService.class);
+    private static final int MAX_ATTRIBUTES = 10;
+
+    private final SqsService delegate;
+    private final PayloadCompression compression;
+
+    public CompressingSqsService(SqsService delegate, PayloadCompression compression) {
+        this.delegate = delegate;
+        this.compression = compression;
+    }
+
+    @Override
+    public Promise<DeleteMessageResponse> deleteMessage(DeleteMessageRequest request) {
+        return delegate.deleteMessage(request);
+    }
+
+    @Override
+    public Promise<DeleteMessageBatchResponse> deleteMessageBatch(DeleteMessageBatchRequest request) {
+        return delegate.deleteMessageBatch(request);
+    }
+
+    @Override
+    public Promise<SendMessageResponse> sendMessage(SendMessageRequest request) {
+        if (!compression.isCompressing() || request.messageAttributes().size() >= MAX_ATTRIBUTES) {
+            return delegate.sendMessage(request);
+        }
+        return delegate.sendMessage(compression.compress(request.messageBody())
+            .map(compressed -> request.toBuilder()
+                .messageBody(compressed.getBody())
+                .messageAttributes(withEncoding(request.messageAttributes(), compressed.getEncoding()))
+                .build())
+            .orElse(request));
+    }
+
+    @Override
+    public Promise<SendMessageBatchResponse> sendMessageBatch(SendMessageBatchRequest request) {
+        if (!compression.isCompressing()) {
+            return delegate.sendMessageBatch(request);
+        }
+        List<SendMessageBatchRequestEntry> entries = request.entries().stream()
+            .map(this::compress)
+            .collect(Collectors.toList());
+        return delegate.sendMessageBatch(request.toBuilder().entries(entries).build());
+    }
+
+    @Override
+    public Promise<ReceiveMessageResponse> receiveMessage(ReceiveMessageRequest request) {
+        return delegate.receiveMessage(withEncodingAttribute(request))
+            .map(response -> {
+                if (response.messages().stream().noneMatch(CompressingSqsService::isCompressed)) {
+                    return response;
+                }
+                return response.toBuilder()
+                    .messages(response.messages().stream()
+                        .map(this::decompress)
+                        .collect(Collectors.toList()))
+                    .build();
+            });
+    }
+
+    @Override
+    public Promise<GetQueueUrlResponse> getQueueUrl(String queueName) {
+        return delegate.getQueueUrl(queueName);
+    }
+
+    @Override
+    public Promise<GetQueueAttributesResponse> getQueueAttributes(GetQueueAttributesRequest request) {
+        return delegate.getQueueAttributes(request);
+    }
+
+    @Override
+    public Promise<ChangeMessageVisibilityBatchResponse> changeMessageVisibilityBatch(
+        ChangeMessageVisibilityBatchRequest request
+    ) {
+        return delegate.changeMessageVisibilityBatch(request);
+    }
+
+    private SendMessageBatchRequestEntry compress(SendMessageBatchRequestEntry entry) {
+        if (entry.messageAttributes().size() >= MAX_ATTRIBUTES) {
+            return entry;
+        }
+        return compression.compress(entry.messageBody())
+            .map(compressed -> entry.toBuilder()
+                .messageBody(compressed.getBody())
+                .messageAttributes(withEncoding(entry.messageAttributes(), compressed.getEncoding()))
+                .build())
+            .orElse(entry);
+    }
+
+    private Message decompress(Message message) {
+        if (!isCompressed(message)) {
+            return message;
+        }
+        String encoding = message.messageAttributes().get(PayloadCompression.ATTRIBUTE).stringValue();
+        try {
+            Map<String, MessageAttributeValue> attributes = new HashMap<>(message.messageAttributes());
+            attributes.remove(PayloadCompression.ATTRIBUTE);
+            return message.toBuilder()
+                .body(compression.decompress(message.body(), encoding))
+                .messageAttributes(attributes)
+                .build();
+        } catch (IllegalArgumentException e) {
+            log.warn("Unable to decompress message={} with encoding={}", message.messageId(), encoding, e);
+            return message;
+        }
+    }
+
+    /**
+     * Whether a message is still compressed.  Messages received through this service only are when their body could
+     * not be decompressed, as the attribute is removed from every decompressed message.
+     * @param message A received message
+     * @return true if the message carries the {@value PayloadCompression#ATTRIBUTE} attribute
+     */
+    public static boolean isCompressed(Message message) {
+        return message.messageAttributes().containsKey(PayloadCompression.ATTRIBUTE);
+    }
+
+    private static Map<String, MessageAttributeValue> withEncoding(
+        Map<String, MessageAttributeValue> attributes, String encoding
+    ) {
+        Map<String, MessageAttributeValue> withEncoding = new HashMap<>(attributes);
+        withEncoding.put(PayloadCompression.ATTRIBUTE, MessageAttributeValue.builder()
+            .dataType("String")
+            .stringValue(encoding)
+            .build());
+        return withEncoding;
+    }
+
+    /**
+     * Asks for the encoding attribute along with the attributes the caller wants, so compressed bodies are recognized.
+     */
+    private static ReceiveMessageRequest withEncodingAttribute(ReceiveMessageRequest request) {
+        List<String> names = request.messageAttributeNames();
+        if (names.contains(PayloadCompression.ATTRIBUTE) || names.contains("All") || names.contains(".*")) {
+            return request;
+        }
+        List<String> withEncoding = new ArrayList<>(names);
+        withEncoding.add(PayloadCompression.ATTRIBUTE);
+        return request.toBuilder()
+            .messageAttributeNames(withEncoding)
+            .build();
+    }
+}
@@ -32,11 +32,21 @@ public class DefaultSqsService implements SqsService, Service {
         return Blocking.get(() -> sqs.deleteMessage(request));
     }
 
+    @Override
+    public Promise<DeleteMessageBatchResponse> deleteMessageBatch(DeleteMessageBatchRequest request) {
+        return Blocking.get(() -> sqs.deleteMessageBatch(request));
+    }
+
     @Override
     public Promise<SendMessageResponse> sendMessage(SendMessageRequest request) {
         return Blocking.get(() -> sqs.sendMessage(request));
     }
 
+    @Override
+    public Promise<SendMessageBatchResponse> sendMessageBatch(SendMessageBatchRequest request) {
+        return Blocking.get(() -> sqs.sendMessageBatch(request));
+    }
+
     @Override
     public Promise<ReceiveMessageResponse> receiveMessage(ReceiveMessageRequest request) {
         return Blocking.get(() -> sqs.receiveMessage(request));
@@ -49,4 +59,16 @@ public class DefaultSqsService implements SqsService, Service {
             .build();
         return Blocking.get(() -> sqs.getQueueUrl(request));
     }
+
+    @Override
+    public Promise<GetQueueAttributesResponse> getQueueAttributes(GetQueueAttributesRequest request) {
+        return Blocking.get(() -> sqs.getQueueAttributes(request));
+    }
+
+    @Override
+    public Promise<ChangeMessageVisibilityBatchResponse> changeMessageVisibilityBatch(
+        ChangeMessageVisibilityBatchRequest request
+    ) {
+        return Blocking.get(() -> sqs.changeMessageVisibilityBatch(request));
+    }
 }
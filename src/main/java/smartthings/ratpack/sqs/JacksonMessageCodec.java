@@ -0,0 +1,61 @@
+package smartthings.ratpack.sqs;
+
+import com.fasterxml.jackson.core.JsonParser;
+import com.fasterxml.jackson.core.JsonToken;
+import com.fasterxml.jackson.databind.JsonMappingException;
+import com.fasterxml.jackson.databind.ObjectMapper;
+import com.fasterxml.jackson.databind.ObjectReader;
+import com.google.inject.Inject;
+
+import java.io.IOException;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentMap;
+
+/**
+ * {@link MessageCodec} that decodes JSON payloads with the application's {@link ObjectMapper}.  One
+ * {@link ObjectReader} is created per payload type and reused.  SNS notifications are read as a token stream up to
+ * their {@code Message} field, so only the payload itself is bound and the rest of the envelope is never
+ * materialized.
+ */
+public class JacksonMessageCodec implements MessageCodec {
+
+    private static final String MESSAGE_FIELD = "Message";
+
+    private final ObjectMapper mapper;
+    private final ConcurrentMap<Class<?>, ObjectReader> readers = new ConcurrentHashMap<>();
+
+    @Inject
+    public JacksonMessageCodec(ObjectMapper mapper) {
+        this.mapper = mapper;
+    }
+
+    @Override
+    public <T> T decode(String body, Class<T> type) throws IOException {
+        return readerFor(type).readValue(body);
+    }
+
+    @Override
+    public <T> T decodeNotification(String envelope, Class<T> type) throws IOException {
+        try (JsonParser parser = mapper.getFactory().createParser(envelope)) {
+            if (parser.nextToken() != JsonToken.START_OBJECT) {
+                throw JsonMappingException.from(parser, "Expected an SNS notification object");
+            }
+            while (parser.nextToken() == JsonToken.FIELD_NAME) {
+                String field = parser.getCurrentName();
+                JsonToken value = parser.nextToken();
+                if (MESSAGE_FIELD.equals(field)) {
+                    if (value != JsonToken.VALUE_STRING) {
+                        throw JsonMappingException.from(parser, "Expected the SNS Message field to be a string");
+                    }
+                    return decode(parser.getText(), type);
+                }
+                parser.skipChildren();
+            }
+            throw JsonMappingException.from(parser, "SNS notification has no Message field");
+        }
+    }
+
+    private ObjectReader readerFor(Class<?> type) {
+        return readers.computeIfAbsent(type, mapper::readerFor);
+    }
+}
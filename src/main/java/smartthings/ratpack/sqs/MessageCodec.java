@@ -0,0 +1,28 @@
+package smartthings.ratpack.sqs;
+
+/**
+ * Decodes message bodies for {@link TypedConsumer}s.  Bind an implementation in the registry to replace the default
+ * {@link JacksonMessageCodec}.  Implementations are shared by every consumer and must be thread safe.
+ */
+public interface MessageCodec {
+
+    /**
+     * Decodes a message body.
+     * @param body The message body
+     * @param type The payload type
+     * @param <T> The payload type
+     * @return the decoded payload
+     * @throws Exception When the body cannot be decoded
+     */
+    <T> T decode(String body, Class<T> type) throws Exception;
+
+    /**
+     * Decodes the payload carried in the {@code Message} field of an SNS notification.
+     * @param envelope The SNS notification the message body consists of
+     * @param type The payload type
+     * @param <T> The payload type
+     * @return the decoded payload
+     * @throws Exception When the notification or its payload cannot be decoded
+     */
+    <T> T decodeNotification(String envelope, Class<T> type) throws Exception;
+}
@@ -1,7 +1,32 @@
 package smartthings.ratpack.sqs;
 
+import smartthings.ratpack.aws.internal.http.HttpClients;
+import software.amazon.awssdk.regions.Region;
+import software.amazon.awssdk.services.sqs.SqsAsyncClient;
+import software.amazon.awssdk.services.sqs.SqsAsyncClientBuilder;
 import software.amazon.awssdk.services.sqs.SqsClient;
 
+import java.net.URI;
+
 public interface SQSClientProvider {
     SqsClient get(SqsModule.EndpointConfig config);
+
+    /**
+     * Provides a non-blocking client for endpoints configured with {@code async: true}.  By default a Netty client is
+     * built from the endpoint, region and HTTP settings of the endpoint, with its own connection pool and the default
+     * credentials chain.  Override to apply the same customizations as {@link #get(SqsModule.EndpointConfig)}.
+     * @param config The endpoint to build a client for
+     * @return an asynchronous SQS client
+     */
+    default SqsAsyncClient getAsync(SqsModule.EndpointConfig config) {
+        SqsAsyncClientBuilder builder = SqsAsyncClient.builder()
+            .httpClientBuilder(HttpClients.asyncBuilder(config.getHttp()));
+        if (config.endpoint().isPresent()) {
+            builder.endpointOverride(URI.create(config.getEndpoint()));
+        }
+        if (config.regionName().isPresent()) {
+            builder.region(Region.of(config.getRegionName()));
+        }
+        return builder.build();
+    }
 }
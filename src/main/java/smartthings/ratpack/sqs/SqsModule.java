@@ -1,11 +1,20 @@
 package smartthings.ratpack.sqs;
 
+import com.codahale.metrics.MetricRegistry;
 import com.google.inject.multibindings.OptionalBinder;
+import io.prometheus.client.CollectorRegistry;
 import io.github.resilience4j.ratpack.Resilience4jModule;
 import ratpack.guice.ConfigurableModule;
+import smartthings.ratpack.aws.BackoffJitter;
+import smartthings.ratpack.aws.HttpClientConfig;
+import smartthings.ratpack.aws.blob.BlobStore;
+import smartthings.ratpack.aws.codec.PayloadCompression;
+import smartthings.ratpack.sqs.dedup.DeduplicationStore;
 import smartthings.ratpack.sqs.internal.consumer.ConsumerManager;
 import smartthings.ratpack.sqs.internal.consumer.SqsManager;
+import smartthings.ratpack.sqs.internal.metrics.SqsMetrics;
 import smartthings.ratpack.sqs.internal.providers.DefaultSQSClientProvider;
+import java.util.Arrays;
 import java.util.Collections;
 import java.util.List;
 import java.util.Optional;
@@ -24,9 +33,23 @@ public class SqsModule extends ConfigurableModule<SqsModule.Config> {
 
         bind(SqsManager.class).asEagerSingleton();
         bind(ConsumerManager.class).asEagerSingleton();
+        bind(SqsMetrics.class);
 
         OptionalBinder.newOptionalBinder(binder(), SQSClientProvider.class)
             .setDefault().to(DefaultSQSClientProvider.class);
+        // Consumers decompress message bodies; bind a PayloadCompression to add codecs.
+        OptionalBinder.newOptionalBinder(binder(), PayloadCompression.class)
+            .setDefault().toInstance(PayloadCompression.decoding());
+        // Typed consumers decode JSON payloads unless the application binds its own MessageCodec.
+        OptionalBinder.newOptionalBinder(binder(), MessageCodec.class)
+            .setDefault().to(JacksonMessageCodec.class);
+        // Consumers with deduplication enabled share the bound store, or keep their own in memory.
+        OptionalBinder.newOptionalBinder(binder(), DeduplicationStore.class);
+        // Consumers fetch offloaded payloads once the application binds a BlobStore.
+        OptionalBinder.newOptionalBinder(binder(), BlobStore.class);
+        // Consumer metrics are published to the application's metric registries where available.
+        OptionalBinder.newOptionalBinder(binder(), MetricRegistry.class);
+        OptionalBinder.newOptionalBinder(binder(), CollectorRegistry.class);
     }
 
     /**
@@ -34,6 +57,10 @@ public class SqsModule extends ConfigurableModule<SqsModule.Config> {
      */
     public static class Config {
         private boolean enabled;
+        private long maxInFlightMessages;
+        private long maxInFlightBytes;
+        private long drainTimeoutSeconds = 30;
+        private boolean deleteLargePayloads;
         private List<ConsumerConfig> consumers = Collections.emptyList();
 
         public boolean isEnabled() {
@@ -51,12 +78,107 @@ public class SqsModule extends ConfigurableModule<SqsModule.Config> {
         public void setConsumers(List<ConsumerConfig> consumers) {
             this.consumers = consumers;
         }
+
+        /**
+         * Most messages held by all consumers together, from receipt until processed.  Pollers stop receiving while
+         * the limit is reached.  Unlimited (0) by default.
+         * @return the global in-flight message limit
+         */
+        public long getMaxInFlightMessages() {
+            return maxInFlightMessages;
+        }
+
+        public void setMaxInFlightMessages(long maxInFlightMessages) {
+            this.maxInFlightMessages = maxInFlightMessages;
+        }
+
+        /**
+         * Most message payload bytes held by all consumers together, from receipt until processed.  Pollers stop
+         * receiving while the limit is reached.  Unlimited (0) by default.
+         * @return the global in-flight payload limit in bytes
+         */
+        public long getMaxInFlightBytes() {
+            return maxInFlightBytes;
+        }
+
+        public void setMaxInFlightBytes(long maxInFlightBytes) {
+            this.maxInFlightBytes = maxInFlightBytes;
+        }
+
+        /**
+         * How long the application waits on shutdown for messages that are being processed.  Received messages that
+         * have not started processing are made visible on the queue again right away.  30 seconds by default.
+         * @return the drain timeout in seconds
+         */
+        public long getDrainTimeoutSeconds() {
+            return drainTimeoutSeconds;
+        }
+
+        public void setDrainTimeoutSeconds(long drainTimeoutSeconds) {
+            this.drainTimeoutSeconds = drainTimeoutSeconds;
+        }
+
+        /**
+         * Whether consumers delete the offloaded payload of a large message once the message is deleted.  Only enable
+         * this when each payload belongs to a single queue: an SNS topic fanning out to several queues shares one
+         * payload between them.  Disabled by default, leaving payloads to expire in the {@link BlobStore}.
+         * @return true to delete offloaded payloads
+         */
+        public boolean isDeleteLargePayloads() {
+            return deleteLargePayloads;
+        }
+
+        public void setDeleteLargePayloads(boolean deleteLargePayloads) {
+            this.deleteLargePayloads = deleteLargePayloads;
+        }
+    }
+
+    /**
+     * What happens to a message whose consumer failed.
+     */
+    public enum FailurePolicy {
+        /**
+         * Leave the message to be redelivered once its visibility timeout runs out.
+         */
+        VISIBILITY_TIMEOUT,
+        /**
+         * Make the message visible again right away.
+         */
+        IMMEDIATE,
+        /**
+         * Redeliver the message after a delay that doubles with every receive.
+         */
+        EXPONENTIAL
     }
 
     public static class ConsumerConfig {
-        private Class<? extends Consumer> consumer;
+        private static final List<Class<?>> CONSUMER_TYPES =
+            Arrays.asList(Consumer.class, AsyncConsumer.class, TypedConsumer.class, BatchConsumer.class);
+
+        private Class<?> consumer;
         private boolean enabled = true;
         private int concurrency = 1;
+        private int minConcurrency = 1;
+        private int maxConcurrency;
+        private long scalingIntervalSeconds = 30;
+        private int batchConcurrency = 1;
+        private int prefetch;
+        private int deleteBatchSize = 10;
+        private long deleteBatchLingerMillis = 50;
+        private long maxVisibilityExtensionSeconds;
+        private FailurePolicy failurePolicy = FailurePolicy.VISIBILITY_TIMEOUT;
+        private long redeliveryBaseDelaySeconds = 1;
+        private long redeliveryMaxDelaySeconds = 900;
+        private double maxMessagesPerSecond;
+        private long maxInFlightMessages;
+        private long maxInFlightBytes;
+        private long backoffBaseMillis = 1000;
+        private long backoffMaxMillis = 60000;
+        private BackoffJitter backoffJitter = BackoffJitter.DECORRELATED;
+        private boolean deduplicate;
+        private String deduplicationAttribute;
+        private long deduplicationTtlSeconds = 3600;
+        private int deduplicationMaxEntries = 10000;
         private List<EndpointConfig> endpoints = Collections.emptyList();
 
         public boolean isEnabled() {
@@ -67,25 +189,56 @@ public class SqsModule extends ConfigurableModule<SqsModule.Config> {
             this.enabled = enabled;
         }
 
+        /**
+         * The consumer implementation when it is a {@link Consumer}.  Use {@link #getConsumerType()} for consumers
+         * that may be of any supported kind.
+         * @return the consumer class
+         */
         public Class<? extends Consumer> getConsumer() {
-            if (consumer == null) {
-                throw new IllegalArgumentException("A consumer implementation must be configured");
+            Class<?> type = getConsumerType();
+            if (!Consumer.class.isAssignableFrom(type)) {
+                throw new IllegalStateException(
+                    type.getName() + " is not a " + Consumer.class.getName() + ", use getConsumerType() instead"
+                );
             }
-            return consumer;
+            return type.asSubclass(Consumer.class);
         }
 
         public void setConsumer(Class<? extends Consumer> consumer) {
-            this.consumer = consumer;
+            setConsumerType(consumer);
         }
 
         public void setConsumer(String consumer) {
             try {
-                this.consumer = Class.forName(consumer).asSubclass(Consumer.class);
+                setConsumerType(Class.forName(consumer));
             } catch (ClassNotFoundException e) {
                 throw new RuntimeException(e);
             }
         }
 
+        /**
+         * The consumer implementation, a {@link Consumer}, {@link AsyncConsumer}, {@link TypedConsumer} or
+         * {@link BatchConsumer}.
+         * @return the consumer class
+         */
+        public Class<?> getConsumerType() {
+            if (consumer == null) {
+                throw new IllegalArgumentException("A consumer implementation must be configured");
+            }
+            return consumer;
+        }
+
+        public void setConsumerType(Class<?> consumer) {
+            this.consumer = validateConsumer(consumer);
+        }
+
+        private static Class<?> validateConsumer(Class<?> consumer) {
+            if (consumer != null && CONSUMER_TYPES.stream().noneMatch(type -> type.isAssignableFrom(consumer))) {
+                throw new IllegalArgumentException(consumer.getName() + " must implement one of " + CONSUMER_TYPES);
+            }
+            return consumer;
+        }
+
         public List<EndpointConfig> getEndpoints() {
             return unmodifiableList(endpoints);
         }
@@ -101,12 +254,292 @@ public class SqsModule extends ConfigurableModule<SqsModule.Config> {
         public void setConcurrency(int concurrency) {
             this.concurrency = concurrency;
         }
+
+        /**
+         * Whether the number of pollers per endpoint adapts to the queue backlog, enabled by configuring a
+         * {@link #getMaxConcurrency()} above {@link #getMinConcurrency()}.  {@link #getConcurrency()} is then the
+         * initial number of pollers.
+         * @return true if the number of pollers is adjusted at runtime
+         */
+        public boolean isAutoscaling() {
+            return maxConcurrency > getMinConcurrency();
+        }
+
+        /**
+         * Fewest pollers per endpoint kept running when autoscaling, at least 1.
+         * @return the minimum number of pollers
+         */
+        public int getMinConcurrency() {
+            return Math.max(1, minConcurrency);
+        }
+
+        public void setMinConcurrency(int minConcurrency) {
+            this.minConcurrency = minConcurrency;
+        }
+
+        /**
+         * Most pollers per endpoint started when autoscaling.  Autoscaling is disabled (0) by default.
+         * @return the maximum number of pollers
+         */
+        public int getMaxConcurrency() {
+            return maxConcurrency;
+        }
+
+        public void setMaxConcurrency(int maxConcurrency) {
+            this.maxConcurrency = maxConcurrency;
+        }
+
+        /**
+         * How often the number of pollers is reconsidered when autoscaling.
+         * @return the scaling interval in seconds
+         */
+        public long getScalingIntervalSeconds() {
+            return scalingIntervalSeconds;
+        }
+
+        public void setScalingIntervalSeconds(long scalingIntervalSeconds) {
+            this.scalingIntervalSeconds = scalingIntervalSeconds;
+        }
+
+        /**
+         * Number of messages from a received batch that each poller processes at the same time.  The next receive is
+         * issued as soon as the last message of a batch has started processing.
+         * @return the number of messages processed concurrently per poller
+         */
+        public int getBatchConcurrency() {
+            return batchConcurrency;
+        }
+
+        public void setBatchConcurrency(int batchConcurrency) {
+            this.batchConcurrency = batchConcurrency;
+        }
+
+        /**
+         * Size of the per-poller prefetch buffer.  When greater than zero, each poller keeps receiving into a buffer of
+         * this many messages while {@link #getBatchConcurrency()} workers process them, and only stops receiving while
+         * the buffer is full.  Buffered messages whose visibility timeout runs out are dropped rather than processed.
+         * Disabled (0) by default and not supported for batch consumers.
+         * @return the prefetch buffer capacity in messages
+         */
+        public int getPrefetch() {
+            return prefetch;
+        }
+
+        public void setPrefetch(int prefetch) {
+            this.prefetch = prefetch;
+        }
+
+        /**
+         * Maximum number of consumed messages deleted with a single {@code DeleteMessageBatch} call (1 - 10).
+         * @return the delete batch size
+         */
+        public int getDeleteBatchSize() {
+            return deleteBatchSize;
+        }
+
+        public void setDeleteBatchSize(int deleteBatchSize) {
+            this.deleteBatchSize = deleteBatchSize;
+        }
+
+        /**
+         * How long a consumed message may wait for its delete batch to fill before the batch is sent anyway.
+         * @return the linger time in milliseconds
+         */
+        public long getDeleteBatchLingerMillis() {
+            return deleteBatchLingerMillis;
+        }
+
+        public void setDeleteBatchLingerMillis(long deleteBatchLingerMillis) {
+            this.deleteBatchLingerMillis = deleteBatchLingerMillis;
+        }
+
+        /**
+         * How long the visibility timeout of a message still being consumed keeps being renewed, counted from when it
+         * was received.  Renewals are sent shortly before the timeout runs out and stop once the message is deleted or
+         * its consumer fails.  Disabled (0) by default.
+         * @return the maximum time a message is kept invisible in seconds
+         */
+        public long getMaxVisibilityExtensionSeconds() {
+            return maxVisibilityExtensionSeconds;
+        }
+
+        public void setMaxVisibilityExtensionSeconds(long maxVisibilityExtensionSeconds) {
+            this.maxVisibilityExtensionSeconds = maxVisibilityExtensionSeconds;
+        }
+
+        /**
+         * How messages whose consumer failed are redelivered.  By default they become visible again once their
+         * visibility timeout runs out.
+         * @return the failure policy
+         */
+        public FailurePolicy getFailurePolicy() {
+            return failurePolicy;
+        }
+
+        public void setFailurePolicy(FailurePolicy failurePolicy) {
+            this.failurePolicy = failurePolicy;
+        }
+
+        /**
+         * Redelivery delay after the first failed receive of a message under the {@link FailurePolicy#EXPONENTIAL}
+         * policy, doubled for every further receive.
+         * @return the base redelivery delay in seconds
+         */
+        public long getRedeliveryBaseDelaySeconds() {
+            return redeliveryBaseDelaySeconds;
+        }
+
+        public void setRedeliveryBaseDelaySeconds(long redeliveryBaseDelaySeconds) {
+            this.redeliveryBaseDelaySeconds = redeliveryBaseDelaySeconds;
+        }
+
+        /**
+         * Longest redelivery delay under the {@link FailurePolicy#EXPONENTIAL} policy, at most 12 hours.
+         * @return the maximum redelivery delay in seconds
+         */
+        public long getRedeliveryMaxDelaySeconds() {
+            return redeliveryMaxDelaySeconds;
+        }
+
+        public void setRedeliveryMaxDelaySeconds(long redeliveryMaxDelaySeconds) {
+            this.redeliveryMaxDelaySeconds = redeliveryMaxDelaySeconds;
+        }
+
+        /**
+         * Most messages per second handed to the consumer, shared by all its pollers and endpoints.  Bursts of up to
+         * one second's worth are allowed.  While the limit is reached pollers receive fewer messages and wait before
+         * receiving more.  Unlimited (0) by default.
+         * @return the rate limit in messages per second
+         */
+        public double getMaxMessagesPerSecond() {
+            return maxMessagesPerSecond;
+        }
+
+        public void setMaxMessagesPerSecond(double maxMessagesPerSecond) {
+            this.maxMessagesPerSecond = maxMessagesPerSecond;
+        }
+
+        /**
+         * Most messages held by all pollers of the consumer, from receipt until processed, in addition to the global
+         * {@link Config#getMaxInFlightMessages()}.  Unlimited (0) by default.
+         * @return the consumer's in-flight message limit
+         */
+        public long getMaxInFlightMessages() {
+            return maxInFlightMessages;
+        }
+
+        public void setMaxInFlightMessages(long maxInFlightMessages) {
+            this.maxInFlightMessages = maxInFlightMessages;
+        }
+
+        /**
+         * Most message payload bytes held by all pollers of the consumer, from receipt until processed, in addition
+         * to the global {@link Config#getMaxInFlightBytes()}.  Unlimited (0) by default.
+         * @return the consumer's in-flight payload limit in bytes
+         */
+        public long getMaxInFlightBytes() {
+            return maxInFlightBytes;
+        }
+
+        public void setMaxInFlightBytes(long maxInFlightBytes) {
+            this.maxInFlightBytes = maxInFlightBytes;
+        }
+
+        /**
+         * Wait before the first receive once a poller's circuit breaker has opened, doubled for every further attempt.
+         * @return the base backoff in milliseconds
+         */
+        public long getBackoffBaseMillis() {
+            return backoffBaseMillis;
+        }
+
+        public void setBackoffBaseMillis(long backoffBaseMillis) {
+            this.backoffBaseMillis = backoffBaseMillis;
+        }
+
+        /**
+         * Longest wait between receives while a poller's circuit breaker is open.
+         * @return the maximum backoff in milliseconds
+         */
+        public long getBackoffMaxMillis() {
+            return backoffMaxMillis;
+        }
+
+        public void setBackoffMaxMillis(long backoffMaxMillis) {
+            this.backoffMaxMillis = backoffMaxMillis;
+        }
+
+        /**
+         * How backoff waits are randomized, so that pollers don't all retry at once.  Decorrelated by default.
+         * @return the backoff jitter
+         */
+        public BackoffJitter getBackoffJitter() {
+            return backoffJitter;
+        }
+
+        public void setBackoffJitter(BackoffJitter backoffJitter) {
+            this.backoffJitter = backoffJitter;
+        }
+
+        /**
+         * Whether messages that have been processed before are deleted without handing them to the consumer again.
+         * Processed messages are recorded in the {@link DeduplicationStore} bound in the registry, or in memory if
+         * there is none.  Disabled by default.
+         * @return true if duplicate messages are suppressed
+         */
+        public boolean isDeduplicate() {
+            return deduplicate;
+        }
+
+        public void setDeduplicate(boolean deduplicate) {
+            this.deduplicate = deduplicate;
+        }
+
+        /**
+         * The string message attribute identifying duplicate messages, for producers that send the same payload more
+         * than once.  By default messages are identified by their message id, which only matches redeliveries.
+         * @return the deduplication attribute name, or null
+         */
+        public String getDeduplicationAttribute() {
+            return deduplicationAttribute;
+        }
+
+        public void setDeduplicationAttribute(String deduplicationAttribute) {
+            this.deduplicationAttribute = deduplicationAttribute;
+        }
+
+        /**
+         * How long processed messages are remembered for.  An hour by default.
+         * @return the deduplication window in seconds
+         */
+        public long getDeduplicationTtlSeconds() {
+            return deduplicationTtlSeconds;
+        }
+
+        public void setDeduplicationTtlSeconds(long deduplicationTtlSeconds) {
+            this.deduplicationTtlSeconds = deduplicationTtlSeconds;
+        }
+
+        /**
+         * Most processed messages remembered when no {@link DeduplicationStore} is bound, after which the oldest are
+         * forgotten first.
+         * @return the capacity of the in-memory deduplication store
+         */
+        public int getDeduplicationMaxEntries() {
+            return deduplicationMaxEntries;
+        }
+
+        public void setDeduplicationMaxEntries(int deduplicationMaxEntries) {
+            this.deduplicationMaxEntries = deduplicationMaxEntries;
+        }
     }
 
     public static class EndpointConfig {
         private String queueName;
         private String regionName;
         private String endpoint;
+        private boolean async;
+        private HttpClientConfig http = new HttpClientConfig();
 
         public String getQueueName() {
             return queueName;
@@ -128,6 +561,14 @@ public class SqsModule extends ConfigurableModule<SqsModule.Config> {
             return Optional.ofNullable(regionName);
         }
 
+        /**
+         * Whether the queue is a FIFO queue, as identified by the {@code .fifo} suffix SQS requires of their names.
+         * @return true for FIFO queues
+         */
+        public boolean isFifo() {
+            return queueName != null && queueName.endsWith(".fifo");
+        }
+
         public String getEndpoint() {
             return endpoint;
         }
@@ -139,5 +580,29 @@ public class SqsModule extends ConfigurableModule<SqsModule.Config> {
         public Optional<String> endpoint() {
             return Optional.ofNullable(endpoint);
         }
+
+        /**
+         * Whether this endpoint is served by a non-blocking {@code SqsAsyncClient} rather than the blocking client.
+         * @return true when the asynchronous client should be used
+         */
+        public boolean isAsync() {
+            return async;
+        }
+
+        public void setAsync(boolean async) {
+            this.async = async;
+        }
+
+        /**
+         * HTTP client settings of this endpoint's client.
+         * @return the HTTP client settings
+         */
+        public HttpClientConfig getHttp() {
+            return http;
+        }
+
+        public void setHttp(HttpClientConfig http) {
+            this.http = http;
+        }
     }
 }
@@ -1,18 +1,140 @@
 package smartthings.ratpack.sqs;
 
+import ratpack.exec.ExecResult;
 import ratpack.exec.Promise;
+import ratpack.exec.util.ParallelBatch;
+import software.amazon.awssdk.awscore.exception.AwsServiceException;
 import software.amazon.awssdk.services.sqs.model.*;
 
+import java.util.ArrayList;
+import java.util.List;
+import java.util.stream.Collectors;
+
 /**
- * Supported AWS SQS operations.
+ * Supported AWS SQS operations.  The batch and queue attribute operations have defaults so that implementations
+ * written against the original operations keep working: batches fall back to one call per entry, and operations
+ * without a single-message counterpart fail with an {@link UnsupportedOperationException}.
  */
 public interface SqsService {
 
     Promise<DeleteMessageResponse> deleteMessage(DeleteMessageRequest request);
 
+    /**
+     * Deletes a batch of messages.  By default each entry is deleted with its own {@link #deleteMessage} call, and
+     * entries whose call fails are reported as failed.
+     * @param request The batch of messages to delete
+     * @return a promise for the outcome of each entry
+     */
+    default Promise<DeleteMessageBatchResponse> deleteMessageBatch(DeleteMessageBatchRequest request) {
+        List<Promise<DeleteMessageResponse>> deletes = request.entries().stream()
+            .map(entry -> deleteMessage(DeleteMessageRequest.builder()
+                .queueUrl(request.queueUrl())
+                .receiptHandle(entry.receiptHandle())
+                .build()))
+            .collect(Collectors.toList());
+        return ParallelBatch.of(deletes).yieldAll().map(results -> {
+            List<DeleteMessageBatchResultEntry> successful = new ArrayList<>();
+            List<BatchResultErrorEntry> failed = new ArrayList<>();
+            for (int i = 0; i < results.size(); i++) {
+                String id = request.entries().get(i).id();
+                if (results.get(i).isError()) {
+                    failed.add(failedEntry(id, results.get(i)));
+                } else {
+                    successful.add(DeleteMessageBatchResultEntry.builder().id(id).build());
+                }
+            }
+            return DeleteMessageBatchResponse.builder()
+                .successful(successful)
+                .failed(failed)
+                .build();
+        });
+    }
+
     Promise<SendMessageResponse> sendMessage(SendMessageRequest request);
 
+    /**
+     * Sends a batch of messages.  By default each entry is sent with its own {@link #sendMessage} call, and entries
+     * whose call fails are reported as failed.
+     * @param request The batch of messages to send
+     * @return a promise for the outcome of each entry
+     */
+    default Promise<SendMessageBatchResponse> sendMessageBatch(SendMessageBatchRequest request) {
+        List<Promise<SendMessageResponse>> sends = request.entries().stream()
+            .map(entry -> sendMessage(SendMessageRequest.builder()
+                .queueUrl(request.queueUrl())
+                .messageBody(entry.messageBody())
+                .delaySeconds(entry.delaySeconds())
+                .messageAttributes(entry.messageAttributes())
+                .messageGroupId(entry.messageGroupId())
+                .messageDeduplicationId(entry.messageDeduplicationId())
+                .build()))
+            .collect(Collectors.toList());
+        return ParallelBatch.of(sends).yieldAll().map(results -> {
+            List<SendMessageBatchResultEntry> successful = new ArrayList<>();
+            List<BatchResultErrorEntry> failed = new ArrayList<>();
+            for (int i = 0; i < results.size(); i++) {
+                String id = request.entries().get(i).id();
+                if (results.get(i).isError()) {
+                    failed.add(failedEntry(id, results.get(i)));
+                } else {
+                    SendMessageResponse sent = results.get(i).getValue();
+                    successful.add(SendMessageBatchResultEntry.builder()
+                        .id(id)
+                        .messageId(sent.messageId())
+                        .md5OfMessageBody(sent.md5OfMessageBody())
+                        .md5OfMessageAttributes(sent.md5OfMessageAttributes())
+                        .sequenceNumber(sent.sequenceNumber())
+                        .build());
+                }
+            }
+            return SendMessageBatchResponse.builder()
+                .successful(successful)
+                .failed(failed)
+                .build();
+        });
+    }
+
     Promise<ReceiveMessageResponse> receiveMessage(ReceiveMessageRequest request);
 
     Promise<GetQueueUrlResponse> getQueueUrl(String queueName);
+
+    /**
+     * Reads attributes of a queue.  Not supported by default.
+     * @param request The queue and attributes to read
+     * @return a promise for the attributes
+     */
+    default Promise<GetQueueAttributesResponse> getQueueAttributes(GetQueueAttributesRequest request) {
+        return Promise.error(new UnsupportedOperationException(
+            getClass().getName() + " does not support getQueueAttributes"
+        ));
+    }
+
+    /**
+     * Changes the visibility timeout of a batch of messages.  Not supported by default.
+     * @param request The messages and their new visibility timeouts
+     * @return a promise for the outcome of each entry
+     */
+    default Promise<ChangeMessageVisibilityBatchResponse> changeMessageVisibilityBatch(
+        ChangeMessageVisibilityBatchRequest request
+    ) {
+        return Promise.error(new UnsupportedOperationException(
+            getClass().getName() + " does not support changeMessageVisibilityBatch"
+        ));
+    }
+
+    private static BatchResultErrorEntry failedEntry(String id, ExecResult<?> result) {
+        Throwable error = result.getThrowable();
+        BatchResultErrorEntry.Builder entry = BatchResultErrorEntry.builder()
+            .id(id)
+            .message(error.getMessage());
+        if (error instanceof AwsServiceException) {
+            AwsServiceException serviceError = (AwsServiceException) error;
+            entry.code(serviceError.awsErrorDetails() == null ? null : serviceError.awsErrorDetails().errorCode())
+                .senderFault(serviceError.statusCode() < 500);
+        } else {
+            entry.code(error.getClass().getSimpleName())
+                .senderFault(false);
+        }
+        return entry.build();
+    }
 }
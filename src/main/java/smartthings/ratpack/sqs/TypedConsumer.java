@@ -0,0 +1,47 @@
+package smartthings.ratpack.sqs;
+
+import ratpack.exec.Operation;
+import software.amazon.awssdk.services.sqs.model.Message;
+import software.amazon.awssdk.services.sqs.model.ReceiveMessageRequest;
+
+/**
+ * Interface for creating a non-blocking SQS Consumer that is handed decoded payloads.  Message bodies are decoded into
+ * {@link #getPayloadType()} by the registered {@link MessageCodec} before {@link #consume(Object, Message)} is called,
+ * and messages that cannot be decoded fail like any other consumer error.
+ * @param <T> The payload type
+ */
+public interface TypedConsumer<T> {
+
+    /**
+     * Invoked upon message receipt from SQS.
+     * @param payload The decoded message payload
+     * @param message The SQS message the payload was decoded from
+     * @return an operation that completes once the message has been handled
+     */
+    Operation consume(T payload, Message message);
+
+    /**
+     * The type message payloads are decoded into.
+     * @return the payload type
+     */
+    Class<T> getPayloadType();
+
+    /**
+     * Override for queues subscribed to an SNS topic without raw message delivery, to decode the payload from the
+     * {@code Message} field of the notification envelope.
+     * @return true if message bodies are SNS notifications
+     */
+    default boolean isSnsEnvelope() {
+        return false;
+    }
+
+    /**
+     * Override to provide defaults to the sqs message request.
+     * @return a ReceiveMessageRequest with a default wait time
+     */
+    default ReceiveMessageRequest getReceiveMessageRequest() {
+        return ReceiveMessageRequest.builder()
+            .waitTimeSeconds(20)
+            .build();
+    }
+}
@@ -0,0 +1,28 @@
+package smartthings.ratpack.sqs.dedup;
+
+import ratpack.exec.Operation;
+import ratpack.exec.Promise;
+
+import java.time.Duration;
+
+/**
+ * Remembers which messages have been processed, so that consumers with deduplication enabled can delete redelivered
+ * copies instead of processing them again.  Implementations are shared by every consumer and must be thread safe.
+ */
+public interface DeduplicationStore {
+
+    /**
+     * Whether a message has been processed within the time it is remembered for.
+     * @param key The deduplication key of the message
+     * @return a promise for true if the message has been processed
+     */
+    Promise<Boolean> contains(String key);
+
+    /**
+     * Records a message as processed.
+     * @param key The deduplication key of the message
+     * @param ttl How long to remember the message for
+     * @return the operation recording the message
+     */
+    Operation add(String key, Duration ttl);
+}
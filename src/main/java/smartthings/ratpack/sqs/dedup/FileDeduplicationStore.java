@@ -0,0 +1,115 @@
+package smartthings.ratpack.sqs.dedup;
+
+import ratpack.exec.Blocking;
+import ratpack.exec.Operation;
+
+import java.io.IOException;
+import java.io.UncheckedIOException;
+import java.io.UnsupportedEncodingException;
+import java.net.URLDecoder;
+import java.net.URLEncoder;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardCopyOption;
+import java.nio.file.StandardOpenOption;
+import java.time.Clock;
+import java.time.Duration;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Map;
+
+/**
+ * An {@link InMemoryDeduplicationStore} that also appends every recorded key to a local file, so that processed
+ * messages are still recognized after a restart.  The file is read back when the store is created and rewritten with
+ * only the live keys once it has grown to twice the capacity of the store.
+ */
+public class FileDeduplicationStore extends InMemoryDeduplicationStore {
+
+    private static final String UTF_8 = StandardCharsets.UTF_8.name();
+
+    private final Path file;
+    private final Object lock = new Object();
+    private int lines;
+
+    public FileDeduplicationStore(Path file, int maxEntries) {
+        this(file, maxEntries, Clock.systemUTC());
+    }
+
+    public FileDeduplicationStore(Path file, int maxEntries, Clock clock) {
+        super(maxEntries, clock);
+        this.file = file;
+        load();
+    }
+
+    @Override
+    public Operation add(String key, Duration ttl) {
+        long expiresAt = expiryOf(ttl);
+        return Blocking.op(() -> {
+            record(key, expiresAt);
+            append(key, expiresAt);
+        });
+    }
+
+    public Path getFile() {
+        return file;
+    }
+
+    private void load() {
+        if (!Files.exists(file)) {
+            return;
+        }
+        try {
+            for (String line : Files.readAllLines(file, StandardCharsets.UTF_8)) {
+                int separator = line.indexOf(' ');
+                try {
+                    record(URLDecoder.decode(line.substring(separator + 1), UTF_8),
+                        Long.parseLong(line.substring(0, separator)));
+                } catch (IllegalArgumentException | StringIndexOutOfBoundsException e) {
+                    // A line cut short by a crash is skipped rather than failing the whole store.
+                    continue;
+                }
+            }
+            compact();
+        } catch (IOException e) {
+            throw new UncheckedIOException("Failed to read deduplication store " + file, e);
+        }
+    }
+
+    private void append(String key, long expiresAt) throws IOException {
+        synchronized (lock) {
+            if (file.getParent() != null) {
+                Files.createDirectories(file.getParent());
+            }
+            Files.write(
+                file,
+                line(key, expiresAt).getBytes(StandardCharsets.UTF_8),
+                StandardOpenOption.CREATE, StandardOpenOption.APPEND
+            );
+            if (++lines >= 2 * getMaxEntries()) {
+                compact();
+            }
+        }
+    }
+
+    private void compact() throws IOException {
+        synchronized (lock) {
+            Map<String, Long> live = snapshot();
+            List<String> content = new ArrayList<>(live.size());
+            live.forEach((key, expiresAt) -> content.add(line(key, expiresAt).trim()));
+            Path temporary = file.resolveSibling(file.getFileName() + ".tmp");
+            Files.write(temporary, content, StandardCharsets.UTF_8);
+            Files.move(temporary, file, StandardCopyOption.ATOMIC_MOVE, StandardCopyOption.REPLACE_EXISTING);
+            lines = content.size();
+        }
+    }
+
+    private static String line(String key, long expiresAt) {
+        try {
+            // Keys are encoded so that attribute values with spaces or line breaks stay on one line.
+            return expiresAt + " " + URLEncoder.encode(key, UTF_8) + "\n";
+        } catch (UnsupportedEncodingException e) {
+            throw new UncheckedIOException(e);
+        }
+    }
+}
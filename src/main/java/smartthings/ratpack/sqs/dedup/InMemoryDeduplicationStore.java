@@ -0,0 +1,101 @@
+package smartthings.ratpack.sqs.dedup;
+
+import ratpack.exec.Operation;
+import ratpack.exec.Promise;
+
+import java.time.Clock;
+import java.time.Duration;
+import java.util.Iterator;
+import java.util.LinkedHashMap;
+import java.util.Map;
+
+/**
+ * A {@link DeduplicationStore} holding up to a fixed number of keys in memory.  Keys are forgotten once their time to
+ * live has passed, and the oldest keys are evicted first when the store is full.
+ */
+public class InMemoryDeduplicationStore implements DeduplicationStore {
+
+    private final int maxEntries;
+    private final Clock clock;
+    private final LinkedHashMap<String, Long> entries = new LinkedHashMap<>();
+
+    public InMemoryDeduplicationStore(int maxEntries) {
+        this(maxEntries, Clock.systemUTC());
+    }
+
+    public InMemoryDeduplicationStore(int maxEntries, Clock clock) {
+        if (maxEntries < 1) {
+            throw new IllegalArgumentException("A deduplication store requires room for at least 1 entry");
+        }
+        this.maxEntries = maxEntries;
+        this.clock = clock;
+    }
+
+    @Override
+    public Promise<Boolean> contains(String key) {
+        return Promise.sync(() -> isRecorded(key));
+    }
+
+    @Override
+    public Operation add(String key, Duration ttl) {
+        return Operation.of(() -> record(key, expiryOf(ttl)));
+    }
+
+    public synchronized int size() {
+        return entries.size();
+    }
+
+    protected synchronized boolean isRecorded(String key) {
+        Long expiresAt = entries.get(key);
+        if (expiresAt == null) {
+            return false;
+        }
+        if (expiresAt <= clock.millis()) {
+            entries.remove(key);
+            return false;
+        }
+        return true;
+    }
+
+    /**
+     * Records a key, evicting expired keys from the head of the store and then the oldest ones while it is full.
+     * @param key The deduplication key
+     * @param expiresAt The epoch millisecond at which the key is forgotten
+     */
+    protected synchronized void record(String key, long expiresAt) {
+        // Re-inserting moves the key to the tail, keeping the map ordered by insertion.
+        entries.remove(key);
+        entries.put(key, expiresAt);
+        long now = clock.millis();
+        Iterator<Map.Entry<String, Long>> eldest = entries.entrySet().iterator();
+        while (eldest.hasNext()) {
+            Map.Entry<String, Long> entry = eldest.next();
+            if (entries.size() <= maxEntries && entry.getValue() > now) {
+                break;
+            }
+            eldest.remove();
+        }
+    }
+
+    /**
+     * @return a copy of the unexpired keys and their expiry, oldest first
+     */
+    protected synchronized Map<String, Long> snapshot() {
+        long now = clock.millis();
+        Map<String, Long> live = new LinkedHashMap<>();
+        entries.forEach((key, expiresAt) -> {
+            if (expiresAt > now) {
+                live.put(key, expiresAt);
+            }
+        });
+        return live;
+    }
+
+    protected long expiryOf(Duration ttl) {
+        return clock.millis() + ttl.toMillis();
+    }
+
+    protected int getMaxEntries() {
+        return maxEntries;
+    }
+}
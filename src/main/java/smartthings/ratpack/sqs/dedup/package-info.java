@@ -0,0 +1,4 @@
+/**
+ * Suppression of messages that SQS delivers more than once.
+ */
+package smartthings.ratpack.sqs.dedup;
@@ -0,0 +1,216 @@
+package smartthings.ratpack.sqs.internal.batch;
+
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import ratpack.exec.Downstream;
+import ratpack.exec.ExecController;
+import ratpack.exec.Operation;
+import ratpack.exec.Promise;
+
+import java.time.Duration;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Accumulates entries per queue URL and hands them off as a batch once the batch is full, once it would exceed its
+ * payload limit, or once the linger time has passed since the first entry of the batch was added.  Batches are sent
+ * from a forked execution so callers never wait on the batch call itself.
+ *
+ * @param <E> the type of entry being batched
+ */
+public abstract class BatchAccumulator<E> {
+
+    /**
+     * Maximum number of entries accepted by any SQS batch API.
+     */
+    public static final int MAX_ENTRIES = 10;
+
+    private static final Logger LOG = LoggerFactory.getLogger(BatchAccumulator.class);
+
+    private final int maxEntries;
+    private final long maxBytes;
+    private final Duration linger;
+    private final Map<String, Buffer<E>> buffers = new ConcurrentHashMap<>();
+    private final List<Downstream<? super Void>> idleWaiters = new ArrayList<>();
+    private int sending;
+
+    protected BatchAccumulator(int maxEntries, long maxBytes, Duration linger) {
+        if (maxEntries < 1 || maxEntries > MAX_ENTRIES) {
+            throw new IllegalArgumentException("Batch size must be between 1 and " + MAX_ENTRIES);
+        }
+        this.maxEntries = maxEntries;
+        this.maxBytes = maxBytes;
+        this.linger = linger;
+    }
+
+    /**
+     * Adds an entry to the pending batch for a queue.  Must be called from a Ratpack managed thread.
+     * @param queueUrl The queue the entry belongs to
+     * @param entry The entry to batch
+     */
+    public void add(String queueUrl, E entry) {
+        ExecController controller = ExecController.require();
+        long size = sizeOf(entry);
+        List<List<E>> ready = new ArrayList<>(2);
+        boolean startLinger = false;
+        long generation;
+
+        Buffer<E> buffer = buffers.computeIfAbsent(queueUrl, url -> new Buffer<>());
+        synchronized (buffer) {
+            if (!buffer.entries.isEmpty() && buffer.bytes + size > maxBytes) {
+                ready.add(buffer.drain());
+            }
+            buffer.entries.add(entry);
+            buffer.bytes += size;
+            if (buffer.entries.size() >= maxEntries) {
+                ready.add(buffer.drain());
+            } else if (buffer.entries.size() == 1) {
+                startLinger = true;
+            }
+            generation = buffer.generation;
+        }
+
+        ready.forEach(batch -> dispatch(controller, queueUrl, batch));
+        if (startLinger) {
+            controller.getExecutor().schedule(
+                () -> flush(controller, queueUrl, generation),
+                linger.toNanos(),
+                TimeUnit.NANOSECONDS
+            );
+        }
+    }
+
+    /**
+     * Sends whatever is pending for a queue without waiting for the linger time to pass.
+     * Must be called from a Ratpack managed thread.
+     * @param queueUrl The queue to flush
+     */
+    public void flush(String queueUrl) {
+        Buffer<E> buffer = buffers.get(queueUrl);
+        if (buffer == null) {
+            return;
+        }
+        List<E> batch;
+        synchronized (buffer) {
+            batch = buffer.drain();
+        }
+        if (!batch.isEmpty()) {
+            dispatch(ExecController.require(), queueUrl, batch);
+        }
+    }
+
+    /**
+     * Sends whatever is pending for every queue and waits until all batches have been handled, including batches that
+     * were already being sent and entries re-added by them for another attempt.
+     * @return an operation completing once nothing is pending or being sent
+     */
+    public Operation flushAll() {
+        return Promise.<Void>flatten(() -> {
+            ExecController controller = ExecController.require();
+            buffers.forEach((queueUrl, buffer) -> {
+                List<E> batch;
+                synchronized (buffer) {
+                    batch = buffer.drain();
+                }
+                if (!batch.isEmpty()) {
+                    dispatch(controller, queueUrl, batch);
+                }
+            });
+            return awaitIdle()
+                .flatMap(v -> isPending() ? flushAll().promise() : Promise.value(null));
+        }).operation();
+    }
+
+    /**
+     * Sends a batch of entries for a queue.  Invoked within its own execution.
+     * @param queueUrl The queue the entries belong to
+     * @param entries Between one and the configured maximum number of entries
+     * @return an operation completing once the batch has been handled
+     */
+    protected abstract Operation send(String queueUrl, List<E> entries);
+
+    /**
+     * The payload size an entry counts against the batch byte limit.
+     * @param entry The entry being added
+     * @return the size of the entry in bytes
+     */
+    protected long sizeOf(E entry) {
+        return 0;
+    }
+
+    private void flush(ExecController controller, String queueUrl, long generation) {
+        Buffer<E> buffer = buffers.get(queueUrl);
+        List<E> batch;
+        synchronized (buffer) {
+            if (buffer.generation != generation) {
+                // The batch this timer was started for has already been sent.
+                return;
+            }
+            batch = buffer.drain();
+        }
+        if (!batch.isEmpty()) {
+            dispatch(controller, queueUrl, batch);
+        }
+    }
+
+    private void dispatch(ExecController controller, String queueUrl, List<E> batch) {
+        synchronized (idleWaiters) {
+            sending++;
+        }
+        controller.fork()
+            .onError(e -> LOG.error("Failed to send batch of size={} for queue={}", batch.size(), queueUrl, e))
+            .onComplete(execution -> sent())
+            .start(execution -> send(queueUrl, batch).then());
+    }
+
+    private void sent() {
+        List<Downstream<? super Void>> released = new ArrayList<>();
+        synchronized (idleWaiters) {
+            if (--sending == 0) {
+                released.addAll(idleWaiters);
+                idleWaiters.clear();
+            }
+        }
+        released.forEach(downstream -> downstream.success(null));
+    }
+
+    private Promise<Void> awaitIdle() {
+        return Promise.async(downstream -> {
+            boolean idle;
+            synchronized (idleWaiters) {
+                idle = sending == 0;
+                if (!idle) {
+                    idleWaiters.add(downstream);
+                }
+            }
+            if (idle) {
+                downstream.success(null);
+            }
+        });
+    }
+
+    private boolean isPending() {
+        return buffers.values().stream().anyMatch(buffer -> {
+            synchronized (buffer) {
+                return !buffer.entries.isEmpty();
+            }
+        });
+    }
+
+    private static final class Buffer<E> {
+        private List<E> entries = new ArrayList<>(MAX_ENTRIES);
+        private long bytes;
+        private long generation;
+
+        private List<E> drain() {
+            List<E> batch = entries;
+            entries = new ArrayList<>(MAX_ENTRIES);
+            bytes = 0;
+            generation++;
+            return batch;
+        }
+    }
+}
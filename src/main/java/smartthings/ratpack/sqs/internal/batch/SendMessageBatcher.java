@@ -0,0 +1,149 @@
+package smartthings.ratpack.sqs.internal.batch;
+
+import ratpack.exec.Downstream;
+import ratpack.exec.Operation;
+import ratpack.exec.Promise;
+import smartthings.ratpack.sqs.SqsService;
+import smartthings.ratpack.sqs.internal.exception.BatchEntryException;
+import software.amazon.awssdk.core.SdkBytes;
+import software.amazon.awssdk.services.sqs.model.*;
+
+import java.nio.charset.StandardCharsets;
+import java.time.Duration;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Map;
+
+/**
+ * Gathers concurrent sends to the same queue into {@code SendMessageBatch} requests, packing entries so that no batch
+ * exceeds ten entries or the SQS payload limit.  Each caller is completed with its own result entry or failure.
+ */
+public class SendMessageBatcher extends BatchAccumulator<SendMessageBatcher.Entry> {
+
+    /**
+     * Maximum total payload of a single SQS send, whether batched or not.
+     */
+    public static final long MAX_PAYLOAD_BYTES = 256 * 1024;
+
+    private final SqsService sqs;
+
+    public SendMessageBatcher(SqsService sqs, Duration linger) {
+        super(MAX_ENTRIES, MAX_PAYLOAD_BYTES, linger);
+        this.sqs = sqs;
+    }
+
+    /**
+     * Queues a message to be sent as part of the next batch for its queue.
+     * @param request The message to send
+     * @return a promise for the result of this message alone
+     */
+    public Promise<SendMessageResponse> send(SendMessageRequest request) {
+        Entry entry = new Entry(request);
+        if (entry.size > MAX_PAYLOAD_BYTES) {
+            // Will be rejected by SQS regardless, let it fail on its own rather than with a batch.
+            return sqs.sendMessage(request);
+        }
+        return Promise.async(downstream -> {
+            entry.downstream = downstream;
+            add(request.queueUrl(), entry);
+        });
+    }
+
+    @Override
+    protected long sizeOf(Entry entry) {
+        return entry.size;
+    }
+
+    @Override
+    protected Operation send(String queueUrl, List<Entry> entries) {
+        List<SendMessageBatchRequestEntry> requestEntries = new ArrayList<>(entries.size());
+        for (int i = 0; i < entries.size(); i++) {
+            SendMessageRequest request = entries.get(i).request;
+            requestEntries.add(SendMessageBatchRequestEntry.builder()
+                .id(Integer.toString(i))
+                .messageBody(request.messageBody())
+                .delaySeconds(request.delaySeconds())
+                .messageAttributes(request.messageAttributes())
+                .messageSystemAttributesWithStrings(request.messageSystemAttributesAsStrings())
+                .messageDeduplicationId(request.messageDeduplicationId())
+                .messageGroupId(request.messageGroupId())
+                .build());
+        }
+        SendMessageBatchRequest request = SendMessageBatchRequest.builder()
+            .queueUrl(queueUrl)
+            .entries(requestEntries)
+            .build();
+
+        return sqs.sendMessageBatch(request)
+            .map(response -> {
+                response.successful().forEach(result ->
+                    entries.get(Integer.parseInt(result.id())).downstream.success(toResponse(result))
+                );
+                response.failed().forEach(failure ->
+                    entries.get(Integer.parseInt(failure.id())).downstream.error(new BatchEntryException(
+                        failure.code(), failure.message(), Boolean.TRUE.equals(failure.senderFault())
+                    ))
+                );
+                return response;
+            })
+            .mapError(e -> {
+                entries.forEach(entry -> entry.downstream.error(e));
+                return null;
+            })
+            .operation();
+    }
+
+    private static SendMessageResponse toResponse(SendMessageBatchResultEntry result) {
+        return SendMessageResponse.builder()
+            .messageId(result.messageId())
+            .md5OfMessageBody(result.md5OfMessageBody())
+            .md5OfMessageAttributes(result.md5OfMessageAttributes())
+            .md5OfMessageSystemAttributes(result.md5OfMessageSystemAttributes())
+            .sequenceNumber(result.sequenceNumber())
+            .build();
+    }
+
+    /**
+     * Size of a message as counted by SQS: the body plus the name, type and value of every message attribute.
+     */
+    static long payloadSize(SendMessageRequest request) {
+        return payloadSize(request.messageBody(), request.messageAttributes());
+    }
+
+    /**
+     * Size of a message as counted by SQS: the body plus the name, type and value of every message attribute.
+     * @param body The message body
+     * @param attributes The message attributes
+     * @return the size in bytes
+     */
+    public static long payloadSize(String body, Map<String, MessageAttributeValue> attributes) {
+        long size = utf8Length(body);
+        for (Map.Entry<String, MessageAttributeValue> attribute : attributes.entrySet()) {
+            MessageAttributeValue value = attribute.getValue();
+            size += utf8Length(attribute.getKey()) + utf8Length(value.dataType()) + utf8Length(value.stringValue());
+            SdkBytes binary = value.binaryValue();
+            if (binary != null) {
+                size += binary.asByteBuffer().remaining();
+            }
+        }
+        return size;
+    }
+
+    private static long utf8Length(String value) {
+        return value == null ? 0 : value.getBytes(StandardCharsets.UTF_8).length;
+    }
+
+    /**
+     * A pending send and the caller waiting on it.
+     */
+    static final class Entry {
+        private final SendMessageRequest request;
+        private final long size;
+        private Downstream<? super SendMessageResponse> downstream;
+
+        Entry(SendMessageRequest request) {
+            this.request = request;
+            this.size = payloadSize(request);
+        }
+    }
+}
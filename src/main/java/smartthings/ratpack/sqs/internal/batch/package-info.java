@@ -0,0 +1,4 @@
+/**
+ * Support for accumulating SQS operations into batch API calls.
+ */
+package smartthings.ratpack.sqs.internal.batch;
@@ -0,0 +1,91 @@
+package smartthings.ratpack.sqs.internal.consumer;
+
+import ratpack.exec.Downstream;
+import ratpack.exec.Promise;
+
+import java.util.ArrayDeque;
+import java.util.ArrayList;
+import java.util.Deque;
+import java.util.List;
+
+/**
+ * A counting semaphore whose acquirers wait on a promise rather than a thread.  Waiters are resumed in arrival order
+ * as permits are released.
+ */
+public class AsyncSemaphore {
+
+    private final int permits;
+    private final Deque<Waiter> waiters = new ArrayDeque<>();
+    private int available;
+
+    public AsyncSemaphore(int permits) {
+        if (permits < 1) {
+            throw new IllegalArgumentException("A semaphore requires at least 1 permit");
+        }
+        this.permits = permits;
+        this.available = permits;
+    }
+
+    public Promise<Void> acquire() {
+        return acquire(1);
+    }
+
+    /**
+     * Waits until the given number of permits are available and takes them.  Requests for more permits than the
+     * semaphore holds are capped at its size.
+     * @param count The number of permits to take
+     * @return a promise completing once the permits have been taken
+     */
+    public Promise<Void> acquire(int count) {
+        int wanted = Math.min(count, permits);
+        return Promise.async(downstream -> {
+            boolean granted;
+            synchronized (this) {
+                granted = waiters.isEmpty() && available >= wanted;
+                if (granted) {
+                    available -= wanted;
+                } else {
+                    waiters.add(new Waiter(wanted, downstream));
+                }
+            }
+            if (granted) {
+                downstream.success(null);
+            }
+        });
+    }
+
+    public void release() {
+        release(1);
+    }
+
+    public void release(int count) {
+        List<Downstream<? super Void>> resumed = new ArrayList<>();
+        synchronized (this) {
+            available = Math.min(permits, available + count);
+            while (!waiters.isEmpty() && waiters.peek().count <= available) {
+                Waiter waiter = waiters.poll();
+                available -= waiter.count;
+                resumed.add(waiter.downstream);
+            }
+        }
+        resumed.forEach(downstream -> downstream.success(null));
+    }
+
+    public synchronized int available() {
+        return available;
+    }
+
+    public int size() {
+        return permits;
+    }
+
+    private static final class Waiter {
+        private final int count;
+        private final Downstream<? super Void> downstream;
+
+        private Waiter(int count, Downstream<? super Void> downstream) {
+            this.count = count;
+            this.downstream = downstream;
+        }
+    }
+}
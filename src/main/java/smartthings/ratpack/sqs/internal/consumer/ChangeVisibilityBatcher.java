@@ -0,0 +1,85 @@
+package smartthings.ratpack.sqs.internal.consumer;
+
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import ratpack.exec.Operation;
+import smartthings.ratpack.sqs.SqsService;
+import smartthings.ratpack.sqs.internal.batch.BatchAccumulator;
+import software.amazon.awssdk.services.sqs.model.ChangeMessageVisibilityBatchRequest;
+import software.amazon.awssdk.services.sqs.model.ChangeMessageVisibilityBatchRequestEntry;
+import software.amazon.awssdk.services.sqs.model.Message;
+
+import java.time.Duration;
+import java.util.ArrayList;
+import java.util.List;
+
+/**
+ * Collects visibility timeout changes of received messages and applies them with
+ * {@code ChangeMessageVisibilityBatch}.  Failed changes are logged but not retried, as the message is either gone
+ * already or will simply become visible again.
+ */
+public class ChangeVisibilityBatcher extends BatchAccumulator<ChangeVisibilityBatcher.Entry> {
+
+    private static final Logger LOG = LoggerFactory.getLogger(ChangeVisibilityBatcher.class);
+
+    private final SqsService sqs;
+
+    public ChangeVisibilityBatcher(SqsService sqs, Duration linger) {
+        super(MAX_ENTRIES, Long.MAX_VALUE, linger);
+        this.sqs = sqs;
+    }
+
+    /**
+     * Schedules a visibility timeout change.  Must be called from a Ratpack managed thread.
+     * @param queueUrl The queue the message was received from
+     * @param message The message to change
+     * @param visibilityTimeout The new visibility timeout, counted from when the change is applied
+     */
+    public void change(String queueUrl, Message message, Duration visibilityTimeout) {
+        add(queueUrl, new Entry(message, (int) visibilityTimeout.getSeconds()));
+    }
+
+    @Override
+    protected Operation send(String queueUrl, List<Entry> entries) {
+        List<ChangeMessageVisibilityBatchRequestEntry> requestEntries = new ArrayList<>(entries.size());
+        for (int i = 0; i < entries.size(); i++) {
+            requestEntries.add(ChangeMessageVisibilityBatchRequestEntry.builder()
+                .id(Integer.toString(i))
+                .receiptHandle(entries.get(i).message.receiptHandle())
+                .visibilityTimeout(entries.get(i).visibilityTimeout)
+                .build());
+        }
+        ChangeMessageVisibilityBatchRequest request = ChangeMessageVisibilityBatchRequest.builder()
+            .queueUrl(queueUrl)
+            .entries(requestEntries)
+            .build();
+
+        return sqs.changeMessageVisibilityBatch(request)
+            .map(response -> {
+                response.failed().forEach(failure -> LOG.warn(
+                    "Unable to change visibility of message={} in queue={} code={} reason={}",
+                    entries.get(Integer.parseInt(failure.id())).message.messageId(), queueUrl,
+                    failure.code(), failure.message()
+                ));
+                return response;
+            })
+            .mapError(e -> {
+                LOG.warn("Failed to change visibility of batch of size={} in queue={}", entries.size(), queueUrl, e);
+                return null;
+            })
+            .operation();
+    }
+
+    /**
+     * A pending visibility timeout change.
+     */
+    static final class Entry {
+        private final Message message;
+        private final int visibilityTimeout;
+
+        Entry(Message message, int visibilityTimeout) {
+            this.message = message;
+            this.visibilityTimeout = visibilityTimeout;
+        }
+    }
+}
@@ -4,20 +4,32 @@ import io.github.resilience4j.circuitbreaker.CircuitBreaker;
 import io.github.resilience4j.ratpack.circuitbreaker.CircuitBreakerTransformer;
 import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
-import ratpack.exec.Blocking;
+import ratpack.exec.Downstream;
 import ratpack.exec.Execution;
 import ratpack.exec.Operation;
 import ratpack.exec.Promise;
 import ratpack.exec.util.SerialBatch;
 import ratpack.func.Action;
+import ratpack.func.Block;
 import smartthings.ratpack.aws.internal.backoff.ExponentialBackoff;
-import smartthings.ratpack.sqs.Consumer;
+import smartthings.ratpack.sqs.BatchResult;
 import smartthings.ratpack.sqs.SqsModule;
 import smartthings.ratpack.sqs.SqsService;
 import smartthings.ratpack.sqs.internal.exception.ShutdownConsumerException;
+import smartthings.ratpack.sqs.internal.metrics.ConsumerMetrics;
 import software.amazon.awssdk.services.sqs.model.*;
 
+import java.time.Duration;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.HashSet;
+import java.util.LinkedHashMap;
 import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.UUID;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.TimeoutException;
 import java.util.concurrent.atomic.AtomicBoolean;
 import java.util.stream.Collectors;
 
@@ -27,27 +39,74 @@ import java.util.stream.Collectors;
 public class ConsumerAction implements Action<Execution> {
 
     private static final Logger log = LoggerFactory.getLogger(ConsumerAction.class);
+    private static final int MAX_RECEIVE = 10;
+    private static final Duration DEFAULT_VISIBILITY_TIMEOUT = Duration.ofSeconds(30);
+    private static final String MESSAGE_GROUP_ID = MessageSystemAttributeName.MESSAGE_GROUP_ID.toString();
 
     private final SqsService sqs;
-    private final Consumer consumer;
+    private final RegisteredConsumer consumer;
     private final SqsModule.EndpointConfig config;
-    private String sqsQueueUrl;
+    private final DeleteMessageBatcher deleteBatcher;
+    private final VisibilityExtender visibilityExtender;
+    private final FailureHandler failureHandler;
+    private final RateLimiter rateLimiter;
+    private final InFlightBudget budget;
+    private final Deduplicator deduplicator;
+    private final ConsumerMetrics metrics;
+    private String receiveAttemptId;
+    private final AsyncSemaphore inFlight;
+    private final PrefetchBuffer prefetchBuffer;
+    private final AtomicBoolean workersStarted = new AtomicBoolean(false);
+    private final PollerStats stats = new PollerStats();
+    private volatile Duration visibilityTimeout;
     private final CircuitBreaker breaker;
     private final CircuitBreakerTransformer transformer;
-    private final ExponentialBackoff backoff = new ExponentialBackoff();
-    private final Object mutex = new Object();
+    private final ExponentialBackoff backoff;
+    private final List<Downstream<? super Void>> shutdownWaiters = new ArrayList<>();
     private AtomicBoolean shuttingDown = new AtomicBoolean(false);
+    private final AtomicBoolean draining = new AtomicBoolean(false);
     private AtomicBoolean shutdownComplete = new AtomicBoolean(false);
 
     public ConsumerAction(
         SqsService sqs,
-        Consumer consumer,
+        RegisteredConsumer consumer,
         CircuitBreaker breaker,
-        SqsModule.EndpointConfig config
+        SqsModule.ConsumerConfig consumerConfig,
+        SqsModule.EndpointConfig config,
+        DeleteMessageBatcher deleteBatcher,
+        VisibilityExtender visibilityExtender,
+        FailureHandler failureHandler,
+        RateLimiter rateLimiter,
+        InFlightBudget budget,
+        Deduplicator deduplicator,
+        ConsumerMetrics metrics
     ) {
         this.sqs = sqs;
         this.consumer = consumer;
         this.config = config;
+        this.deleteBatcher = deleteBatcher;
+        this.visibilityExtender = visibilityExtender;
+        this.failureHandler = failureHandler;
+        this.rateLimiter = rateLimiter;
+        this.budget = budget;
+        this.deduplicator = deduplicator;
+        this.metrics = metrics;
+        this.inFlight = new AsyncSemaphore(Math.max(1, consumerConfig.getBatchConcurrency()));
+        boolean prefetch = consumerConfig.getPrefetch() > 0 && !consumer.isBatch() && !config.isFifo();
+        if (consumerConfig.getPrefetch() > 0 && !prefetch) {
+            log.warn(
+                "Prefetch is not supported for batch consumers or FIFO queues, ignoring for queue={}.",
+                config.getQueueName()
+            );
+        }
+        this.prefetchBuffer = prefetch ?
+            new PrefetchBuffer(consumerConfig.getPrefetch()) :
+            null;
+        this.backoff = new ExponentialBackoff(
+            Duration.ofMillis(consumerConfig.getBackoffBaseMillis()),
+            Duration.ofMillis(consumerConfig.getBackoffMaxMillis()),
+            consumerConfig.getBackoffJitter()
+        );
         this.breaker = breaker;
         this.transformer = CircuitBreakerTransformer.of(this.breaker);
         this.breaker.getEventPublisher().onStateTransition(event -> {
@@ -59,6 +118,9 @@ public class ConsumerAction implements Action<Execution> {
 
     @Override
     public void execute(Execution execution) throws Exception {
+        if (prefetchBuffer != null && workersStarted.compareAndSet(false, true)) {
+            startWorkers();
+        }
         start()
         .result(r -> {
             Throwable error = r.getThrowable();
@@ -70,19 +132,73 @@ public class ConsumerAction implements Action<Execution> {
                 } else {
                     log.error("Unexpected exception consumer={} terminated.", config.getQueueName(), error);
                 }
-                notifyShutdown();
+                List<Message> dropped = Collections.emptyList();
+                if (prefetchBuffer != null && error instanceof ShutdownConsumerException && !draining.get()) {
+                    // Let the workers finish what is already buffered.
+                    prefetchBuffer.complete();
+                } else if (prefetchBuffer != null) {
+                    dropped = messagesOf(prefetchBuffer.close());
+                }
+                // Wait for messages still being processed before reporting the consumer as stopped.
+                returnToQueue(dropped)
+                    .flatMap(v -> inFlight.acquire(inFlight.size()))
+                    .then(v -> notifyShutdown());
             }
         });
     }
 
     public void shutdown() {
-        this.shuttingDown.set(true);
+        retire();
         awaitShutdown()
-            .then(() ->
+            .then(v ->
                 log.warn("SQS consumer={} shutdown complete.", config.getQueueName())
             );
     }
 
+    /**
+     * Stops receiving and waits for the messages being processed to finish.  Messages that were received but have not
+     * started processing are made visible on the queue again right away instead of being processed.  Deletes and
+     * visibility changes still waiting for their batch to fill are sent before the promise completes.
+     * @param timeout How long to wait for messages being processed
+     * @return a promise that completes once the consumer has stopped, or once the timeout has passed
+     */
+    public Promise<Void> drain(Duration timeout) {
+        draining.set(true);
+        retire();
+        List<Message> buffered = prefetchBuffer == null ?
+            Collections.emptyList() :
+            messagesOf(prefetchBuffer.close());
+        return returnToQueue(buffered)
+            .flatMap(v -> awaitShutdown())
+            .timeout(timeout)
+            .flatMapError(TimeoutException.class, e -> {
+                log.warn(
+                    "SQS consumer={} did not drain within timeout={}, giving up on messages still being processed.",
+                    config.getQueueName(), timeout
+                );
+                return Promise.value(null);
+            })
+            .flatMap(v -> flushBatches());
+    }
+
+    /**
+     * Stops receiving new messages without waiting.  Messages already received are still processed and deleted.
+     */
+    public void retire() {
+        this.shuttingDown.set(true);
+        if (budget != null) {
+            budget.wakeWaiters();
+        }
+    }
+
+    public boolean isShutdownComplete() {
+        return shutdownComplete.get();
+    }
+
+    public PollerStats getStats() {
+        return stats;
+    }
+
     private Promise<Void> start() {
         return poll()
             .flatMapError(e -> {
@@ -96,17 +212,144 @@ public class ConsumerAction implements Action<Execution> {
 
     private Promise<Void> poll() {
         return this.maybeBackoff()
-            .flatMap(v -> this.getReceiveMessageRequest())
-            .flatMap(this::receiveMessage)
-            .flatMap(this::consume)
+            .flatMap(v -> this.maybeThrottle())
+            .flatMap(v -> this.awaitBudget())
+            // A consumer that stopped while waiting must not hold another long poll.
+            .flatMap(v -> this.maybeTriggerShutdown())
+            .flatMap(v -> prefetchBuffer == null ? this.receiveAndDispatch() : this.prefetch())
             .flatMap(v -> this.maybeTriggerShutdown());
     }
 
-    private Promise<String> getQueueUrl() {
-        if (sqsQueueUrl != null) {
-            return Promise.value(sqsQueueUrl);
+    private Promise<Void> receiveAndDispatch() {
+        return this.getReceiveMessageRequest()
+            .flatMap(request -> this.getTrackedVisibilityTimeout(request)
+                .flatMap(timeout -> {
+                    long receivedAt = System.nanoTime();
+                    return this.receiveMessage(request)
+                        .flatMap(response -> this.consume(response, receivedAt, timeout));
+                })
+            );
+    }
+
+    /**
+     * Fills the prefetch buffer, never receiving more messages than it has room for.  Each message is buffered along
+     * with the point at which its visibility timeout runs out.  Nothing is received once the buffer has been closed
+     * or the consumer stopped while waiting for space.
+     */
+    private Promise<Void> prefetch() {
+        return prefetchBuffer.awaitSpace()
+            .flatMap(space -> space == 0 || shuttingDown.get() ?
+                Promise.value(null) :
+                this.prefetch(space));
+    }
+
+    private Promise<Void> prefetch(int space) {
+        return this.getReceiveMessageRequest()
+            .map(request -> limitReceive(request, space))
+            .flatMap(request -> this.getVisibilityTimeout(request)
+                .flatMap(timeout -> {
+                    long receivedAt = System.nanoTime();
+                    return this.receiveMessage(request)
+                        .flatMap(response -> {
+                            if (prefetchBuffer.offer(response.messages(), receivedAt, timeout)) {
+                                return Promise.value(null);
+                            }
+                            // The consumer started draining while the receive was outstanding.
+                            return returnToQueue(response.messages());
+                        });
+                })
+            );
+    }
+
+    private void startWorkers() {
+        for (int i = 0; i < inFlight.size(); i++) {
+            inFlight.acquire().then(v -> work());
         }
+    }
+
+    /**
+     * Runs one iteration of a prefetch worker in its own execution: takes the next buffered message and processes it,
+     * unless it is about to become visible on the queue again.  Workers give up their slot once the buffer is closed.
+     */
+    private void work() {
+        Execution.fork().start(execution ->
+            prefetchBuffer.take().then(next -> {
+                if (!next.isPresent()) {
+                    inFlight.release();
+                    return;
+                }
+                PrefetchBuffer.Entry entry = next.get();
+                Message message = entry.getMessage();
+                if (entry.isStale()) {
+                    log.warn(
+                        "Dropping message={} from queue={}, its visibility timeout expired while buffered.",
+                        message.messageId(), config.getQueueName()
+                    );
+                    release(Collections.singletonList(message));
+                    work();
+                    return;
+                }
+                consume(message, entry.getReceivedAt(), entry.getVisibilityTimeout()).result(result -> {
+                    release(Collections.singletonList(message));
+                    if (result.isError()) {
+                        log.error(
+                            "Failed to consume message. message={}, exception={}",
+                            message, result.getThrowable().getMessage()
+                        );
+                    }
+                    work();
+                });
+            })
+        );
+    }
+
+    private static ReceiveMessageRequest limitReceive(ReceiveMessageRequest request, int space) {
+        int max = request.maxNumberOfMessages() == null ? MAX_RECEIVE : request.maxNumberOfMessages();
+        return request.toBuilder()
+            .maxNumberOfMessages(Math.min(max, space))
+            .build();
+    }
+
+    /**
+     * Resolves the visibility timeout of received messages when it is needed to extend it.
+     */
+    private Promise<Duration> getTrackedVisibilityTimeout(ReceiveMessageRequest request) {
+        return visibilityExtender == null ? Promise.value(null) : getVisibilityTimeout(request);
+    }
 
+    private Promise<Duration> getVisibilityTimeout(ReceiveMessageRequest request) {
+        if (request.visibilityTimeout() != null) {
+            return Promise.value(Duration.ofSeconds(request.visibilityTimeout()));
+        }
+        if (visibilityTimeout != null) {
+            return Promise.value(visibilityTimeout);
+        }
+        GetQueueAttributesRequest attributesRequest = GetQueueAttributesRequest.builder()
+            .queueUrl(request.queueUrl())
+            .attributeNames(QueueAttributeName.VISIBILITY_TIMEOUT)
+            .build();
+        return sqs.getQueueAttributes(attributesRequest)
+            .map(response -> {
+                String timeout = response.attributes().get(QueueAttributeName.VISIBILITY_TIMEOUT);
+                visibilityTimeout = timeout == null ?
+                    DEFAULT_VISIBILITY_TIMEOUT :
+                    Duration.ofSeconds(Long.parseLong(timeout));
+                return visibilityTimeout;
+            })
+            .mapError(UnsupportedOperationException.class, e -> {
+                log.warn(
+                    "Unable to read the visibility timeout of queue={}, assuming timeout={}.",
+                    config.getQueueName(), DEFAULT_VISIBILITY_TIMEOUT
+                );
+                visibilityTimeout = DEFAULT_VISIBILITY_TIMEOUT;
+                return visibilityTimeout;
+            });
+    }
+
+    /**
+     * Resolves the queue URL, served from the {@link QueueUrlCache} of the {@link SqsManager} once known.
+     */
+    private Promise<String> getQueueUrl() {
         String queueName = config.getQueueName();
         if (queueName == null || queueName.isEmpty()) {
             throw new IllegalArgumentException("An SQS Consumer must define a queue in which to poll.");
@@ -116,46 +359,364 @@ public class ConsumerAction implements Action<Execution> {
             .map(GetQueueUrlResponse::queueUrl);
     }
 
-    private Promise<Void> consume(ReceiveMessageResponse result) {
-        List<Promise<Void>> promises = result.messages().stream()
-            .map(this::consume)
-            .collect(Collectors.toList());
+    private Promise<Void> consume(ReceiveMessageResponse result, long receivedAt, Duration visibilityTimeout) {
+        if (consumer.isBatch()) {
+            return result.messages().isEmpty() ?
+                Promise.value(null) :
+                dispatch(result.messages(), receivedAt, visibilityTimeout);
+        }
+
+        List<Promise<Void>> promises = config.isFifo() ?
+            groupsOf(result.messages()).stream()
+                .map(group -> dispatch(group, receivedAt, visibilityTimeout))
+                .collect(Collectors.toList()) :
+            result.messages().stream()
+                .map(message -> dispatch(message, receivedAt, visibilityTimeout))
+                .collect(Collectors.toList());
 
         return SerialBatch.of(promises)
             .yieldAll()
             .flatMap(v -> Promise.value(null));
     }
 
-    private Promise<Void> consume(Message message) {
-        return Operation.of(() -> consumer.consume(message))
-            .promise()
-            .mapError(e -> {
-                log.error("Failed to consume message. message={}, exception={}", message, e.getMessage());
-                throw new RuntimeException(e);
+    /**
+     * Waits for one of the batch concurrency slots to free up and then processes the message in its own execution.
+     * The returned promise completes as soon as processing has started, so the next receive can be issued while the
+     * last messages of a batch are still being consumed.
+     */
+    private Promise<Void> dispatch(Message message, long receivedAt, Duration visibilityTimeout) {
+        List<Message> messages = Collections.singletonList(message);
+        return withSlot(messages, () -> Execution.fork()
+            .onError(e ->
+                log.error("Failed to consume message. message={}, exception={}", message, e.getMessage())
+            )
+            .onComplete(e -> {
+                inFlight.release();
+                release(messages);
+            })
+            .start(e -> consume(message, receivedAt, visibilityTimeout).operation().then())
+        );
+    }
+
+    /**
+     * Processes the messages of one FIFO message group in order in its own execution, holding a single concurrency
+     * slot so that different groups are processed in parallel.
+     */
+    private Promise<Void> dispatch(MessageGroup group, long receivedAt, Duration visibilityTimeout) {
+        return withSlot(group.messages, () -> Execution.fork()
+            .onError(e ->
+                log.error(
+                    "Failed to consume message group={} of queue={}, exception={}",
+                    group.id, config.getQueueName(), e.getMessage()
+                )
+            )
+            .onComplete(e -> {
+                inFlight.release();
+                release(group.messages);
+            })
+            .start(e -> consumeInOrder(group, 0, receivedAt, visibilityTimeout).operation().then())
+        );
+    }
+
+    /**
+     * Consumes the messages of a group one after another.  Once a message fails, the rest of the group is not
+     * processed but handed to the failure policy along with it, so that no message overtakes an earlier one.
+     */
+    private Promise<Void> consumeInOrder(MessageGroup group, int index, long receivedAt, Duration visibilityTimeout) {
+        if (index >= group.messages.size()) {
+            return Promise.value(null);
+        }
+        return consume(group.messages.get(index), receivedAt, visibilityTimeout)
+            .flatMapError(e -> {
+                List<Message> skipped = group.messages.subList(index + 1, group.messages.size());
+                if (skipped.isEmpty()) {
+                    return Promise.<Void>error(e);
+                }
+                log.warn(
+                    "Skipping count={} messages of group={} in queue={} after a failure.",
+                    skipped.size(), group.id, config.getQueueName()
+                );
+                return getQueueUrl()
+                    .flatMap(url -> {
+                        redeliver(url, skipped);
+                        return Promise.<Void>error(e);
+                    });
+            })
+            .flatMap(v -> consumeInOrder(group, index + 1, receivedAt, visibilityTimeout));
+    }
+
+    private Promise<Void> consume(Message message, long receivedAt, Duration visibilityTimeout) {
+        return getQueueUrl()
+            .flatMap(url -> isDuplicate(message)
+                .flatMap(duplicate -> {
+                    if (duplicate) {
+                        deleteDuplicates(url, Collections.singletonList(message));
+                        return Promise.value(null);
+                    }
+                    return consume(url, message, receivedAt, visibilityTimeout);
+                })
+            );
+    }
+
+    private Promise<Void> consume(String url, Message message, long receivedAt, Duration visibilityTimeout) {
+        List<VisibilityExtender.Lease> leases =
+            extendVisibility(url, Collections.singletonList(message), receivedAt, visibilityTimeout);
+        return throttle(1)
+            .flatMap(t -> {
+                long started = System.nanoTime();
+                metrics.getInFlight().inc();
+                return consumer.consume(message)
+                    .promise()
+                    .wiretap(result -> {
+                        leases.forEach(VisibilityExtender.Lease::release);
+                        onConsumed(started, 1, result.isError());
+                        if (result.isError()) {
+                            redeliver(url, Collections.singletonList(message));
+                        }
+                    });
+            })
+            .flatMap(v -> {
+                deleteBatcher.delete(url, message);
+                return markProcessed(Collections.singletonList(message));
+            });
+    }
+
+    /**
+     * Hands a whole receive to a batch consumer in its own execution, holding a single concurrency slot.
+     */
+    private Promise<Void> dispatch(List<Message> messages, long receivedAt, Duration visibilityTimeout) {
+        return withSlot(messages, () -> Execution.fork()
+            .onError(e ->
+                log.error(
+                    "Failed to consume batch of size={} from queue={}, exception={}",
+                    messages.size(), config.getQueueName(), e.getMessage()
+                )
+            )
+            .onComplete(e -> {
+                inFlight.release();
+                release(messages);
+            })
+            .start(e -> consume(messages, receivedAt, visibilityTimeout).operation().then())
+        );
+    }
+
+    /**
+     * Waits for one of the batch concurrency slots and starts processing with it, unless the consumer has started
+     * draining in the meantime.  Then the slot is given back and the messages are returned to the queue unprocessed.
+     */
+    private Promise<Void> withSlot(List<Message> messages, Block dispatch) {
+        return inFlight.acquire()
+            .flatMap(v -> {
+                if (!draining.get()) {
+                    dispatch.execute();
+                    return Promise.value(null);
+                }
+                inFlight.release();
+                return returnToQueue(messages);
+            });
+    }
+
+    private Promise<Void> consume(List<Message> received, long receivedAt, Duration visibilityTimeout) {
+        return getQueueUrl()
+            .flatMap(url -> duplicatesOf(received)
+                .flatMap(duplicates -> {
+                    if (duplicates.isEmpty()) {
+                        return consume(url, received, receivedAt, visibilityTimeout);
+                    }
+                    deleteDuplicates(url, duplicates);
+                    List<Message> messages = new ArrayList<>(received);
+                    messages.removeAll(duplicates);
+                    return messages.isEmpty() ?
+                        Promise.value(null) :
+                        consume(url, messages, receivedAt, visibilityTimeout);
+                })
+            );
+    }
+
+    private Promise<Void> consume(String url, List<Message> messages, long receivedAt, Duration visibilityTimeout) {
+        List<VisibilityExtender.Lease> leases = extendVisibility(url, messages, receivedAt, visibilityTimeout);
+        return throttle(messages.size())
+            .flatMap(t -> {
+                long started = System.nanoTime();
+                metrics.getInFlight().inc(messages.size());
+                return consumer.consume(messages)
+                    .wiretap(result -> {
+                        leases.forEach(VisibilityExtender.Lease::release);
+                        onConsumed(started, messages.size(), result.isError());
+                        if (result.isError()) {
+                            redeliver(url, messages);
+                        }
+                    });
             })
-            .flatMap(v -> this.deleteMessage(message));
+            .flatMap(result -> markProcessed(deleteMessages(url, messages, result)));
+    }
+
+    private void onConsumed(long started, int count, boolean failed) {
+        long elapsed = System.nanoTime() - started;
+        metrics.getInFlight().dec(count);
+        metrics.getConsume().update(elapsed, TimeUnit.NANOSECONDS);
+        if (failed) {
+            metrics.getConsumeErrors().mark(count);
+        } else {
+            stats.recordProcessing(count, elapsed);
+        }
+    }
+
+    /**
+     * Starts renewing the visibility timeout of messages for as long as they are being processed, if enabled.
+     * @return the leases to release once processing has finished
+     */
+    private List<VisibilityExtender.Lease> extendVisibility(
+        String queueUrl, List<Message> messages, long receivedAt, Duration visibilityTimeout
+    ) {
+        if (visibilityExtender == null || visibilityTimeout == null) {
+            return Collections.emptyList();
+        }
+        return messages.stream()
+            .map(message -> visibilityExtender.track(queueUrl, message, receivedAt, visibilityTimeout))
+            .collect(Collectors.toList());
+    }
+
+    /**
+     * Applies the failure policy to messages whose consumer failed, if one is configured.  Otherwise they are left to
+     * become visible again once their visibility timeout runs out.
+     */
+    private void redeliver(String queueUrl, List<Message> messages) {
+        if (failureHandler != null) {
+            messages.forEach(message -> failureHandler.onFailure(queueUrl, message));
+        }
+    }
+
+    /**
+     * Deletes the messages a batch consumer processed successfully and applies the failure policy to the rest.
+     * @return the deleted messages
+     */
+    private List<Message> deleteMessages(String queueUrl, List<Message> messages, BatchResult result) {
+        List<Message> succeeded = new ArrayList<>(messages.size());
+        List<Message> failed = new ArrayList<>();
+        Set<String> failedGroups = new HashSet<>();
+        for (Message message : messages) {
+            // In a FIFO queue nothing after a failed message of the same group may be deleted.
+            boolean blocked = config.isFifo() && failedGroups.contains(groupIdOf(message));
+            if (result.isSuccessful(message) && !blocked) {
+                succeeded.add(message);
+            } else {
+                failed.add(message);
+                failedGroups.add(groupIdOf(message));
+            }
+        }
+        if (!failed.isEmpty()) {
+            log.warn(
+                "Failed to consume messages={} from queue={}, leaving them for redelivery.",
+                result.getFailedMessageIds(), config.getQueueName()
+            );
+            redeliver(queueUrl, failed);
+        }
+        if (!succeeded.isEmpty()) {
+            succeeded.forEach(message -> deleteBatcher.delete(queueUrl, message));
+            // Send the successful messages as one batch rather than waiting out the linger time.
+            deleteBatcher.flush(queueUrl);
+        }
+        return succeeded;
+    }
+
+    /**
+     * Sends the batched deletes and visibility changes without waiting out their linger time, so that none are lost
+     * when the consumer stops.
+     */
+    private Promise<Void> flushBatches() {
+        return deleteBatcher.flushAll()
+            .next(visibilityExtender == null ? Operation.noop() : visibilityExtender.flush())
+            .next(failureHandler == null ? Operation.noop() : failureHandler.flush())
+            .promise();
+    }
+
+    private Promise<Boolean> isDuplicate(Message message) {
+        return deduplicator == null ?
+            Promise.value(false) :
+            deduplicator.isDuplicate(message);
+    }
+
+    private Promise<List<Message>> duplicatesOf(List<Message> messages) {
+        return deduplicator == null ?
+            Promise.value(Collections.emptyList()) :
+            deduplicator.duplicates(messages);
+    }
+
+    /**
+     * Deletes messages that have been processed before without consuming them again.
+     */
+    private void deleteDuplicates(String queueUrl, List<Message> duplicates) {
+        log.debug("Deleting count={} duplicate messages from queue={}.", duplicates.size(), config.getQueueName());
+        metrics.getDuplicates().mark(duplicates.size());
+        duplicates.forEach(message -> deleteBatcher.delete(queueUrl, message));
+    }
+
+    private Promise<Void> markProcessed(List<Message> messages) {
+        return deduplicator == null || messages.isEmpty() ?
+            Promise.value(null) :
+            deduplicator.processed(messages).promise();
     }
 
     @SuppressWarnings("unchecked")
     private Promise<ReceiveMessageResponse> receiveMessage(ReceiveMessageRequest request) {
         log.debug("Execute poll for SQS queue={}", config.getQueueName());
-        return sqs.receiveMessage(request)
-            .transform(transformer.recover(t -> ReceiveMessageResponse.builder().build()));
+        long started = System.nanoTime();
+        return sqs.receiveMessage(withAttemptId(request))
+            .wiretap(result -> {
+                metrics.getReceive().update(System.nanoTime() - started, TimeUnit.NANOSECONDS);
+                if (result.isError()) {
+                    metrics.getReceiveErrors().mark();
+                }
+            })
+            // The attempt went through, so the next receive is a new attempt rather than a retry.
+            .next(response -> receiveAttemptId = null)
+            .transform(transformer.recover(t -> ReceiveMessageResponse.builder().build()))
+            .next(response -> {
+                int received = response.messages().size();
+                if (budget != null && received > 0) {
+                    budget.acquire(response.messages());
+                }
+                stats.recordReceive(received);
+                metrics.getBatchSize().update(received);
+                if (received == 0) {
+                    metrics.getEmptyReceives().mark();
+                }
+            });
     }
 
-    @SuppressWarnings("unchecked")
-    private Promise<Void> deleteMessage(Message message) {
-        return getQueueUrl()
-            .map(url -> DeleteMessageRequest.builder()
-                .queueUrl(url)
-                .receiptHandle(message.receiptHandle())
-                .build())
-            .flatMap(sqs::deleteMessage)
-            .transform(transformer.recover(t -> DeleteMessageResponse.builder().build()));
+    /**
+     * Tags receives from FIFO queues with a {@code ReceiveRequestAttemptId}.  The id is kept until a receive
+     * succeeds, so that a receive retried after a failure returns the messages of the failed attempt rather than
+     * leaving them locked until their visibility timeout runs out.
+     */
+    private ReceiveMessageRequest withAttemptId(ReceiveMessageRequest request) {
+        if (!config.isFifo() || request.receiveRequestAttemptId() != null) {
+            return request;
+        }
+        if (receiveAttemptId == null) {
+            receiveAttemptId = UUID.randomUUID().toString();
+        }
+        return request.toBuilder()
+            .receiveRequestAttemptId(receiveAttemptId)
+            .build();
     }
 
     private Promise<ReceiveMessageRequest> getReceiveMessageRequest() {
-        ReceiveMessageRequest request = consumer.getReceiveMessageRequest();
+        ReceiveMessageRequest consumerRequest = config.isFifo() ?
+            withGroupId(consumer.getReceiveMessageRequest()) :
+            consumer.getReceiveMessageRequest();
+        ReceiveMessageRequest withReceiveCount = failureHandler == null ?
+            consumerRequest :
+            failureHandler.withReceiveCount(consumerRequest);
+        ReceiveMessageRequest withKey = deduplicator == null ?
+            withReceiveCount :
+            deduplicator.withKeyAttribute(withReceiveCount);
+        // Receive no more than can be processed right away, so messages don't wait out their visibility timeout.
+        int limit = receiveLimit();
+        ReceiveMessageRequest request = limit < MAX_RECEIVE ?
+            limitReceive(withKey, limit) :
+            withKey;
 
         if (request.queueUrl() == null || request.queueUrl().isEmpty()) {
             return getQueueUrl()
@@ -178,28 +739,171 @@ public class ConsumerAction implements Action<Execution> {
         return Promise.value(null);
     }
 
+    /**
+     * Holds off the next receive while the consumer's rate limit is used up.
+     */
+    private Promise<Void> maybeThrottle() {
+        if (rateLimiter == null) {
+            return Promise.value(null);
+        }
+        return rateLimiter.awaitAvailable().promise();
+    }
+
+    /**
+     * Holds off the next receive while the in-flight budget is used up.
+     */
+    private Promise<Void> awaitBudget() {
+        if (budget == null) {
+            return Promise.value(null);
+        }
+        return budget.awaitCapacity(shuttingDown::get);
+    }
+
+    private void release(List<Message> messages) {
+        if (budget != null && !messages.isEmpty()) {
+            budget.release(messages);
+        }
+    }
+
+    /**
+     * Makes received messages that will not be processed visible on the queue again right away rather than once their
+     * visibility timeout runs out, and gives back their share of the in-flight budget.
+     */
+    private Promise<Void> returnToQueue(List<Message> messages) {
+        if (messages.isEmpty()) {
+            return Promise.value(null);
+        }
+        release(messages);
+        return getQueueUrl()
+            .flatMap(url -> {
+                List<Promise<ChangeMessageVisibilityBatchResponse>> batches = new ArrayList<>();
+                for (int from = 0; from < messages.size(); from += MAX_RECEIVE) {
+                    List<Message> chunk = messages.subList(from, Math.min(messages.size(), from + MAX_RECEIVE));
+                    batches.add(sqs.changeMessageVisibilityBatch(ChangeMessageVisibilityBatchRequest.builder()
+                        .queueUrl(url)
+                        .entries(visibleNow(chunk))
+                        .build()));
+                }
+                return SerialBatch.of(batches).yield();
+            })
+            .map(responses -> {
+                log.info("Returned count={} unprocessed messages to queue={}.", messages.size(), config.getQueueName());
+                return (Void) null;
+            })
+            .mapError(e -> {
+                log.warn(
+                    "Failed to return count={} unprocessed messages to queue={}, they become visible once their "
+                        + "visibility timeout runs out.",
+                    messages.size(), config.getQueueName(), e
+                );
+                return null;
+            });
+    }
+
+    /**
+     * The most messages worth receiving now under the rate limit and in-flight budget, at least 1.
+     */
+    private int receiveLimit() {
+        int limit = MAX_RECEIVE;
+        if (rateLimiter != null) {
+            limit = Math.min(limit, rateLimiter.available());
+        }
+        if (budget != null) {
+            limit = Math.min(limit, budget.remainingMessages());
+        }
+        return Math.max(1, limit);
+    }
+
+    private Promise<Void> throttle(int permits) {
+        if (rateLimiter == null) {
+            return Promise.value(null);
+        }
+        return rateLimiter.acquire(permits).promise();
+    }
+
     private boolean isCircuitOpen() {
         return CircuitBreaker.State.OPEN == this.breaker.getState();
     }
 
-    private Operation awaitShutdown() {
-        return Blocking.op(() -> {
-            synchronized (mutex) {
-                try {
-                    while (!shutdownComplete.get()) {
-                        mutex.wait(500);
-                    }
-                } catch (InterruptedException e) {
-                    //Intentionally left blank
+    private Promise<Void> awaitShutdown() {
+        return Promise.async(downstream -> {
+            boolean complete;
+            synchronized (shutdownWaiters) {
+                complete = shutdownComplete.get();
+                if (!complete) {
+                    shutdownWaiters.add(downstream);
                 }
             }
+            if (complete) {
+                downstream.success(null);
+            }
         });
     }
 
     private void notifyShutdown() {
-        shutdownComplete.set(true);
-        synchronized (mutex) {
-            mutex.notifyAll();
+        List<Downstream<? super Void>> waiting;
+        synchronized (shutdownWaiters) {
+            shutdownComplete.set(true);
+            waiting = new ArrayList<>(shutdownWaiters);
+            shutdownWaiters.clear();
+        }
+        waiting.forEach(downstream -> downstream.success(null));
+    }
+
+    private static List<Message> messagesOf(List<PrefetchBuffer.Entry> entries) {
+        return entries.stream()
+            .map(PrefetchBuffer.Entry::getMessage)
+            .collect(Collectors.toList());
+    }
+
+    private static List<ChangeMessageVisibilityBatchRequestEntry> visibleNow(List<Message> messages) {
+        List<ChangeMessageVisibilityBatchRequestEntry> entries = new ArrayList<>(messages.size());
+        for (int i = 0; i < messages.size(); i++) {
+            entries.add(ChangeMessageVisibilityBatchRequestEntry.builder()
+                .id(Integer.toString(i))
+                .receiptHandle(messages.get(i).receiptHandle())
+                .visibilityTimeout(0)
+                .build());
+        }
+        return entries;
+    }
+
+    /**
+     * Splits received FIFO messages by message group, keeping the order within each group.
+     */
+    private static List<MessageGroup> groupsOf(List<Message> messages) {
+        Map<String, MessageGroup> groups = new LinkedHashMap<>();
+        messages.forEach(message ->
+            groups.computeIfAbsent(groupIdOf(message), MessageGroup::new).messages.add(message)
+        );
+        return new ArrayList<>(groups.values());
+    }
+
+    private static String groupIdOf(Message message) {
+        return message.attributes().getOrDefault(MessageSystemAttributeName.MESSAGE_GROUP_ID, "");
+    }
+
+    private static ReceiveMessageRequest withGroupId(ReceiveMessageRequest request) {
+        List<String> names = request.attributeNamesAsStrings();
+        if (names.contains(MESSAGE_GROUP_ID) || names.contains("All")) {
+            return request;
+        }
+        List<String> withGroupId = new ArrayList<>(names);
+        withGroupId.add(MESSAGE_GROUP_ID);
+        return request.toBuilder()
+            .attributeNamesWithStrings(withGroupId)
+            .build();
+    }
+
+    /**
+     * Received messages of one FIFO message group, in order.
+     */
+    private static final class MessageGroup {
+        private final String id;
+        private final List<Message> messages = new ArrayList<>();
+
+        private MessageGroup(String id) {
+            this.id = id;
         }
     }
 }
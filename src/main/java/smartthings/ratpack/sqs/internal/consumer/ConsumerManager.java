@@ -2,39 +2,63 @@ package smartthings.ratpack.sqs.internal.consumer;
 
 import com.google.inject.Inject;
 import com.google.inject.Singleton;
-import io.github.resilience4j.circuitbreaker.CircuitBreaker;
 import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
-import ratpack.exec.Execution;
+import ratpack.exec.ExecController;
+import ratpack.exec.Promise;
+import ratpack.exec.util.ParallelBatch;
+import ratpack.registry.Registry;
 import ratpack.service.DependsOn;
 import ratpack.service.Service;
 import ratpack.service.StartEvent;
 import ratpack.service.StopEvent;
 import smartthings.ratpack.sqs.*;
+import smartthings.ratpack.sqs.dedup.DeduplicationStore;
+import smartthings.ratpack.sqs.dedup.InMemoryDeduplicationStore;
+import smartthings.ratpack.sqs.internal.metrics.ConsumerMetrics;
+import smartthings.ratpack.sqs.internal.metrics.SqsMetrics;
+import java.time.Duration;
 import java.util.ArrayList;
 import java.util.List;
+import java.util.Optional;
 import java.util.stream.Collectors;
-import java.util.stream.IntStream;
 import java.util.stream.Stream;
 
 /**
- * Service responsible for managing the lifecycle of all SQS Consumer implementations defined within Registry.
+ * Service responsible for managing the lifecycle of all SQS Consumer implementations defined within Registry.  Once
+ * started, consumers can be added, removed, replaced and resized at runtime.  Removed consumers drain like they do on
+ * shutdown, and new consumers share the clients of the {@link SqsManager}.
  */
 @Singleton
 @DependsOn({SqsManager.class})
 public class ConsumerManager implements Service {
 
     private static final Logger LOG = LoggerFactory.getLogger(ConsumerManager.class);
+    private static final Duration VISIBILITY_BATCH_LINGER = Duration.ofMillis(200);
+    private static final String GLOBAL_BUDGET = "all";
 
     private final SqsModule.Config config;
     private final SqsManager sqsManager;
-    private List<ConsumerAction> actions = new ArrayList<>();
-    private List<CircuitBreaker> breakers = new ArrayList<>();
+    private final SqsMetrics metrics;
+    private final InFlightBudget budget;
+    private final Optional<DeduplicationStore> deduplicationStore;
+    private final List<ManagedConsumer> consumers = new ArrayList<>();
+    private Registry registry;
+    private boolean paused;
 
     @Inject
-    public ConsumerManager(SqsModule.Config config, SqsManager sqsManager) {
+    public ConsumerManager(
+        SqsModule.Config config,
+        SqsManager sqsManager,
+        SqsMetrics metrics,
+        Optional<DeduplicationStore> deduplicationStore
+    ) {
         this.config = config;
         this.sqsManager = sqsManager;
+        this.metrics = metrics;
+        this.deduplicationStore = deduplicationStore;
+        this.budget = new InFlightBudget(config.getMaxInFlightMessages(), config.getMaxInFlightBytes(), null);
+        metrics.registerInFlight(GLOBAL_BUDGET, budget::getMessages, budget::getBytes);
     }
 
     @Override
@@ -50,50 +74,239 @@ public class ConsumerManager implements Service {
     @Override
     public void onStop(StopEvent event) throws Exception {
         LOG.debug("Shutting down SQS ConsumerManager...");
-        actions.forEach(ConsumerAction::shutdown);
+        List<ManagedConsumer> running;
+        synchronized (this) {
+            running = new ArrayList<>(consumers);
+            consumers.clear();
+            registry = null;
+        }
+        drain(running)
+            .then(drained -> LOG.debug("Drained count={} SQS consumer pools.", drained));
     }
 
-    public void pause() {
-        this.breakers.forEach(CircuitBreaker::transitionToOpenState);
+    public synchronized void pause() {
+        paused = true;
+        pools().forEach(ConsumerPool::pause);
     }
 
-    public void resume() {
-        this.breakers.forEach(CircuitBreaker::transitionToClosedState);
+    public synchronized void resume() {
+        paused = false;
+        pools().forEach(ConsumerPool::resume);
     }
 
-    private void init(StartEvent event) {
-        this.actions = config.getConsumers().stream()
-            .flatMap(c -> buildConsumerActions(c, event))
+    /**
+     * The configurations of the consumers currently running.
+     * @return the running consumers
+     */
+    public synchronized List<SqsModule.ConsumerConfig> getConsumers() {
+        return consumers.stream()
+            .map(managed -> managed.config)
             .collect(Collectors.toList());
+    }
+
+    /**
+     * Starts polling the endpoints of a consumer.  The consumer implementation is looked up in the registry, and a
+     * client is created for any endpoint no other consumer uses yet.
+     * @param consumerConfig The consumer to start
+     * @throws IllegalStateException if the manager has not been started
+     */
+    public synchronized void addConsumer(SqsModule.ConsumerConfig consumerConfig) {
+        if (registry == null) {
+            throw new IllegalStateException("SQS consumers can only be added while the ConsumerManager is running");
+        }
+        List<ConsumerPool> pools = buildConsumerPools(consumerConfig, registry).collect(Collectors.toList());
+        pools.forEach(pool -> {
+            if (paused) {
+                pool.pause();
+            }
+            pool.start();
+        });
+        consumers.add(new ManagedConsumer(consumerConfig, pools));
+        LOG.info(
+            "Started SQS consumer class={} on count={} endpoints.",
+            consumerConfig.getConsumerType().getSimpleName(), pools.size()
+        );
+    }
+
+    /**
+     * Stops every running instance of a consumer.  Its pollers stop receiving, return the messages they have not
+     * started processing to the queue, and are given {@code drainTimeoutSeconds} to finish the rest.
+     * @param consumer The consumer class
+     * @return a promise that completes once the consumer has drained
+     */
+    public Promise<Void> removeConsumer(Class<?> consumer) {
+        List<ManagedConsumer> removed;
+        synchronized (this) {
+            removed = running(consumer);
+            consumers.removeAll(removed);
+        }
+        LOG.info("Removing SQS consumer class={}.", consumer.getSimpleName());
+        return drain(removed).map(drained -> null);
+    }
 
-        // Kick off a new execution for each defined consumer.
-        if (!this.actions.isEmpty()) {
-            this.actions.forEach((action) -> Execution.fork().start(action));
+    /**
+     * Replaces the running instances of a consumer with a new configuration, for example to change its endpoints or
+     * scaling bounds.  The new pollers are started before the old ones drain, so the queue is never left unpolled.
+     * @param consumerConfig The new configuration of the consumer
+     * @return a promise that completes once the old instances have drained
+     */
+    public Promise<Void> replaceConsumer(SqsModule.ConsumerConfig consumerConfig) {
+        List<ManagedConsumer> replaced;
+        synchronized (this) {
+            replaced = running(consumerConfig.getConsumerType());
+            addConsumer(consumerConfig);
+            consumers.removeAll(replaced);
         }
+        return drain(replaced).map(drained -> null);
+    }
+
+    /**
+     * Changes the number of pollers of a running consumer on each of its endpoints.  Pollers are started right away,
+     * and surplus pollers finish the messages they hold before they stop.  Autoscaling consumers continue to scale
+     * from the new size within their configured bounds.
+     * @param consumer The consumer class
+     * @param concurrency The number of pollers per endpoint
+     * @throws IllegalArgumentException if the consumer is not running
+     */
+    public synchronized void resize(Class<?> consumer, int concurrency) {
+        if (concurrency < 0) {
+            throw new IllegalArgumentException("Consumer concurrency cannot be negative");
+        }
+        List<ManagedConsumer> resized = running(consumer);
+        if (resized.isEmpty()) {
+            throw new IllegalArgumentException("No SQS consumer " + consumer.getName() + " is running");
+        }
+        LOG.info("Resizing SQS consumer class={} to={} per endpoint.", consumer.getSimpleName(), concurrency);
+        resized.forEach(managed -> managed.pools.forEach(pool -> pool.resize(concurrency)));
+    }
+
+    /**
+     * The messages and payload bytes currently held by all consumers.
+     * @return the global in-flight budget
+     */
+    public InFlightBudget getInFlightBudget() {
+        return budget;
+    }
+
+    private synchronized void init(StartEvent event) {
+        this.registry = event.getRegistry();
+
+        // Kick off the pollers of each enabled consumer.
+        config.getConsumers().stream()
+            .filter(SqsModule.ConsumerConfig::isEnabled)
+            .forEach(this::addConsumer);
+    }
+
+    private List<ConsumerPool> pools() {
+        return consumers.stream()
+            .flatMap(managed -> managed.pools.stream())
+            .collect(Collectors.toList());
+    }
+
+    private List<ManagedConsumer> running(Class<?> consumer) {
+        return consumers.stream()
+            .filter(managed -> managed.config.getConsumerType().equals(consumer))
+            .collect(Collectors.toList());
     }
 
-    private Stream<ConsumerAction> buildConsumerActions(SqsModule.ConsumerConfig config, StartEvent event) {
-        Consumer consumer = event.getRegistry().get(config.getConsumer());
-        return IntStream
-            .rangeClosed(1, config.getConcurrency())
-            .mapToObj(i -> config.getEndpoints())
-            .flatMap(endpoints ->
-                config.getEndpoints().stream()
-                    .map(endpointConfig -> {
-                        final String consumerKey = String.format("sqs-%s", endpointConfig.getQueueName());
-                        CircuitBreaker breaker = CircuitBreaker.ofDefaults(consumerKey);
-                        LOG.debug(
-                            "Creating an SQS Consumer for class={}, queue={}",
-                            config.getConsumer().getSimpleName(), consumerKey
-                        );
-                        breakers.add(breaker);
-                        return new ConsumerAction(
-                            sqsManager.get(endpointConfig),
-                            consumer,
-                            breaker,
-                            endpointConfig
-                        );
-                    })
-            );
+    /**
+     * Drains the pools of retired consumers.
+     * @return a promise for the number of drained pools
+     */
+    private Promise<Integer> drain(List<ManagedConsumer> retired) {
+        Duration timeout = Duration.ofSeconds(config.getDrainTimeoutSeconds());
+        List<Promise<Void>> drained = retired.stream()
+            .flatMap(managed -> managed.pools.stream())
+            .map(pool -> pool.drain(timeout))
+            .collect(Collectors.toList());
+        return ParallelBatch.of(drained)
+            .yield()
+            .map(List::size);
+    }
+
+    private Stream<ConsumerPool> buildConsumerPools(SqsModule.ConsumerConfig config, Registry registry) {
+        RegisteredConsumer consumer = RegisteredConsumer.of(
+            registry.get(config.getConsumerType()),
+            registry.get(MessageCodec.class)
+        );
+        ExecController controller = registry.get(ExecController.class);
+        // One rate limit covers every poller of the consumer, across all of its endpoints.
+        RateLimiter rateLimiter = config.getMaxMessagesPerSecond() > 0 ?
+            new RateLimiter(config.getMaxMessagesPerSecond()) :
+            null;
+        Deduplicator deduplicator = config.isDeduplicate() ?
+            new Deduplicator(
+                deduplicationStore.orElseGet(() -> new InMemoryDeduplicationStore(config.getDeduplicationMaxEntries())),
+                config.getConsumerType().getName(),
+                config.getDeduplicationAttribute(),
+                Duration.ofSeconds(config.getDeduplicationTtlSeconds())
+            ) :
+            null;
+        InFlightBudget consumerBudget =
+            new InFlightBudget(config.getMaxInFlightMessages(), config.getMaxInFlightBytes(), budget);
+        metrics.registerInFlight(
+            config.getConsumerType().getSimpleName(), consumerBudget::getMessages, consumerBudget::getBytes
+        );
+        return config.getEndpoints().stream()
+            .map(endpointConfig -> {
+                SqsService sqs = sqsManager.connect(endpointConfig);
+                ConsumerMetrics consumerMetrics =
+                    metrics.forConsumer(endpointConfig.getQueueName(), config.getConsumerType());
+                // Deletes are batched across every poller of the same endpoint.
+                DeleteMessageBatcher deleteBatcher = new DeleteMessageBatcher(
+                    sqs,
+                    config.getDeleteBatchSize(),
+                    Duration.ofMillis(config.getDeleteBatchLingerMillis()),
+                    consumerMetrics
+                );
+                // Visibility renewals and redeliveries share their batches too.
+                ChangeVisibilityBatcher visibilityBatcher = new ChangeVisibilityBatcher(sqs, VISIBILITY_BATCH_LINGER);
+                VisibilityExtender visibilityExtender = config.getMaxVisibilityExtensionSeconds() > 0 ?
+                    new VisibilityExtender(
+                        controller,
+                        visibilityBatcher,
+                        Duration.ofSeconds(config.getMaxVisibilityExtensionSeconds())
+                    ) :
+                    null;
+                boolean redeliver = config.getFailurePolicy() != SqsModule.FailurePolicy.VISIBILITY_TIMEOUT;
+                FailureHandler failureHandler = redeliver ?
+                    new FailureHandler(
+                        config.getFailurePolicy(),
+                        Duration.ofSeconds(config.getRedeliveryBaseDelaySeconds()),
+                        Duration.ofSeconds(config.getRedeliveryMaxDelaySeconds()),
+                        visibilityBatcher
+                    ) :
+                    null;
+                return new ConsumerPool(controller, sqs, config, endpointConfig, breaker -> {
+                    LOG.debug(
+                        "Creating an SQS Consumer for class={}, queue={}",
+                        config.getConsumerType().getSimpleName(), endpointConfig.getQueueName()
+                    );
+                    return new ConsumerAction(
+                        sqs,
+                        consumer,
+                        breaker,
+                        config,
+                        endpointConfig,
+                        deleteBatcher,
+                        visibilityExtender,
+                        failureHandler,
+                        rateLimiter,
+                        consumerBudget,
+                        deduplicator,
+                        consumerMetrics
+                    );
+                });
+            });
+    }
+
+    private static final class ManagedConsumer {
+        private final SqsModule.ConsumerConfig config;
+        private final List<ConsumerPool> pools;
+
+        private ManagedConsumer(SqsModule.ConsumerConfig config, List<ConsumerPool> pools) {
+            this.config = config;
+            this.pools = pools;
+        }
     }
 }
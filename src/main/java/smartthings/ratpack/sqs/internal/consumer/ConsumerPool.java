@@ -0,0 +1,273 @@
+package smartthings.ratpack.sqs.internal.consumer;
+
+import io.github.resilience4j.circuitbreaker.CircuitBreaker;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import ratpack.exec.ExecController;
+import ratpack.exec.Operation;
+import ratpack.exec.Promise;
+import ratpack.exec.util.ParallelBatch;
+import smartthings.ratpack.sqs.SqsModule;
+import smartthings.ratpack.sqs.SqsService;
+import software.amazon.awssdk.services.sqs.model.GetQueueAttributesRequest;
+import software.amazon.awssdk.services.sqs.model.GetQueueUrlResponse;
+import software.amazon.awssdk.services.sqs.model.QueueAttributeName;
+
+import java.time.Duration;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.ScheduledFuture;
+import java.util.concurrent.TimeUnit;
+import java.util.function.Function;
+import java.util.stream.Collectors;
+
+/**
+ * The pollers of one consumer for one endpoint.  When the consumer configures a maximum concurrency, the pool
+ * periodically compares the queue backlog with what its pollers received and processed during the last interval, and
+ * adds or retires pollers between the configured minimum and maximum.  Retired pollers stop receiving but finish the
+ * messages they already hold before they shut down.
+ */
+public class ConsumerPool {
+
+    private static final Logger log = LoggerFactory.getLogger(ConsumerPool.class);
+
+    /**
+     * Pollers keep up with the queue only if fewer than this share of their receives come back empty.
+     */
+    static final double LOW_EMPTY_RATIO = 0.25;
+
+    /**
+     * Pollers are idle if more than this share of their receives come back empty.
+     */
+    static final double HIGH_EMPTY_RATIO = 0.5;
+
+    /**
+     * Pollers share a trickle of traffic if their receives average fewer messages than this.
+     */
+    static final double SMALL_BATCH_SIZE = 2;
+
+    private final ExecController controller;
+    private final SqsService sqs;
+    private final SqsModule.ConsumerConfig consumerConfig;
+    private final SqsModule.EndpointConfig endpointConfig;
+    private final Function<CircuitBreaker, ConsumerAction> factory;
+    private final List<Poller> pollers = new ArrayList<>();
+    private final List<ConsumerAction> retiring = new ArrayList<>();
+    private volatile boolean paused;
+    private volatile boolean stopped;
+    private ScheduledFuture<?> scaling;
+
+    public ConsumerPool(
+        ExecController controller,
+        SqsService sqs,
+        SqsModule.ConsumerConfig consumerConfig,
+        SqsModule.EndpointConfig endpointConfig,
+        Function<CircuitBreaker, ConsumerAction> factory
+    ) {
+        this.controller = controller;
+        this.sqs = sqs;
+        this.consumerConfig = consumerConfig;
+        this.endpointConfig = endpointConfig;
+        this.factory = factory;
+    }
+
+    public void start() {
+        if (consumerConfig.isAutoscaling()) {
+            resize(clamp(consumerConfig.getConcurrency()));
+            scheduleScaling();
+        } else {
+            resize(consumerConfig.getConcurrency());
+        }
+    }
+
+    /**
+     * Starts or retires pollers until the pool has the given size.
+     * @param size The number of pollers
+     */
+    public synchronized void resize(int size) {
+        if (stopped) {
+            return;
+        }
+        // Pools resized at runtime without autoscaling never reach scale(), so finished pollers are dropped here too.
+        retiring.removeIf(ConsumerAction::isShutdownComplete);
+        while (pollers.size() < size) {
+            CircuitBreaker breaker = CircuitBreaker.ofDefaults(String.format("sqs-%s", endpointConfig.getQueueName()));
+            if (paused) {
+                breaker.transitionToOpenState();
+            }
+            Poller poller = new Poller(factory.apply(breaker), breaker);
+            pollers.add(poller);
+            controller.fork().start(poller.action);
+        }
+        while (pollers.size() > size) {
+            ConsumerAction action = pollers.remove(pollers.size() - 1).action;
+            action.retire();
+            retiring.add(action);
+        }
+    }
+
+    public synchronized int size() {
+        return pollers.size();
+    }
+
+    public synchronized void pause() {
+        paused = true;
+        pollers.forEach(poller -> poller.breaker.transitionToOpenState());
+    }
+
+    public synchronized void resume() {
+        paused = false;
+        pollers.forEach(poller -> poller.breaker.transitionToClosedState());
+    }
+
+    /**
+     * Stops scaling and shuts down every poller, including those still retiring.
+     */
+    public void shutdown() {
+        stop().forEach(ConsumerAction::shutdown);
+    }
+
+    /**
+     * Stops scaling and drains every poller, including those still retiring.
+     * @param timeout How long each poller waits for the messages it is processing
+     * @return a promise that completes once every poller has drained
+     */
+    public Promise<Void> drain(Duration timeout) {
+        List<Promise<Void>> drained = stop().stream()
+            .map(action -> action.drain(timeout))
+            .collect(Collectors.toList());
+        return ParallelBatch.of(drained)
+            .yield()
+            .map(results -> null);
+    }
+
+    private List<ConsumerAction> stop() {
+        List<ConsumerAction> actions = new ArrayList<>();
+        synchronized (this) {
+            stopped = true;
+            if (scaling != null) {
+                scaling.cancel(false);
+            }
+            pollers.forEach(poller -> actions.add(poller.action));
+            actions.addAll(retiring);
+            pollers.clear();
+            retiring.clear();
+        }
+        return actions;
+    }
+
+    private void scheduleScaling() {
+        long interval = consumerConfig.getScalingIntervalSeconds();
+        scaling = controller.getExecutor().schedule(
+            () -> controller.fork()
+                .onError(e -> log.error("Failed to scale consumers of queue={}", endpointConfig.getQueueName(), e))
+                .onComplete(e -> {
+                    if (!stopped) {
+                        scheduleScaling();
+                    }
+                })
+                .start(e -> scale().then()),
+            interval,
+            TimeUnit.SECONDS
+        );
+    }
+
+    private Operation scale() {
+        PollerStats.Snapshot stats;
+        synchronized (this) {
+            retiring.removeIf(ConsumerAction::isShutdownComplete);
+            stats = pollers.stream()
+                .map(poller -> poller.action.getStats().snapshot())
+                .reduce(PollerStats.Snapshot.EMPTY, PollerStats.Snapshot::plus);
+        }
+        return getBacklog()
+            .map(backlog -> {
+                int current = size();
+                int target = clamp(target(
+                    current,
+                    stats,
+                    backlog,
+                    Duration.ofSeconds(consumerConfig.getScalingIntervalSeconds()),
+                    Math.max(1, consumerConfig.getBatchConcurrency())
+                ));
+                if (target != current) {
+                    log.info(
+                        "Resizing consumers of queue={} from={} to={}, backlog={}, emptyRatio={}",
+                        endpointConfig.getQueueName(), current, target, backlog, stats.getEmptyRatio()
+                    );
+                    resize(target);
+                }
+                return null;
+            })
+            .operation();
+    }
+
+    private Promise<Long> getBacklog() {
+        return sqs.getQueueUrl(endpointConfig.getQueueName())
+            .map(GetQueueUrlResponse::queueUrl)
+            .flatMap(url -> sqs.getQueueAttributes(GetQueueAttributesRequest.builder()
+                .queueUrl(url)
+                .attributeNames(QueueAttributeName.APPROXIMATE_NUMBER_OF_MESSAGES)
+                .build()))
+            .map(response -> Long.parseLong(
+                response.attributes().getOrDefault(QueueAttributeName.APPROXIMATE_NUMBER_OF_MESSAGES, "0")
+            ));
+    }
+
+    private int clamp(int size) {
+        return Math.max(consumerConfig.getMinConcurrency(), Math.min(consumerConfig.getMaxConcurrency(), size));
+    }
+
+    /**
+     * Decides the pool size for the next interval.  The pool grows when the backlog exceeds what it received during
+     * the last interval while its receives rarely came back empty, sized so that the backlog is worked off within one
+     * interval but never more than doubling at once.  It shrinks by one poller when the queue is drained and receives
+     * are mostly empty or small.
+     *
+     * @param current The current number of pollers
+     * @param stats The counters of all pollers over the last interval
+     * @param backlog The approximate number of visible messages on the queue
+     * @param interval The scaling interval
+     * @param slotsPerPoller The number of messages each poller processes at once
+     * @return the unclamped target size
+     */
+    static int target(int current, PollerStats.Snapshot stats, long backlog, Duration interval, int slotsPerPoller) {
+        if (stats.getReceives() == 0) {
+            return current;
+        }
+        if (backlog > stats.getReceived() && stats.getEmptyRatio() < LOW_EMPTY_RATIO) {
+            double capacity = capacityPerPoller(current, stats, interval, slotsPerPoller);
+            long needed = (long) Math.ceil(backlog / capacity);
+            return (int) Math.min(Math.max(needed, current + 1L), current * 2L);
+        }
+        if (backlog == 0
+            && (stats.getEmptyRatio() > HIGH_EMPTY_RATIO || stats.getAverageBatchSize() < SMALL_BATCH_SIZE)) {
+            return current - 1;
+        }
+        return current;
+    }
+
+    /**
+     * Estimates how many messages a single poller can work off per interval: from the processing latency when
+     * messages were processed, otherwise from what the pollers received.
+     */
+    private static double capacityPerPoller(
+        int current, PollerStats.Snapshot stats, Duration interval, int slotsPerPoller
+    ) {
+        Duration latency = stats.getAverageLatency();
+        double capacity = latency.isZero() ?
+            (double) stats.getReceived() / current :
+            (double) slotsPerPoller * interval.toNanos() / latency.toNanos();
+        return Math.max(1, capacity);
+    }
+
+    private static final class Poller {
+        private final ConsumerAction action;
+        private final CircuitBreaker breaker;
+
+        private Poller(ConsumerAction action, CircuitBreaker breaker) {
+            this.action = action;
+            this.breaker = breaker;
+        }
+    }
+}
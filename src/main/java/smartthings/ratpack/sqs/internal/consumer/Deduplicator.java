@@ -0,0 +1,136 @@
+package smartthings.ratpack.sqs.internal.consumer;
+
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import ratpack.exec.Operation;
+import ratpack.exec.Promise;
+import ratpack.exec.util.ParallelBatch;
+import smartthings.ratpack.sqs.dedup.DeduplicationStore;
+import software.amazon.awssdk.services.sqs.model.Message;
+import software.amazon.awssdk.services.sqs.model.MessageAttributeValue;
+import software.amazon.awssdk.services.sqs.model.ReceiveMessageRequest;
+
+import java.time.Duration;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.stream.Collectors;
+
+/**
+ * Recognizes messages a consumer has already processed, keyed by their message id or by a message attribute.  Keys
+ * are scoped to the consumer, so that one message consumed by several consumers is processed by each of them.  Store
+ * failures are logged and treated as unknown messages, so that deduplication never stops a consumer.
+ */
+public class Deduplicator {
+
+    private static final Logger LOG = LoggerFactory.getLogger(Deduplicator.class);
+
+    private final DeduplicationStore store;
+    private final String scope;
+    private final String attribute;
+    private final Duration ttl;
+
+    /**
+     * @param store Where processed messages are recorded
+     * @param scope Prefix of every key, usually the consumer name
+     * @param attribute The message attribute holding the key, or null to use the message id
+     * @param ttl How long processed messages are remembered for
+     */
+    public Deduplicator(DeduplicationStore store, String scope, String attribute, Duration ttl) {
+        this.store = store;
+        this.scope = scope;
+        this.attribute = attribute;
+        this.ttl = ttl;
+    }
+
+    /**
+     * Adds the key attribute to a receive request, if messages are keyed by an attribute.
+     * @param request The receive request of the consumer
+     * @return a receive request returning the key attribute
+     */
+    public ReceiveMessageRequest withKeyAttribute(ReceiveMessageRequest request) {
+        List<String> names = request.messageAttributeNames();
+        if (attribute == null || names.contains(attribute) || names.contains("All")) {
+            return request;
+        }
+        List<String> withKey = new ArrayList<>(names);
+        withKey.add(attribute);
+        return request.toBuilder()
+            .messageAttributeNames(withKey)
+            .build();
+    }
+
+    /**
+     * Splits received messages into those seen before and those still to be processed.
+     * @param messages The received messages
+     * @return a promise for the messages that have already been processed
+     */
+    public Promise<List<Message>> duplicates(List<Message> messages) {
+        List<Promise<Boolean>> checks = messages.stream()
+            .map(this::isDuplicate)
+            .collect(Collectors.toList());
+        return ParallelBatch.of(checks)
+            .yield()
+            .map(seen -> {
+                List<Message> duplicates = new ArrayList<>();
+                for (int i = 0; i < messages.size(); i++) {
+                    if (seen.get(i)) {
+                        duplicates.add(messages.get(i));
+                    }
+                }
+                return duplicates;
+            });
+    }
+
+    /**
+     * Whether a message has been processed before.  Messages without a key are never duplicates.
+     * @param message The received message
+     * @return a promise for true if the message has already been processed
+     */
+    public Promise<Boolean> isDuplicate(Message message) {
+        String key = keyOf(message);
+        if (key == null) {
+            return Promise.value(false);
+        }
+        return store.contains(key)
+            .mapError(e -> {
+                LOG.warn("Failed to look up message={} for deduplication, exception={}", key, e.getMessage());
+                return false;
+            });
+    }
+
+    /**
+     * Records messages as processed.
+     * @param messages The successfully consumed messages
+     * @return the operation recording the messages
+     */
+    public Operation processed(List<Message> messages) {
+        List<Promise<Void>> records = messages.stream()
+            .map(this::keyOf)
+            .filter(key -> key != null)
+            .map(key -> store.add(key, ttl)
+                .promise()
+                .mapError(e -> {
+                    LOG.warn("Failed to record message={} for deduplication, exception={}", key, e.getMessage());
+                    return null;
+                }))
+            .collect(Collectors.toList());
+        if (records.isEmpty()) {
+            return Operation.noop();
+        }
+        return records.size() == 1 ?
+            records.get(0).operation() :
+            ParallelBatch.of(records).yield().operation();
+    }
+
+    String keyOf(Message message) {
+        String id = attribute == null ?
+            message.messageId() :
+            attributeOf(message);
+        return id == null ? null : scope + ":" + id;
+    }
+
+    private String attributeOf(Message message) {
+        MessageAttributeValue value = message.messageAttributes().get(attribute);
+        return value == null ? null : value.stringValue();
+    }
+}
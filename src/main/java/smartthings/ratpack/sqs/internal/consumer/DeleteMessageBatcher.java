@@ -0,0 +1,113 @@
+package smartthings.ratpack.sqs.internal.consumer;
+
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import ratpack.exec.Operation;
+import smartthings.ratpack.sqs.SqsService;
+import smartthings.ratpack.sqs.internal.batch.BatchAccumulator;
+import smartthings.ratpack.sqs.internal.metrics.ConsumerMetrics;
+import software.amazon.awssdk.services.sqs.model.BatchResultErrorEntry;
+import software.amazon.awssdk.services.sqs.model.DeleteMessageBatchRequest;
+import software.amazon.awssdk.services.sqs.model.DeleteMessageBatchRequestEntry;
+import software.amazon.awssdk.services.sqs.model.Message;
+
+import java.time.Duration;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Collects the receipt handles of consumed messages and deletes them with {@code DeleteMessageBatch}.  Entries that
+ * fail for reasons other than a sender fault are retried in a later batch until they run out of attempts.
+ */
+public class DeleteMessageBatcher extends BatchAccumulator<DeleteMessageBatcher.Entry> {
+
+    private static final Logger LOG = LoggerFactory.getLogger(DeleteMessageBatcher.class);
+    private static final int MAX_ATTEMPTS = 3;
+
+    private final SqsService sqs;
+    private final ConsumerMetrics metrics;
+
+    public DeleteMessageBatcher(SqsService sqs, int batchSize, Duration linger, ConsumerMetrics metrics) {
+        super(batchSize, Long.MAX_VALUE, linger);
+        this.sqs = sqs;
+        this.metrics = metrics;
+    }
+
+    /**
+     * Schedules a message for deletion.  Must be called from a Ratpack managed thread.
+     * @param queueUrl The queue the message was received from
+     * @param message The message to delete
+     */
+    public void delete(String queueUrl, Message message) {
+        add(queueUrl, new Entry(message, 1));
+    }
+
+    @Override
+    protected Operation send(String queueUrl, List<Entry> entries) {
+        List<DeleteMessageBatchRequestEntry> requestEntries = new ArrayList<>(entries.size());
+        for (int i = 0; i < entries.size(); i++) {
+            requestEntries.add(DeleteMessageBatchRequestEntry.builder()
+                .id(Integer.toString(i))
+                .receiptHandle(entries.get(i).message.receiptHandle())
+                .build());
+        }
+        DeleteMessageBatchRequest request = DeleteMessageBatchRequest.builder()
+            .queueUrl(queueUrl)
+            .entries(requestEntries)
+            .build();
+
+        long started = System.nanoTime();
+        return sqs.deleteMessageBatch(request)
+            .wiretap(result -> metrics.getDelete().update(System.nanoTime() - started, TimeUnit.NANOSECONDS))
+            .map(response -> {
+                response.failed().forEach(failure ->
+                    onFailure(queueUrl, entries.get(Integer.parseInt(failure.id())), failure)
+                );
+                return response;
+            })
+            .mapError(e -> {
+                LOG.warn("Failed to delete batch of size={} from queue={}", entries.size(), queueUrl, e);
+                entries.forEach(entry -> retry(queueUrl, entry, e.getMessage()));
+                return null;
+            })
+            .operation();
+    }
+
+    private void onFailure(String queueUrl, Entry entry, BatchResultErrorEntry failure) {
+        if (Boolean.TRUE.equals(failure.senderFault())) {
+            metrics.getDeleteErrors().mark();
+            LOG.error(
+                "Unable to delete message={} from queue={} code={} reason={}",
+                entry.message.messageId(), queueUrl, failure.code(), failure.message()
+            );
+        } else {
+            retry(queueUrl, entry, failure.code());
+        }
+    }
+
+    private void retry(String queueUrl, Entry entry, String reason) {
+        if (entry.attempt >= MAX_ATTEMPTS) {
+            metrics.getDeleteErrors().mark();
+            LOG.error(
+                "Giving up deleting message={} from queue={} after attempts={} reason={}",
+                entry.message.messageId(), queueUrl, entry.attempt, reason
+            );
+            return;
+        }
+        add(queueUrl, new Entry(entry.message, entry.attempt + 1));
+    }
+
+    /**
+     * A message awaiting deletion.
+     */
+    static final class Entry {
+        private final Message message;
+        private final int attempt;
+
+        Entry(Message message, int attempt) {
+            this.message = message;
+            this.attempt = attempt;
+        }
+    }
+}
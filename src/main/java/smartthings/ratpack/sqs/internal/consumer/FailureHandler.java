@@ -0,0 +1,101 @@
+package smartthings.ratpack.sqs.internal.consumer;
+
+import ratpack.exec.Operation;
+import smartthings.ratpack.sqs.SqsModule;
+import software.amazon.awssdk.services.sqs.model.Message;
+import software.amazon.awssdk.services.sqs.model.MessageSystemAttributeName;
+import software.amazon.awssdk.services.sqs.model.ReceiveMessageRequest;
+
+import java.time.Duration;
+import java.util.ArrayList;
+import java.util.List;
+
+/**
+ * Negatively acknowledges messages whose consumer failed by changing their visibility timeout to the redelivery delay
+ * of the configured {@link SqsModule.FailurePolicy}.  Changes are batched with those of other failed messages of the
+ * same queue.
+ */
+public class FailureHandler {
+
+    /**
+     * Longest visibility timeout accepted by SQS.
+     */
+    static final Duration MAX_VISIBILITY_TIMEOUT = Duration.ofHours(12);
+
+    private static final String RECEIVE_COUNT = MessageSystemAttributeName.APPROXIMATE_RECEIVE_COUNT.toString();
+    private static final String ALL = "All";
+
+    private final SqsModule.FailurePolicy policy;
+    private final Duration baseDelay;
+    private final Duration maxDelay;
+    private final ChangeVisibilityBatcher batcher;
+
+    public FailureHandler(
+        SqsModule.FailurePolicy policy,
+        Duration baseDelay,
+        Duration maxDelay,
+        ChangeVisibilityBatcher batcher
+    ) {
+        this.policy = policy;
+        this.baseDelay = baseDelay;
+        this.maxDelay = maxDelay.compareTo(MAX_VISIBILITY_TIMEOUT) > 0 ? MAX_VISIBILITY_TIMEOUT : maxDelay;
+        this.batcher = batcher;
+    }
+
+    /**
+     * Schedules a failed message for redelivery.  Must be called from a Ratpack managed thread.
+     * @param queueUrl The queue the message was received from
+     * @param message The message whose consumer failed
+     */
+    public void onFailure(String queueUrl, Message message) {
+        batcher.change(queueUrl, message, delay(message));
+    }
+
+    /**
+     * Sends the redelivery delays waiting for their batch to fill.
+     * @return an operation completing once the delays have been sent
+     */
+    public Operation flush() {
+        return batcher.flushAll();
+    }
+
+    /**
+     * Requests the {@code ApproximateReceiveCount} attribute the exponential policy bases its delay on.
+     * @param request The receive request of the consumer
+     * @return the request, asking for the receive count if needed
+     */
+    public ReceiveMessageRequest withReceiveCount(ReceiveMessageRequest request) {
+        List<String> names = request.attributeNamesAsStrings();
+        if (policy != SqsModule.FailurePolicy.EXPONENTIAL || names.contains(RECEIVE_COUNT) || names.contains(ALL)) {
+            return request;
+        }
+        List<String> withCount = new ArrayList<>(names);
+        withCount.add(RECEIVE_COUNT);
+        return request.toBuilder()
+            .attributeNamesWithStrings(withCount)
+            .build();
+    }
+
+    /**
+     * The redelivery delay of a failed message: none for the immediate policy, otherwise the base delay doubled for
+     * every previous receive, capped at the maximum delay.
+     */
+    Duration delay(Message message) {
+        if (policy != SqsModule.FailurePolicy.EXPONENTIAL) {
+            return Duration.ZERO;
+        }
+        int receiveCount = receiveCount(message);
+        long factor = 1L << Math.min(receiveCount - 1, 30);
+        Duration delay = baseDelay.multipliedBy(factor);
+        return delay.compareTo(maxDelay) > 0 ? maxDelay : delay;
+    }
+
+    private static int receiveCount(Message message) {
+        String count = message.attributes().get(MessageSystemAttributeName.APPROXIMATE_RECEIVE_COUNT);
+        try {
+            return count == null ? 1 : Math.max(1, Integer.parseInt(count));
+        } catch (NumberFormatException e) {
+            return 1;
+        }
+    }
+}
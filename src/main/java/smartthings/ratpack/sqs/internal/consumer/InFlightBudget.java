@@ -0,0 +1,184 @@
+package smartthings.ratpack.sqs.internal.consumer;
+
+import ratpack.exec.Downstream;
+import ratpack.exec.Promise;
+import software.amazon.awssdk.services.sqs.model.Message;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.function.BooleanSupplier;
+
+/**
+ * Bounds the messages held by pollers, from the moment they are received until they have been processed, in number
+ * and in payload bytes.  Pollers wait on {@link #awaitCapacity()} before receiving, so receives pause while the budget
+ * is used up and resume as in-flight messages complete.  A budget may have a parent, such as a global budget over all
+ * consumers, whose capacity is awaited too and which is charged for everything charged to its children.
+ *
+ * <p>The limits are soft: a receive that starts while there is capacity is admitted in full, so usage can exceed a
+ * limit by at most one receive per poller.  Payload bytes are approximated by the length of the message body.
+ */
+public class InFlightBudget {
+
+    private final long maxMessages;
+    private final long maxBytes;
+    private final InFlightBudget parent;
+    private final List<Downstream<? super Void>> waiters = new ArrayList<>();
+    private long messages;
+    private long bytes;
+
+    /**
+     * Creates a budget.
+     * @param maxMessages Most messages in flight, or 0 for no limit
+     * @param maxBytes Most payload bytes in flight, or 0 for no limit
+     * @param parent A budget also charged for this budget's messages, or null
+     */
+    public InFlightBudget(long maxMessages, long maxBytes, InFlightBudget parent) {
+        this.maxMessages = maxMessages;
+        this.maxBytes = maxBytes;
+        this.parent = parent;
+    }
+
+    /**
+     * Waits until this budget and its parents have room for more messages.
+     * @return a promise completing once a receive may be issued
+     */
+    public Promise<Void> awaitCapacity() {
+        return awaitCapacity(() -> false);
+    }
+
+    /**
+     * Waits until this budget and its parents have room for more messages, or until the waiting poller stops.  A
+     * poller that stops while waiting is resumed by {@link #wakeWaiters()}.
+     * @param stopped Whether the waiting poller has stopped and should be resumed without capacity
+     * @return a promise completing once a receive may be issued or the poller has stopped
+     */
+    public Promise<Void> awaitCapacity(BooleanSupplier stopped) {
+        Promise<Void> own = Promise.async(downstream -> {
+            boolean ready;
+            synchronized (this) {
+                ready = hasCapacity() || stopped.getAsBoolean();
+                if (!ready) {
+                    waiters.add(downstream);
+                }
+            }
+            if (ready) {
+                downstream.success(null);
+            }
+        });
+        return own.flatMap(v -> {
+            if (stopped.getAsBoolean()) {
+                return Promise.value(null);
+            }
+            if (!hasCapacityNow()) {
+                // Woken for a stopped poller rather than by a release.
+                return awaitCapacity(stopped);
+            }
+            return parent == null ? Promise.value(null) : parent.awaitCapacity(stopped);
+        });
+    }
+
+    /**
+     * Resumes every poller waiting on this budget or its parents, so that pollers that have stopped can finish.
+     * Pollers that are still running wait again.
+     */
+    public void wakeWaiters() {
+        List<Downstream<? super Void>> resumed;
+        synchronized (this) {
+            resumed = new ArrayList<>(waiters);
+            waiters.clear();
+        }
+        resumed.forEach(downstream -> downstream.success(null));
+        if (parent != null) {
+            parent.wakeWaiters();
+        }
+    }
+
+    /**
+     * How many more messages may be received before the message limit of this budget or its parents is reached.
+     * @return the remaining message capacity, {@link Integer#MAX_VALUE} when unlimited
+     */
+    public int remainingMessages() {
+        long remaining;
+        synchronized (this) {
+            remaining = maxMessages > 0 ? Math.max(0, maxMessages - messages) : Integer.MAX_VALUE;
+        }
+        int own = (int) Math.min(Integer.MAX_VALUE, remaining);
+        return parent == null ? own : Math.min(own, parent.remainingMessages());
+    }
+
+    /**
+     * Charges received messages to this budget and its parents.
+     * @param received The messages received
+     */
+    public void acquire(List<Message> received) {
+        acquire(received.size(), sizeOf(received));
+    }
+
+    /**
+     * Returns the share of processed messages to this budget and its parents, resuming waiting pollers.
+     * @param processed The messages that are no longer in flight
+     */
+    public void release(List<Message> processed) {
+        release(processed.size(), sizeOf(processed));
+    }
+
+    public synchronized long getMessages() {
+        return messages;
+    }
+
+    public synchronized long getBytes() {
+        return bytes;
+    }
+
+    public long getMaxMessages() {
+        return maxMessages;
+    }
+
+    public long getMaxBytes() {
+        return maxBytes;
+    }
+
+    private void acquire(int count, long size) {
+        synchronized (this) {
+            messages += count;
+            bytes += size;
+        }
+        if (parent != null) {
+            parent.acquire(count, size);
+        }
+    }
+
+    private void release(int count, long size) {
+        List<Downstream<? super Void>> resumed = null;
+        synchronized (this) {
+            messages = Math.max(0, messages - count);
+            bytes = Math.max(0, bytes - size);
+            if (hasCapacity() && !waiters.isEmpty()) {
+                resumed = new ArrayList<>(waiters);
+                waiters.clear();
+            }
+        }
+        if (resumed != null) {
+            resumed.forEach(downstream -> downstream.success(null));
+        }
+        if (parent != null) {
+            parent.release(count, size);
+        }
+    }
+
+    private synchronized boolean hasCapacityNow() {
+        return hasCapacity();
+    }
+
+    private boolean hasCapacity() {
+        return (maxMessages <= 0 || messages < maxMessages) && (maxBytes <= 0 || bytes < maxBytes);
+    }
+
+    private static long sizeOf(List<Message> messages) {
+        long size = 0;
+        for (Message message : messages) {
+            size += message.body() == null ? 0 : message.body().length();
+        }
+        return size;
+    }
+}
@@ -0,0 +1,114 @@
+package smartthings.ratpack.sqs.internal.consumer;
+
+import java.time.Duration;
+import java.util.concurrent.atomic.LongAdder;
+
+/**
+ * Receive and processing counters of a single poller, read and reset by the {@link ConsumerPool} on every scaling
+ * interval.
+ */
+public class PollerStats {
+
+    private final LongAdder receives = new LongAdder();
+    private final LongAdder emptyReceives = new LongAdder();
+    private final LongAdder received = new LongAdder();
+    private final LongAdder processed = new LongAdder();
+    private final LongAdder processingNanos = new LongAdder();
+
+    public void recordReceive(int count) {
+        receives.increment();
+        received.add(count);
+        if (count == 0) {
+            emptyReceives.increment();
+        }
+    }
+
+    /**
+     * Records the time a single concurrency slot spent processing messages.
+     * @param count The number of messages processed
+     * @param nanos The processing time in nanoseconds
+     */
+    public void recordProcessing(int count, long nanos) {
+        processed.add(count);
+        processingNanos.add(nanos);
+    }
+
+    /**
+     * Returns the counters recorded since the last snapshot and resets them.
+     * @return the counters of the elapsed interval
+     */
+    public Snapshot snapshot() {
+        return new Snapshot(
+            receives.sumThenReset(),
+            emptyReceives.sumThenReset(),
+            received.sumThenReset(),
+            processed.sumThenReset(),
+            processingNanos.sumThenReset()
+        );
+    }
+
+    /**
+     * Counters recorded during one interval, by one poller or summed over a pool.
+     */
+    public static final class Snapshot {
+
+        public static final Snapshot EMPTY = new Snapshot(0, 0, 0, 0, 0);
+
+        private final long receives;
+        private final long emptyReceives;
+        private final long received;
+        private final long processed;
+        private final long processingNanos;
+
+        public Snapshot(long receives, long emptyReceives, long received, long processed, long processingNanos) {
+            this.receives = receives;
+            this.emptyReceives = emptyReceives;
+            this.received = received;
+            this.processed = processed;
+            this.processingNanos = processingNanos;
+        }
+
+        public Snapshot plus(Snapshot other) {
+            return new Snapshot(
+                receives + other.receives,
+                emptyReceives + other.emptyReceives,
+                received + other.received,
+                processed + other.processed,
+                processingNanos + other.processingNanos
+            );
+        }
+
+        public long getReceives() {
+            return receives;
+        }
+
+        public long getReceived() {
+            return received;
+        }
+
+        public long getProcessed() {
+            return processed;
+        }
+
+        /**
+         * @return the share of receives that returned no messages, or 0 without receives
+         */
+        public double getEmptyRatio() {
+            return receives == 0 ? 0 : (double) emptyReceives / receives;
+        }
+
+        /**
+         * @return the mean number of messages per receive, or 0 without receives
+         */
+        public double getAverageBatchSize() {
+            return receives == 0 ? 0 : (double) received / receives;
+        }
+
+        /**
+         * @return the mean time a concurrency slot spent on one message, or zero without processed messages
+         */
+        public Duration getAverageLatency() {
+            return processed == 0 ? Duration.ZERO : Duration.ofNanos(processingNanos / processed);
+        }
+    }
+}
@@ -0,0 +1,206 @@
+package smartthings.ratpack.sqs.internal.consumer;
+
+import ratpack.exec.Downstream;
+import ratpack.exec.Promise;
+import software.amazon.awssdk.services.sqs.model.Message;
+
+import java.time.Duration;
+import java.util.ArrayDeque;
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.Deque;
+import java.util.List;
+import java.util.Optional;
+
+/**
+ * Bounded buffer of received messages that decouples the receive loop of a consumer from the executions processing
+ * its messages.  The receive loop waits for free space before polling again, and workers wait for messages to arrive.
+ * Every entry remembers when its visibility timeout runs out, so that workers can drop messages that have become
+ * visible on the queue again instead of processing them a second time.
+ */
+public class PrefetchBuffer {
+
+    private final int capacity;
+    private final Deque<Entry> entries = new ArrayDeque<>();
+    private final Deque<Downstream<? super Optional<Entry>>> takers = new ArrayDeque<>();
+    private Downstream<? super Integer> spaceWaiter;
+    private boolean closed;
+
+    public PrefetchBuffer(int capacity) {
+        if (capacity < 1) {
+            throw new IllegalArgumentException("A prefetch buffer requires a capacity of at least 1");
+        }
+        this.capacity = capacity;
+    }
+
+    /**
+     * Waits until the buffer has room for at least one more message.
+     * @return a promise for the number of free slots, 0 once the buffer has been closed
+     */
+    public Promise<Integer> awaitSpace() {
+        return Promise.async(downstream -> {
+            int free;
+            boolean ready;
+            synchronized (this) {
+                free = closed ? 0 : capacity - entries.size();
+                ready = closed || free > 0;
+                if (!ready) {
+                    spaceWaiter = downstream;
+                }
+            }
+            if (ready) {
+                downstream.success(free);
+            }
+        });
+    }
+
+    /**
+     * Adds received messages to the buffer, handing them straight to waiting workers where possible.
+     * @param messages The received messages
+     * @param receivedAt The {@link System#nanoTime()} at which the receive was issued
+     * @param visibilityTimeout The visibility timeout the messages were received with
+     * @return false if the buffer has been closed, in which case none of the messages were taken
+     */
+    public boolean offer(Collection<Message> messages, long receivedAt, Duration visibilityTimeout) {
+        long visibleAt = receivedAt + visibilityTimeout.toNanos();
+        List<Downstream<? super Optional<Entry>>> resumed = new ArrayList<>();
+        List<Entry> handedOff = new ArrayList<>();
+        synchronized (this) {
+            if (closed) {
+                return false;
+            }
+            for (Message message : messages) {
+                Entry entry = new Entry(message, visibleAt, visibilityTimeout);
+                if (takers.isEmpty()) {
+                    entries.add(entry);
+                } else {
+                    resumed.add(takers.poll());
+                    handedOff.add(entry);
+                }
+            }
+        }
+        for (int i = 0; i < resumed.size(); i++) {
+            resumed.get(i).success(Optional.of(handedOff.get(i)));
+        }
+        return true;
+    }
+
+    /**
+     * Takes the oldest buffered message, waiting for one to arrive if the buffer is empty.
+     * @return a promise for the next message, or empty once the buffer has been closed
+     */
+    public Promise<Optional<Entry>> take() {
+        return Promise.async(downstream -> {
+            Optional<Entry> next = Optional.empty();
+            Downstream<? super Integer> waiter = null;
+            int free = 0;
+            boolean ready;
+            synchronized (this) {
+                ready = closed || !entries.isEmpty();
+                if (!entries.isEmpty()) {
+                    next = Optional.of(entries.poll());
+                    free = capacity - entries.size();
+                    waiter = spaceWaiter;
+                    spaceWaiter = null;
+                } else if (!closed) {
+                    takers.add(downstream);
+                }
+            }
+            if (waiter != null) {
+                waiter.success(free);
+            }
+            if (ready) {
+                downstream.success(next);
+            }
+        });
+    }
+
+    /**
+     * Marks the end of the buffer once no more messages will be offered.  Workers still take the messages already
+     * buffered and are released once the buffer is empty, while the receive loop is released right away.
+     */
+    public void complete() {
+        List<Downstream<? super Optional<Entry>>> released;
+        Downstream<? super Integer> waiter;
+        synchronized (this) {
+            closed = true;
+            released = new ArrayList<>(takers);
+            takers.clear();
+            waiter = spaceWaiter;
+            spaceWaiter = null;
+        }
+        release(released, waiter);
+    }
+
+    /**
+     * Closes the buffer, releasing any waiting workers and the receive loop if it is waiting for space.
+     * @return the messages that were still buffered and will not be processed
+     */
+    public List<Entry> close() {
+        List<Entry> remaining;
+        List<Downstream<? super Optional<Entry>>> released;
+        Downstream<? super Integer> waiter;
+        synchronized (this) {
+            closed = true;
+            remaining = new ArrayList<>(entries);
+            entries.clear();
+            released = new ArrayList<>(takers);
+            takers.clear();
+            waiter = spaceWaiter;
+            spaceWaiter = null;
+        }
+        release(released, waiter);
+        return remaining;
+    }
+
+    private static void release(List<Downstream<? super Optional<Entry>>> takers, Downstream<? super Integer> waiter) {
+        takers.forEach(downstream -> downstream.success(Optional.empty()));
+        if (waiter != null) {
+            waiter.success(0);
+        }
+    }
+
+    public synchronized int size() {
+        return entries.size();
+    }
+
+    /**
+     * A buffered message and the point at which it becomes visible on the queue again.
+     */
+    public static final class Entry {
+        private final Message message;
+        private final long visibleAt;
+        private final Duration visibilityTimeout;
+
+        Entry(Message message, long visibleAt, Duration visibilityTimeout) {
+            this.message = message;
+            this.visibleAt = visibleAt;
+            this.visibilityTimeout = visibilityTimeout;
+        }
+
+        public Message getMessage() {
+            return message;
+        }
+
+        /**
+         * @return the {@link System#nanoTime()} at which the receive was issued
+         */
+        public long getReceivedAt() {
+            return visibleAt - visibilityTimeout.toNanos();
+        }
+
+        public Duration getVisibilityTimeout() {
+            return visibilityTimeout;
+        }
+
+        /**
+         * Whether the message is too close to becoming visible again to be processed safely.  The safety margin is a
+         * tenth of the visibility timeout, but no less than a second.
+         * @return true when the message should be dropped rather than processed
+         */
+        public boolean isStale() {
+            long margin = Math.max(Duration.ofSeconds(1).toNanos(), visibilityTimeout.toNanos() / 10);
+            return System.nanoTime() > visibleAt - margin;
+        }
+    }
+}
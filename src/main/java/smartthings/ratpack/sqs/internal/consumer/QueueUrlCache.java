@@ -0,0 +1,109 @@
+package smartthings.ratpack.sqs.internal.consumer;
+
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import ratpack.exec.Promise;
+import smartthings.ratpack.sqs.SqsService;
+import software.amazon.awssdk.services.sqs.model.*;
+
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+
+/**
+ * Queue URLs resolved by {@code GetQueueUrl}, keyed by region, endpoint and queue name and shared by every
+ * {@link SqsService} handed out by the {@link SqsManager}.  An entry is dropped, and resolved again on next use, as
+ * soon as any call made with its URL fails with {@link QueueDoesNotExistException}.
+ */
+public class QueueUrlCache {
+
+    private static final Logger LOG = LoggerFactory.getLogger(QueueUrlCache.class);
+
+    private final Map<String, String> urls = new ConcurrentHashMap<>();
+
+    /**
+     * Wraps a service so that its queue URL lookups go through this cache.
+     * @param sqs The service to wrap
+     * @param endpointKey The region and endpoint the service talks to
+     * @return the caching service
+     */
+    public SqsService wrap(SqsService sqs, String endpointKey) {
+        return new CachingSqsService(sqs, endpointKey);
+    }
+
+    public int size() {
+        return urls.size();
+    }
+
+    private void evict(String queueUrl) {
+        if (queueUrl != null && urls.values().removeIf(queueUrl::equals)) {
+            LOG.warn("Queue url={} no longer exists, resolving it again on next use.", queueUrl);
+        }
+    }
+
+    private final class CachingSqsService implements SqsService {
+
+        private final SqsService delegate;
+        private final String endpointKey;
+
+        private CachingSqsService(SqsService delegate, String endpointKey) {
+            this.delegate = delegate;
+            this.endpointKey = endpointKey;
+        }
+
+        @Override
+        public Promise<DeleteMessageResponse> deleteMessage(DeleteMessageRequest request) {
+            return evictOnMissing(request.queueUrl(), delegate.deleteMessage(request));
+        }
+
+        @Override
+        public Promise<DeleteMessageBatchResponse> deleteMessageBatch(DeleteMessageBatchRequest request) {
+            return evictOnMissing(request.queueUrl(), delegate.deleteMessageBatch(request));
+        }
+
+        @Override
+        public Promise<SendMessageResponse> sendMessage(SendMessageRequest request) {
+            return evictOnMissing(request.queueUrl(), delegate.sendMessage(request));
+        }
+
+        @Override
+        public Promise<SendMessageBatchResponse> sendMessageBatch(SendMessageBatchRequest request) {
+            return evictOnMissing(request.queueUrl(), delegate.sendMessageBatch(request));
+        }
+
+        @Override
+        public Promise<ReceiveMessageResponse> receiveMessage(ReceiveMessageRequest request) {
+            return evictOnMissing(request.queueUrl(), delegate.receiveMessage(request));
+        }
+
+        @Override
+        public Promise<GetQueueUrlResponse> getQueueUrl(String queueName) {
+            String key = endpointKey + "/" + queueName;
+            String url = urls.get(key);
+            if (url != null) {
+                return Promise.value(GetQueueUrlResponse.builder().queueUrl(url).build());
+            }
+            return delegate.getQueueUrl(queueName)
+                .next(response -> urls.put(key, response.queueUrl()));
+        }
+
+        @Override
+        public Promise<GetQueueAttributesResponse> getQueueAttributes(GetQueueAttributesRequest request) {
+            return evictOnMissing(request.queueUrl(), delegate.getQueueAttributes(request));
+        }
+
+        @Override
+        public Promise<ChangeMessageVisibilityBatchResponse> changeMessageVisibilityBatch(
+            ChangeMessageVisibilityBatchRequest request
+        ) {
+            return evictOnMissing(request.queueUrl(), delegate.changeMessageVisibilityBatch(request));
+        }
+
+        private <T> Promise<T> evictOnMissing(String queueUrl, Promise<T> promise) {
+            return promise.wiretap(result -> {
+                if (result.isError() && result.getThrowable() instanceof QueueDoesNotExistException) {
+                    evict(queueUrl);
+                }
+            });
+        }
+    }
+}
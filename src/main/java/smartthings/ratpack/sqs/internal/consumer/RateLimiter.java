@@ -0,0 +1,83 @@
+package smartthings.ratpack.sqs.internal.consumer;
+
+import ratpack.exec.Execution;
+import ratpack.exec.Operation;
+
+import java.time.Duration;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * A token bucket limiting how many messages per second are handed to one consumer.  Permits are taken up front and
+ * a caller that overdraws the bucket waits out the deficit with {@link Execution#sleep(Duration)}, so no thread is
+ * held while throttled.  The bucket holds one second's worth of permits, which bounds bursts.
+ */
+public class RateLimiter {
+
+    private static final long NANOS_PER_SECOND = TimeUnit.SECONDS.toNanos(1);
+
+    private final double permitsPerSecond;
+    private final double capacity;
+    private double tokens;
+    private long refilledAt;
+
+    public RateLimiter(double permitsPerSecond) {
+        if (permitsPerSecond <= 0) {
+            throw new IllegalArgumentException("The rate limit must be positive, was " + permitsPerSecond);
+        }
+        this.permitsPerSecond = permitsPerSecond;
+        this.capacity = Math.max(1, permitsPerSecond);
+        this.tokens = capacity;
+        this.refilledAt = System.nanoTime();
+    }
+
+    /**
+     * The number of whole permits that can be taken right now without waiting.
+     * @return the available permits, possibly 0
+     */
+    public synchronized int available() {
+        refill();
+        return tokens < 1 ? 0 : (int) tokens;
+    }
+
+    /**
+     * Waits until at least one permit is available, without taking it.  Must be called from a Ratpack managed thread.
+     * @return an operation that completes once a permit is available
+     */
+    public Operation awaitAvailable() {
+        long wait;
+        synchronized (this) {
+            refill();
+            wait = nanosUntil(1);
+        }
+        return sleep(wait);
+    }
+
+    /**
+     * Takes permits, waiting for as long as the bucket is overdrawn.  Must be called from a Ratpack managed thread.
+     * @param permits The number of messages about to be consumed
+     * @return an operation that completes once the permits are due
+     */
+    public Operation acquire(int permits) {
+        long wait;
+        synchronized (this) {
+            refill();
+            tokens -= permits;
+            wait = nanosUntil(0);
+        }
+        return sleep(wait);
+    }
+
+    private void refill() {
+        long now = System.nanoTime();
+        tokens = Math.min(capacity, tokens + (now - refilledAt) * permitsPerSecond / NANOS_PER_SECOND);
+        refilledAt = now;
+    }
+
+    private long nanosUntil(double level) {
+        return tokens >= level ? 0 : (long) Math.ceil((level - tokens) * NANOS_PER_SECOND / permitsPerSecond);
+    }
+
+    private static Operation sleep(long nanos) {
+        return nanos <= 0 ? Operation.noop() : Execution.sleep(Duration.ofNanos(nanos));
+    }
+}
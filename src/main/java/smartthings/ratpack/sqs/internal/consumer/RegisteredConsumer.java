@@ -0,0 +1,133 @@
+package smartthings.ratpack.sqs.internal.consumer;
+
+import com.fasterxml.jackson.databind.ObjectMapper;
+import ratpack.exec.Operation;
+import ratpack.exec.Promise;
+import smartthings.ratpack.sqs.AsyncConsumer;
+import smartthings.ratpack.sqs.BatchConsumer;
+import smartthings.ratpack.sqs.BatchResult;
+import smartthings.ratpack.sqs.CompressingSqsService;
+import smartthings.ratpack.sqs.Consumer;
+import smartthings.ratpack.sqs.JacksonMessageCodec;
+import smartthings.ratpack.sqs.MessageCodec;
+import smartthings.ratpack.sqs.TypedConsumer;
+import software.amazon.awssdk.services.sqs.model.Message;
+import software.amazon.awssdk.services.sqs.model.ReceiveMessageRequest;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Map;
+import java.util.stream.Collectors;
+
+/**
+ * A consumer implementation from the registry, in the form {@link ConsumerAction} drives it.  Synchronous
+ * {@link Consumer}s and {@link TypedConsumer}s are presented as {@link AsyncConsumer}s, while {@link BatchConsumer}s
+ * are handed whole receives.  Messages whose compressed body could not be decompressed fail without reaching the
+ * consumer, so that the failure policy and redrive deal with them.
+ */
+public final class RegisteredConsumer {
+
+    private final Object instance;
+    private final AsyncConsumer single;
+    private final BatchConsumer batch;
+
+    private RegisteredConsumer(Object instance, AsyncConsumer single, BatchConsumer batch) {
+        this.instance = instance;
+        this.single = single;
+        this.batch = batch;
+    }
+
+    /**
+     * Wraps a registered consumer implementation, decoding the payloads of {@link TypedConsumer}s as JSON.
+     * @param consumer A {@link Consumer}, {@link AsyncConsumer}, {@link TypedConsumer} or {@link BatchConsumer}
+     * @return the wrapped consumer
+     */
+    public static RegisteredConsumer of(Object consumer) {
+        return of(consumer, new JacksonMessageCodec(new ObjectMapper()));
+    }
+
+    /**
+     * Wraps a registered consumer implementation.
+     * @param consumer A {@link Consumer}, {@link AsyncConsumer}, {@link TypedConsumer} or {@link BatchConsumer}
+     * @param codec Decodes the payloads of {@link TypedConsumer}s
+     * @return the wrapped consumer
+     */
+    public static RegisteredConsumer of(Object consumer, MessageCodec codec) {
+        if (consumer instanceof BatchConsumer) {
+            return new RegisteredConsumer(consumer, null, (BatchConsumer) consumer);
+        }
+        if (consumer instanceof AsyncConsumer) {
+            return new RegisteredConsumer(consumer, (AsyncConsumer) consumer, null);
+        }
+        if (consumer instanceof Consumer) {
+            Consumer sync = (Consumer) consumer;
+            return new RegisteredConsumer(consumer, message -> Operation.of(() -> sync.consume(message)), null);
+        }
+        if (consumer instanceof TypedConsumer) {
+            return new RegisteredConsumer(consumer, typed((TypedConsumer<?>) consumer, codec), null);
+        }
+        throw new IllegalArgumentException("Unsupported SQS consumer type " + consumer.getClass().getName());
+    }
+
+    private static <T> AsyncConsumer typed(TypedConsumer<T> consumer, MessageCodec codec) {
+        Class<T> type = consumer.getPayloadType();
+        boolean envelope = consumer.isSnsEnvelope();
+        return message -> Operation.flatten(() -> {
+            T payload = envelope ?
+                codec.decodeNotification(message.body(), type) :
+                codec.decode(message.body(), type);
+            return consumer.consume(payload, message);
+        });
+    }
+
+    public boolean isBatch() {
+        return batch != null;
+    }
+
+    public Class<?> getType() {
+        return instance.getClass();
+    }
+
+    public Operation consume(Message message) {
+        return Operation.flatten(() -> {
+            if (CompressingSqsService.isCompressed(message)) {
+                throw new IllegalStateException("Unable to decompress the body of message=" + message.messageId());
+            }
+            return single.consume(message);
+        });
+    }
+
+    public Promise<BatchResult> consume(List<Message> messages) {
+        Map<Boolean, List<Message>> byCompressed = messages.stream()
+            .collect(Collectors.partitioningBy(CompressingSqsService::isCompressed));
+        List<Message> undecodable = byCompressed.get(true);
+        if (undecodable.isEmpty()) {
+            return Promise.flatten(() -> batch.consume(messages));
+        }
+        List<Message> decodable = byCompressed.get(false);
+        if (decodable.isEmpty()) {
+            return Promise.value(BatchResult.failed(undecodable));
+        }
+        return Promise.flatten(() -> batch.consume(decodable))
+            .map(result -> {
+                List<Message> failed = new ArrayList<>(undecodable);
+                decodable.stream()
+                    .filter(message -> !result.isSuccessful(message))
+                    .forEach(failed::add);
+                return BatchResult.failed(failed);
+            });
+    }
+
+    public ReceiveMessageRequest getReceiveMessageRequest() {
+        if (batch != null) {
+            return batch.getReceiveMessageRequest();
+        }
+        if (instance instanceof Consumer) {
+            return ((Consumer) instance).getReceiveMessageRequest();
+        }
+        if (instance instanceof TypedConsumer) {
+            return ((TypedConsumer<?>) instance).getReceiveMessageRequest();
+        }
+        return single.getReceiveMessageRequest();
+    }
+}
@@ -4,41 +4,70 @@ import com.google.inject.Inject;
 import com.google.inject.Singleton;
 import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
+import ratpack.exec.Promise;
+import ratpack.exec.util.ParallelBatch;
+import ratpack.service.DependsOn;
 import ratpack.service.Service;
 import ratpack.service.StartEvent;
+import smartthings.ratpack.aws.blob.BlobStore;
+import smartthings.ratpack.aws.blob.ClaimCheck;
+import smartthings.ratpack.aws.codec.PayloadCompression;
+import smartthings.ratpack.aws.internal.http.HttpClients;
+import smartthings.ratpack.sqs.AsyncSqsService;
+import smartthings.ratpack.sqs.ClaimCheckSqsService;
+import smartthings.ratpack.sqs.CompressingSqsService;
 import smartthings.ratpack.sqs.DefaultSqsService;
 import smartthings.ratpack.sqs.SqsModule;
 import smartthings.ratpack.sqs.SqsService;
 import smartthings.ratpack.sqs.SQSClientProvider;
+import software.amazon.awssdk.services.sqs.model.GetQueueUrlResponse;
 
+import java.util.ArrayList;
 import java.util.Collection;
+import java.util.LinkedHashMap;
+import java.util.List;
 import java.util.Map;
+import java.util.Optional;
 import java.util.concurrent.ConcurrentHashMap;
+import java.util.stream.Collectors;
 
 @Singleton
+@DependsOn({HttpClients.class})
 public class SqsManager implements Service {
 
     private static final Logger LOG = LoggerFactory.getLogger(SqsManager.class);
 
     private final Map<String, SqsService> sqsMap = new ConcurrentHashMap<>();
+    private final QueueUrlCache queueUrls = new QueueUrlCache();
     private final SqsModule.Config config;
     private final SQSClientProvider sqsProvider;
+    private final PayloadCompression compression;
+    private final ClaimCheck claimCheck;
 
     @Inject
-    public SqsManager(SqsModule.Config config, SQSClientProvider sqsProvider) {
+    public SqsManager(
+        SqsModule.Config config,
+        SQSClientProvider sqsProvider,
+        PayloadCompression compression,
+        Optional<BlobStore> blobStore
+    ) {
         this.config = config;
         this.sqsProvider = sqsProvider;
+        this.compression = compression;
+        this.claimCheck = blobStore.map(ClaimCheck::new).orElse(null);
     }
 
     @Override
     public void onStart(StartEvent event) throws Exception {
         if (config.isEnabled()) {
             LOG.debug("Starting up SqsManager...");
-            config.getConsumers().stream()
+            List<SqsModule.EndpointConfig> endpoints = config.getConsumers().stream()
                 .filter(SqsModule.ConsumerConfig::isEnabled)
                 .map(SqsModule.ConsumerConfig::getEndpoints)
                 .flatMap(Collection::stream)
-                .forEach(this::create);
+                .collect(Collectors.toList());
+            endpoints.forEach(this::create);
+            resolveQueueUrls(endpoints);
         } else {
             LOG.debug("Skipping start up of SqsManager...");
         }
@@ -56,7 +85,49 @@ public class SqsManager implements Service {
         return sqs;
     }
 
-    private SqsService create(SqsModule.EndpointConfig config) {
+    /**
+     * Returns the service of an endpoint, creating its client if no consumer has used the endpoint yet.  Consumers
+     * added at runtime share the clients of those started with the application.
+     * @param config The endpoint
+     * @return the service of the endpoint
+     */
+    public SqsService connect(SqsModule.EndpointConfig config) {
+        SqsService sqs = sqsMap.get(getCacheKey(config));
+        return sqs != null ? sqs : create(config);
+    }
+
+    /**
+     * Resolves the queue URLs of all consumer endpoints concurrently, so that the first polls find them cached.  A
+     * queue that cannot be resolved yet is logged and resolved again on first use.  Queues consumed by several
+     * consumers are looked up once.
+     */
+    private void resolveQueueUrls(List<SqsModule.EndpointConfig> endpoints) {
+        Map<String, SqsModule.EndpointConfig> queues = new LinkedHashMap<>();
+        endpoints.stream()
+            .filter(endpoint -> endpoint.getQueueName() != null)
+            .forEach(endpoint ->
+                queues.putIfAbsent(getEndpointKey(endpoint) + "/" + endpoint.getQueueName(), endpoint)
+            );
+        List<SqsModule.EndpointConfig> resolved = new ArrayList<>(queues.values());
+        List<Promise<GetQueueUrlResponse>> lookups = resolved.stream()
+            .map(endpoint -> get(endpoint).getQueueUrl(endpoint.getQueueName()))
+            .collect(Collectors.toList());
+        ParallelBatch.of(lookups)
+            .yieldAll()
+            .then(results -> {
+                for (int i = 0; i < results.size(); i++) {
+                    if (results.get(i).isError()) {
+                        LOG.warn(
+                            "Unable to resolve url of queue={}",
+                            resolved.get(i).getQueueName(), results.get(i).getThrowable()
+                        );
+                    }
+                }
+                LOG.debug("Resolved count={} queue urls", queueUrls.size());
+            });
+    }
+
+    private synchronized SqsService create(SqsModule.EndpointConfig config) {
         if (config.getRegionName() == null) {
             throw new IllegalArgumentException("Consumer endpoint config requires a valid configured AWS Region.");
         }
@@ -65,12 +136,23 @@ public class SqsManager implements Service {
         if (sqsMap.containsKey(cacheKey)) {
             return sqsMap.get(cacheKey);
         }
-        SqsService sqsService = new DefaultSqsService(sqsProvider.get(config));
+        SqsService client = config.isAsync() ?
+            new AsyncSqsService(sqsProvider.getAsync(config)) :
+            new DefaultSqsService(sqsProvider.get(config));
+        // Offloaded payloads are fetched before they are decompressed, as producers compress before offloading.
+        SqsService claimed = claimCheck == null ?
+            client :
+            new ClaimCheckSqsService(client, claimCheck, this.config.isDeleteLargePayloads());
+        SqsService sqsService = queueUrls.wrap(new CompressingSqsService(claimed, compression), getEndpointKey(config));
         sqsMap.put(cacheKey, sqsService);
         return sqsService;
     }
 
     private String getCacheKey(SqsModule.EndpointConfig config) {
+        return getEndpointKey(config) + (config.isAsync() ? ":async" : "");
+    }
+
+    private String getEndpointKey(SqsModule.EndpointConfig config) {
         return config.getRegionName() + ":" + config.endpoint().orElse("none");
     }
 
@@ -0,0 +1,127 @@
+package smartthings.ratpack.sqs.internal.consumer;
+
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import ratpack.exec.ExecController;
+import ratpack.exec.Operation;
+import software.amazon.awssdk.services.sqs.model.Message;
+
+import java.time.Duration;
+import java.util.concurrent.ScheduledFuture;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Keeps messages that are still being processed invisible on their queue.  Shortly before the visibility timeout of a
+ * tracked message runs out it is renewed for another visibility timeout, until the message is released or has been in
+ * flight for the configured maximum.  Messages received together come due together, so their renewals end up in the
+ * same {@code ChangeMessageVisibilityBatch} call.
+ */
+public class VisibilityExtender {
+
+    private static final Logger LOG = LoggerFactory.getLogger(VisibilityExtender.class);
+    private static final Duration MIN_MARGIN = Duration.ofSeconds(2);
+
+    private final ExecController controller;
+    private final ChangeVisibilityBatcher batcher;
+    private final Duration maxExtension;
+
+    public VisibilityExtender(ExecController controller, ChangeVisibilityBatcher batcher, Duration maxExtension) {
+        this.controller = controller;
+        this.batcher = batcher;
+        this.maxExtension = maxExtension;
+    }
+
+    /**
+     * Starts renewing the visibility timeout of a message.
+     * @param queueUrl The queue the message was received from
+     * @param message The message being processed
+     * @param receivedAt The {@link System#nanoTime()} at which the receive was issued
+     * @param visibilityTimeout The visibility timeout the message was received with
+     * @return a lease that must be released once the message is deleted or has failed
+     */
+    public Lease track(String queueUrl, Message message, long receivedAt, Duration visibilityTimeout) {
+        Lease lease = new Lease(queueUrl, message, receivedAt, visibilityTimeout);
+        if (visibilityTimeout.getSeconds() > 0) {
+            lease.schedule(receivedAt + visibilityTimeout.toNanos());
+        }
+        return lease;
+    }
+
+    /**
+     * Sends the renewals waiting for their batch to fill.
+     * @return an operation completing once the renewals have been sent
+     */
+    public Operation flush() {
+        return batcher.flushAll();
+    }
+
+    /**
+     * How long before expiry a visibility timeout is renewed: a tenth of the timeout but at least two seconds, and
+     * never more than half of it.
+     */
+    static Duration margin(Duration visibilityTimeout) {
+        Duration margin = visibilityTimeout.dividedBy(10);
+        if (margin.compareTo(MIN_MARGIN) < 0) {
+            margin = MIN_MARGIN;
+        }
+        Duration half = visibilityTimeout.dividedBy(2);
+        return margin.compareTo(half) > 0 ? half : margin;
+    }
+
+    /**
+     * The renewals of a single message.
+     */
+    public final class Lease {
+        private final String queueUrl;
+        private final Message message;
+        private final long receivedAt;
+        private final Duration visibilityTimeout;
+        private ScheduledFuture<?> next;
+        private boolean released;
+
+        private Lease(String queueUrl, Message message, long receivedAt, Duration visibilityTimeout) {
+            this.queueUrl = queueUrl;
+            this.message = message;
+            this.receivedAt = receivedAt;
+            this.visibilityTimeout = visibilityTimeout;
+        }
+
+        /**
+         * Stops renewing the visibility timeout.
+         */
+        public synchronized void release() {
+            released = true;
+            if (next != null) {
+                next.cancel(false);
+            }
+        }
+
+        private synchronized void schedule(long visibleAt) {
+            if (released) {
+                return;
+            }
+            long delay = visibleAt - margin(visibilityTimeout).toNanos() - System.nanoTime();
+            next = controller.getExecutor().schedule(this::renew, Math.max(0, delay), TimeUnit.NANOSECONDS);
+        }
+
+        private void renew() {
+            synchronized (this) {
+                if (released) {
+                    return;
+                }
+            }
+            long now = System.nanoTime();
+            if (now - receivedAt >= maxExtension.toNanos()) {
+                LOG.warn(
+                    "Stopped extending visibility of message={} in queue={} after maximum={}",
+                    message.messageId(), queueUrl, maxExtension
+                );
+                return;
+            }
+            controller.fork()
+                .onError(e -> LOG.warn("Failed to extend visibility of message={}", message.messageId(), e))
+                .start(e -> batcher.change(queueUrl, message, visibilityTimeout));
+            schedule(now + visibilityTimeout.toNanos());
+        }
+    }
+}
@@ -0,0 +1,24 @@
+package smartthings.ratpack.sqs.internal.exception;
+
+/**
+ * Error raised when an individual entry of an SQS batch request fails.
+ */
+public class BatchEntryException extends RuntimeException {
+
+    private final String code;
+    private final boolean senderFault;
+
+    public BatchEntryException(String code, String message, boolean senderFault) {
+        super(String.format("SQS batch entry failed code=%s message=%s", code, message));
+        this.code = code;
+        this.senderFault = senderFault;
+    }
+
+    public String getCode() {
+        return code;
+    }
+
+    public boolean isSenderFault() {
+        return senderFault;
+    }
+}
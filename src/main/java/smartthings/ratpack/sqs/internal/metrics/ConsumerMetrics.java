@@ -0,0 +1,124 @@
+package smartthings.ratpack.sqs.internal.metrics;
+
+import com.codahale.metrics.Counter;
+import com.codahale.metrics.Histogram;
+import com.codahale.metrics.Meter;
+import com.codahale.metrics.MetricRegistry;
+import com.codahale.metrics.Timer;
+
+/**
+ * The metrics of one consumer class polling one queue, registered as
+ * {@code sqs.consumer.<queue>.<consumer>.<metric>}.  Covers each stage of the poll chain: receive latency and batch
+ * size, empty receives, per-message consume time, delete latency, the number of messages in flight, suppressed
+ * duplicates and the errors of each stage.
+ */
+public class ConsumerMetrics {
+
+    private final String queue;
+    private final String consumer;
+    private final Timer receive;
+    private final Histogram batchSize;
+    private final Meter emptyReceives;
+    private final Meter receiveErrors;
+    private final Timer consume;
+    private final Meter consumeErrors;
+    private final Timer delete;
+    private final Meter deleteErrors;
+    private final Meter duplicates;
+    private final Counter inFlight;
+
+    public ConsumerMetrics(MetricRegistry registry, String queue, String consumer) {
+        this.queue = queue;
+        this.consumer = consumer;
+        this.receive = registry.timer(name("receive"));
+        this.batchSize = registry.histogram(name("batch-size"));
+        this.emptyReceives = registry.meter(name("empty-receives"));
+        this.receiveErrors = registry.meter(name("receive-errors"));
+        this.consume = registry.timer(name("consume"));
+        this.consumeErrors = registry.meter(name("consume-errors"));
+        this.delete = registry.timer(name("delete"));
+        this.deleteErrors = registry.meter(name("delete-errors"));
+        this.duplicates = registry.meter(name("duplicates"));
+        this.inFlight = registry.counter(name("in-flight"));
+    }
+
+    public String getQueue() {
+        return queue;
+    }
+
+    public String getConsumer() {
+        return consumer;
+    }
+
+    /**
+     * Latency of receive calls, including long polling.
+     * @return the receive timer
+     */
+    public Timer getReceive() {
+        return receive;
+    }
+
+    /**
+     * Number of messages returned by each receive.
+     * @return the batch size histogram
+     */
+    public Histogram getBatchSize() {
+        return batchSize;
+    }
+
+    public Meter getEmptyReceives() {
+        return emptyReceives;
+    }
+
+    public Meter getReceiveErrors() {
+        return receiveErrors;
+    }
+
+    /**
+     * Time from handing a message to the consumer until it completes, or of a whole receive for batch consumers.
+     * @return the consume timer
+     */
+    public Timer getConsume() {
+        return consume;
+    }
+
+    public Meter getConsumeErrors() {
+        return consumeErrors;
+    }
+
+    /**
+     * Latency of the {@code DeleteMessageBatch} calls removing consumed messages.
+     * @return the delete timer
+     */
+    public Timer getDelete() {
+        return delete;
+    }
+
+    /**
+     * Messages that could not be deleted, including entries failed within an otherwise successful batch.
+     * @return the delete error meter
+     */
+    public Meter getDeleteErrors() {
+        return deleteErrors;
+    }
+
+    /**
+     * Messages deleted without being consumed because they had been processed before.
+     * @return the duplicate meter
+     */
+    public Meter getDuplicates() {
+        return duplicates;
+    }
+
+    /**
+     * Messages handed to the consumer that have not completed yet.
+     * @return the in-flight counter
+     */
+    public Counter getInFlight() {
+        return inFlight;
+    }
+
+    private String name(String metric) {
+        return MetricRegistry.name("sqs", "consumer", queue, consumer, metric);
+    }
+}
@@ -0,0 +1,115 @@
+package smartthings.ratpack.sqs.internal.metrics;
+
+import com.codahale.metrics.Gauge;
+import com.codahale.metrics.MetricRegistry;
+import com.google.inject.Inject;
+import com.google.inject.Singleton;
+import io.prometheus.client.CollectorRegistry;
+
+import java.util.Collection;
+import java.util.Collections;
+import java.util.Map;
+import java.util.Optional;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.function.LongSupplier;
+
+/**
+ * Entry point of the consumer instrumentation.  Metrics are registered with the application's Dropwizard
+ * {@link MetricRegistry} when one is bound, and exported to the application's Prometheus {@link CollectorRegistry}
+ * when one is bound, labelled by queue and consumer class.
+ */
+@Singleton
+public class SqsMetrics {
+
+    private final MetricRegistry registry;
+    private final Map<String, ConsumerMetrics> consumers = new ConcurrentHashMap<>();
+    private final Map<String, InFlightUsage> inFlight = new ConcurrentHashMap<>();
+    private final SqsMetricsExports exports = new SqsMetricsExports(this);
+
+    @Inject
+    public SqsMetrics(Optional<MetricRegistry> registry, Optional<CollectorRegistry> collectorRegistry) {
+        this.registry = registry.orElseGet(MetricRegistry::new);
+        collectorRegistry.ifPresent(exports::register);
+    }
+
+    public SqsMetrics(MetricRegistry registry) {
+        this(Optional.of(registry), Optional.empty());
+    }
+
+    /**
+     * Returns the metrics of a consumer class polling a queue, creating them on first use.
+     * @param queue The queue name
+     * @param consumer The consumer class
+     * @return the consumer's metrics
+     */
+    public ConsumerMetrics forConsumer(String queue, Class<?> consumer) {
+        return consumers.computeIfAbsent(
+            queue + "/" + consumer.getName(),
+            key -> new ConsumerMetrics(registry, queue, consumer.getSimpleName())
+        );
+    }
+
+    public Collection<ConsumerMetrics> getConsumers() {
+        return Collections.unmodifiableCollection(consumers.values());
+    }
+
+    /**
+     * Publishes the usage of an in-flight budget as the gauges {@code sqs.in-flight.<scope>.messages} and
+     * {@code sqs.in-flight.<scope>.bytes}, replacing any earlier registration of the same scope.
+     * @param scope The consumer class name, or {@code all} for the global budget
+     * @param messages Supplies the number of messages in flight
+     * @param bytes Supplies the number of payload bytes in flight
+     */
+    public void registerInFlight(String scope, LongSupplier messages, LongSupplier bytes) {
+        inFlight.put(scope, new InFlightUsage(scope, messages, bytes));
+        String messagesName = MetricRegistry.name("sqs.in-flight", scope, "messages");
+        String bytesName = MetricRegistry.name("sqs.in-flight", scope, "bytes");
+        registry.remove(messagesName);
+        registry.remove(bytesName);
+        registry.register(messagesName, (Gauge<Long>) messages::getAsLong);
+        registry.register(bytesName, (Gauge<Long>) bytes::getAsLong);
+    }
+
+    public Collection<InFlightUsage> getInFlight() {
+        return Collections.unmodifiableCollection(inFlight.values());
+    }
+
+    public MetricRegistry getRegistry() {
+        return registry;
+    }
+
+    /**
+     * The Prometheus collector of these metrics, for applications registering collectors themselves.
+     * @return the collector
+     */
+    public SqsMetricsExports getExports() {
+        return exports;
+    }
+
+    /**
+     * Current usage of one in-flight budget.
+     */
+    public static final class InFlightUsage {
+        private final String scope;
+        private final LongSupplier messages;
+        private final LongSupplier bytes;
+
+        private InFlightUsage(String scope, LongSupplier messages, LongSupplier bytes) {
+            this.scope = scope;
+            this.messages = messages;
+            this.bytes = bytes;
+        }
+
+        public String getScope() {
+            return scope;
+        }
+
+        public long getMessages() {
+            return messages.getAsLong();
+        }
+
+        public long getBytes() {
+            return bytes.getAsLong();
+        }
+    }
+}
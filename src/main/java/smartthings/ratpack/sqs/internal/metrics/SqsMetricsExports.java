@@ -0,0 +1,118 @@
+package smartthings.ratpack.sqs.internal.metrics;
+
+import com.codahale.metrics.Counting;
+import com.codahale.metrics.Sampling;
+import com.codahale.metrics.Snapshot;
+import io.prometheus.client.Collector;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.List;
+import java.util.concurrent.TimeUnit;
+import java.util.function.Function;
+import java.util.function.ToLongFunction;
+
+/**
+ * Exports the {@link ConsumerMetrics} of all consumers to Prometheus, labelled by {@code queue} and {@code consumer}.
+ * Timers and histograms are exported as summaries with their 0.5, 0.95 and 0.99 quantiles, meters as counters.  The
+ * usage of in-flight budgets is exported as gauges labelled by {@code scope}.
+ */
+public class SqsMetricsExports extends Collector {
+
+    private static final List<String> LABELS = Arrays.asList("queue", "consumer");
+    private static final List<String> SCOPE_LABELS = Collections.singletonList("scope");
+    private static final double[] QUANTILES = {0.5, 0.95, 0.99};
+    private static final double SECONDS_PER_NANO = 1.0 / TimeUnit.SECONDS.toNanos(1);
+
+    private final SqsMetrics metrics;
+
+    public SqsMetricsExports(SqsMetrics metrics) {
+        this.metrics = metrics;
+    }
+
+    @Override
+    public List<MetricFamilySamples> collect() {
+        return Arrays.asList(
+            summary("sqs_consumer_receive_seconds", "Latency of receive calls", ConsumerMetrics::getReceive,
+                SECONDS_PER_NANO),
+            summary("sqs_consumer_batch_size", "Messages returned per receive", ConsumerMetrics::getBatchSize, 1),
+            counter("sqs_consumer_empty_receives_total", "Receives returning no messages",
+                ConsumerMetrics::getEmptyReceives),
+            counter("sqs_consumer_receive_errors_total", "Failed receive calls", ConsumerMetrics::getReceiveErrors),
+            summary("sqs_consumer_consume_seconds", "Time spent consuming a message", ConsumerMetrics::getConsume,
+                SECONDS_PER_NANO),
+            counter("sqs_consumer_consume_errors_total", "Failed consumer invocations",
+                ConsumerMetrics::getConsumeErrors),
+            summary("sqs_consumer_delete_seconds", "Latency of delete batch calls", ConsumerMetrics::getDelete,
+                SECONDS_PER_NANO),
+            counter("sqs_consumer_delete_errors_total", "Messages that failed to be deleted",
+                ConsumerMetrics::getDeleteErrors),
+            counter("sqs_consumer_duplicates_total", "Duplicate messages deleted without being consumed",
+                ConsumerMetrics::getDuplicates),
+            gauge("sqs_consumer_in_flight", "Messages being consumed"),
+            inFlight("sqs_in_flight_messages", "Messages held from receipt until processed",
+                SqsMetrics.InFlightUsage::getMessages),
+            inFlight("sqs_in_flight_bytes", "Payload bytes held from receipt until processed",
+                SqsMetrics.InFlightUsage::getBytes)
+        );
+    }
+
+    private MetricFamilySamples inFlight(
+        String name, String help, ToLongFunction<SqsMetrics.InFlightUsage> value
+    ) {
+        List<MetricFamilySamples.Sample> samples = new ArrayList<>();
+        for (SqsMetrics.InFlightUsage usage : metrics.getInFlight()) {
+            samples.add(new MetricFamilySamples.Sample(
+                name, SCOPE_LABELS, Collections.singletonList(usage.getScope()), value.applyAsLong(usage)
+            ));
+        }
+        return new MetricFamilySamples(name, Type.GAUGE, help, samples);
+    }
+
+    private <T extends Sampling & Counting> MetricFamilySamples summary(
+        String name, String help, Function<ConsumerMetrics, T> metric, double scale
+    ) {
+        List<MetricFamilySamples.Sample> samples = new ArrayList<>();
+        for (ConsumerMetrics consumer : metrics.getConsumers()) {
+            T sampled = metric.apply(consumer);
+            Snapshot snapshot = sampled.getSnapshot();
+            List<String> values = labelValues(consumer);
+            for (double quantile : QUANTILES) {
+                List<String> quantileLabels = new ArrayList<>(LABELS);
+                quantileLabels.add("quantile");
+                List<String> quantileValues = new ArrayList<>(values);
+                quantileValues.add(Double.toString(quantile));
+                samples.add(new MetricFamilySamples.Sample(
+                    name, quantileLabels, quantileValues, snapshot.getValue(quantile) * scale
+                ));
+            }
+            samples.add(new MetricFamilySamples.Sample(name + "_count", LABELS, values, sampled.getCount()));
+        }
+        return new MetricFamilySamples(name, Type.SUMMARY, help, samples);
+    }
+
+    private MetricFamilySamples counter(String name, String help, Function<ConsumerMetrics, Counting> metric) {
+        List<MetricFamilySamples.Sample> samples = new ArrayList<>();
+        for (ConsumerMetrics consumer : metrics.getConsumers()) {
+            samples.add(new MetricFamilySamples.Sample(
+                name, LABELS, labelValues(consumer), metric.apply(consumer).getCount()
+            ));
+        }
+        return new MetricFamilySamples(name, Type.COUNTER, help, samples);
+    }
+
+    private MetricFamilySamples gauge(String name, String help) {
+        List<MetricFamilySamples.Sample> samples = new ArrayList<>();
+        for (ConsumerMetrics consumer : metrics.getConsumers()) {
+            samples.add(new MetricFamilySamples.Sample(
+                name, LABELS, labelValues(consumer), consumer.getInFlight().getCount()
+            ));
+        }
+        return new MetricFamilySamples(name, Type.GAUGE, help, samples);
+    }
+
+    private static List<String> labelValues(ConsumerMetrics consumer) {
+        return Collections.unmodifiableList(Arrays.asList(consumer.getQueue(), consumer.getConsumer()));
+    }
+}
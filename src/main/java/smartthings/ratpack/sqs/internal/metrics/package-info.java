@@ -0,0 +1,4 @@
+/**
+ * Contains the instrumentation of the SQS consumer pipeline.
+ */
+package smartthings.ratpack.sqs.internal.metrics;
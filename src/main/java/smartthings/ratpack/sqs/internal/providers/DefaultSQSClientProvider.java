@@ -1,9 +1,13 @@
 package smartthings.ratpack.sqs.internal.providers;
 
+import com.google.inject.Inject;
 import com.google.inject.Singleton;
+import smartthings.ratpack.aws.internal.http.HttpClients;
 import smartthings.ratpack.sqs.SQSClientProvider;
 import smartthings.ratpack.sqs.SqsModule;
 import software.amazon.awssdk.regions.Region;
+import software.amazon.awssdk.services.sqs.SqsAsyncClient;
+import software.amazon.awssdk.services.sqs.SqsAsyncClientBuilder;
 import software.amazon.awssdk.services.sqs.SqsClient;
 import software.amazon.awssdk.services.sqs.SqsClientBuilder;
 
@@ -12,9 +16,28 @@ import java.net.URI;
 @Singleton
 public class DefaultSQSClientProvider implements SQSClientProvider {
 
+    private final HttpClients httpClients;
+
+    @Inject
+    public DefaultSQSClientProvider(HttpClients httpClients) {
+        this.httpClients = httpClients;
+    }
+
     @Override
     public SqsClient get(SqsModule.EndpointConfig config) {
-        SqsClientBuilder builder = SqsClient.builder();
+        SqsClientBuilder builder = httpClients.configure(SqsClient.builder(), config.getHttp());
+        if (config.endpoint().isPresent()) {
+            builder.endpointOverride(URI.create(config.getEndpoint()));
+        }
+        if (config.regionName().isPresent()) {
+            builder.region(Region.of(config.getRegionName()));
+        }
+        return builder.build();
+    }
+
+    @Override
+    public SqsAsyncClient getAsync(SqsModule.EndpointConfig config) {
+        SqsAsyncClientBuilder builder = httpClients.configureAsync(SqsAsyncClient.builder(), config.getHttp());
         if (config.endpoint().isPresent()) {
             builder.endpointOverride(URI.create(config.getEndpoint()));
         }
@@ -0,0 +1,45 @@
+package smartthings.ratpack.aws.blob
+
+import ratpack.test.exec.ExecHarness
+import spock.lang.AutoCleanup
+import spock.lang.Specification
+
+import java.nio.file.Files
+import java.nio.file.NoSuchFileException
+import java.nio.file.Path
+
+class FileSystemBlobStoreSpec extends Specification {
+
+    @AutoCleanup
+    ExecHarness harness = ExecHarness.harness()
+
+    Path directory = Files.createTempDirectory('blobs')
+    FileSystemBlobStore store = new FileSystemBlobStore(directory.resolve('payloads'))
+
+    void cleanup() {
+        directory.toFile().deleteDir()
+    }
+
+    void 'it should store, fetch and delete payloads'() {
+        when:
+        String key = harness.yield { store.put('payload \u2713') }.valueOrThrow
+
+        then:
+        harness.yield { store.get(key) }.valueOrThrow == 'payload \u2713'
+
+        when:
+        harness.run { store.delete(key).then() }
+
+        then:
+        harness.yield { store.get(key) }.throwable instanceof NoSuchFileException
+
+        and: 'deleting again succeeds'
+        harness.yield { store.delete(key).promise() }.success
+    }
+
+    void 'it should refuse keys it could not have issued'() {
+        expect:
+        harness.yield { store.get('../../etc/passwd') }.throwable instanceof IllegalArgumentException
+        harness.yield { store.delete('../../etc/passwd').promise() }.throwable instanceof IllegalArgumentException
+    }
+}
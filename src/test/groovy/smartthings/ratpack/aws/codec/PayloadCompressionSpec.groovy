@@ -0,0 +1,112 @@
+package smartthings.ratpack.aws.codec
+
+import spock.lang.Specification
+import spock.lang.Unroll
+
+class PayloadCompressionSpec extends Specification {
+
+    String body = '{"event":"device.updated","attributes":{"temperature":72,"humidity":40}}' * 100
+
+    @Unroll
+    void 'it should restore a body compressed with #codec'() {
+        given:
+        PayloadCompression compression = PayloadCompression.of(codec, 1024)
+
+        when:
+        PayloadCompression.Compressed compressed = compression.compress(body).get()
+
+        then:
+        compressed.encoding == codec
+        compressed.body.length() < body.length()
+        PayloadCompression.decoding().decompress(compressed.body, compressed.encoding) == body
+
+        where:
+        codec << [GzipCodec.NAME, DeflateCodec.NAME]
+    }
+
+    void 'it should leave bodies below the threshold as they are'() {
+        given:
+        PayloadCompression compression = PayloadCompression.of(GzipCodec.NAME, body.length() + 1)
+
+        expect:
+        !compression.compress(body).isPresent()
+    }
+
+    void 'it should leave bodies that do not shrink as they are'() {
+        given:
+        PayloadCompression compression = PayloadCompression.of(GzipCodec.NAME, 16)
+        Random random = new Random(1)
+        String noise = (1..2048).collect { (char) (33 + random.nextInt(94)) }.join()
+
+        expect:
+        !compression.compress(noise).isPresent()
+    }
+
+    @Unroll
+    void 'it should reject #codec bodies that decompress beyond the limit'() {
+        given:
+        PayloadCompression.Compressed compressed = PayloadCompression.of(codec, 1024).compress(body).get()
+        PayloadCompression limited = new PayloadCompression(null, 1024, body.length() - 1)
+
+        when:
+        limited.decompress(compressed.body, compressed.encoding)
+
+        then:
+        thrown(IllegalArgumentException)
+
+        when:
+        String restored = new PayloadCompression(null, 1024, body.length())
+            .decompress(compressed.body, compressed.encoding)
+
+        then:
+        restored == body
+
+        where:
+        codec << [GzipCodec.NAME, DeflateCodec.NAME]
+    }
+
+    void 'it should pass bodies without an encoding through'() {
+        expect:
+        PayloadCompression.decoding().decompress('plain', null) == 'plain'
+    }
+
+    void 'it should reject unknown codecs'() {
+        when:
+        PayloadCompression.decoding().decompress('body', 'zstd')
+
+        then:
+        thrown(IllegalArgumentException)
+
+        when:
+        PayloadCompression.of('zstd', 1024)
+
+        then:
+        thrown(IllegalArgumentException)
+    }
+
+    void 'it should decode with additional codecs'() {
+        given:
+        PayloadCodec reversing = new PayloadCodec() {
+            @Override
+            String getName() {
+                'reverse'
+            }
+
+            @Override
+            byte[] encode(byte[] payload) throws IOException {
+                payload.reverse()
+            }
+
+            @Override
+            byte[] decode(byte[] payload) throws IOException {
+                payload.reverse()
+            }
+        }
+        PayloadCompression compression = new PayloadCompression(null, 1024, reversing)
+        String encoded = Base64.encoder.encodeToString('olleh'.bytes)
+
+        expect:
+        !compression.compressing
+        compression.decompress(encoded, 'reverse') == 'hello'
+    }
+}
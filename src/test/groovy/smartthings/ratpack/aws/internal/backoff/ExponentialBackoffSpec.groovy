@@ -1,10 +1,18 @@
 package smartthings.ratpack.aws.internal.backoff
 
+import ratpack.test.exec.ExecHarness
+import smartthings.ratpack.aws.BackoffJitter
+import spock.lang.AutoCleanup
 import spock.lang.Specification
 import spock.lang.Unroll
 
+import java.time.Duration
+
 class ExponentialBackoffSpec extends Specification {
 
+    @AutoCleanup
+    ExecHarness harness = ExecHarness.harness()
+
     void setup() {
 
     }
@@ -14,11 +22,11 @@ class ExponentialBackoffSpec extends Specification {
         given:
         ExponentialBackoff backoff = new ExponentialBackoff()
         markTimes.times {
-            backoff.mark()
+            backoff.nextWait()
         }
 
         when:
-        long result = backoff.waitTime()
+        long result = backoff.nextWait()
 
         then:
         assert result == expectedWaitTime
@@ -36,4 +44,64 @@ class ExponentialBackoffSpec extends Specification {
         9         | 60000
         10        | 60000
     }
+
+    void 'it should wait at most the exponential delay with full jitter'() {
+        given:
+        ExponentialBackoff backoff = new ExponentialBackoff(
+            Duration.ofMillis(100), Duration.ofMillis(1000), BackoffJitter.FULL, new Random(1)
+        )
+
+        when:
+        List<Long> waits = (1..100).collect {
+            backoff.reset()
+            3.times {
+                backoff.nextWait()
+            }
+            backoff.nextWait()
+        }
+
+        then:
+        waits.every { it >= 0 && it <= 800 }
+        waits.unique(false).size() > 1
+    }
+
+    void 'it should keep decorrelated waits between the base and the cap'() {
+        given:
+        ExponentialBackoff backoff = new ExponentialBackoff(
+            Duration.ofMillis(1), Duration.ofMillis(50), BackoffJitter.DECORRELATED, new Random(1)
+        )
+        ExponentialBackoff sameSeed = new ExponentialBackoff(
+            Duration.ofMillis(1), Duration.ofMillis(50), BackoffJitter.DECORRELATED, new Random(1)
+        )
+
+        when:
+        List<Long> waits = (1..20).collect { backoff.nextWait() }
+
+        then:
+        waits.every { it >= 1 && it <= 50 }
+        waits.unique(false).size() > 1
+        (1..20).collect { sameSeed.nextWait() } == waits
+    }
+
+    void 'it should wait on the event loop and start over once reset'() {
+        given:
+        ExponentialBackoff backoff = new ExponentialBackoff(
+            Duration.ofMillis(10), Duration.ofMillis(100), BackoffJitter.NONE
+        )
+
+        when:
+        long started = System.nanoTime()
+        harness.yield { backoff.backoff().flatMap { backoff.backoff() } }.valueOrThrow
+        long elapsed = Duration.ofNanos(System.nanoTime() - started).toMillis()
+
+        then:
+        elapsed >= 30
+        backoff.nextWait() == 40
+
+        when:
+        backoff.reset()
+
+        then:
+        backoff.nextWait() == 10
+    }
 }
@@ -0,0 +1,98 @@
+package smartthings.ratpack.aws.internal.http
+
+import smartthings.ratpack.aws.HttpClientConfig
+import software.amazon.awssdk.http.HttpExecuteRequest
+import software.amazon.awssdk.http.SdkHttpClient
+import software.amazon.awssdk.http.SdkHttpFullRequest
+import software.amazon.awssdk.http.SdkHttpMethod
+import software.amazon.awssdk.http.apache.ApacheHttpClient
+import software.amazon.awssdk.http.urlconnection.UrlConnectionHttpClient
+import software.amazon.awssdk.services.sns.SnsClientBuilder
+import software.amazon.awssdk.services.sqs.SqsClientBuilder
+import spock.lang.Specification
+
+class HttpClientsSpec extends Specification {
+
+    HttpClients httpClients = new HttpClients()
+
+    void 'it should build the configured HTTP implementation'() {
+        expect:
+        HttpClients.builder(new HttpClientConfig(type: type)).getClass() == builderClass
+
+        where:
+        type                                 | builderClass
+        HttpClientConfig.Type.APACHE         | ApacheHttpClient.builder().getClass()
+        HttpClientConfig.Type.URL_CONNECTION | UrlConnectionHttpClient.builder().getClass()
+    }
+
+    void 'it should give each endpoint its own pool by default'() {
+        given:
+        SqsClientBuilder builder = Mock(SqsClientBuilder)
+
+        when:
+        httpClients.configure(builder, new HttpClientConfig(maxConnections: 200))
+
+        then:
+        1 * builder.httpClientBuilder(_ as ApacheHttpClient.Builder) >> builder
+        0 * builder.httpClient(_)
+    }
+
+    void 'it should share a named pool between SQS and SNS clients'() {
+        given:
+        SqsClientBuilder sqs = Mock(SqsClientBuilder)
+        SnsClientBuilder sns = Mock(SnsClientBuilder)
+        HttpClientConfig config = new HttpClientConfig(sharedPool: 'aws', maxConnections: 200)
+        List<SdkHttpClient> clients = []
+
+        when:
+        httpClients.configure(sqs, config)
+        httpClients.configure(sns, new HttpClientConfig(sharedPool: 'aws'))
+        httpClients.configure(sns, new HttpClientConfig(sharedPool: 'other'))
+
+        then:
+        1 * sqs.httpClient(_) >> { SdkHttpClient client -> clients << client; sqs }
+        2 * sns.httpClient(_) >> { SdkHttpClient client -> clients << client; sns }
+        0 * _.httpClientBuilder(_)
+
+        and:
+        clients[0].is(clients[1])
+        !clients[0].is(clients[2])
+
+        cleanup:
+        clients*.close()
+    }
+
+    void 'it should close shared pools when the application stops'() {
+        given:
+        SqsClientBuilder sqs = Mock(SqsClientBuilder)
+        List<SdkHttpClient> clients = []
+        HttpExecuteRequest request = HttpExecuteRequest.builder()
+            .request(SdkHttpFullRequest.builder()
+                .method(SdkHttpMethod.GET)
+                .protocol('http')
+                .host('localhost')
+                .port(1)
+                .build())
+            .build()
+
+        when:
+        httpClients.configure(sqs, new HttpClientConfig(sharedPool: 'aws'))
+        httpClients.onStop(null)
+        clients[0].prepareRequest(request).call()
+
+        then:
+        1 * sqs.httpClient(_) >> { SdkHttpClient client -> clients << client; sqs }
+        IllegalStateException e = thrown()
+        e.message.contains('shut down')
+
+        when: 'the pool is named again'
+        httpClients.configure(sqs, new HttpClientConfig(sharedPool: 'aws'))
+
+        then:
+        1 * sqs.httpClient(_) >> { SdkHttpClient client -> clients << client; sqs }
+        !clients[1].is(clients[0])
+
+        cleanup:
+        clients*.close()
+    }
+}
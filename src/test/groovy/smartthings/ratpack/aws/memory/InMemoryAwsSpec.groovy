@@ -0,0 +1,163 @@
+package smartthings.ratpack.aws.memory
+
+import com.fasterxml.jackson.databind.ObjectMapper
+import software.amazon.awssdk.services.sns.model.PublishRequest
+import software.amazon.awssdk.services.sqs.model.ChangeMessageVisibilityRequest
+import software.amazon.awssdk.services.sqs.model.DeleteMessageRequest
+import software.amazon.awssdk.services.sqs.model.GetQueueAttributesRequest
+import software.amazon.awssdk.services.sqs.model.GetQueueUrlRequest
+import software.amazon.awssdk.services.sqs.model.QueueDoesNotExistException
+import software.amazon.awssdk.services.sqs.model.ReceiveMessageRequest
+import software.amazon.awssdk.services.sqs.model.SendMessageBatchRequest
+import software.amazon.awssdk.services.sqs.model.SendMessageBatchRequestEntry
+import software.amazon.awssdk.services.sqs.model.SendMessageRequest
+import software.amazon.awssdk.services.sqs.model.TooManyEntriesInBatchRequestException
+import spock.lang.Specification
+
+import java.util.concurrent.TimeUnit
+
+class InMemoryAwsSpec extends Specification {
+
+    InMemoryAws aws = new InMemoryAws()
+    String queueUrl = aws.createQueue('queue')
+
+    void cleanup() {
+        aws.close()
+    }
+
+    void 'it should redeliver a message once its visibility timeout runs out'() {
+        given:
+        aws.sqsClient.sendMessage(SendMessageRequest.builder().queueUrl(queueUrl).messageBody('hello').build())
+
+        when:
+        def first = receive(1)
+        def hidden = receive(1)
+        Thread.sleep(1100)
+        def second = receive(1)
+
+        then:
+        first.size() == 1
+        first[0].attributesAsStrings()['ApproximateReceiveCount'] == '1'
+        hidden.isEmpty()
+        second.size() == 1
+        second[0].messageId() == first[0].messageId()
+        second[0].receiptHandle() != first[0].receiptHandle()
+        second[0].attributesAsStrings()['ApproximateReceiveCount'] == '2'
+    }
+
+    void 'it should remove deleted messages'() {
+        given:
+        aws.sqsClient.sendMessage(SendMessageRequest.builder().queueUrl(queueUrl).messageBody('hello').build())
+        def message = receive(1)[0]
+
+        when:
+        aws.sqsClient.deleteMessage(
+            DeleteMessageRequest.builder().queueUrl(queueUrl).receiptHandle(message.receiptHandle()).build()
+        )
+        Thread.sleep(1100)
+
+        then:
+        receive(1).isEmpty()
+        attributes()['ApproximateNumberOfMessagesNotVisible'] == '0'
+    }
+
+    void 'it should make a message visible again when its visibility is set to zero'() {
+        given:
+        aws.sqsClient.sendMessage(SendMessageRequest.builder().queueUrl(queueUrl).messageBody('hello').build())
+        def message = receive(30)[0]
+
+        when:
+        aws.sqsClient.changeMessageVisibility(ChangeMessageVisibilityRequest.builder()
+            .queueUrl(queueUrl)
+            .receiptHandle(message.receiptHandle())
+            .visibilityTimeout(0)
+            .build())
+
+        then:
+        receive(30)*.messageId() == [message.messageId()]
+    }
+
+    void 'it should complete a long poll when a message arrives'() {
+        given:
+        def poll = aws.sqsAsyncClient.receiveMessage(
+            ReceiveMessageRequest.builder().queueUrl(queueUrl).waitTimeSeconds(10).build()
+        )
+
+        expect:
+        !poll.isDone()
+
+        when:
+        aws.sqsClient.sendMessage(SendMessageRequest.builder().queueUrl(queueUrl).messageBody('hello').build())
+
+        then:
+        poll.get(1, TimeUnit.SECONDS).messages()*.body() == ['hello']
+    }
+
+    void 'it should complete a long poll with no messages after the wait time'() {
+        when:
+        def response = aws.sqsAsyncClient.receiveMessage(
+            ReceiveMessageRequest.builder().queueUrl(queueUrl).waitTimeSeconds(1).build()
+        ).get(3, TimeUnit.SECONDS)
+
+        then:
+        response.messages().isEmpty()
+    }
+
+    void 'it should reject batches with more than ten entries'() {
+        given:
+        def entries = (1..11).collect {
+            SendMessageBatchRequestEntry.builder().id("$it").messageBody('hello').build()
+        }
+
+        when:
+        aws.sqsClient.sendMessageBatch(SendMessageBatchRequest.builder().queueUrl(queueUrl).entries(entries).build())
+
+        then:
+        thrown(TooManyEntriesInBatchRequestException)
+    }
+
+    void 'it should report unknown queues'() {
+        when:
+        aws.sqsClient.getQueueUrl(GetQueueUrlRequest.builder().queueName('missing').build())
+
+        then:
+        thrown(QueueDoesNotExistException)
+    }
+
+    void 'it should fan out published messages to subscribed queues'() {
+        given:
+        String rawUrl = aws.createQueue('raw')
+        String topicArn = aws.createTopic('topic')
+        aws.subscribe(topicArn, 'queue', false)
+        aws.subscribe(topicArn, 'raw', true)
+
+        when:
+        String messageId = aws.snsClient.publish(
+            PublishRequest.builder().topicArn(topicArn).message('hello').build()
+        ).messageId()
+        Map envelope = new ObjectMapper().readValue(receive(30)[0].body(), Map)
+        def raw = aws.sqsClient.receiveMessage(ReceiveMessageRequest.builder().queueUrl(rawUrl).build()).messages()
+
+        then:
+        envelope.Type == 'Notification'
+        envelope.MessageId == messageId
+        envelope.TopicArn == topicArn
+        envelope.Message == 'hello'
+        raw*.body() == ['hello']
+    }
+
+    private List receive(int visibilityTimeout) {
+        aws.sqsClient.receiveMessage(ReceiveMessageRequest.builder()
+            .queueUrl(queueUrl)
+            .visibilityTimeout(visibilityTimeout)
+            .attributeNamesWithStrings('ApproximateReceiveCount')
+            .build()
+        ).messages()
+    }
+
+    private Map<String, String> attributes() {
+        aws.sqsClient.getQueueAttributes(
+            GetQueueAttributesRequest.builder().queueUrl(queueUrl).attributeNamesWithStrings('All').build()
+        ).attributesAsStrings()
+    }
+}
@@ -1101,6 +1101,54 @@ class DefaultSnsServiceSpec extends Specification {
         600         | false
     }
 
+    void 'it should retry server errors with backoff'() {
+        given:
+        config.maxRetries = 2
+        config.retryBaseMillis = 10
+        config.retryMaxMillis = 20
+        def request = PublishRequest.builder().build()
+        def result = PublishResponse.builder().messageId('id').build()
+        AwsServiceException ase = AwsServiceException.builder()
+            .message('oops')
+            .statusCode(503)
+            .build()
+
+        when:
+        def response = harness.yieldSingle { e ->
+            service.publish(request)
+        }.value
+
+        then:
+        2 * client1.publish(request) >> { throw ase }
+        1 * client1.publish(request) >> result
+        0 * _
+
+        and:
+        assert response == result
+    }
+
+    void 'it should not retry client errors'() {
+        given:
+        config.maxRetries = 2
+        def request = PublishRequest.builder().build()
+        AwsServiceException ase = AwsServiceException.builder()
+            .message('oops')
+            .statusCode(400)
+            .build()
+
+        when:
+        def error = harness.yieldSingle { e ->
+            service.publish(request)
+        }.throwable
+
+        then:
+        1 * client1.publish(request) >> { throw ase }
+        0 * _
+
+        and:
+        assert error == ase
+    }
+
     void 'it should support shutdown of SNS clients'() {
         when:
         service.shutdown()
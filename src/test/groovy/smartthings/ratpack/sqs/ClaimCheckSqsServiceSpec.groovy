@@ -0,0 +1,131 @@
+package smartthings.ratpack.sqs
+
+import ratpack.test.exec.ExecHarness
+import smartthings.ratpack.aws.blob.ClaimCheck
+import smartthings.ratpack.aws.blob.FileSystemBlobStore
+import smartthings.ratpack.aws.memory.InMemoryAws
+import software.amazon.awssdk.services.sqs.model.DeleteMessageBatchRequest
+import software.amazon.awssdk.services.sqs.model.DeleteMessageBatchRequestEntry
+import software.amazon.awssdk.services.sqs.model.DeleteMessageRequest
+import software.amazon.awssdk.services.sqs.model.Message
+import software.amazon.awssdk.services.sqs.model.MessageAttributeValue
+import software.amazon.awssdk.services.sqs.model.ReceiveMessageRequest
+import software.amazon.awssdk.services.sqs.model.SendMessageRequest
+import spock.lang.AutoCleanup
+import spock.lang.Specification
+
+import java.nio.file.Files
+import java.nio.file.Path
+
+class ClaimCheckSqsServiceSpec extends Specification {
+
+    @AutoCleanup
+    ExecHarness harness = ExecHarness.harness()
+
+    @AutoCleanup
+    InMemoryAws aws = new InMemoryAws()
+
+    Path directory = Files.createTempDirectory('claim-check')
+    FileSystemBlobStore store = new FileSystemBlobStore(directory)
+    String queueUrl = aws.createQueue('large')
+    SqsService plain = new AsyncSqsService(aws.sqsAsyncClient)
+    SqsService sqs = new ClaimCheckSqsService(plain, new ClaimCheck(store, 1024), true)
+    String large = 'x' * 300 * 1024
+
+    void cleanup() {
+        directory.toFile().deleteDir()
+    }
+
+    void 'it should offload a large payload and fetch it back on receipt'() {
+        when:
+        send(large)
+        Message received = receive()[0]
+
+        then:
+        received.body() == large
+        !received.messageAttributes().containsKey(ClaimCheck.ATTRIBUTE)
+        Files.list(directory).count() == 1
+
+        when:
+        harness.yield {
+            sqs.deleteMessageBatch(DeleteMessageBatchRequest.builder()
+                .queueUrl(queueUrl)
+                .entries(DeleteMessageBatchRequestEntry.builder()
+                    .id('1')
+                    .receiptHandle(received.receiptHandle())
+                    .build())
+                .build())
+        }.valueOrThrow
+
+        then:
+        Files.list(directory).count() == 0
+    }
+
+    void 'it should keep payloads of deleted messages by default'() {
+        given:
+        sqs = new ClaimCheckSqsService(plain, new ClaimCheck(store, 1024))
+        send(large)
+        Message received = receive()[0]
+
+        when:
+        harness.yield {
+            sqs.deleteMessage(DeleteMessageRequest.builder()
+                .queueUrl(queueUrl)
+                .receiptHandle(received.receiptHandle())
+                .build())
+        }.valueOrThrow
+
+        then:
+        Files.list(directory).count() == 1
+    }
+
+    void 'it should send small messages as they are'() {
+        when:
+        send('small')
+
+        then:
+        receive()*.body() == ['small']
+        Files.list(directory).count() == 0
+    }
+
+    void 'it should leave out messages whose payload is missing'() {
+        given:
+        send(large)
+        Files.list(directory).each { Files.delete(it) }
+        send('small')
+
+        expect:
+        receive()*.body() == ['small']
+    }
+
+    void 'it should leave out only the messages whose claim check is invalid'() {
+        given:
+        send(large)
+        harness.yield {
+            plain.sendMessage(SendMessageRequest.builder()
+                .queueUrl(queueUrl)
+                .messageBody('forged')
+                .messageAttributes((ClaimCheck.ATTRIBUTE): MessageAttributeValue.builder()
+                    .dataType('String')
+                    .stringValue('../../etc/passwd')
+                    .build())
+                .build())
+        }.valueOrThrow
+        send('small')
+
+        expect:
+        receive()*.body().sort() == [large, 'small'].sort()
+    }
+
+    private void send(String body) {
+        harness.yield {
+            sqs.sendMessage(SendMessageRequest.builder().queueUrl(queueUrl).messageBody(body).build())
+        }.valueOrThrow
+    }
+
+    private List<Message> receive() {
+        harness.yield {
+            sqs.receiveMessage(ReceiveMessageRequest.builder().queueUrl(queueUrl).maxNumberOfMessages(10).build())
+        }.valueOrThrow.messages()
+    }
+}
@@ -0,0 +1,101 @@
+package smartthings.ratpack.sqs
+
+import ratpack.test.exec.ExecHarness
+import smartthings.ratpack.aws.codec.GzipCodec
+import smartthings.ratpack.aws.codec.PayloadCompression
+import smartthings.ratpack.aws.memory.InMemoryAws
+import software.amazon.awssdk.services.sqs.model.ChangeMessageVisibilityRequest
+import software.amazon.awssdk.services.sqs.model.Message
+import software.amazon.awssdk.services.sqs.model.MessageAttributeValue
+import software.amazon.awssdk.services.sqs.model.ReceiveMessageRequest
+import software.amazon.awssdk.services.sqs.model.SendMessageBatchRequest
+import software.amazon.awssdk.services.sqs.model.SendMessageBatchRequestEntry
+import software.amazon.awssdk.services.sqs.model.SendMessageRequest
+import spock.lang.AutoCleanup
+import spock.lang.Specification
+
+class CompressingSqsServiceSpec extends Specification {
+
+    @AutoCleanup
+    ExecHarness harness = ExecHarness.harness()
+
+    @AutoCleanup
+    InMemoryAws aws = new InMemoryAws()
+
+    String queueUrl = aws.createQueue('compressed')
+    SqsService plain = new AsyncSqsService(aws.sqsAsyncClient)
+    SqsService producer = new CompressingSqsService(plain, PayloadCompression.of(GzipCodec.NAME, 1024))
+    SqsService consumer = new CompressingSqsService(plain, PayloadCompression.decoding())
+    String large = '{"name":"value"}' * 200
+
+    void 'it should compress large bodies and restore them on receipt'() {
+        when:
+        harness.yield {
+            producer.sendMessage(SendMessageRequest.builder().queueUrl(queueUrl).messageBody(large).build())
+        }.valueOrThrow
+        Message sent = receive(plain)[0]
+
+        then:
+        sent.messageAttributes()[PayloadCompression.ATTRIBUTE].stringValue() == GzipCodec.NAME
+        sent.body().length() < large.length()
+
+        when:
+        aws.sqsClient.changeMessageVisibility(ChangeMessageVisibilityRequest.builder()
+            .queueUrl(queueUrl)
+            .receiptHandle(sent.receiptHandle())
+            .visibilityTimeout(0)
+            .build())
+        Message received = receive(consumer)[0]
+
+        then:
+        received.body() == large
+        !received.messageAttributes().containsKey(PayloadCompression.ATTRIBUTE)
+    }
+
+    void 'it should compress batch entries and pass small bodies through'() {
+        when:
+        harness.yield {
+            producer.sendMessageBatch(SendMessageBatchRequest.builder()
+                .queueUrl(queueUrl)
+                .entries(
+                    SendMessageBatchRequestEntry.builder().id('1').messageBody(large).build(),
+                    SendMessageBatchRequestEntry.builder().id('2').messageBody('small').build()
+                )
+                .build())
+        }.valueOrThrow
+        List<Message> received = receive(consumer)
+
+        then:
+        received*.body().sort() == [large, 'small'].sort()
+        received.every { it.messageAttributes().isEmpty() }
+    }
+
+    void 'it should keep the encoding of bodies that cannot be decompressed'() {
+        when:
+        harness.yield {
+            plain.sendMessage(SendMessageRequest.builder()
+                .queueUrl(queueUrl)
+                .messageBody('not gzip')
+                .messageAttributes((PayloadCompression.ATTRIBUTE): MessageAttributeValue.builder()
+                    .dataType('String')
+                    .stringValue(GzipCodec.NAME)
+                    .build())
+                .build())
+        }.valueOrThrow
+        Message received = receive(consumer)[0]
+
+        then:
+        received.body() == 'not gzip'
+        CompressingSqsService.isCompressed(received)
+    }
+
+    private List<Message> receive(SqsService sqs) {
+        harness.yield {
+            sqs.receiveMessage(ReceiveMessageRequest.builder()
+                .queueUrl(queueUrl)
+                .maxNumberOfMessages(10)
+                .messageAttributeNames('All')
+                .build())
+        }.valueOrThrow.messages()
+    }
+}
@@ -1,8 +1,8 @@
 package smartthings.ratpack.sqs
 
 
-import com.fasterxml.jackson.core.type.TypeReference
 import com.fasterxml.jackson.databind.ObjectMapper
+import ratpack.exec.Operation
 import ratpack.func.Action
 import ratpack.guice.Guice
 import ratpack.handling.Context
@@ -33,7 +33,7 @@ class ConsumerFunctionalSpec extends Specification {
     ObjectMapper objectMapper = new ObjectMapper()
 
     @Shared
-    TestConsumer consumer = new TestConsumer(objectMapper)
+    TestConsumer consumer = new TestConsumer()
 
     @Delegate
     EmbeddedApp app = of({ RatpackServerSpec spec ->
@@ -231,25 +231,30 @@ class TestMessage {
     }
 }
 
-class TestConsumer implements Consumer {
-    ObjectMapper mapper
+class TestConsumer implements TypedConsumer<TestMessage> {
     Map<TestMessage, AtomicInteger> messages = [:]
     java.util.function.Consumer<Message> consumer = {}
 
-    TestConsumer(ObjectMapper mapper) {
-        this.mapper = mapper
+    @Override
+    Operation consume(TestMessage testMessage, Message message) {
+        Operation.of {
+            if (messages.containsKey(testMessage)) {
+                messages.get(testMessage).incrementAndGet()
+            } else {
+                messages.put(testMessage, new AtomicInteger(1))
+            }
+            consumer.accept(message)
+        }
     }
 
     @Override
-    void consume(Message message) throws Exception {
-        Map body = mapper.readValue(message.body(), new TypeReference<Map<String, Object>>() {})
-        TestMessage testMessage = mapper.readValue(body['Message'] as String, TestMessage)
-        if (messages.containsKey(testMessage)) {
-            messages.get(testMessage).incrementAndGet()
-        } else {
-            messages.put(testMessage, new AtomicInteger(1))
-        }
-        consumer.accept(message)
+    Class<TestMessage> getPayloadType() {
+        TestMessage
+    }
+
+    @Override
+    boolean isSnsEnvelope() {
+        true
     }
 
     int callCount(TestMessage message) {
@@ -0,0 +1,159 @@
+package smartthings.ratpack.sqs
+
+import com.fasterxml.jackson.databind.ObjectMapper
+import ratpack.exec.util.ParallelBatch
+import ratpack.guice.Guice
+import ratpack.test.exec.ExecHarness
+import ratpack.test.embed.EmbeddedApp
+import smartthings.ratpack.aws.AwsModule
+import smartthings.ratpack.aws.memory.InMemoryAws
+import smartthings.ratpack.aws.memory.InMemoryAwsModule
+import smartthings.ratpack.sns.SnsModule
+import smartthings.ratpack.sns.SnsService
+import smartthings.ratpack.sqs.internal.consumer.ConsumerManager
+import software.amazon.awssdk.services.sns.model.PublishRequest
+import software.amazon.awssdk.services.sqs.model.ReceiveMessageRequest
+import software.amazon.awssdk.services.sqs.model.SendMessageRequest
+import spock.lang.AutoCleanup
+import spock.lang.Specification
+import spock.util.concurrent.PollingConditions
+
+/**
+ * Runs the real module wiring against the in-memory engine, so it needs neither AWS nor goaws.
+ */
+class InMemoryConsumerFunctionalSpec extends Specification {
+
+    @AutoCleanup
+    InMemoryAws aws = new InMemoryAws()
+
+    ObjectMapper objectMapper = new ObjectMapper()
+    TestConsumer consumer = new TestConsumer()
+    String topicArn
+    String disabledQueueUrl
+
+    @AutoCleanup
+    EmbeddedApp app
+
+    void setup() {
+        aws.createQueue('in_memory_queue', [ReceiveMessageWaitTimeSeconds: '1'])
+        disabledQueueUrl = aws.createQueue('disabled_queue', [ReceiveMessageWaitTimeSeconds: '1'])
+        topicArn = aws.createTopic('in_memory_topic')
+        aws.subscribe(topicArn, 'in_memory_queue', false)
+
+        app = EmbeddedApp.of({ spec ->
+            spec.registry(Guice.registry({ binder ->
+                binder.module(AwsModule)
+                binder.module(new InMemoryAwsModule(aws))
+                binder.module(SnsModule, { SnsModule.Config config ->
+                    config.enabled = true
+                    config.endpoints = [new SnsModule.EndpointConfig(regionName: 'us-east-1')]
+                    config
+                })
+                binder.module(SqsModule, { SqsModule.Config config ->
+                    config.enabled = true
+                    config.consumers = [
+                        new SqsModule.ConsumerConfig(
+                            consumer: TestConsumer,
+                            endpoints: [
+                                new SqsModule.EndpointConfig(
+                                    queueName: 'in_memory_queue',
+                                    regionName: 'us-east-1',
+                                    async: true
+                                )
+                            ]
+                        ),
+                        new SqsModule.ConsumerConfig(
+                            consumer: TestConsumer,
+                            enabled: false,
+                            endpoints: [
+                                new SqsModule.EndpointConfig(
+                                    queueName: 'disabled_queue',
+                                    regionName: 'us-east-1',
+                                    async: true
+                                )
+                            ]
+                        )
+                    ]
+                    config
+                })
+                binder.bindInstance(TestConsumer, consumer)
+            }))
+            spec.handlers({ chain ->
+                chain.post('publish/:count', { ctx ->
+                    SnsService sns = ctx.get(SnsService)
+                    int count = ctx.pathTokens.count as int
+                    ParallelBatch.of((1..count).collect {
+                        sns.publish(PublishRequest.builder()
+                            .topicArn(topicArn)
+                            .message(objectMapper.writeValueAsString(new TestMessage(message: "message-$it")))
+                            .build())
+                    }).yield().then({ ctx.render('ok') })
+                })
+            })
+        })
+    }
+
+    void 'it should publish and consume messages through the in-memory engine'() {
+        when:
+        def response = app.httpClient.post('publish/500')
+
+        then:
+        response.status.'2xx'
+        new PollingConditions().within(10, {
+            (1..500).every { consumer.callCount(new TestMessage(message: "message-$it")) == 1 }
+        })
+    }
+
+    void 'it should remove, add and resize consumers at runtime'() {
+        given:
+        app.address
+        ConsumerManager manager = app.server.registry.get().get(ConsumerManager)
+        SqsModule.ConsumerConfig config = manager.consumers[0]
+
+        when:
+        ExecHarness.yieldSingle { manager.removeConsumer(TestConsumer) }.valueOrThrow
+        app.httpClient.post('publish/10')
+        sleep(1500)
+
+        then:
+        manager.consumers.empty
+        (1..10).every { consumer.callCount(new TestMessage(message: "message-$it")) == 0 }
+
+        when:
+        manager.addConsumer(config)
+        manager.resize(TestConsumer, 2)
+
+        then:
+        manager.consumers == [config]
+        new PollingConditions().within(10, {
+            (1..10).every { consumer.callCount(new TestMessage(message: "message-$it")) == 1 }
+        })
+    }
+
+    void 'it should not start consumers that are disabled'() {
+        given:
+        app.address
+        ConsumerManager manager = app.server.registry.get().get(ConsumerManager)
+
+        when:
+        aws.sqsClient.sendMessage(SendMessageRequest.builder().queueUrl(disabledQueueUrl).messageBody('idle').build())
+        sleep(1500)
+
+        then:
+        manager.consumers*.endpoints.flatten()*.queueName == ['in_memory_queue']
+        aws.sqsClient.receiveMessage(ReceiveMessageRequest.builder().queueUrl(disabledQueueUrl).build())
+            .messages()*.body() == ['idle']
+    }
+
+    void 'it should refuse to resize consumers that are not running'() {
+        given:
+        app.address
+        ConsumerManager manager = app.server.registry.get().get(ConsumerManager)
+
+        when:
+        manager.resize(String, 2)
+
+        then:
+        thrown(IllegalArgumentException)
+    }
+}
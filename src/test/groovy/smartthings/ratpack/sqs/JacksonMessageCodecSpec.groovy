@@ -0,0 +1,97 @@
+package smartthings.ratpack.sqs
+
+import com.fasterxml.jackson.databind.JsonMappingException
+import com.fasterxml.jackson.databind.ObjectMapper
+import ratpack.exec.Operation
+import ratpack.test.exec.ExecHarness
+import smartthings.ratpack.sqs.internal.consumer.RegisteredConsumer
+import software.amazon.awssdk.services.sqs.model.Message
+import spock.lang.AutoCleanup
+import spock.lang.Specification
+
+class JacksonMessageCodecSpec extends Specification {
+
+    @AutoCleanup
+    ExecHarness harness = ExecHarness.harness()
+
+    ObjectMapper mapper = new ObjectMapper()
+    JacksonMessageCodec codec = new JacksonMessageCodec(mapper)
+
+    void 'it should decode message bodies'() {
+        expect:
+        codec.decode('{"id":"a","count":2}', Payload) == new Payload(id: 'a', count: 2)
+    }
+
+    void 'it should decode the payload of an SNS notification wherever the Message field appears'() {
+        given:
+        String envelope = mapper.writeValueAsString([
+            Type: 'Notification',
+            MessageAttributes: [type: [Type: 'String', Value: 'payload']],
+            Message: '{"id":"b","count":3}',
+            Signature: 'abc'
+        ])
+
+        expect:
+        codec.decodeNotification(envelope, Payload) == new Payload(id: 'b', count: 3)
+    }
+
+    void 'it should reject SNS notifications without a Message field'() {
+        when:
+        codec.decodeNotification(envelope, Payload)
+
+        then:
+        thrown(JsonMappingException)
+
+        where:
+        envelope << ['{"Type":"Notification"}', '{"Message":{"id":"c"}}', '[]']
+    }
+
+    void 'it should hand decoded payloads to typed consumers'() {
+        given:
+        List<Payload> received = []
+        TypedConsumer<Payload> consumer = new TypedConsumer<Payload>() {
+            @Override
+            Operation consume(Payload payload, Message message) {
+                Operation.of { received << payload }
+            }
+
+            @Override
+            Class<Payload> getPayloadType() {
+                Payload
+            }
+
+            @Override
+            boolean isSnsEnvelope() {
+                true
+            }
+        }
+        RegisteredConsumer registered = RegisteredConsumer.of(consumer, codec)
+        Message message = Message.builder()
+            .body(mapper.writeValueAsString([Type: 'Notification', Message: '{"id":"d","count":4}']))
+            .build()
+
+        when:
+        harness.run { registered.consume(message).then() }
+        Message malformed = Message.builder().body('{}').build()
+        Throwable failure = harness.yield { registered.consume(malformed).promise() }.throwable
+
+        then:
+        received == [new Payload(id: 'd', count: 4)]
+        failure instanceof JsonMappingException
+        !registered.batch
+        registered.receiveMessageRequest.waitTimeSeconds() == 20
+    }
+
+    static class Payload {
+        String id
+        int count
+
+        boolean equals(o) {
+            o instanceof Payload && id == o.id && count == o.count
+        }
+
+        int hashCode() {
+            Objects.hash(id, count)
+        }
+    }
+}
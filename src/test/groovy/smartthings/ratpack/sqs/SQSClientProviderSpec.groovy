@@ -0,0 +1,30 @@
+package smartthings.ratpack.sqs
+
+import software.amazon.awssdk.services.sqs.SqsAsyncClient
+import software.amazon.awssdk.services.sqs.SqsClient
+import spock.lang.Specification
+
+class SQSClientProviderSpec extends Specification {
+
+    void 'it should build an asynchronous client for providers that only supply blocking clients'() {
+        given:
+        SQSClientProvider provider = new SQSClientProvider() {
+            @Override
+            SqsClient get(SqsModule.EndpointConfig config) {
+                throw new UnsupportedOperationException()
+            }
+        }
+
+        when:
+        SqsAsyncClient client = provider.getAsync(new SqsModule.EndpointConfig(
+            regionName: 'us-west-2',
+            endpoint: 'http://localhost:4100'
+        ))
+
+        then:
+        client.serviceName() == SqsAsyncClient.SERVICE_NAME
+
+        cleanup:
+        client?.close()
+    }
+}
@@ -0,0 +1,63 @@
+package smartthings.ratpack.sqs
+
+import ratpack.exec.Operation
+import software.amazon.awssdk.services.sqs.model.Message
+import spock.lang.Specification
+
+class SqsModuleSpec extends Specification {
+
+    SqsModule.ConsumerConfig config = new SqsModule.ConsumerConfig()
+
+    void 'it should configure a consumer of any supported kind'() {
+        when:
+        config.setConsumer(SyncConsumer)
+
+        then:
+        config.consumer == SyncConsumer
+        config.consumerType == SyncConsumer
+
+        when:
+        config.setConsumer(AsyncOnlyConsumer.name)
+
+        then:
+        config.consumerType == AsyncOnlyConsumer
+
+        when:
+        config.consumer
+
+        then:
+        thrown(IllegalStateException)
+    }
+
+    void 'it should reject classes that are not consumers'() {
+        when:
+        config.setConsumerType(String)
+
+        then:
+        IllegalArgumentException e = thrown()
+        e.message.startsWith('java.lang.String must implement one of')
+    }
+
+    void 'it should report a missing consumer when it is read'() {
+        when:
+        config.setConsumer((Class<? extends Consumer>) null)
+        config.consumerType
+
+        then:
+        IllegalArgumentException e = thrown()
+        e.message == 'A consumer implementation must be configured'
+    }
+
+    static class SyncConsumer implements Consumer {
+        @Override
+        void consume(Message message) {
+        }
+    }
+
+    static class AsyncOnlyConsumer implements AsyncConsumer {
+        @Override
+        Operation consume(Message message) {
+            Operation.noop()
+        }
+    }
+}
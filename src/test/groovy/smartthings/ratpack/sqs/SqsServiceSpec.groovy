@@ -0,0 +1,93 @@
+package smartthings.ratpack.sqs
+
+import ratpack.exec.Promise
+import ratpack.test.exec.ExecHarness
+import software.amazon.awssdk.services.sqs.model.*
+import spock.lang.AutoCleanup
+import spock.lang.Specification
+
+import java.util.concurrent.CopyOnWriteArrayList
+
+class SqsServiceSpec extends Specification {
+
+    @AutoCleanup
+    ExecHarness harness = ExecHarness.harness()
+
+    List<Object> calls = new CopyOnWriteArrayList<>()
+
+    /**
+     * Implements only the operations the interface started out with.
+     */
+    SqsService sqs = new SqsService() {
+        @Override
+        Promise<DeleteMessageResponse> deleteMessage(DeleteMessageRequest request) {
+            calls << request
+            request.receiptHandle() == 'bad' ?
+                Promise.error(new IllegalStateException('gone')) :
+                Promise.value(DeleteMessageResponse.builder().build())
+        }
+
+        @Override
+        Promise<SendMessageResponse> sendMessage(SendMessageRequest request) {
+            calls << request
+            Promise.value(SendMessageResponse.builder().messageId("sent-${request.messageBody()}").build())
+        }
+
+        @Override
+        Promise<ReceiveMessageResponse> receiveMessage(ReceiveMessageRequest request) {
+            Promise.value(ReceiveMessageResponse.builder().build())
+        }
+
+        @Override
+        Promise<GetQueueUrlResponse> getQueueUrl(String queueName) {
+            Promise.value(GetQueueUrlResponse.builder().queueUrl(queueName).build())
+        }
+    }
+
+    void 'it should delete batches one entry at a time by default'() {
+        when:
+        DeleteMessageBatchResponse response = harness.yield {
+            sqs.deleteMessageBatch(DeleteMessageBatchRequest.builder()
+                .queueUrl('queue')
+                .entries(
+                    DeleteMessageBatchRequestEntry.builder().id('1').receiptHandle('good').build(),
+                    DeleteMessageBatchRequestEntry.builder().id('2').receiptHandle('bad').build()
+                )
+                .build())
+        }.valueOrThrow
+
+        then:
+        calls*.receiptHandle().sort() == ['bad', 'good']
+        response.successful()*.id() == ['1']
+        response.failed()*.id() == ['2']
+        response.failed()[0].message() == 'gone'
+    }
+
+    void 'it should send batches one entry at a time by default'() {
+        when:
+        SendMessageBatchResponse response = harness.yield {
+            sqs.sendMessageBatch(SendMessageBatchRequest.builder()
+                .queueUrl('queue')
+                .entries(
+                    SendMessageBatchRequestEntry.builder().id('1').messageBody('a').build(),
+                    SendMessageBatchRequestEntry.builder().id('2').messageBody('b').build()
+                )
+                .build())
+        }.valueOrThrow
+
+        then:
+        calls*.messageBody().sort() == ['a', 'b']
+        response.successful()*.messageId() == ['sent-a', 'sent-b']
+        response.failed().isEmpty()
+    }
+
+    void 'it should report operations without a per message fallback as unsupported'() {
+        expect:
+        harness.yield {
+            sqs.getQueueAttributes(GetQueueAttributesRequest.builder().queueUrl('queue').build())
+        }.throwable instanceof UnsupportedOperationException
+        harness.yield {
+            sqs.changeMessageVisibilityBatch(ChangeMessageVisibilityBatchRequest.builder().queueUrl('queue').build())
+        }.throwable instanceof UnsupportedOperationException
+    }
+}
@@ -0,0 +1,120 @@
+package smartthings.ratpack.sqs.dedup
+
+import ratpack.test.exec.ExecHarness
+import spock.lang.AutoCleanup
+import spock.lang.Specification
+
+import java.nio.file.Files
+import java.nio.file.Path
+import java.time.Clock
+import java.time.Duration
+import java.time.Instant
+import java.time.ZoneId
+import java.time.ZoneOffset
+
+class FileDeduplicationStoreSpec extends Specification {
+
+    @AutoCleanup
+    ExecHarness harness = ExecHarness.harness()
+
+    Path directory = Files.createTempDirectory('dedup')
+    Path file = directory.resolve('store').resolve('processed.log')
+    TestClock clock = new TestClock()
+
+    void cleanup() {
+        directory.toFile().deleteDir()
+    }
+
+    void 'it should forget keys once their time to live has passed'() {
+        given:
+        InMemoryDeduplicationStore store = new InMemoryDeduplicationStore(10, clock)
+
+        when:
+        harness.run { store.add('a', Duration.ofSeconds(10)).then() }
+
+        then:
+        harness.yield { store.contains('a') }.valueOrThrow
+        !harness.yield { store.contains('b') }.valueOrThrow
+
+        when:
+        clock.now += 10000
+
+        then:
+        !harness.yield { store.contains('a') }.valueOrThrow
+        store.size() == 0
+    }
+
+    void 'it should evict the oldest keys once full'() {
+        given:
+        InMemoryDeduplicationStore store = new InMemoryDeduplicationStore(2, clock)
+
+        when:
+        ['a', 'b', 'c'].each { key -> harness.run { store.add(key, Duration.ofMinutes(1)).then() } }
+
+        then:
+        store.size() == 2
+        !harness.yield { store.contains('a') }.valueOrThrow
+        harness.yield { store.contains('c') }.valueOrThrow
+    }
+
+    void 'it should remember keys across restarts'() {
+        given:
+        FileDeduplicationStore store = new FileDeduplicationStore(file, 10, clock)
+
+        when:
+        harness.run { store.add('message 1\n', Duration.ofMinutes(1)).then() }
+        harness.run { store.add('message-2', Duration.ofSeconds(1)).then() }
+        clock.now += 1000
+        FileDeduplicationStore restarted = new FileDeduplicationStore(file, 10, clock)
+
+        then:
+        harness.yield { restarted.contains('message 1\n') }.valueOrThrow
+        !harness.yield { restarted.contains('message-2') }.valueOrThrow
+
+        and: 'the expired key is dropped from the file'
+        Files.readAllLines(file).size() == 1
+    }
+
+    void 'it should compact the file once it has grown to twice the capacity'() {
+        given:
+        FileDeduplicationStore store = new FileDeduplicationStore(file, 2, clock)
+
+        when:
+        (1..4).each { id -> harness.run { store.add("message-$id", Duration.ofMinutes(1)).then() } }
+
+        then:
+        Files.readAllLines(file).collect { it.split(' ')[1] } == ['message-3', 'message-4']
+    }
+
+    void 'it should skip a truncated last line'() {
+        given:
+        Files.createDirectories(file.parent)
+        file.text = "${clock.now + 60000} message-1\n${clock.now + 60000}"
+
+        when:
+        FileDeduplicationStore store = new FileDeduplicationStore(file, 10, clock)
+
+        then:
+        harness.yield { store.contains('message-1') }.valueOrThrow
+        store.size() == 1
+    }
+
+    static class TestClock extends Clock {
+        long now = 1000000
+
+        @Override
+        ZoneId getZone() {
+            ZoneOffset.UTC
+        }
+
+        @Override
+        Clock withZone(ZoneId zone) {
+            this
+        }
+
+        @Override
+        Instant instant() {
+            Instant.ofEpochMilli(now)
+        }
+    }
+}
@@ -0,0 +1,76 @@
+package smartthings.ratpack.sqs.internal.consumer
+
+import ratpack.exec.Execution
+import ratpack.test.exec.ExecHarness
+import spock.lang.AutoCleanup
+import spock.lang.Specification
+import spock.util.concurrent.PollingConditions
+
+import java.util.concurrent.CopyOnWriteArrayList
+
+class AsyncSemaphoreSpec extends Specification {
+
+    @AutoCleanup
+    ExecHarness harness = ExecHarness.harness()
+
+    PollingConditions conditions = new PollingConditions(timeout: 5)
+
+    void 'it should grant permits while they are available'() {
+        given:
+        AsyncSemaphore semaphore = new AsyncSemaphore(2)
+
+        when:
+        harness.yieldSingle { e ->
+            semaphore.acquire().flatMap { semaphore.acquire() }
+        }.valueOrThrow
+
+        then:
+        assert semaphore.available() == 0
+    }
+
+    void 'it should resume waiters as permits are released'() {
+        given:
+        AsyncSemaphore semaphore = new AsyncSemaphore(1)
+        List<Integer> acquired = new CopyOnWriteArrayList<>()
+
+        when:
+        harness.run {
+            semaphore.acquire().then { acquired << 0 }
+            (1..2).each { i ->
+                Execution.fork().start { semaphore.acquire().then { acquired << i } }
+            }
+        }
+
+        then:
+        conditions.eventually {
+            assert acquired == [0]
+        }
+
+        when:
+        harness.run { semaphore.release() }
+
+        then:
+        conditions.eventually {
+            assert acquired.size() == 2
+        }
+
+        when:
+        harness.run { semaphore.release() }
+
+        then:
+        conditions.eventually {
+            assert acquired.sort() == [0, 1, 2]
+        }
+    }
+
+    void 'it should cap requests for more permits than it holds'() {
+        given:
+        AsyncSemaphore semaphore = new AsyncSemaphore(3)
+
+        when:
+        harness.yieldSingle { e -> semaphore.acquire(5) }.valueOrThrow
+
+        then:
+        assert semaphore.available() == 0
+    }
+}
@@ -0,0 +1,572 @@
+package smartthings.ratpack.sqs.internal.consumer
+
+import com.codahale.metrics.MetricRegistry
+import io.github.resilience4j.circuitbreaker.CircuitBreaker
+import ratpack.exec.Downstream
+import ratpack.exec.Execution
+import ratpack.exec.Operation
+import ratpack.exec.Promise
+import ratpack.test.exec.ExecHarness
+import smartthings.ratpack.sqs.AsyncConsumer
+import smartthings.ratpack.sqs.BatchConsumer
+import smartthings.ratpack.sqs.BatchResult
+import smartthings.ratpack.sqs.SqsModule
+import smartthings.ratpack.sqs.SqsService
+import smartthings.ratpack.sqs.dedup.InMemoryDeduplicationStore
+import smartthings.ratpack.sqs.internal.metrics.ConsumerMetrics
+import software.amazon.awssdk.services.sqs.model.*
+import spock.lang.AutoCleanup
+import spock.lang.Specification
+import spock.util.concurrent.PollingConditions
+
+import java.time.Duration
+import java.util.concurrent.ConcurrentLinkedQueue
+import java.util.concurrent.CopyOnWriteArrayList
+import java.util.concurrent.atomic.AtomicBoolean
+
+class ConsumerActionSpec extends Specification {
+
+    @AutoCleanup
+    ExecHarness harness = ExecHarness.harness()
+
+    PollingConditions conditions = new PollingConditions(timeout: 5)
+    String queueUrl = 'http://localhost:4100/queue/test'
+    ConsumerMetrics metrics = new ConsumerMetrics(new MetricRegistry(), 'test', 'TestConsumer')
+    List<ReceiveMessageRequest> receives = new CopyOnWriteArrayList<>()
+    List<DeleteMessageBatchRequest> deletes = new CopyOnWriteArrayList<>()
+    List<ChangeMessageVisibilityBatchRequest> visibilityChanges = new CopyOnWriteArrayList<>()
+    Queue<ReceiveMessageResponse> toReceive = new ConcurrentLinkedQueue<>([received(1)])
+
+    SqsModule.ConsumerConfig consumerConfig = new SqsModule.ConsumerConfig(deleteBatchLingerMillis: 10)
+    SqsModule.EndpointConfig endpointConfig = new SqsModule.EndpointConfig(
+        queueName: 'test',
+        regionName: 'us-east-1'
+    )
+
+    SqsService sqs = Stub(SqsService) {
+        getQueueUrl(_) >> Promise.value(GetQueueUrlResponse.builder().queueUrl(queueUrl).build())
+        receiveMessage(_) >> { ReceiveMessageRequest request ->
+            receives << request
+            ReceiveMessageResponse next = toReceive.poll()
+            next ? Promise.value(next) : Promise.value(received(0)).defer(Duration.ofMillis(10))
+        }
+        deleteMessageBatch(_) >> { DeleteMessageBatchRequest request ->
+            deletes << request
+            Promise.value(DeleteMessageBatchResponse.builder().build())
+        }
+        changeMessageVisibilityBatch(_) >> { ChangeMessageVisibilityBatchRequest request ->
+            visibilityChanges << request
+            Promise.value(ChangeMessageVisibilityBatchResponse.builder().build())
+        }
+    }
+
+    void 'it should delete a message once an async consumer completes'() {
+        given:
+        List<Downstream<? super Void>> pending = new CopyOnWriteArrayList<>()
+        AsyncConsumer consumer = new AsyncConsumer() {
+            @Override
+            Operation consume(Message message) {
+                Promise.<Void>async { pending << it }.operation()
+            }
+        }
+        ConsumerAction action = action(consumer)
+
+        when:
+        harness.run { Execution.fork().start(action) }
+
+        then:
+        conditions.eventually {
+            assert pending.size() == 1
+        }
+        assert deletes.isEmpty()
+
+        when:
+        pending[0].success(null)
+
+        then:
+        conditions.eventually {
+            assert deletes*.entries().flatten()*.receiptHandle() == ['receipt-1']
+        }
+
+        cleanup:
+        harness.run { action.shutdown() }
+    }
+
+    void 'it should not delete a message when an async consumer fails'() {
+        given:
+        List<Message> consumed = new CopyOnWriteArrayList<>()
+        AsyncConsumer consumer = new AsyncConsumer() {
+            @Override
+            Operation consume(Message message) {
+                consumed << message
+                Operation.of { throw new IllegalStateException('oops') }
+            }
+        }
+        ConsumerAction action = action(consumer)
+
+        when:
+        harness.run { Execution.fork().start(action) }
+
+        then:
+        conditions.eventually {
+            assert consumed.size() == 1
+        }
+
+        when:
+        sleep(100)
+
+        then:
+        assert deletes.isEmpty()
+
+        cleanup:
+        harness.run { action.shutdown() }
+    }
+
+    void 'it should record metrics for each stage of the poll chain'() {
+        given:
+        toReceive << received(2)
+        AsyncConsumer consumer = new AsyncConsumer() {
+            @Override
+            Operation consume(Message message) {
+                Operation.of {
+                    if (message.messageId() == 'message-2') {
+                        throw new IllegalStateException('oops')
+                    }
+                }
+            }
+        }
+        ConsumerAction action = action(consumer)
+
+        when:
+        harness.run { Execution.fork().start(action) }
+
+        then:
+        conditions.eventually {
+            assert metrics.consume.count == 3
+            assert metrics.consumeErrors.count == 1
+            assert metrics.delete.count >= 1
+            assert metrics.emptyReceives.count >= 1
+        }
+        assert metrics.receive.count >= 3
+        assert metrics.batchSize.snapshot.max == 2
+        assert metrics.inFlight.count == 0
+
+        cleanup:
+        harness.run { action.shutdown() }
+    }
+
+    void 'it should make failed messages visible again in one batch'() {
+        given:
+        toReceive.clear()
+        toReceive << received(2)
+        AsyncConsumer consumer = new AsyncConsumer() {
+            @Override
+            Operation consume(Message message) {
+                Operation.of { throw new IllegalStateException('oops') }
+            }
+        }
+        FailureHandler failures = new FailureHandler(
+            SqsModule.FailurePolicy.IMMEDIATE,
+            Duration.ofSeconds(1),
+            Duration.ofMinutes(15),
+            new ChangeVisibilityBatcher(sqs, Duration.ofMillis(50))
+        )
+        consumerConfig.batchConcurrency = 2
+        ConsumerAction action = action(consumer, null, failures)
+
+        when:
+        harness.run { Execution.fork().start(action) }
+
+        then:
+        conditions.eventually {
+            assert visibilityChanges.size() == 1
+            assert visibilityChanges[0].entries()*.receiptHandle().sort() == ['receipt-1', 'receipt-2']
+            assert visibilityChanges[0].entries()*.visibilityTimeout() == [0, 0]
+        }
+        assert deletes.isEmpty()
+
+        cleanup:
+        harness.run { action.shutdown() }
+    }
+
+    void 'it should process FIFO message groups in order and in parallel'() {
+        given:
+        endpointConfig.queueName = 'test.fifo'
+        consumerConfig.batchConcurrency = 2
+        toReceive.clear()
+        toReceive << ReceiveMessageResponse.builder()
+            .messages([fifo(1, 'a'), fifo(2, 'b'), fifo(3, 'a'), fifo(4, 'b')])
+            .build()
+        List<String> consumed = new CopyOnWriteArrayList<>()
+        AsyncConsumer consumer = new AsyncConsumer() {
+            @Override
+            Operation consume(Message message) {
+                Operation.of {
+                    consumed << message.messageId()
+                    if (message.messageId() == 'message-1') {
+                        throw new IllegalStateException('oops')
+                    }
+                }
+            }
+        }
+        ConsumerAction action = action(consumer)
+
+        when:
+        harness.run { Execution.fork().start(action) }
+
+        then:
+        conditions.eventually {
+            assert consumed.sort() == ['message-1', 'message-2', 'message-4']
+            assert deletes*.entries().flatten()*.receiptHandle() == ['receipt-2', 'receipt-4']
+            assert receives.size() > 1
+        }
+
+        and:
+        assert receives[0].attributeNamesAsStrings().contains('MessageGroupId')
+        assert receives[0].receiveRequestAttemptId() != null
+        assert receives[1].receiveRequestAttemptId() != receives[0].receiveRequestAttemptId()
+
+        cleanup:
+        harness.run { action.shutdown() }
+    }
+
+    void 'it should delete only the successful messages of a batch consumer'() {
+        given:
+        toReceive.clear()
+        toReceive << received(3)
+        BatchConsumer consumer = new BatchConsumer() {
+            @Override
+            Promise<BatchResult> consume(List<Message> messages) {
+                Promise.value(BatchResult.failed(messages.findAll { it.messageId() == 'message-2' }))
+            }
+        }
+        ConsumerAction action = action(consumer)
+
+        when:
+        harness.run { Execution.fork().start(action) }
+
+        then:
+        conditions.eventually {
+            assert deletes.size() == 1
+            assert deletes[0].entries()*.receiptHandle() == ['receipt-1', 'receipt-3']
+        }
+
+        cleanup:
+        harness.run { action.shutdown() }
+    }
+
+    void 'it should extend the visibility of a message until it is consumed'() {
+        given:
+        List<Downstream<? super Void>> pending = new CopyOnWriteArrayList<>()
+        AsyncConsumer consumer = new AsyncConsumer() {
+            @Override
+            Operation consume(Message message) {
+                Promise.<Void>async { pending << it }.operation()
+            }
+
+            @Override
+            ReceiveMessageRequest getReceiveMessageRequest() {
+                ReceiveMessageRequest.builder().visibilityTimeout(2).build()
+            }
+        }
+        VisibilityExtender extender = new VisibilityExtender(
+            harness.controller,
+            new ChangeVisibilityBatcher(sqs, Duration.ofMillis(10)),
+            Duration.ofMinutes(1)
+        )
+        ConsumerAction action = action(consumer, extender)
+
+        when:
+        harness.run { Execution.fork().start(action) }
+
+        then:
+        conditions.eventually {
+            assert visibilityChanges.size() >= 1
+            assert visibilityChanges[0].entries()*.receiptHandle() == ['receipt-1']
+            assert visibilityChanges[0].entries()*.visibilityTimeout() == [2]
+        }
+
+        when:
+        pending*.success(null)
+
+        then:
+        conditions.eventually {
+            assert deletes*.entries().flatten()*.receiptHandle() == ['receipt-1']
+        }
+
+        cleanup:
+        harness.run { action.shutdown() }
+    }
+
+    void 'it should limit the rate messages are consumed at and shrink receives to match'() {
+        given:
+        toReceive << received(5)
+        List<Long> consumedAt = new CopyOnWriteArrayList<>()
+        AsyncConsumer consumer = new AsyncConsumer() {
+            @Override
+            Operation consume(Message message) {
+                Operation.of { consumedAt << System.nanoTime() }
+            }
+        }
+        ConsumerAction action = action(consumer, null, null, new RateLimiter(2))
+
+        when:
+        harness.run { Execution.fork().start(action) }
+
+        then:
+        conditions.eventually {
+            assert consumedAt.size() == 6
+        }
+        receives[0].maxNumberOfMessages() == 2
+        // Two permits are available up front, the other four arrive at two per second.
+        consumedAt.last() - consumedAt.first() >= Duration.ofMillis(1500).toNanos()
+
+        cleanup:
+        harness.run { action.shutdown() }
+    }
+
+    void 'it should stop receiving while the in-flight budget is used up'() {
+        given:
+        List<Downstream<? super Void>> pending = new CopyOnWriteArrayList<>()
+        AsyncConsumer consumer = new AsyncConsumer() {
+            @Override
+            Operation consume(Message message) {
+                Promise.<Void>async { pending << it }.operation()
+            }
+        }
+        InFlightBudget budget = new InFlightBudget(1, 0, null)
+        ConsumerAction action = action(consumer, null, null, null, budget)
+
+        when:
+        harness.run { Execution.fork().start(action) }
+
+        then:
+        conditions.eventually {
+            assert pending.size() == 1
+        }
+        receives[0].maxNumberOfMessages() == 1
+        budget.messages == 1
+
+        when:
+        sleep(100)
+
+        then:
+        receives.size() == 1
+
+        when:
+        pending[0].success(null)
+
+        then:
+        conditions.eventually {
+            assert receives.size() > 1
+            assert budget.messages == 0
+        }
+
+        cleanup:
+        harness.run { action.shutdown() }
+    }
+
+    void 'it should return prefetched messages to the queue when draining'() {
+        given:
+        consumerConfig.prefetch = 5
+        toReceive.clear()
+        toReceive << received(3)
+        List<Downstream<? super Void>> pending = new CopyOnWriteArrayList<>()
+        AsyncConsumer consumer = new AsyncConsumer() {
+            @Override
+            Operation consume(Message message) {
+                Promise.<Void>async { pending << it }.operation()
+            }
+        }
+        ConsumerAction action = action(consumer)
+
+        when:
+        harness.run { Execution.fork().start(action) }
+
+        then:
+        conditions.eventually {
+            assert pending.size() == 1
+        }
+
+        when:
+        harness.yield { action.drain(Duration.ofMillis(200)) }.valueOrThrow
+
+        then:
+        visibilityChanges*.entries().flatten()*.receiptHandle() == ['receipt-2', 'receipt-3']
+        visibilityChanges*.entries().flatten()*.visibilityTimeout() == [0, 0]
+        !action.shutdownComplete
+
+        when:
+        pending[0].success(null)
+
+        then:
+        conditions.eventually {
+            assert action.shutdownComplete
+            assert deletes*.entries().flatten()*.receiptHandle() == ['receipt-1']
+        }
+        pending.size() == 1
+    }
+
+    void 'it should finish draining while the receive loop waits for prefetch space'() {
+        given:
+        consumerConfig.prefetch = 2
+        toReceive.clear()
+        toReceive << received(3)
+        List<Downstream<? super Void>> pending = new CopyOnWriteArrayList<>()
+        AsyncConsumer consumer = new AsyncConsumer() {
+            @Override
+            Operation consume(Message message) {
+                Promise.<Void>async { pending << it }.operation()
+            }
+        }
+        ConsumerAction action = action(consumer)
+        AtomicBoolean drained = new AtomicBoolean()
+
+        when:
+        harness.run { Execution.fork().start(action) }
+
+        then:
+        conditions.eventually {
+            assert pending.size() == 1
+        }
+
+        when:
+        harness.controller.fork().start {
+            action.drain(Duration.ofSeconds(30)).then { drained.set(true) }
+        }
+        pending[0].success(null)
+
+        then:
+        conditions.eventually {
+            assert drained.get()
+            assert action.shutdownComplete
+        }
+        receives.size() == 1
+        visibilityChanges*.entries().flatten()*.receiptHandle() == ['receipt-2', 'receipt-3']
+    }
+
+    void 'it should finish draining while the poller waits for in-flight budget'() {
+        given:
+        InFlightBudget global = new InFlightBudget(1, 0, null)
+        global.acquire(received(1).messages())
+        AsyncConsumer consumer = new AsyncConsumer() {
+            @Override
+            Operation consume(Message message) {
+                Operation.noop()
+            }
+        }
+        ConsumerAction action = action(consumer, null, null, null, new InFlightBudget(0, 0, global))
+
+        when:
+        harness.run { Execution.fork().start(action) }
+        sleep(100)
+        harness.yield { action.drain(Duration.ofSeconds(3)) }.valueOrThrow
+
+        then:
+        action.shutdownComplete
+        receives.isEmpty()
+    }
+
+    void 'it should send batched deletes before drain completes'() {
+        given:
+        List<Message> consumed = new CopyOnWriteArrayList<>()
+        AsyncConsumer consumer = new AsyncConsumer() {
+            @Override
+            Operation consume(Message message) {
+                Operation.of { consumed << message }
+            }
+        }
+        ConsumerAction action = action(consumer, null, null, null, null, null, Duration.ofMinutes(1))
+
+        when:
+        harness.run { Execution.fork().start(action) }
+
+        then:
+        conditions.eventually {
+            assert consumed.size() == 1
+        }
+        deletes.isEmpty()
+
+        when:
+        harness.yield { action.drain(Duration.ofSeconds(1)) }.valueOrThrow
+
+        then:
+        deletes*.entries().flatten()*.receiptHandle() == ['receipt-1']
+        action.shutdownComplete
+    }
+
+    void 'it should delete redelivered messages without consuming them again'() {
+        given:
+        toReceive << received(1) << received(2)
+        List<Message> consumed = new CopyOnWriteArrayList<>()
+        AsyncConsumer consumer = new AsyncConsumer() {
+            @Override
+            Operation consume(Message message) {
+                Operation.of { consumed << message }
+            }
+        }
+        Deduplicator deduplicator =
+            new Deduplicator(new InMemoryDeduplicationStore(10), 'TestConsumer', null, Duration.ofMinutes(1))
+        ConsumerAction action = action(consumer, null, null, null, null, deduplicator)
+
+        when:
+        harness.run { Execution.fork().start(action) }
+
+        then:
+        conditions.eventually {
+            assert deletes*.entries().flatten()*.receiptHandle().sort() ==
+                ['receipt-1', 'receipt-1', 'receipt-1', 'receipt-2']
+        }
+        consumed*.messageId() == ['message-1', 'message-2']
+        metrics.duplicates.count == 2
+
+        cleanup:
+        harness.run { action.shutdown() }
+    }
+
+    private ConsumerAction action(
+        Object consumer,
+        VisibilityExtender extender = null,
+        FailureHandler failures = null,
+        RateLimiter rateLimiter = null,
+        InFlightBudget budget = null,
+        Deduplicator deduplicator = null,
+        Duration deleteLinger = Duration.ofMillis(10)
+    ) {
+        SqsService sqs = this.sqs
+        new ConsumerAction(
+            sqs,
+            RegisteredConsumer.of(consumer),
+            CircuitBreaker.ofDefaults('test'),
+            consumerConfig,
+            endpointConfig,
+            new DeleteMessageBatcher(sqs, 10, deleteLinger, metrics),
+            extender,
+            failures,
+            rateLimiter,
+            budget,
+            deduplicator,
+            metrics
+        )
+    }
+
+    private static Message fifo(int id, String groupId) {
+        Message.builder()
+            .messageId("message-$id")
+            .receiptHandle("receipt-$id")
+            .attributes([(MessageSystemAttributeName.MESSAGE_GROUP_ID): groupId])
+            .build()
+    }
+
+    private static ReceiveMessageResponse received(int count) {
+        ReceiveMessageResponse.builder()
+            .messages((1..<(count + 1)).collect {
+                Message.builder()
+                    .messageId("message-$it")
+                    .receiptHandle("receipt-$it")
+                    .body("body-$it")
+                    .build()
+            })
+            .build()
+    }
+}
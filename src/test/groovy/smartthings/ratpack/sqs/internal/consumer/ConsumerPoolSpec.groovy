@@ -0,0 +1,62 @@
+package smartthings.ratpack.sqs.internal.consumer
+
+import spock.lang.Specification
+import spock.lang.Unroll
+
+import java.time.Duration
+
+class ConsumerPoolSpec extends Specification {
+
+    static final Duration INTERVAL = Duration.ofSeconds(30)
+
+    @Unroll
+    void 'it should size the pool to the backlog: #description'() {
+        expect:
+        assert ConsumerPool.target(current, stats, backlog, INTERVAL, 1) == expected
+
+        where:
+        description                          | current | stats                                | backlog || expected
+        'no receives yet'                    | 2       | PollerStats.Snapshot.EMPTY           | 1000    || 2
+        'falling behind'                     | 2       | busy(20, 40, Duration.ofSeconds(1))  | 90      || 3
+        'never more than doubling'           | 2       | busy(20, 40, Duration.ofSeconds(1))  | 10_000  || 4
+        'keeping up with the backlog'        | 2       | busy(20, 40, Duration.ofSeconds(1))  | 30      || 2
+        'backlog while receives are empty'   | 2       | idle(20)                             | 500     || 2
+        'drained with empty receives'        | 3       | idle(20)                             | 0       || 2
+        'drained with full receives'         | 3       | busy(20, 40, Duration.ofSeconds(1))  | 0       || 3
+    }
+
+    void 'it should estimate capacity from received messages when nothing was processed'() {
+        given:
+        PollerStats.Snapshot stats = new PollerStats.Snapshot(10, 0, 100, 0, 0)
+
+        expect:
+        assert ConsumerPool.target(1, stats, 150, INTERVAL, 1) == 2
+    }
+
+    void 'it should reset poller stats on snapshot'() {
+        given:
+        PollerStats stats = new PollerStats()
+        stats.recordReceive(0)
+        stats.recordReceive(10)
+        stats.recordProcessing(10, Duration.ofMillis(100).toNanos())
+
+        when:
+        PollerStats.Snapshot first = stats.snapshot()
+        PollerStats.Snapshot second = stats.snapshot()
+
+        then:
+        assert first.receives == 2
+        assert first.emptyRatio == 0.5d
+        assert first.averageBatchSize == 5d
+        assert first.averageLatency == Duration.ofMillis(10)
+        assert second.receives == 0
+    }
+
+    private static PollerStats.Snapshot busy(long receives, long received, Duration latency) {
+        new PollerStats.Snapshot(receives, 0, received, received, latency.toNanos() * received)
+    }
+
+    private static PollerStats.Snapshot idle(long receives) {
+        new PollerStats.Snapshot(receives, receives, 0, 0, 0)
+    }
+}
@@ -0,0 +1,106 @@
+package smartthings.ratpack.sqs.internal.consumer
+
+import com.codahale.metrics.MetricRegistry
+import ratpack.exec.Promise
+import ratpack.test.exec.ExecHarness
+import smartthings.ratpack.sqs.SqsService
+import smartthings.ratpack.sqs.internal.metrics.ConsumerMetrics
+import software.amazon.awssdk.services.sqs.model.BatchResultErrorEntry
+import software.amazon.awssdk.services.sqs.model.DeleteMessageBatchRequest
+import software.amazon.awssdk.services.sqs.model.DeleteMessageBatchResponse
+import software.amazon.awssdk.services.sqs.model.Message
+import spock.lang.AutoCleanup
+import spock.lang.Specification
+import spock.util.concurrent.PollingConditions
+
+import java.time.Duration
+import java.util.concurrent.CopyOnWriteArrayList
+
+class DeleteMessageBatcherSpec extends Specification {
+
+    @AutoCleanup
+    ExecHarness harness = ExecHarness.harness()
+
+    PollingConditions conditions = new PollingConditions(timeout: 5)
+    List<DeleteMessageBatchRequest> requests = new CopyOnWriteArrayList<>()
+    String queueUrl = 'http://localhost:4100/queue/test'
+    ConsumerMetrics metrics = new ConsumerMetrics(new MetricRegistry(), 'test', 'TestConsumer')
+
+    void 'it should delete a full batch in a single call'() {
+        given:
+        SqsService sqs = Stub(SqsService) {
+            deleteMessageBatch(_) >> { DeleteMessageBatchRequest request ->
+                requests << request
+                Promise.value(DeleteMessageBatchResponse.builder().build())
+            }
+        }
+        DeleteMessageBatcher batcher = new DeleteMessageBatcher(sqs, 10, Duration.ofMinutes(1), metrics)
+
+        when:
+        harness.run {
+            (1..10).each { batcher.delete(queueUrl, message(it)) }
+        }
+
+        then:
+        conditions.eventually {
+            assert requests.size() == 1
+            assert requests[0].queueUrl() == queueUrl
+            assert requests[0].entries()*.receiptHandle() == (1..10).collect { "receipt-$it" as String }
+        }
+    }
+
+    void 'it should send a partial batch once the linger time passes'() {
+        given:
+        SqsService sqs = Stub(SqsService) {
+            deleteMessageBatch(_) >> { DeleteMessageBatchRequest request ->
+                requests << request
+                Promise.value(DeleteMessageBatchResponse.builder().build())
+            }
+        }
+        DeleteMessageBatcher batcher = new DeleteMessageBatcher(sqs, 10, Duration.ofMillis(20), metrics)
+
+        when:
+        harness.run {
+            (1..3).each { batcher.delete(queueUrl, message(it)) }
+        }
+
+        then:
+        conditions.eventually {
+            assert requests.size() == 1
+            assert requests[0].entries().size() == 3
+        }
+    }
+
+    void 'it should retry entries that failed on the server'() {
+        given:
+        SqsService sqs = Stub(SqsService) {
+            deleteMessageBatch(_) >> { DeleteMessageBatchRequest request ->
+                requests << request
+                def failed = requests.size() == 1 ? [
+                    BatchResultErrorEntry.builder().id('1').senderFault(false).code('InternalError').build(),
+                    BatchResultErrorEntry.builder().id('2').senderFault(true).code('ReceiptHandleIsInvalid').build()
+                ] : []
+                Promise.value(DeleteMessageBatchResponse.builder().failed(failed).build())
+            }
+        }
+        DeleteMessageBatcher batcher = new DeleteMessageBatcher(sqs, 10, Duration.ofMillis(20), metrics)
+
+        when:
+        harness.run {
+            (1..3).each { batcher.delete(queueUrl, message(it)) }
+        }
+
+        then:
+        conditions.eventually {
+            assert requests.size() == 2
+            assert requests[1].entries()*.receiptHandle() == ['receipt-2']
+        }
+    }
+
+    private static Message message(int i) {
+        Message.builder()
+            .messageId("message-$i")
+            .receiptHandle("receipt-$i")
+            .build()
+    }
+}
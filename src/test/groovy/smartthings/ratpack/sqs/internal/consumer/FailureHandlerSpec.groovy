@@ -0,0 +1,61 @@
+package smartthings.ratpack.sqs.internal.consumer
+
+import smartthings.ratpack.sqs.SqsModule
+import smartthings.ratpack.sqs.SqsService
+import software.amazon.awssdk.services.sqs.model.Message
+import software.amazon.awssdk.services.sqs.model.MessageSystemAttributeName
+import software.amazon.awssdk.services.sqs.model.ReceiveMessageRequest
+import spock.lang.Specification
+import spock.lang.Unroll
+
+import java.time.Duration
+
+class FailureHandlerSpec extends Specification {
+
+    ChangeVisibilityBatcher batcher = new ChangeVisibilityBatcher(Stub(SqsService), Duration.ofMillis(10))
+
+    @Unroll
+    void 'it should delay redelivery of a message received #receiveCount times by #expected'() {
+        given:
+        FailureHandler handler = handler(SqsModule.FailurePolicy.EXPONENTIAL)
+
+        expect:
+        assert handler.delay(message(receiveCount)) == expected
+
+        where:
+        receiveCount || expected
+        null         || Duration.ofSeconds(2)
+        '1'          || Duration.ofSeconds(2)
+        '3'          || Duration.ofSeconds(8)
+        '10'         || Duration.ofMinutes(5)
+        '1000'       || Duration.ofMinutes(5)
+    }
+
+    void 'it should redeliver immediately regardless of the receive count'() {
+        expect:
+        assert handler(SqsModule.FailurePolicy.IMMEDIATE).delay(message('5')) == Duration.ZERO
+    }
+
+    void 'it should request the receive count only for the exponential policy'() {
+        given:
+        ReceiveMessageRequest request = ReceiveMessageRequest.builder().attributeNamesWithStrings('SentTimestamp').build()
+
+        expect:
+        assert handler(SqsModule.FailurePolicy.EXPONENTIAL).withReceiveCount(request).attributeNamesAsStrings() ==
+            ['SentTimestamp', 'ApproximateReceiveCount']
+        assert handler(SqsModule.FailurePolicy.IMMEDIATE).withReceiveCount(request).is(request)
+    }
+
+    private FailureHandler handler(SqsModule.FailurePolicy policy) {
+        new FailureHandler(policy, Duration.ofSeconds(2), Duration.ofMinutes(5), batcher)
+    }
+
+    private static Message message(String receiveCount) {
+        Message.builder()
+            .messageId('message-1')
+            .attributes(receiveCount == null ?
+                [:] :
+                [(MessageSystemAttributeName.APPROXIMATE_RECEIVE_COUNT): receiveCount])
+            .build()
+    }
+}
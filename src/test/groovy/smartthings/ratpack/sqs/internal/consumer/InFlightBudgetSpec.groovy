@@ -0,0 +1,100 @@
+package smartthings.ratpack.sqs.internal.consumer
+
+import ratpack.test.exec.ExecHarness
+import software.amazon.awssdk.services.sqs.model.Message
+import spock.lang.AutoCleanup
+import spock.lang.Specification
+
+import java.time.Duration
+import java.util.concurrent.CountDownLatch
+import java.util.concurrent.TimeUnit
+import java.util.concurrent.atomic.AtomicBoolean
+
+class InFlightBudgetSpec extends Specification {
+
+    @AutoCleanup
+    ExecHarness harness = ExecHarness.harness()
+
+    void 'it should count messages and payload bytes up to its parent'() {
+        given:
+        InFlightBudget global = new InFlightBudget(0, 0, null)
+        InFlightBudget budget = new InFlightBudget(10, 0, global)
+
+        when:
+        budget.acquire(messages('abc', 'defgh'))
+
+        then:
+        budget.messages == 2
+        budget.bytes == 8
+        global.messages == 2
+        global.bytes == 8
+        budget.remainingMessages() == 8
+
+        when:
+        budget.release(messages('abc'))
+
+        then:
+        budget.messages == 1
+        global.bytes == 5
+    }
+
+    void 'it should hold off pollers until in-flight messages complete'() {
+        given:
+        InFlightBudget budget = new InFlightBudget(0, 6, null)
+        budget.acquire(messages('abcdef'))
+        CountDownLatch admitted = new CountDownLatch(1)
+
+        when:
+        harness.run { budget.awaitCapacity().then { admitted.countDown() } }
+
+        then:
+        !admitted.await(100, TimeUnit.MILLISECONDS)
+
+        when:
+        budget.release(messages('abcdef'))
+
+        then:
+        admitted.await(1, TimeUnit.SECONDS)
+    }
+
+    void 'it should wait for the capacity of its parent'() {
+        given:
+        InFlightBudget global = new InFlightBudget(1, 0, null)
+        InFlightBudget budget = new InFlightBudget(0, 0, global)
+        new InFlightBudget(0, 0, global).acquire(messages('a'))
+
+        expect:
+        budget.remainingMessages() == 0
+        !harness.yield { budget.awaitCapacity().map { true }.timeout(Duration.ofMillis(100)) }.success
+    }
+
+    void 'it should resume only stopped pollers when waiters are woken'() {
+        given:
+        InFlightBudget global = new InFlightBudget(1, 0, null)
+        InFlightBudget budget = new InFlightBudget(0, 0, global)
+        global.acquire(messages('a'))
+        AtomicBoolean stopped = new AtomicBoolean()
+        CountDownLatch running = new CountDownLatch(1)
+        CountDownLatch stopping = new CountDownLatch(1)
+
+        when:
+        harness.controller.fork().start { budget.awaitCapacity().then { running.countDown() } }
+        harness.controller.fork().start { budget.awaitCapacity(stopped.&get).then { stopping.countDown() } }
+        stopped.set(true)
+        budget.wakeWaiters()
+
+        then:
+        stopping.await(1, TimeUnit.SECONDS)
+        !running.await(100, TimeUnit.MILLISECONDS)
+
+        when:
+        global.release(messages('a'))
+
+        then:
+        running.await(1, TimeUnit.SECONDS)
+    }
+
+    private static List<Message> messages(String... bodies) {
+        bodies.collect { Message.builder().body(it).build() }
+    }
+}
@@ -0,0 +1,126 @@
+package smartthings.ratpack.sqs.internal.consumer
+
+import ratpack.exec.Execution
+import ratpack.test.exec.ExecHarness
+import software.amazon.awssdk.services.sqs.model.Message
+import spock.lang.AutoCleanup
+import spock.lang.Specification
+import spock.util.concurrent.PollingConditions
+
+import java.time.Duration
+import java.util.concurrent.CopyOnWriteArrayList
+
+class PrefetchBufferSpec extends Specification {
+
+    @AutoCleanup
+    ExecHarness harness = ExecHarness.harness()
+
+    PollingConditions conditions = new PollingConditions(timeout: 5)
+
+    void 'it should report free space and hand out messages in order'() {
+        given:
+        PrefetchBuffer buffer = new PrefetchBuffer(3)
+        buffer.offer(messages(2), System.nanoTime(), Duration.ofSeconds(30))
+
+        when:
+        Integer space = harness.yieldSingle { buffer.awaitSpace() }.valueOrThrow
+        String first = harness.yieldSingle { buffer.take() }.valueOrThrow.get().message.messageId()
+
+        then:
+        assert space == 1
+        assert first == '0'
+        assert buffer.size() == 1
+    }
+
+    void 'it should wait for space until a message is taken'() {
+        given:
+        PrefetchBuffer buffer = new PrefetchBuffer(1)
+        buffer.offer(messages(1), System.nanoTime(), Duration.ofSeconds(30))
+        List<Integer> space = new CopyOnWriteArrayList<>()
+
+        when:
+        harness.run {
+            Execution.fork().start { buffer.awaitSpace().then { space << it } }
+        }
+
+        then:
+        assert space.isEmpty()
+
+        when:
+        harness.yieldSingle { buffer.take() }.valueOrThrow
+
+        then:
+        conditions.eventually {
+            assert space == [1]
+        }
+    }
+
+    void 'it should hand messages straight to waiting takers'() {
+        given:
+        PrefetchBuffer buffer = new PrefetchBuffer(5)
+        List<String> taken = new CopyOnWriteArrayList<>()
+
+        when:
+        harness.run {
+            2.times { Execution.fork().start { buffer.take().then { taken << it.get().message.messageId() } } }
+        }
+        buffer.offer(messages(2), System.nanoTime(), Duration.ofSeconds(30))
+
+        then:
+        conditions.eventually {
+            assert taken.sort() == ['0', '1']
+        }
+        assert buffer.size() == 0
+    }
+
+    void 'it should release takers and return buffered messages when closed'() {
+        given:
+        PrefetchBuffer buffer = new PrefetchBuffer(5)
+        buffer.offer(messages(2), System.nanoTime(), Duration.ofSeconds(30))
+        List<String> remaining = buffer.close()*.message*.messageId()
+
+        when:
+        Optional<PrefetchBuffer.Entry> next = harness.yieldSingle { buffer.take() }.valueOrThrow
+
+        then:
+        assert remaining == ['0', '1']
+        assert !next.isPresent()
+    }
+
+    void 'it should release a receive loop waiting for space when closed'() {
+        given:
+        PrefetchBuffer buffer = new PrefetchBuffer(1)
+        buffer.offer(messages(1), System.nanoTime(), Duration.ofSeconds(30))
+        List<Integer> space = new CopyOnWriteArrayList<>()
+
+        when:
+        harness.run {
+            Execution.fork().start { buffer.awaitSpace().then { space << it } }
+        }
+        buffer.close()
+
+        then:
+        conditions.eventually {
+            assert space == [0]
+        }
+        assert harness.yieldSingle { buffer.awaitSpace() }.valueOrThrow == 0
+    }
+
+    void 'it should flag messages close to their visibility timeout as stale'() {
+        given:
+        PrefetchBuffer buffer = new PrefetchBuffer(2)
+        buffer.offer(messages(1), System.nanoTime(), Duration.ofSeconds(30))
+        buffer.offer(messages(1), System.nanoTime() - Duration.ofSeconds(28).toNanos(), Duration.ofSeconds(30))
+
+        when:
+        List<PrefetchBuffer.Entry> entries = buffer.close()
+
+        then:
+        assert !entries[0].isStale()
+        assert entries[1].isStale()
+    }
+
+    private static List<Message> messages(int count) {
+        (0..<count).collect { Message.builder().messageId(it.toString()).receiptHandle("handle-$it").build() }
+    }
+}
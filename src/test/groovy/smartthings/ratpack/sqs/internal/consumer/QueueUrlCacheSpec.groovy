@@ -0,0 +1,65 @@
+package smartthings.ratpack.sqs.internal.consumer
+
+import ratpack.exec.Promise
+import ratpack.test.exec.ExecHarness
+import smartthings.ratpack.sqs.SqsService
+import software.amazon.awssdk.services.sqs.model.*
+import spock.lang.AutoCleanup
+import spock.lang.Specification
+
+class QueueUrlCacheSpec extends Specification {
+
+    @AutoCleanup
+    ExecHarness harness = ExecHarness.harness()
+
+    SqsService delegate = Mock(SqsService)
+    QueueUrlCache cache = new QueueUrlCache()
+
+    void 'it should resolve a queue url once per endpoint'() {
+        given:
+        SqsService sqs = cache.wrap(delegate, 'us-east-1:none')
+        SqsService other = cache.wrap(delegate, 'us-west-2:none')
+
+        when:
+        List<String> urls = harness.yieldSingle {
+            sqs.getQueueUrl('test')
+                .flatMap { first -> sqs.getQueueUrl('test').map { second -> [first, second] } }
+        }.valueOrThrow*.queueUrl()
+
+        then:
+        1 * delegate.getQueueUrl('test') >> Promise.value(url('east'))
+        0 * _
+
+        and:
+        assert urls == ['east', 'east']
+
+        when:
+        String otherUrl = harness.yieldSingle { other.getQueueUrl('test') }.valueOrThrow.queueUrl()
+
+        then:
+        1 * delegate.getQueueUrl('test') >> Promise.value(url('west'))
+        assert otherUrl == 'west'
+    }
+
+    void 'it should resolve a queue url again once the queue no longer exists'() {
+        given:
+        SqsService sqs = cache.wrap(delegate, 'us-east-1:none')
+        delegate.getQueueUrl('test') >>> [Promise.value(url('old')), Promise.value(url('new'))]
+        delegate.receiveMessage(_) >> Promise.error(QueueDoesNotExistException.builder().build())
+
+        when:
+        harness.yieldSingle { sqs.getQueueUrl('test') }.valueOrThrow
+        def received = harness.yieldSingle {
+            sqs.receiveMessage(ReceiveMessageRequest.builder().queueUrl('old').build())
+        }
+        String resolved = harness.yieldSingle { sqs.getQueueUrl('test') }.valueOrThrow.queueUrl()
+
+        then:
+        assert received.error
+        assert resolved == 'new'
+    }
+
+    private static GetQueueUrlResponse url(String url) {
+        GetQueueUrlResponse.builder().queueUrl(url).build()
+    }
+}
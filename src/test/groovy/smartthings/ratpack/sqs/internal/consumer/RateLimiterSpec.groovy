@@ -0,0 +1,48 @@
+package smartthings.ratpack.sqs.internal.consumer
+
+import ratpack.test.exec.ExecHarness
+import spock.lang.AutoCleanup
+import spock.lang.Specification
+
+class RateLimiterSpec extends Specification {
+
+    @AutoCleanup
+    ExecHarness harness = ExecHarness.harness()
+
+    void 'it should allow a burst of one second worth of permits'() {
+        given:
+        RateLimiter limiter = new RateLimiter(5)
+
+        expect:
+        limiter.available() == 5
+
+        when:
+        long started = System.nanoTime()
+        harness.execute(limiter.acquire(5))
+
+        then:
+        System.nanoTime() - started < 100_000_000
+        limiter.available() == 0
+    }
+
+    void 'it should wait out an overdrawn bucket'() {
+        given:
+        RateLimiter limiter = new RateLimiter(10)
+        harness.execute(limiter.acquire(10))
+
+        when:
+        long started = System.nanoTime()
+        harness.execute(limiter.acquire(3))
+
+        then:
+        System.nanoTime() - started >= 250_000_000
+    }
+
+    void 'it should reject a limit that is not positive'() {
+        when:
+        new RateLimiter(0)
+
+        then:
+        thrown(IllegalArgumentException)
+    }
+}
@@ -0,0 +1,65 @@
+package smartthings.ratpack.sqs.internal.consumer
+
+import ratpack.exec.Promise
+import ratpack.test.exec.ExecHarness
+import smartthings.ratpack.aws.codec.GzipCodec
+import smartthings.ratpack.aws.codec.PayloadCompression
+import smartthings.ratpack.sqs.BatchConsumer
+import smartthings.ratpack.sqs.BatchResult
+import smartthings.ratpack.sqs.Consumer
+import software.amazon.awssdk.services.sqs.model.Message
+import software.amazon.awssdk.services.sqs.model.MessageAttributeValue
+import spock.lang.AutoCleanup
+import spock.lang.Specification
+
+class RegisteredConsumerSpec extends Specification {
+
+    @AutoCleanup
+    ExecHarness harness = ExecHarness.harness()
+
+    void 'it should fail a message whose body could not be decompressed without consuming it'() {
+        given:
+        Consumer consumer = Mock(Consumer)
+
+        when:
+        harness.yield { RegisteredConsumer.of(consumer).consume(compressed('1')).promise() }.valueOrThrow
+
+        then:
+        thrown(IllegalStateException)
+        0 * consumer.consume(_)
+    }
+
+    void 'it should fail the messages of a batch whose bodies could not be decompressed'() {
+        given:
+        List<Message> consumed = []
+        BatchConsumer consumer = Stub(BatchConsumer) {
+            consume(_) >> { List<Message> messages ->
+                consumed.addAll(messages)
+                Promise.value(BatchResult.failed([messages.find { it.messageId() == '3' }]))
+            }
+        }
+        List<Message> messages = [plain('1'), compressed('2'), plain('3')]
+
+        when:
+        BatchResult result = harness.yield { RegisteredConsumer.of(consumer).consume(messages) }.valueOrThrow
+
+        then:
+        consumed*.messageId() == ['1', '3']
+        result.failedMessageIds == ['2', '3'] as Set
+    }
+
+    private static Message plain(String id) {
+        Message.builder().messageId(id).body('plain').build()
+    }
+
+    private static Message compressed(String id) {
+        Message.builder()
+            .messageId(id)
+            .body('not gzip')
+            .messageAttributes((PayloadCompression.ATTRIBUTE): MessageAttributeValue.builder()
+                .dataType('String')
+                .stringValue(GzipCodec.NAME)
+                .build())
+            .build()
+    }
+}
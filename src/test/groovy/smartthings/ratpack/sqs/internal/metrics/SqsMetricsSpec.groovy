@@ -0,0 +1,72 @@
+package smartthings.ratpack.sqs.internal.metrics
+
+import com.codahale.metrics.MetricRegistry
+import io.prometheus.client.Collector
+import io.prometheus.client.CollectorRegistry
+import spock.lang.Specification
+
+import java.util.concurrent.TimeUnit
+
+class SqsMetricsSpec extends Specification {
+
+    MetricRegistry registry = new MetricRegistry()
+
+    void 'it should register consumer metrics by queue and consumer class'() {
+        given:
+        SqsMetrics metrics = new SqsMetrics(registry)
+
+        when:
+        ConsumerMetrics consumer = metrics.forConsumer('orders', SqsMetricsSpec)
+
+        then:
+        assert metrics.forConsumer('orders', SqsMetricsSpec).is(consumer)
+        assert registry.timers.containsKey('sqs.consumer.orders.SqsMetricsSpec.receive')
+        assert registry.counters.containsKey('sqs.consumer.orders.SqsMetricsSpec.in-flight')
+    }
+
+    void 'it should export labelled samples to prometheus'() {
+        given:
+        CollectorRegistry collectors = new CollectorRegistry()
+        SqsMetrics metrics = new SqsMetrics(Optional.of(registry), Optional.of(collectors))
+        ConsumerMetrics consumer = metrics.forConsumer('orders', SqsMetricsSpec)
+        consumer.consume.update(2, TimeUnit.SECONDS)
+        consumer.consumeErrors.mark()
+        consumer.inFlight.inc(3)
+
+        expect:
+        assert collectors.getSampleValue(
+            'sqs_consumer_consume_seconds', ['queue', 'consumer', 'quantile'] as String[],
+            ['orders', 'SqsMetricsSpec', '0.5'] as String[]
+        ) == 2.0d
+        assert collectors.getSampleValue(
+            'sqs_consumer_consume_errors_total', ['queue', 'consumer'] as String[],
+            ['orders', 'SqsMetricsSpec'] as String[]
+        ) == 1.0d
+        assert collectors.getSampleValue(
+            'sqs_consumer_in_flight', ['queue', 'consumer'] as String[], ['orders', 'SqsMetricsSpec'] as String[]
+        ) == 3.0d
+        assert metrics.exports.collect()*.type.contains(Collector.Type.SUMMARY)
+    }
+
+    void 'it should publish in-flight budget usage'() {
+        given:
+        CollectorRegistry collectors = new CollectorRegistry()
+        SqsMetrics metrics = new SqsMetrics(Optional.of(registry), Optional.of(collectors))
+
+        when:
+        metrics.registerInFlight('all', { 4L }, { 1024L })
+
+        then:
+        assert registry.gauges['sqs.in-flight.all.messages'].value == 4L
+        assert registry.gauges['sqs.in-flight.all.bytes'].value == 1024L
+        assert collectors.getSampleValue(
+            'sqs_in_flight_bytes', ['scope'] as String[], ['all'] as String[]
+        ) == 1024.0d
+
+        when:
+        metrics.registerInFlight('all', { 5L }, { 0L })
+
+        then:
+        assert registry.gauges['sqs.in-flight.all.messages'].value == 5L
+    }
+}
@@ -0,0 +1,193 @@
+package smartthings.ratpack.sqs.internal.services
+
+import ratpack.test.exec.ExecHarness
+import smartthings.ratpack.sqs.AsyncSqsService
+import software.amazon.awssdk.services.sqs.SqsAsyncClient
+import software.amazon.awssdk.services.sqs.model.*
+import spock.lang.AutoCleanup
+import spock.lang.Specification
+
+import java.util.concurrent.CompletableFuture
+
+class AsyncSqsServiceSpec extends Specification {
+
+    SqsAsyncClient sqs = Mock(SqsAsyncClient)
+
+    @AutoCleanup
+    ExecHarness harness = ExecHarness.harness()
+
+    void 'it should delete a message'() {
+        given:
+        AsyncSqsService service = new AsyncSqsService(sqs)
+        DeleteMessageRequest request = DeleteMessageRequest.builder().build()
+        DeleteMessageResponse response = DeleteMessageResponse.builder().build()
+
+        when:
+        def result = harness.yieldSingle{ e ->
+            service.deleteMessage(request)
+        }.value
+
+        then:
+        1 * sqs.deleteMessage(request) >> CompletableFuture.completedFuture(response)
+        0 * _
+
+        and:
+        assert result == response
+    }
+
+    void 'it should delete a batch of messages'() {
+        given:
+        AsyncSqsService service = new AsyncSqsService(sqs)
+        DeleteMessageBatchRequest request = DeleteMessageBatchRequest.builder().build()
+        DeleteMessageBatchResponse response = DeleteMessageBatchResponse.builder().build()
+
+        when:
+        def result = harness.yieldSingle{ e ->
+            service.deleteMessageBatch(request)
+        }.value
+
+        then:
+        1 * sqs.deleteMessageBatch(request) >> CompletableFuture.completedFuture(response)
+        0 * _
+
+        and:
+        assert result == response
+    }
+
+    void 'it should send a message'() {
+        given:
+        AsyncSqsService service = new AsyncSqsService(sqs)
+        SendMessageRequest request = SendMessageRequest.builder().build()
+        SendMessageResponse response = SendMessageResponse.builder().build()
+
+        when:
+        def result = harness.yieldSingle{ e ->
+            service.sendMessage(request)
+        }.value
+
+        then:
+        1 * sqs.sendMessage(request) >> CompletableFuture.completedFuture(response)
+        0 * _
+
+        and:
+        assert result == response
+    }
+
+    void 'it should send a batch of messages'() {
+        given:
+        AsyncSqsService service = new AsyncSqsService(sqs)
+        SendMessageBatchRequest request = SendMessageBatchRequest.builder().build()
+        SendMessageBatchResponse response = SendMessageBatchResponse.builder().build()
+
+        when:
+        def result = harness.yieldSingle{ e ->
+            service.sendMessageBatch(request)
+        }.value
+
+        then:
+        1 * sqs.sendMessageBatch(request) >> CompletableFuture.completedFuture(response)
+        0 * _
+
+        and:
+        assert result == response
+    }
+
+    void 'it should receive a message'() {
+        given:
+        AsyncSqsService service = new AsyncSqsService(sqs)
+        ReceiveMessageRequest request = ReceiveMessageRequest.builder().build()
+        ReceiveMessageResponse response = ReceiveMessageResponse.builder().build()
+
+        when:
+        def result = harness.yieldSingle{ e ->
+            service.receiveMessage(request)
+        }.value
+
+        then:
+        1 * sqs.receiveMessage(request) >> CompletableFuture.completedFuture(response)
+        0 * _
+
+        and:
+        assert result == response
+    }
+
+    void 'it should get queue attributes'() {
+        given:
+        AsyncSqsService service = new AsyncSqsService(sqs)
+        GetQueueAttributesRequest request = GetQueueAttributesRequest.builder().build()
+        GetQueueAttributesResponse response = GetQueueAttributesResponse.builder().build()
+
+        when:
+        def result = harness.yieldSingle{ e ->
+            service.getQueueAttributes(request)
+        }.value
+
+        then:
+        1 * sqs.getQueueAttributes(request) >> CompletableFuture.completedFuture(response)
+        0 * _
+
+        and:
+        assert result == response
+    }
+
+    void 'it should change message visibility in batch'() {
+        given:
+        AsyncSqsService service = new AsyncSqsService(sqs)
+        ChangeMessageVisibilityBatchRequest request = ChangeMessageVisibilityBatchRequest.builder().build()
+        ChangeMessageVisibilityBatchResponse response = ChangeMessageVisibilityBatchResponse.builder().build()
+
+        when:
+        def result = harness.yieldSingle{ e ->
+            service.changeMessageVisibilityBatch(request)
+        }.value
+
+        then:
+        1 * sqs.changeMessageVisibilityBatch(request) >> CompletableFuture.completedFuture(response)
+        0 * _
+
+        and:
+        assert result == response
+    }
+
+    void 'it should get a queue url'() {
+        given:
+        AsyncSqsService service = new AsyncSqsService(sqs)
+        String queueName = 'mars-10'
+        GetQueueUrlResponse response = GetQueueUrlResponse.builder().build()
+
+        when:
+        def result = harness.yieldSingle{ e ->
+            service.getQueueUrl(queueName)
+        }.value
+
+        then:
+        1 * sqs.getQueueUrl({request ->
+            request.queueName() == queueName
+        } as GetQueueUrlRequest) >> CompletableFuture.completedFuture(response)
+        0 * _
+
+        and:
+        assert result == response
+    }
+
+    void 'it should surface the cause of a failed call'() {
+        given:
+        AsyncSqsService service = new AsyncSqsService(sqs)
+        ReceiveMessageRequest request = ReceiveMessageRequest.builder().build()
+        QueueDoesNotExistException error = QueueDoesNotExistException.builder().message('gone').build()
+        CompletableFuture<ReceiveMessageResponse> future = new CompletableFuture<>()
+        future.completeExceptionally(new java.util.concurrent.CompletionException(error))
+
+        when:
+        def result = harness.yieldSingle{ e ->
+            service.receiveMessage(request)
+        }
+
+        then:
+        1 * sqs.receiveMessage(request) >> future
+        0 * _
+
+        and:
+        assert result.throwable == error
+    }
+}
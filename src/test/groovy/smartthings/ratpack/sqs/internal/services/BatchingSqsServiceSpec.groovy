@@ -0,0 +1,84 @@
+package smartthings.ratpack.sqs.internal.services
+
+import ratpack.exec.Promise
+import ratpack.exec.util.ParallelBatch
+import ratpack.test.exec.ExecHarness
+import smartthings.ratpack.sqs.BatchingSqsService
+import smartthings.ratpack.sqs.SqsService
+import smartthings.ratpack.sqs.internal.exception.BatchEntryException
+import software.amazon.awssdk.services.sqs.model.*
+import spock.lang.AutoCleanup
+import spock.lang.Specification
+
+import java.time.Duration
+import java.util.concurrent.CopyOnWriteArrayList
+
+class BatchingSqsServiceSpec extends Specification {
+
+    @AutoCleanup
+    ExecHarness harness = ExecHarness.harness()
+
+    String queueUrl = 'http://localhost:4100/queue/test'
+    List<SendMessageBatchRequest> requests = new CopyOnWriteArrayList<>()
+
+    SqsService sqs = Stub(SqsService) {
+        sendMessageBatch(_) >> { SendMessageBatchRequest request ->
+            requests << request
+            Promise.value(SendMessageBatchResponse.builder()
+                .successful(request.entries()
+                    .findAll { it.messageBody() != 'fail' }
+                    .collect { SendMessageBatchResultEntry.builder().id(it.id()).messageId("id-${it.messageBody()}").build() })
+                .failed(request.entries()
+                    .findAll { it.messageBody() == 'fail' }
+                    .collect { BatchResultErrorEntry.builder().id(it.id()).code('InvalidMessageContents').senderFault(true).build() })
+                .build())
+        }
+    }
+
+    BatchingSqsService service = new BatchingSqsService(sqs, Duration.ofMillis(20))
+
+    void 'it should batch concurrent sends and complete each with its own result'() {
+        when:
+        def results = harness.yieldSingle { e ->
+            ParallelBatch.of((1..12).collect { service.sendMessage(send(it as String)) }).yield()
+        }.value
+
+        then:
+        assert requests.size() == 2
+        assert requests*.entries()*.size().sort() == [2, 10]
+        assert results*.messageId() == (1..12).collect { "id-$it" as String }
+    }
+
+    void 'it should pack batches by payload size'() {
+        given:
+        String large = 'x' * (100 * 1024)
+
+        when:
+        harness.yieldSingle { e ->
+            ParallelBatch.of((1..3).collect { service.sendMessage(send(large)) }).yield()
+        }
+
+        then:
+        assert requests*.entries()*.size().sort() == [1, 2]
+    }
+
+    void 'it should fail only the caller whose entry failed'() {
+        when:
+        def results = harness.yieldSingle { e ->
+            ParallelBatch.of([service.sendMessage(send('ok')), service.sendMessage(send('fail'))]).yieldAll()
+        }.value
+
+        then:
+        assert requests.size() == 1
+        assert results[0].value.messageId() == 'id-ok'
+        assert results[1].throwable instanceof BatchEntryException
+        assert ((BatchEntryException) results[1].throwable).senderFault
+    }
+
+    private SendMessageRequest send(String body) {
+        SendMessageRequest.builder()
+            .queueUrl(queueUrl)
+            .messageBody(body)
+            .build()
+    }
+}
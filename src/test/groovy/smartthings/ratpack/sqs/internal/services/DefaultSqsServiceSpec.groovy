@@ -33,6 +33,25 @@ class DefaultSqsServiceSpec extends Specification {
         assert result == response
     }
 
+    void 'it should delete a batch of messages'() {
+        given:
+        DefaultSqsService service = new DefaultSqsService(sqs)
+        DeleteMessageBatchRequest request = DeleteMessageBatchRequest.builder().build()
+        DeleteMessageBatchResponse response = DeleteMessageBatchResponse.builder().build()
+
+        when:
+        def result = harness.yieldSingle{ e ->
+            service.deleteMessageBatch(request)
+        }.value
+
+        then:
+        1 * sqs.deleteMessageBatch(request) >> response
+        0 * _
+
+        and:
+        assert result == response
+    }
+
     void 'it should send a message'() {
         given:
         DefaultSqsService service = new DefaultSqsService(sqs)
@@ -52,6 +71,25 @@ class DefaultSqsServiceSpec extends Specification {
         assert result == response
     }
 
+    void 'it should send a batch of messages'() {
+        given:
+        DefaultSqsService service = new DefaultSqsService(sqs)
+        SendMessageBatchRequest request = SendMessageBatchRequest.builder().build()
+        SendMessageBatchResponse response = SendMessageBatchResponse.builder().build()
+
+        when:
+        def result = harness.yieldSingle{ e ->
+            service.sendMessageBatch(request)
+        }.value
+
+        then:
+        1 * sqs.sendMessageBatch(request) >> response
+        0 * _
+
+        and:
+        assert result == response
+    }
+
     void 'it should receive a message'() {
         given:
         DefaultSqsService service = new DefaultSqsService(sqs)
@@ -71,6 +109,44 @@ class DefaultSqsServiceSpec extends Specification {
         assert result == response
     }
 
+    void 'it should get queue attributes'() {
+        given:
+        DefaultSqsService service = new DefaultSqsService(sqs)
+        GetQueueAttributesRequest request = GetQueueAttributesRequest.builder().build()
+        GetQueueAttributesResponse response = GetQueueAttributesResponse.builder().build()
+
+        when:
+        def result = harness.yieldSingle{ e ->
+            service.getQueueAttributes(request)
+        }.value
+
+        then:
+        1 * sqs.getQueueAttributes(request) >> response
+        0 * _
+
+        and:
+        assert result == response
+    }
+
+    void 'it should change message visibility in batch'() {
+        given:
+        DefaultSqsService service = new DefaultSqsService(sqs)
+        ChangeMessageVisibilityBatchRequest request = ChangeMessageVisibilityBatchRequest.builder().build()
+        ChangeMessageVisibilityBatchResponse response = ChangeMessageVisibilityBatchResponse.builder().build()
+
+        when:
+        def result = harness.yieldSingle{ e ->
+            service.changeMessageVisibilityBatch(request)
+        }.value
+
+        then:
+        1 * sqs.changeMessageVisibilityBatch(request) >> response
+        0 * _
+
+        and:
+        assert result == response
+    }
+
     void 'it should get a queue url'() {
         given:
         DefaultSqsService service = new DefaultSqsService(sqs)